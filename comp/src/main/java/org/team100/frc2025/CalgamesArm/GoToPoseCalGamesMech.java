@@ -7,37 +7,58 @@ import org.team100.lib.geometry.HolonomicPose2d;
 import org.team100.lib.reference.r3.TrajectoryReferenceR3;
 import org.team100.lib.trajectory.Trajectory100;
 import org.team100.lib.trajectory.TrajectoryPlanner;
+import org.team100.lib.trajectory.TrajectoryService;
+import org.team100.lib.trajectory.TrajectoryService.Fallback;
 
-import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Pose2d;
 
-/** Starting pose is current pose, with the fixed starting course. */
+/**
+ * Starting pose is current pose, with the fixed starting course.
+ * 
+ * The trajectory from the nominal start is planned in the background when this
+ * command is constructed, and used if the mechanism is actually at the nominal
+ * start, which is the usual case. Otherwise, plan from wherever it is.
+ */
 public class GoToPoseCalGamesMech extends MoveAndHold {
+    /** How close the current pose must be to the nominal start, m and rad. */
+    private static final double START_TOLERANCE = 0.01;
 
     private final CalgamesMech m_subsystem;
+    private final HolonomicPose2d m_start;
     private final HolonomicPose2d m_goal;
-    private final Rotation2d m_course;
     private final TrajectoryPlanner m_trajectoryPlanner;
+    private final TrajectoryService m_trajectoryService;
 
     private CalgamesReferenceController m_referenceController;
 
     public GoToPoseCalGamesMech(
             CalgamesMech subsystem,
-            Rotation2d course,
+            HolonomicPose2d start,
             HolonomicPose2d goal,
-            TrajectoryPlanner trajectoryPlanner) {
+            TrajectoryPlanner trajectoryPlanner,
+            TrajectoryService trajectoryService) {
         m_subsystem = subsystem;
+        m_start = start;
         m_goal = goal;
-        m_course = course;
         m_trajectoryPlanner = trajectoryPlanner;
+        m_trajectoryService = trajectoryService;
+        // Start planning now, so it's ready when we need it.
+        m_trajectoryService.restToRest(List.of(m_start, m_goal));
         addRequirements(subsystem);
     }
 
     @Override
     public void initialize() {
-        HolonomicPose2d m_currentPose = HolonomicPose2d.make(
-                m_subsystem.getState().pose(), m_course);
-        Trajectory100 m_trajectory = m_trajectoryPlanner.restToRest(
-                List.of(m_currentPose, m_goal));
+        Pose2d pose = m_subsystem.getState().pose();
+        Trajectory100 m_trajectory;
+        if (atStart(pose)) {
+            m_trajectory = m_trajectoryService.getNow(
+                    List.of(m_start, m_goal), Fallback.PLAN_NOW);
+        } else {
+            HolonomicPose2d m_currentPose = HolonomicPose2d.make(pose, m_start.course());
+            m_trajectory = m_trajectoryPlanner.restToRest(
+                    List.of(m_currentPose, m_goal));
+        }
         m_referenceController = new CalgamesReferenceController(
                 m_subsystem,
                 new TrajectoryReferenceR3(m_trajectory));
@@ -65,4 +86,9 @@ public class GoToPoseCalGamesMech extends MoveAndHold {
         m_subsystem.stop();
     }
 
+    private boolean atStart(Pose2d pose) {
+        return pose.getTranslation().getDistance(m_start.translation()) < START_TOLERANCE
+                && Math.abs(pose.getRotation().minus(m_start.heading()).getRadians()) < START_TOLERANCE;
+    }
+
 }
\ No newline at end of file
@@ -11,6 +11,7 @@ import org.team100.lib.motion.prr.ElevatorArmWristKinematics;
 import org.team100.lib.motion.prr.JointAccelerations;
 import org.team100.lib.motion.prr.JointVelocities;
 import org.team100.lib.trajectory.TrajectoryPlanner;
+import org.team100.lib.trajectory.TrajectoryService;
 import org.team100.lib.trajectory.timing.ConstantConstraint;
 import org.team100.lib.trajectory.timing.JointConstraint;
 import org.team100.lib.trajectory.timing.TimingConstraint;
@@ -24,6 +25,8 @@ public class MechTrajectories extends Command {
     private static final boolean USE_JOINT_CONSTRAINT = false;
     private final CalgamesMech m_subsystem;
     private final TrajectoryPlanner m_planner;
+    /** Precomputes trajectories between the fixed waypoints. */
+    private final TrajectoryService m_service;
 
     public MechTrajectories(
             LoggerFactory parent,
@@ -56,13 +59,14 @@ public class MechTrajectories extends Command {
         // numbers bigger!
         m_planner = new TrajectoryPlanner(0.01, 0.1, 0.05, c);
         // m_planner = new TrajectoryPlanner(0.02, 0.2, 0.1, c);
+        m_service = new TrajectoryService(m_planner);
     }
 
     /** A command that goes from the start to the end and then finishes. */
     public Command terminal(String name, HolonomicPose2d start, HolonomicPose2d end) {
 
-        /** Use the start course and ignore the start pose for now */
-        MoveAndHold f = new GoToPoseCalGamesMech(m_subsystem, start.course(), end, m_planner);
+        /** Use the start course, and the start pose if we're there */
+        MoveAndHold f = new GoToPoseCalGamesMech(m_subsystem, start, end, m_planner, m_service);
         return f
                 .until(f::isDone)
                 .withName(name);
@@ -71,9 +75,9 @@ public class MechTrajectories extends Command {
     /** A command that goes from the start to the end and then waits forever. */
     public MoveAndHold endless(String name, HolonomicPose2d start, HolonomicPose2d end) {
 
-        /** Use the start course and ignore the start pose for now */
+        /** Use the start course, and the start pose if we're there */
         GoToPoseCalGamesMech c = new GoToPoseCalGamesMech(
-                m_subsystem, start.course(), end, m_planner);
+                m_subsystem, start, end, m_planner, m_service);
         c.setName(name);
         return c;
 
@@ -0,0 +1,70 @@
+package org.team100.frc2025;
+
+import java.io.File;
+
+import org.team100.lib.framework.HeadlessSim;
+
+import edu.wpi.first.hal.HAL;
+
+/**
+ * Runs simulated matches as fast as possible, without the GUI.
+ * 
+ * With "--seed N", runs one match with that seed. With "--runs N --jobs J",
+ * runs N matches, seeds 0 to N-1, J at a time, each in its own process, with
+ * logs in build/sim.
+ * 
+ * See the simulateHeadless task in build.gradle.
+ */
+public final class HeadlessMain {
+    private static final double AUTON_S = 15;
+    private static final double TELEOP_S = 135;
+
+    private HeadlessMain() {
+    }
+
+    public static void main(String... args) throws Exception {
+        long seed = -1;
+        int runs = 1;
+        int jobs = Runtime.getRuntime().availableProcessors();
+        if (args.length % 2 != 0)
+            throw new IllegalArgumentException("missing value for " + args[args.length - 1]);
+        for (int i = 0; i < args.length; i += 2) {
+            switch (args[i]) {
+                case "--seed" -> seed = Long.parseLong(args[i + 1]);
+                case "--runs" -> runs = Integer.parseInt(args[i + 1]);
+                case "--jobs" -> jobs = Integer.parseInt(args[i + 1]);
+                default -> throw new IllegalArgumentException("unknown argument: " + args[i]);
+            }
+        }
+        if (seed >= 0) {
+            match(seed);
+            // This process is done with the HAL, even though HeadlessSim isn't.
+            HAL.shutdown();
+            // Some of the robot's threads aren't daemons.
+            System.exit(0);
+        }
+        long startNs = System.nanoTime();
+        int failures = HeadlessSim.fork(HeadlessMain.class, runs, jobs, new File("build/sim"));
+        System.out.printf("%d runs, %d failures, %.1f s\n",
+                runs, failures, (System.nanoTime() - startNs) / 1e9);
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    /** One match: auton, then teleop with nobody driving. */
+    private static void match(long seed) {
+        long startNs = System.nanoTime();
+        HeadlessSim sim = new HeadlessSim(Robot::new, seed);
+        try {
+            sim.disabled(1);
+            sim.autonomous(AUTON_S);
+            sim.teleop(TELEOP_S);
+            sim.disabled(1);
+        } finally {
+            sim.close();
+        }
+        double wallS = (System.nanoTime() - startNs) / 1e9;
+        double simS = AUTON_S + TELEOP_S + 2;
+        System.out.printf("seed %d sim %.1f s wall %.1f s (%.0fx)\n",
+                seed, simS, wallS, simS / wallS);
+    }
+}
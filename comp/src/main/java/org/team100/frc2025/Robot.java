@@ -9,10 +9,13 @@ import org.team100.lib.coherence.Takt;
 import org.team100.lib.config.Identity;
 import org.team100.lib.experiments.Experiment;
 import org.team100.lib.experiments.Experiments;
+import org.team100.lib.framework.LoopProfiler;
 import org.team100.lib.framework.TimedRobot100;
 import org.team100.lib.logging.RobotLog;
+import org.team100.lib.motor.ControlQueue;
 import org.team100.lib.util.Banner;
 
+import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.networktables.NetworkTableInstance;
 import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj.RobotController;
@@ -53,8 +56,15 @@ public class Robot extends TimedRobot100 {
         m_allAutons = new AllAutons(m_machinery);
         m_binder = new Binder(m_machinery);
         m_binder.bind();
+        // after binding, so the profiler's mark is the last button action.
+        LoopProfiler.instance().instrument(CommandScheduler.getInstance());
 
         Prewarmer.init(m_machinery);
+
+        if (Experiments.instance.enabled(Experiment.ParallelCache)) {
+            // The main thread runs one group itself, so this is three at once.
+            Cache.setParallelism(2);
+        }
     }
 
     @Override
@@ -66,6 +76,8 @@ public class Robot extends TimedRobot100 {
         // Run one iteration of the command scheduler.
         CommandScheduler.getInstance().run();
         m_machinery.periodic();
+        // Write all the motor control requests at once.
+        ControlQueue.flush();
         m_robotLog.periodic();
         if (Experiments.instance.enabled(Experiment.FlushOften)) {
             // StrUtil.warn("FLUSHING EVERY LOOP, DO NOT USE IN COMP");
@@ -98,6 +110,11 @@ public class Robot extends TimedRobot100 {
         m_allAutons.close();
     }
 
+    /** For testing. */
+    Pose2d getPose() {
+        return m_machinery.getPose();
+    }
+
     ///////////////////////////////////////////////////////////////////////
     //
     // LEAVE ALL THESE EMPTY
@@ -15,6 +15,7 @@ import org.team100.lib.gyro.GyroFactory;
 import org.team100.lib.localization.AprilTagFieldLayoutWithCorrectOrientation;
 import org.team100.lib.localization.AprilTagRobotLocalizer;
 import org.team100.lib.localization.NudgingVisionUpdater;
+import org.team100.lib.localization.OdometryThread;
 import org.team100.lib.localization.OdometryUpdater;
 import org.team100.lib.localization.SimulatedTagDetector;
 import org.team100.lib.localization.SwerveHistory;
@@ -25,6 +26,7 @@ import org.team100.lib.motion.swerve.SwerveDriveFactory;
 import org.team100.lib.motion.swerve.SwerveDriveSubsystem;
 import org.team100.lib.motion.swerve.kinodynamics.SwerveKinodynamics;
 import org.team100.lib.motion.swerve.kinodynamics.SwerveKinodynamicsFactory;
+import org.team100.lib.motion.swerve.module.CtreOdometrySampler;
 import org.team100.lib.motion.swerve.module.SwerveModuleCollection;
 import org.team100.lib.targeting.SimulatedTargetWriter;
 import org.team100.lib.targeting.Targets;
@@ -49,10 +51,14 @@ public class Machinery {
     // acceleration) to keep from browning out.
     private static final double DRIVE_SUPPLY_LIMIT = 90;
     private static final double DRIVE_STATOR_LIMIT = 110;
+    /** Odometry thread rate, also the CAN rate of the module position signals. */
+    private static final double ODOMETRY_RATE_HZ = 250;
 
     private final Runnable m_combinedViz;
     private final Runnable m_climberViz;
     private final SwerveModuleCollection m_modules;
+    /** Null in simulation. */
+    private final OdometryThread m_odometryThread;
     private final Runnable m_simulatedTagDetector;
     private final Runnable m_targetSimulator;
     private final LEDIndicator m_leds;
@@ -117,6 +123,16 @@ public class Machinery {
         final OdometryUpdater odometryUpdater = new OdometryUpdater(
                 m_swerveKinodynamics, gyro, history, m_modules::positions);
         odometryUpdater.reset(Pose2d.kZero);
+        // On the real robot, sample the modules and gyro faster than the main loop.
+        final CtreOdometrySampler sampler = CtreOdometrySampler.get(
+                m_modules, gyro, ODOMETRY_RATE_HZ);
+        if (sampler == null) {
+            m_odometryThread = null;
+        } else {
+            m_odometryThread = new OdometryThread(
+                    driveLog, odometryUpdater, sampler, ODOMETRY_RATE_HZ);
+            m_odometryThread.start();
+        }
         final NudgingVisionUpdater visionUpdater = new NudgingVisionUpdater(
                 history, odometryUpdater);
 
@@ -137,7 +153,7 @@ public class Machinery {
         //
         // SIMULATED CAMERAS
         //
-        m_simulatedTagDetector = SimulatedTagDetector.get(layout, history);
+        m_simulatedTagDetector = SimulatedTagDetector.get(layout, history, m_localizer);
         m_targetSimulator = SimulatedTargetWriter.get(history);
 
         ////////////////////////////////////////////////////////////
@@ -175,9 +191,18 @@ public class Machinery {
         m_leds.periodic();
         m_combinedViz.run();
         m_climberViz.run();
+        if (m_odometryThread != null)
+            m_odometryThread.periodic();
+    }
+
+    /** The estimated pose, e.g. to compare simulation runs. */
+    public Pose2d getPose() {
+        return m_drive.getPose();
     }
 
     public void close() {
+        if (m_odometryThread != null)
+            m_odometryThread.stop();
         // this keeps the tests from conflicting via the use of simulated HAL ports.
         m_modules.close();
         m_leds.close();
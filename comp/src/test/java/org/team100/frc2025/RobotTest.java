@@ -1,8 +1,13 @@
 package org.team100.frc2025;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
 import org.junit.jupiter.api.Test;
+import org.team100.lib.framework.HeadlessSim;
+
+import edu.wpi.first.math.geometry.Pose2d;
 
-/** This just checks for crashers. */
+/** This mostly just checks for crashers. */
 public class RobotTest {
     @Test
     void testSimulation() {
@@ -67,4 +72,37 @@ public class RobotTest {
             robot.close();
         }
     }
+
+    @Test
+    void testHeadless() {
+        HeadlessSim sim = new HeadlessSim(Robot::new, 0);
+        try {
+            sim.autonomous(1);
+            sim.teleop(1);
+        } finally {
+            sim.close();
+        }
+    }
+
+    /** Two headless runs with the same seed end up in exactly the same place. */
+    @Test
+    void testHeadlessSeed() {
+        Pose2d a = headless(1234);
+        Pose2d b = headless(1234);
+        assertEquals(a.getX(), b.getX(), 1e-12);
+        assertEquals(a.getY(), b.getY(), 1e-12);
+        assertEquals(a.getRotation().getRadians(), b.getRotation().getRadians(), 1e-12);
+    }
+
+    private static Pose2d headless(long seed) {
+        Robot[] robot = new Robot[1];
+        HeadlessSim sim = new HeadlessSim(() -> robot[0] = new Robot(), seed);
+        try {
+            sim.autonomous(2);
+            sim.teleop(1);
+            return robot[0].getPose();
+        } finally {
+            sim.close();
+        }
+    }
 }
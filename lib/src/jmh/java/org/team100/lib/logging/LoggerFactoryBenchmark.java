@@ -0,0 +1,69 @@
+package org.team100.lib.logging;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.team100.lib.logging.LoggerFactory.DoubleLogger;
+import org.team100.lib.logging.LoggerFactory.Pose2dLogger;
+import org.team100.lib.logging.primitive.TestPrimitiveLogger;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+
+/**
+ * Per-call cost of the logger layer above the primitive logger (the test
+ * one, which keeps the last value): level filtering, throttling,
+ * deduplication, and
+ * unpacking compound types. The "off" cases are below the current level,
+ * which is most of the logging in a match.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LoggerFactoryBenchmark {
+    private DoubleLogger m_double;
+    private DoubleLogger m_doubleOff;
+    private Pose2dLogger m_pose;
+    private Pose2dLogger m_poseOff;
+    private double m_value;
+
+    @Setup
+    public void setup() {
+        LoggerFactory logger = new LoggerFactory(
+                () -> Level.COMP, "bench", new TestPrimitiveLogger());
+        m_double = logger.doubleLogger(Level.COMP, "double");
+        m_doubleOff = logger.doubleLogger(Level.TRACE, "doubleOff");
+        m_pose = logger.pose2dLogger(Level.COMP, "pose");
+        m_poseOff = logger.pose2dLogger(Level.TRACE, "poseOff");
+    }
+
+    @Benchmark
+    public void doubleLog() {
+        m_value += 1;
+        m_double.log(() -> m_value);
+    }
+
+    @Benchmark
+    public void doubleLogOff() {
+        m_value += 1;
+        m_doubleOff.log(() -> m_value);
+    }
+
+    @Benchmark
+    public void pose2dLog() {
+        m_value += 1;
+        m_pose.log(() -> new Pose2d(m_value, 0, Rotation2d.kZero));
+    }
+
+    @Benchmark
+    public void pose2dLogOff() {
+        m_value += 1;
+        m_poseOff.log(() -> new Pose2d(m_value, 0, Rotation2d.kZero));
+    }
+}
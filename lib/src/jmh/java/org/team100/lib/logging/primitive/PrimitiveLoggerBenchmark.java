@@ -0,0 +1,75 @@
+package org.team100.lib.logging.primitive;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Cost to the caller of logging a robot's worth of doubles (a thousand), via
+ * Network Tables and via UDP.
+ * 
+ * The UDP destination is loopback, with nobody listening, so this measures the
+ * caller's work and the sender thread competing for the CPU, not the network.
+ * Watch the gc profiler: the UDP logger shouldn't allocate at all.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PrimitiveLoggerBenchmark {
+    private static final int KEYS = 1000;
+
+    private PrimitiveLogger.PrimitiveDoubleLogger[] m_nt;
+    private PrimitiveLogger.PrimitiveDoubleLogger[] m_udp;
+    private BufferedUdpPrimitiveLogger m_udpLogger;
+    private double m_value;
+
+    @Setup
+    public void setup() {
+        NTPrimitiveLogger nt = new NTPrimitiveLogger();
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        m_udpLogger = new BufferedUdpPrimitiveLogger(
+                new InetSocketAddress(loopback, BufferedUdpPrimitiveLogger.DATA_PORT),
+                new InetSocketAddress(loopback, BufferedUdpPrimitiveLogger.METADATA_PORT),
+                1 << 20,
+                () -> 0);
+        m_udpLogger.start();
+        m_nt = new PrimitiveLogger.PrimitiveDoubleLogger[KEYS];
+        m_udp = new PrimitiveLogger.PrimitiveDoubleLogger[KEYS];
+        for (int i = 0; i < KEYS; ++i) {
+            m_nt[i] = nt.doubleLogger("bench/nt/" + i);
+            m_udp[i] = m_udpLogger.doubleLogger("bench/udp/" + i);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        m_udpLogger.close();
+        System.out.printf("UDP drops %d packets %d\n",
+                m_udpLogger.getDrops(), m_udpLogger.getPackets());
+    }
+
+    @Benchmark
+    public void nt() {
+        m_value += 1;
+        for (int i = 0; i < KEYS; ++i) {
+            m_nt[i].log(m_value);
+        }
+    }
+
+    @Benchmark
+    public void udp() {
+        m_value += 1;
+        for (int i = 0; i < KEYS; ++i) {
+            m_udp[i].log(m_value);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package org.team100.lib.motion.swerve.kinodynamics;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.team100.lib.motion.swerve.module.state.SwerveModuleStates;
+
+import edu.wpi.first.math.geometry.Twist2d;
+
+/**
+ * Inverse kinematics, once per cycle in the drivetrain, more in the setpoint
+ * generator. The input changes every call, like driving.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SwerveDriveKinematics100Benchmark {
+    private static final double DT = 0.02;
+
+    private SwerveDriveKinematics100 m_kinematics;
+    private double m_t;
+
+    @Setup
+    public void setup() {
+        m_kinematics = SwerveKinodynamicsFactory.forRealisticTest().getKinematics();
+        m_t = 0;
+    }
+
+    @Benchmark
+    public SwerveModuleStates toSwerveModuleStates() {
+        m_t += DT;
+        Twist2d twist = new Twist2d(
+                DT * Math.cos(m_t),
+                DT * Math.sin(m_t),
+                DT * 0.5 * Math.cos(0.3 * m_t));
+        return m_kinematics.toSwerveModuleStates(new DiscreteSpeed(twist, DT));
+    }
+}
@@ -0,0 +1,57 @@
+package org.team100.lib.motion.swerve.kinodynamics.limiter;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.team100.lib.geometry.GlobalVelocityR3;
+import org.team100.lib.logging.LoggerFactory;
+import org.team100.lib.logging.TestLoggerFactory;
+import org.team100.lib.logging.primitive.TestPrimitiveLogger;
+import org.team100.lib.motion.swerve.kinodynamics.SwerveKinodynamicsFactory;
+
+/**
+ * The limiter runs every cycle in manual driving. The reference swings around
+ * so that all the limits are active some of the time.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SwerveLimiterBenchmark {
+    private SwerveLimiter m_limiter;
+    private double[] m_out;
+    private double m_t;
+
+    @Setup
+    public void setup() {
+        LoggerFactory logger = new TestLoggerFactory(new TestPrimitiveLogger());
+        m_limiter = new SwerveLimiter(logger, SwerveKinodynamicsFactory.forRealisticTest(), () -> 12);
+        m_out = new double[3];
+        m_t = 0;
+    }
+
+    @Benchmark
+    public GlobalVelocityR3 apply() {
+        m_t += 0.02;
+        return m_limiter.apply(new GlobalVelocityR3(
+                5 * Math.cos(m_t),
+                5 * Math.sin(0.7 * m_t),
+                3 * Math.cos(0.3 * m_t)));
+    }
+
+    @Benchmark
+    public double[] applyInPlace() {
+        m_t += 0.02;
+        m_limiter.apply(
+                5 * Math.cos(m_t),
+                5 * Math.sin(0.7 * m_t),
+                3 * Math.cos(0.3 * m_t),
+                m_out);
+        return m_out;
+    }
+}
@@ -0,0 +1,74 @@
+package org.team100.lib.network;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.team100.lib.localization.Blip24;
+import org.team100.lib.localization.Blip24View;
+
+import edu.wpi.first.math.geometry.Rotation3d;
+import edu.wpi.first.math.geometry.Transform3d;
+import edu.wpi.first.math.geometry.Translation3d;
+import edu.wpi.first.util.struct.StructBuffer;
+
+/**
+ * Decoding one camera message, the way CameraReader.update() does it, without
+ * Network Tables: a StructArray of a few blips, which is typical.
+ * 
+ * The "view" case is what AprilTagRobotLocalizer does now: copy into a reused
+ * buffer and read the fields in place, without making any objects.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CameraReaderBenchmark {
+    private static final int BLIPS = 4;
+
+    private StructBuffer<Blip24> m_buf;
+    private byte[] m_bytes;
+    private ByteBuffer m_bb;
+    private Blip24View m_view;
+
+    @Setup
+    public void setup() {
+        m_buf = StructBuffer.create(Blip24.struct);
+        Blip24[] blips = new Blip24[BLIPS];
+        for (int i = 0; i < BLIPS; ++i) {
+            blips[i] = new Blip24(i + 1, new Transform3d(
+                    new Translation3d(1 + i, 0.5, 2),
+                    new Rotation3d(0.1, 0.2, 0.3 * i)));
+        }
+        ByteBuffer bb = m_buf.writeArray(blips);
+        m_bytes = new byte[bb.remaining()];
+        bb.get(m_bytes);
+        m_bb = ByteBuffer.allocate(1024).order(ByteOrder.LITTLE_ENDIAN);
+        m_view = new Blip24View();
+    }
+
+    @Benchmark
+    public Blip24[] decode() {
+        return m_buf.readArray(m_bytes);
+    }
+
+    @Benchmark
+    public double view() {
+        m_bb.clear();
+        m_bb.put(m_bytes);
+        m_bb.flip();
+        double sum = 0;
+        for (int i = 0; i < BLIPS; ++i) {
+            m_view.at(m_bb, i);
+            sum += m_view.getId() + m_view.x() + m_view.y() + m_view.z()
+                    + m_view.qw() + m_view.qx() + m_view.qy() + m_view.qz();
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,52 @@
+package org.team100.lib.optimization;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.team100.lib.geometry.GeometryUtil;
+
+import edu.wpi.first.math.Nat;
+import edu.wpi.first.math.VecBuilder;
+import edu.wpi.first.math.Vector;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.numbers.N2;
+import edu.wpi.first.math.numbers.N3;
+
+/**
+ * Inverse kinematics for a two-link planar arm, as in NewtonsMethodTest,
+ * starting from the same guess every time, which is the cold-start case.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class NewtonsMethodBenchmark {
+    private NewtonsMethod<N2, N3> m_solver;
+    private Vector<N2> m_q0;
+
+    @Setup
+    public void setup() {
+        Pose2d goal = new Pose2d(0, 1, new Rotation2d(2.618));
+        Function<Vector<N2>, Pose2d> fwd = q -> new Pose2d(
+                Math.cos(q.get(0)) + Math.cos(q.get(0) + q.get(1)),
+                Math.sin(q.get(0)) + Math.sin(q.get(0) + q.get(1)),
+                new Rotation2d(q.get(0) + q.get(1)));
+        Function<Vector<N2>, Vector<N3>> err = q -> GeometryUtil.toVec(goal.log(fwd.apply(q)));
+        Vector<N2> minQ = VecBuilder.fill(-Math.PI, -Math.PI);
+        Vector<N2> maxQ = VecBuilder.fill(Math.PI, Math.PI);
+        m_solver = new NewtonsMethod<>(Nat.N2(), Nat.N3(), err, minQ, maxQ, 1e-3, 10, 1);
+        m_q0 = VecBuilder.fill(0, Math.PI / 2);
+    }
+
+    @Benchmark
+    public Vector<N2> solve2() {
+        return m_solver.solve2(m_q0, 5);
+    }
+}
@@ -0,0 +1,104 @@
+package org.team100.lib.trajectory;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.team100.lib.geometry.HolonomicPose2d;
+import org.team100.lib.logging.LoggerFactory;
+import org.team100.lib.logging.TestLoggerFactory;
+import org.team100.lib.logging.primitive.TestPrimitiveLogger;
+import org.team100.lib.motion.swerve.kinodynamics.SwerveKinodynamics;
+import org.team100.lib.motion.swerve.kinodynamics.SwerveKinodynamicsFactory;
+import org.team100.lib.trajectory.timing.TimedPose;
+import org.team100.lib.trajectory.timing.TimingConstraint;
+import org.team100.lib.trajectory.timing.TimingConstraintFactory;
+
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+
+/**
+ * Compares the old linear scan with the binary search and the cursor, on a
+ * long trajectory (about two thousand points), sampled the way a follower
+ * does: current and next, every 20 ms.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class Trajectory100Benchmark {
+    private static final double DT = 0.02;
+
+    private Trajectory100 m_trajectory;
+    private Trajectory100.Cursor m_cursor;
+    private double m_t;
+
+    @Setup
+    public void setup() {
+        LoggerFactory logger = new TestLoggerFactory(new TestPrimitiveLogger());
+        List<HolonomicPose2d> waypoints = List.of(
+                new HolonomicPose2d(new Translation2d(), Rotation2d.kZero, Rotation2d.kZero),
+                new HolonomicPose2d(new Translation2d(10, 0), Rotation2d.kCCW_Pi_2, Rotation2d.kZero),
+                new HolonomicPose2d(new Translation2d(10, 10), Rotation2d.kPi, Rotation2d.kZero));
+        SwerveKinodynamics limits = SwerveKinodynamicsFactory.forTest3();
+        List<TimingConstraint> constraints = new TimingConstraintFactory(limits).fast(logger);
+        TrajectoryPlanner planner = new TrajectoryPlanner(constraints);
+        m_trajectory = planner.restToRest(waypoints);
+        m_cursor = m_trajectory.cursor();
+        m_t = 0;
+    }
+
+    @Benchmark
+    public TimedPose linearScan() {
+        advance();
+        linear(m_t);
+        return linear(m_t + DT);
+    }
+
+    @Benchmark
+    public TimedPose binarySearch() {
+        advance();
+        m_trajectory.sample(m_t);
+        return m_trajectory.sample(m_t + DT);
+    }
+
+    @Benchmark
+    public TimedPose cursor() {
+        advance();
+        m_cursor.sample(m_t);
+        return m_cursor.sample(m_t + DT);
+    }
+
+    /** Step forward, starting over at the end. */
+    private void advance() {
+        m_t += DT;
+        if (m_t > m_trajectory.duration())
+            m_t = 0;
+    }
+
+    /** The original implementation of Trajectory100.sample(), for comparison. */
+    private TimedPose linear(double timeS) {
+        if (timeS >= m_trajectory.duration())
+            return m_trajectory.getLastPoint();
+        if (timeS <= 0)
+            return m_trajectory.getPoint(0);
+        for (int i = 1; i < m_trajectory.length(); ++i) {
+            final TimedPose ceil = m_trajectory.getPoint(i);
+            if (ceil.getTimeS() >= timeS) {
+                final TimedPose floor = m_trajectory.getPoint(i - 1);
+                double betweenPoints = ceil.getTimeS() - floor.getTimeS();
+                if (Math.abs(betweenPoints) <= 1e-12) {
+                    return ceil;
+                }
+                double t = (timeS - floor.getTimeS()) / betweenPoints;
+                return floor.interpolate2(ceil, t);
+            }
+        }
+        throw new IllegalStateException();
+    }
+}
@@ -0,0 +1,52 @@
+package org.team100.lib.trajectory;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.team100.lib.geometry.HolonomicPose2d;
+import org.team100.lib.logging.LoggerFactory;
+import org.team100.lib.logging.TestLoggerFactory;
+import org.team100.lib.logging.primitive.TestPrimitiveLogger;
+import org.team100.lib.motion.swerve.kinodynamics.SwerveKinodynamics;
+import org.team100.lib.motion.swerve.kinodynamics.SwerveKinodynamicsFactory;
+import org.team100.lib.trajectory.timing.TimingConstraint;
+import org.team100.lib.trajectory.timing.TimingConstraintFactory;
+
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+
+/**
+ * Whole-trajectory planning, splines and schedule, the way commands do it
+ * when they start, on an S-curve about the size of a field crossing.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TrajectoryPlannerBenchmark {
+    private TrajectoryPlanner m_planner;
+    private List<HolonomicPose2d> m_waypoints;
+
+    @Setup
+    public void setup() {
+        LoggerFactory logger = new TestLoggerFactory(new TestPrimitiveLogger());
+        SwerveKinodynamics limits = SwerveKinodynamicsFactory.forTest3();
+        List<TimingConstraint> constraints = new TimingConstraintFactory(limits).fast(logger);
+        m_planner = new TrajectoryPlanner(constraints);
+        m_waypoints = List.of(
+                new HolonomicPose2d(new Translation2d(), Rotation2d.kZero, Rotation2d.kZero),
+                new HolonomicPose2d(new Translation2d(4, 2), Rotation2d.kCCW_Pi_2, Rotation2d.kZero),
+                new HolonomicPose2d(new Translation2d(8, 0), Rotation2d.kPi, Rotation2d.kZero));
+    }
+
+    @Benchmark
+    public Trajectory100 restToRest() {
+        return m_planner.restToRest(m_waypoints);
+    }
+}
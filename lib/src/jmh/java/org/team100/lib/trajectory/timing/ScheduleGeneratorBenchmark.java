@@ -0,0 +1,63 @@
+package org.team100.lib.trajectory.timing;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.team100.lib.geometry.HolonomicPose2d;
+import org.team100.lib.logging.LoggerFactory;
+import org.team100.lib.logging.TestLoggerFactory;
+import org.team100.lib.logging.primitive.TestPrimitiveLogger;
+import org.team100.lib.motion.swerve.kinodynamics.SwerveKinodynamics;
+import org.team100.lib.motion.swerve.kinodynamics.SwerveKinodynamicsFactory;
+import org.team100.lib.trajectory.Trajectory100;
+import org.team100.lib.trajectory.path.Path100;
+import org.team100.lib.trajectory.path.PathFactory;
+
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+
+/**
+ * Just the scheduling part of planning, on a path made once, so the spline
+ * work doesn't hide it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ScheduleGeneratorBenchmark {
+    private ScheduleGenerator m_generator;
+    private Path100 m_path;
+    private Trajectory100 m_trajectory;
+
+    @Setup
+    public void setup() {
+        LoggerFactory logger = new TestLoggerFactory(new TestPrimitiveLogger());
+        SwerveKinodynamics limits = SwerveKinodynamicsFactory.forTest3();
+        List<TimingConstraint> constraints = new TimingConstraintFactory(limits).fast(logger);
+        m_generator = new ScheduleGenerator(constraints);
+        m_path = PathFactory.pathFromWaypoints(
+                List.of(
+                        new HolonomicPose2d(new Translation2d(), Rotation2d.kZero, Rotation2d.kZero),
+                        new HolonomicPose2d(new Translation2d(4, 2), Rotation2d.kCCW_Pi_2, Rotation2d.kZero),
+                        new HolonomicPose2d(new Translation2d(8, 0), Rotation2d.kPi, Rotation2d.kZero)),
+                0.02, 0.02, 0.2);
+        m_trajectory = m_generator.timeParameterizeTrajectory(m_path, 0.1, 0, 0);
+    }
+
+    @Benchmark
+    public Trajectory100 timeParameterize() {
+        return m_generator.timeParameterizeTrajectory(m_path, 0.1, 0, 0);
+    }
+
+    /** Same schedule, reusing the samples. */
+    @Benchmark
+    public Trajectory100 retime() {
+        return m_generator.retime(m_trajectory, 0, 0);
+    }
+}
@@ -0,0 +1,52 @@
+package org.team100.lib.util;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+
+/**
+ * The pose history: one put per odometry update, and interpolated gets at
+ * vision timestamps, some way in the past.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TimeInterpolatableBuffer100Benchmark {
+    private static final double DT = 0.02;
+    private static final double HISTORY = 1.0;
+
+    private TimeInterpolatableBuffer100<Pose2d> m_buffer;
+    private Pose2d m_pose;
+    private double m_t;
+
+    @Setup
+    public void setup() {
+        m_pose = new Pose2d(1, 2, new Rotation2d(0.5));
+        m_buffer = new TimeInterpolatableBuffer100<>(HISTORY, 0, m_pose);
+        // fill the history
+        for (m_t = DT; m_t < 2 * HISTORY; m_t += DT) {
+            m_buffer.put(m_t, m_pose);
+        }
+    }
+
+    @Benchmark
+    public void put() {
+        m_t += DT;
+        m_buffer.put(m_t, m_pose);
+    }
+
+    @Benchmark
+    public Pose2d get() {
+        // about five cycles old, between entries
+        return m_buffer.get(m_t - 5.5 * DT);
+    }
+}
@@ -1,11 +1,20 @@
 package org.team100.lib.coherence;
 
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.DoubleSupplier;
 import java.util.function.Supplier;
 
 import org.team100.lib.logging.Level;
+import org.team100.lib.logging.LoggerFactory;
 import org.team100.lib.logging.LoggerFactory.DoubleLogger;
 import org.team100.lib.logging.Logging;
 
@@ -25,16 +34,37 @@ import com.ctre.phoenix6.StatusCode;
  * observations we actually cache seem to be from motors. On the other hand,
  * it doesn't hurt anything to cache at multiple levels -- the updater makes
  * everything consistent.
+ * 
+ * Caches can also be registered in a CacheGroup, which declares the groups it
+ * depends on. If parallelism is enabled, using setParallelism(), independent
+ * groups are updated at the same time on a small fixed pool of threads, and
+ * the refresh waits for all of them before continuing, so the rest of the loop
+ * is unaffected. Caches outside any group are always updated on the main
+ * thread, after the groups.
+ * 
+ * The total update time is logged as "Cache/update time (s)", and the time for
+ * each group as "Cache/<group>/update time (s)", at the same level, so the
+ * slow caches are easy to find.
  */
 public class Cache {
     private static final boolean DEBUG = false;
+    private static final LoggerFactory m_logger = Logging.instance().rootLogger.name("Cache");
     /** How long it takes to update the cache. */
-    private static final DoubleLogger m_log_update = Logging.instance().rootLogger.name("Cache")
-            .doubleLogger(Level.COMP, "update time (s)");
+    private static final DoubleLogger m_log_update = m_logger.doubleLogger(Level.COMP, "update time (s)");
     static final List<CotemporalCache<?>> caches = new ArrayList<>();
     private static final List<DoubleCache> doubles = new ArrayList<>();
     private static final List<SideEffect> sideEffects = new ArrayList<>();
     private static final List<BaseStatusSignal> signals = new ArrayList<>();
+    private static final Map<String, CacheGroup> groups = new LinkedHashMap<>();
+    /** Groups in dependency order; each wave depends only on earlier waves. */
+    private static List<List<CacheGroup>> waves = null;
+    /** Null means update serially. */
+    private static ExecutorService executor = null;
+    /**
+     * Cached values are valid only in the epoch they were computed in. This is
+     * only written by refresh(), on the main thread.
+     */
+    private static volatile long epoch = 0;
 
     /**
      * Adds the delegate to the set that is reset and updated synchronously by
@@ -54,12 +84,70 @@ public class Cache {
         return cache;
     }
 
+    /**
+     * Like ofDouble(), but not refreshed by refresh(): the delegate is called by
+     * the first getAsDouble() in each cycle, if any. Use this for values that
+     * are expensive to read and often unused, e.g. telemetry that's only logged
+     * at DEBUG level. The value is still constant through the cycle, but the
+     * instant it represents is whenever it was first read.
+     */
+    public static DoubleCache ofLazyDouble(DoubleSupplier delegate) {
+        return new DoubleCache(delegate);
+    }
+
     public static SideEffect ofSideEffect(Runnable delegate) {
         SideEffect sideEffect = new SideEffect(delegate);
         sideEffects.add(sideEffect);
         return sideEffect;
     }
 
+    /**
+     * Find or create the named group, which is updated after the groups it depends
+     * on.
+     * 
+     * @param name  group name, also used for the timing log
+     * @param after names of groups this group depends on; they don't need to exist
+     *              yet.
+     */
+    public static CacheGroup group(String name, String... after) {
+        CacheGroup group = groups.get(name);
+        if (group != null) {
+            if (!group.getAfter().equals(Set.of(after)))
+                throw new IllegalArgumentException("inconsistent dependencies for group " + name);
+            return group;
+        }
+        group = new CacheGroup(
+                name,
+                Set.of(after),
+                m_logger.name(name).doubleLogger(Level.COMP, "update time (s)"));
+        groups.put(name, group);
+        waves = null;
+        return group;
+    }
+
+    /**
+     * Update independent groups in parallel, using the specified number of threads.
+     * Zero means update everything serially on the calling thread, which is the
+     * default.
+     * 
+     * The threads are created once, here, and kept for the life of the program.
+     */
+    public static void setParallelism(int threads) {
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+        if (threads <= 0)
+            return;
+        executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "Cache");
+            t.setDaemon(true);
+            // Same priority as the main loop, which is waiting.
+            t.setPriority(Thread.currentThread().getPriority());
+            return t;
+        });
+    }
+
     /**
      * There's a "resetter" that calls CTRE's refreshAll; add the supplied signal to
      * the list in the refresh.
@@ -81,7 +169,12 @@ public class Cache {
         double startUpdateS = Takt.actual();
         reset();
         update();
-        m_log_update.log(() -> (Takt.actual() - startUpdateS));
+        m_log_update.log(Takt.actual() - startUpdateS);
+    }
+
+    /** The current epoch, for cache validation. */
+    static long epoch() {
+        return epoch;
     }
 
     /** For testing only */
@@ -89,23 +182,26 @@ public class Cache {
         caches.clear();
         doubles.clear();
         sideEffects.clear();
+        groups.clear();
+        waves = null;
+    }
+
+    /** Remove the cache from whatever list it's in. */
+    static void remove(CotemporalCache<?> cache) {
+        caches.remove(cache);
+        for (CacheGroup group : groups.values()) {
+            group.caches.remove(cache);
+        }
     }
 
     /////////////////////////////////////////////////
 
     /**
-     * Forgets all the stored values.
+     * Forgets all the stored values, by advancing the epoch, so that every stamped
+     * value is stale.
      */
     private static void reset() {
-        for (CotemporalCache<?> r : caches) {
-            r.reset();
-        }
-        for (DoubleCache r : doubles) {
-            r.reset();
-        }
-        for (SideEffect r : sideEffects) {
-            r.reset();
-        }
+        epoch++;
     }
 
     /** Fetches fresh values for every stale cache. Should be called after reset. */
@@ -120,6 +216,7 @@ public class Cache {
                         result.toString(), result.getDescription());
             }
         }
+        updateGroups();
         for (CotemporalCache<?> r : caches) {
             if (DEBUG) {
                 System.out.printf("update %s\n", r.get().getClass().getSimpleName());
@@ -136,6 +233,109 @@ public class Cache {
         }
     }
 
+    /**
+     * Updates the groups one wave at a time, in parallel if enabled. The first
+     * group of each wave runs on the calling thread, since it would otherwise just
+     * be waiting.
+     */
+    private static void updateGroups() {
+        if (groups.isEmpty())
+            return;
+        if (waves == null)
+            waves = waves();
+        for (List<CacheGroup> wave : waves) {
+            if (executor == null || wave.size() == 1) {
+                for (CacheGroup group : wave) {
+                    group.update();
+                }
+            } else {
+                List<Future<Void>> futures = new ArrayList<>(wave.size() - 1);
+                for (int i = 1; i < wave.size(); ++i) {
+                    futures.add(executor.submit(wave.get(i)));
+                }
+                try {
+                    wave.get(0).update();
+                } catch (Throwable t) {
+                    // Even if the main-thread group failed, wait for the others,
+                    // so they don't keep running into the next cycle, but keep
+                    // the main-thread failure as the primary one.
+                    try {
+                        joinAll(futures);
+                    } catch (RuntimeException e) {
+                        t.addSuppressed(e);
+                    }
+                    throw t;
+                }
+                joinAll(futures);
+            }
+        }
+        for (CacheGroup group : groups.values()) {
+            group.log();
+        }
+    }
+
+    /**
+     * Wait for all the futures, even if some of them fail, then rethrow the first
+     * failure.
+     */
+    private static void joinAll(List<Future<Void>> futures) {
+        RuntimeException failure = null;
+        for (Future<Void> future : futures) {
+            try {
+                join(future);
+            } catch (RuntimeException e) {
+                if (failure == null)
+                    failure = e;
+            }
+        }
+        if (failure != null)
+            throw failure;
+    }
+
+    /** Wait for the future, rethrowing anything the update threw. */
+    private static void join(Future<Void> future) {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re)
+                throw re;
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Sort the groups into waves: each wave contains groups whose dependencies are
+     * all in earlier waves. Dependencies on groups that don't exist are ignored.
+     */
+    static List<List<CacheGroup>> waves() {
+        List<List<CacheGroup>> result = new ArrayList<>();
+        Set<String> done = new HashSet<>();
+        List<CacheGroup> remaining = new ArrayList<>(groups.values());
+        while (!remaining.isEmpty()) {
+            List<CacheGroup> wave = new ArrayList<>();
+            for (CacheGroup group : remaining) {
+                boolean ready = true;
+                for (String after : group.getAfter()) {
+                    if (groups.containsKey(after) && !done.contains(after))
+                        ready = false;
+                }
+                if (ready)
+                    wave.add(group);
+            }
+            if (wave.isEmpty())
+                throw new IllegalStateException("cache group dependency cycle");
+            remaining.removeAll(wave);
+            for (CacheGroup group : wave) {
+                done.add(group.getName());
+            }
+            result.add(wave);
+        }
+        return result;
+    }
+
     private Cache() {
         //
     }
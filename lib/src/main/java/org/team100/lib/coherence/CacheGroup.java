@@ -0,0 +1,116 @@
+package org.team100.lib.coherence;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
+
+import org.team100.lib.framework.LoopProfiler;
+import org.team100.lib.logging.LoggerFactory.DoubleLogger;
+
+/**
+ * A set of caches that can be updated independently of the caches in other
+ * groups, i.e. on another thread, at the same time.
+ *
+ * Use Cache.group() to make one of these, and then use it to make caches, just
+ * like the static factories in Cache.
+ *
+ * The groups a group depends on are updated before it; groups without any
+ * dependency relationship may be updated in parallel, if Cache.setParallelism()
+ * is used. Caches in a group should only touch things that are thread-safe, and
+ * should only depend on caches in the same group, or in the groups declared as
+ * dependencies. If a cache in one group reads a cache in another group that
+ * hasn't been updated yet, the value is still correct (the cache getters are
+ * thread-safe), it just means the work moves to the reader's thread.
+ *
+ * Caches that are not in any group are updated on the main thread after all
+ * the groups.
+ */
+public class CacheGroup implements Callable<Void> {
+    private final String m_name;
+    private final Set<String> m_after;
+    private final DoubleLogger m_log_update;
+    private final LoopProfiler.Probe m_probe;
+
+    final List<CotemporalCache<?>> caches = new ArrayList<>();
+    final List<DoubleCache> doubles = new ArrayList<>();
+    final List<SideEffect> sideEffects = new ArrayList<>();
+
+    /** Duration of the most recent update, written by the updating thread. */
+    private volatile double m_updateS;
+
+    /**
+     * Do not call this directly.
+     * 
+     * @param log update time, made by Cache alongside its own update time log.
+     */
+    CacheGroup(String name, Set<String> after, DoubleLogger log) {
+        m_name = name;
+        m_after = after;
+        m_log_update = log;
+        m_probe = LoopProfiler.instance().probe("Cache/" + name);
+    }
+
+    public String getName() {
+        return m_name;
+    }
+
+    /** Names of the groups that must be updated before this one. */
+    public Set<String> getAfter() {
+        return m_after;
+    }
+
+    /** Like Cache.of(), but in this group. */
+    public <T> CotemporalCache<T> of(Supplier<T> delegate) {
+        CotemporalCache<T> cache = new CotemporalCache<>(delegate);
+        caches.add(cache);
+        return cache;
+    }
+
+    /** Like Cache.ofDouble(), but in this group. */
+    public DoubleCache ofDouble(DoubleSupplier delegate) {
+        DoubleCache cache = new DoubleCache(delegate);
+        doubles.add(cache);
+        return cache;
+    }
+
+    /** Like Cache.ofSideEffect(), but in this group. */
+    public SideEffect ofSideEffect(Runnable delegate) {
+        SideEffect sideEffect = new SideEffect(delegate);
+        sideEffects.add(sideEffect);
+        return sideEffect;
+    }
+
+    /** Update the group, so it can be used as an executor task. */
+    @Override
+    public Void call() {
+        update();
+        return null;
+    }
+
+    /////////////////////////////////////////////////
+
+    /** Fetches fresh values, on whatever thread calls it. */
+    void update() {
+        double startS = Takt.actual();
+        for (CotemporalCache<?> r : caches) {
+            r.get();
+        }
+        for (DoubleCache r : doubles) {
+            r.getAsDouble();
+        }
+        for (SideEffect r : sideEffects) {
+            r.run();
+        }
+        m_updateS = Takt.actual() - startS;
+    }
+
+    /** Log the update duration; this should be called on the main thread. */
+    void log() {
+        m_log_update.log(m_updateS);
+        m_probe.record(m_updateS);
+    }
+
+}
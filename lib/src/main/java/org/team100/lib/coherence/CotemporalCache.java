@@ -5,41 +5,70 @@ import java.util.function.Supplier;
 /** Cache an object supplier */
 public class CotemporalCache<T> implements Supplier<T> {
     private final Supplier<T> m_delegate;
+    private final EpochStamp m_stamp;
+    /** Written before the stamp is published, so readers see it. */
     private T m_value;
 
     /** Do not call this directly. */
     CotemporalCache(Supplier<T> delegate) {
         m_delegate = delegate;
+        m_stamp = new EpochStamp();
         m_value = null;
     }
 
     /**
-     * Use the cached value if it exists, otherwise ask the delegate, cache, and
-     * return the value.
+     * Use the cached value if it is from the current epoch, otherwise ask the
+     * delegate, cache, and return the value.
+     * 
+     * This is lock-free if the value is current, which is almost always.
+     * 
+     * A null value is never cached.
      */
     @Override
-    public synchronized T get() {
-        // synchronized adds ~20ns.
-        if (m_value == null)
-            m_value = m_delegate.get();
-
-        return m_value;
+    public T get() {
+        long epoch = Cache.epoch();
+        if (m_stamp.isCurrent(epoch))
+            return m_value;
+        if (m_stamp.isWriter())
+            return m_delegate.get();
+        if (!m_stamp.claim(epoch))
+            return m_value;
+        T value = null;
+        try {
+            value = m_delegate.get();
+            m_value = value;
+        } finally {
+            if (value == null)
+                m_stamp.abandon();
+            else
+                m_stamp.publish(epoch);
+        }
+        return value;
     }
 
     /**
      * Erase the cache so the next get() will ask the delegate. You should generally
      * let robotPeriodic() do this, but it's ok to force it, e.g. in resetPose().
      */
-    public synchronized void reset() {
-        m_value = null;
+    public void reset() {
+        m_stamp.invalidate();
     }
 
     /**
      * Force the cache to contain the value, effectively overriding the delegate's
-     * previous output.
+     * previous output, until the next epoch.
+     * 
+     * From inside the delegate, this does nothing, since the delegate's own
+     * result is about to be cached.
      */
-    public synchronized void set(T value) {
+    public void set(T value) {
+        if (!m_stamp.acquire())
+            return;
         m_value = value;
+        if (value == null)
+            m_stamp.abandon();
+        else
+            m_stamp.publish(Cache.epoch());
     }
 
     /**
@@ -49,6 +78,6 @@ public class CotemporalCache<T> implements Supplier<T> {
      * should discard this object once you call end().
      */
     public void end() {
-        Cache.caches.remove(this);
+        Cache.remove(this);
     }
-}
\ No newline at end of file
+}
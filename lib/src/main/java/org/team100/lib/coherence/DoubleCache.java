@@ -4,31 +4,47 @@ import java.util.function.DoubleSupplier;
 
 public class DoubleCache implements DoubleSupplier {
     private final DoubleSupplier m_delegate;
-    private double m_value;
-    private boolean m_valid;
+    private final EpochStamp m_stamp;
+    /** Volatile so that 64-bit writes are atomic on the 32-bit RoboRIO. */
+    private volatile double m_value;
 
     /** Do not call this directly. */
     DoubleCache(DoubleSupplier delegate) {
         m_delegate = delegate;
-        m_valid = false;
+        m_stamp = new EpochStamp();
     }
 
     /**
-     * Use the cached value if it exists, otherwise ask the delegate, cache, and
-     * return the value.
+     * Use the cached value if it is from the current epoch, otherwise ask the
+     * delegate, cache, and return the value.
+     * 
+     * This is lock-free if the value is current, which is almost always.
      */
     @Override
-    public synchronized double getAsDouble() {
-        // synchronized adds ~20ns.
-        if (m_valid)
+    public double getAsDouble() {
+        long epoch = Cache.epoch();
+        if (m_stamp.isCurrent(epoch))
             return m_value;
-        m_value = m_delegate.getAsDouble();
-        m_valid = true;
-        return m_value;
+        if (m_stamp.isWriter())
+            return m_delegate.getAsDouble();
+        if (!m_stamp.claim(epoch))
+            return m_value;
+        boolean ok = false;
+        try {
+            double value = m_delegate.getAsDouble();
+            m_value = value;
+            ok = true;
+            return value;
+        } finally {
+            if (ok)
+                m_stamp.publish(epoch);
+            else
+                m_stamp.abandon();
+        }
     }
 
     /** Erase the cache so the next get() will ask the delegate. */
-    public synchronized void reset() {
-        m_valid = false;
+    public void reset() {
+        m_stamp.invalidate();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,134 @@
+package org.team100.lib.coherence;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Records the Cache epoch in which a cached value was computed, so the cache
+ * can be invalidated all at once, just by advancing the epoch, rather than
+ * touching every instance.
+ * 
+ * Reads are lock-free: a value is current if its stamp matches the epoch. To
+ * update, a thread claims the stamp by swapping in a "writing" marker; any
+ * other thread wanting to update waits until the writer is done, and then uses
+ * the fresh value. So, just like the synchronized version, the delegate is
+ * called at most once per epoch, even with concurrent readers.
+ * 
+ * The wait spins briefly, and then parks, with increasing backoff. The writer
+ * is usually blocked in a CAN or JNI read, and on the two-core RoboRIO, with
+ * high-priority threads like the OdometryThread, a waiter that spun forever
+ * could keep the writer from running at all.
+ * 
+ * Like the synchronized version, it's reentrant: a delegate that (indirectly)
+ * reads its own cache just calls itself. If the delegate invalidates its own
+ * cache, the invalidation takes effect when the claim is released, so the
+ * claim isn't lost while the delegate is still running.
+ */
+final class EpochStamp {
+    /** Never matches an epoch. */
+    private static final long NONE = -1;
+    /** Some thread is updating the value. */
+    private static final long WRITING = -2;
+    /** Spin this many times before parking. */
+    private static final int SPINS = 100;
+    private static final long MIN_PARK_NS = 10_000;
+    private static final long MAX_PARK_NS = 1_000_000;
+
+    private final AtomicLong m_stamp = new AtomicLong(NONE);
+    /** The thread holding the claim, if any. */
+    private volatile Thread m_writer;
+    /** Set by invalidate() from the writer, used only by the writer. */
+    private boolean m_invalidated;
+
+    /** True if the value was computed in the given epoch. */
+    boolean isCurrent(long epoch) {
+        return m_stamp.get() == epoch;
+    }
+
+    /** True if the calling thread is updating the value, i.e. reentrance. */
+    boolean isWriter() {
+        return m_writer == Thread.currentThread();
+    }
+
+    /**
+     * Claim the right to update the value, unless it becomes current while
+     * waiting for another writer.
+     * 
+     * @return true if the caller should update and then publish() or
+     *         abandon(), false if the value is current.
+     */
+    boolean claim(long epoch) {
+        for (int attempt = 0;; ++attempt) {
+            long stamp = m_stamp.get();
+            if (stamp == epoch)
+                return false;
+            if (stamp != WRITING && m_stamp.compareAndSet(stamp, WRITING)) {
+                m_writer = Thread.currentThread();
+                return true;
+            }
+            backoff(attempt);
+        }
+    }
+
+    /**
+     * Claim the right to update the value, whether it's current or not.
+     * 
+     * @return true if the caller should then publish() or abandon(), false if
+     *         the caller already holds the claim, i.e. reentrance, in which case
+     *         the outer claim will be released later.
+     */
+    boolean acquire() {
+        if (isWriter())
+            return false;
+        for (int attempt = 0;; ++attempt) {
+            long stamp = m_stamp.get();
+            if (stamp != WRITING && m_stamp.compareAndSet(stamp, WRITING)) {
+                m_writer = Thread.currentThread();
+                return true;
+            }
+            backoff(attempt);
+        }
+    }
+
+    /**
+     * Release the claim, marking the value as current in the given epoch, unless
+     * it was invalidated during the update. The value must be written before
+     * calling this.
+     */
+    void publish(long epoch) {
+        boolean invalidated = m_invalidated;
+        m_invalidated = false;
+        m_writer = null;
+        m_stamp.set(invalidated ? NONE : epoch);
+    }
+
+    /** Release the claim, leaving the value stale. */
+    void abandon() {
+        m_invalidated = false;
+        m_writer = null;
+        m_stamp.set(NONE);
+    }
+
+    /**
+     * Make the value stale. From inside the update, i.e. the delegate, this is
+     * deferred until the claim is released.
+     */
+    void invalidate() {
+        if (isWriter()) {
+            m_invalidated = true;
+            return;
+        }
+        acquire();
+        abandon();
+    }
+
+    /** Spin for a little while, then park for longer and longer. */
+    private static void backoff(int attempt) {
+        if (attempt < SPINS) {
+            Thread.onSpinWait();
+            return;
+        }
+        int doublings = Math.min(attempt - SPINS, 10);
+        LockSupport.parkNanos(Math.min(MAX_PARK_NS, MIN_PARK_NS << doublings));
+    }
+}
@@ -12,23 +12,39 @@ package org.team100.lib.coherence;
  */
 public class SideEffect implements Runnable {
     private final Runnable m_delegate;
-    private boolean m_valid;
+    private final EpochStamp m_stamp;
 
     SideEffect(Runnable delegate) {
         m_delegate = delegate;
-        m_valid = false;
+        m_stamp = new EpochStamp();
     }
 
+    /** Run the delegate, if it hasn't already run in the current epoch. */
     @Override
-    public synchronized void run() {
-        if (m_valid)
+    public void run() {
+        long epoch = Cache.epoch();
+        if (m_stamp.isCurrent(epoch))
             return;
-        m_delegate.run();
-        m_valid = true;
+        if (m_stamp.isWriter()) {
+            m_delegate.run();
+            return;
+        }
+        if (!m_stamp.claim(epoch))
+            return;
+        boolean ok = false;
+        try {
+            m_delegate.run();
+            ok = true;
+        } finally {
+            if (ok)
+                m_stamp.publish(epoch);
+            else
+                m_stamp.abandon();
+        }
     }
 
-    public synchronized void reset() {
-        m_valid = false;
+    public void reset() {
+        m_stamp.invalidate();
     }
 
 }
@@ -71,4 +71,24 @@ public enum Experiment {
      * TODO: make this the default?
      */
     UnprofiledSteering,
+    /**
+     * Collect all the vision measurements in each cycle, fuse the ones with the
+     * same timestamp, and replay odometry once, instead of once per tag.
+     */
+    BatchVision,
+    /**
+     * After a vision update, instead of replaying all the later odometry, replay
+     * one step and move the rest of the history by the same amount.
+     */
+    ShiftVision,
+    /**
+     * Queue motor control requests, skip unchanged ones, and write the rest all
+     * at once, in ControlQueue.flush().
+     */
+    QueueControlWrites,
+    /**
+     * Refresh independent cache groups (e.g. localization and the Spark
+     * signals) in parallel, using Cache.setParallelism().
+     */
+    ParallelCache,
 }
@@ -0,0 +1,161 @@
+package org.team100.lib.framework;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import org.team100.lib.coherence.Takt;
+
+import edu.wpi.first.hal.AllianceStationID;
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.wpilibj.simulation.DriverStationSim;
+import edu.wpi.first.wpilibj.simulation.SimHooks;
+
+/**
+ * Runs a robot in simulation as fast as the CPU allows, with no GUI and no
+ * driver station, by stepping the simulated clock instead of waiting for it.
+ * 
+ * Everything that uses the FPGA clock (Takt, Cache, the simulated motors and
+ * gyro, the simulated cameras) sees simulated time, which advances exactly one
+ * loop period per main loop, however long the loop actually takes, so the
+ * result depends only on the seed.
+ * 
+ * Only one robot can run in a JVM, because Takt, Cache, the CommandScheduler,
+ * the HAL, and Network Tables are all process-wide. To run many robots at
+ * once, e.g. for Monte Carlo tests of autos or localization, use fork(), which
+ * runs each one in its own process.
+ */
+public class HeadlessSim {
+    private static boolean active = false;
+    private static long seed = 0;
+    /** Number of random streams handed out so far. */
+    private static long streams = 0;
+
+    private final TimedRobot100 m_robot;
+
+    /**
+     * Start the HAL with the clock paused, and make and initialize the robot.
+     * 
+     * @param robot make the robot, e.g. Robot::new
+     * @param seed  for the simulated sensor noise
+     */
+    public HeadlessSim(Supplier<? extends TimedRobot100> robot, long seed) {
+        HeadlessSim.seed = seed;
+        HeadlessSim.streams = 0;
+        HeadlessSim.active = true;
+        HAL.initialize(500, 0);
+        SimHooks.pauseTiming();
+        Takt.update();
+        DriverStationSim.setAllianceStationId(AllianceStationID.Blue1);
+        DriverStationSim.setDsAttached(true);
+        DriverStationSim.notifyNewData();
+        m_robot = robot.get();
+        m_robot.robotInit();
+        m_robot.simulationInit();
+    }
+
+    /**
+     * True if the robot is running under HeadlessSim, in which case simulated
+     * sensors should stay off the network, and use random().
+     */
+    public static boolean active() {
+        return active;
+    }
+
+    /**
+     * Random source for simulated noise. Under HeadlessSim, each call returns a
+     * different stream, derived from the seed, so the noise depends only on the
+     * seed and the order of construction. Otherwise it's just new Random().
+     */
+    public static synchronized Random random() {
+        if (!active)
+            return new Random();
+        return new Random(seed * 1_000_003 + streams++);
+    }
+
+    /** Run disabled for the given duration of simulated time. */
+    public void disabled(double durationS) {
+        mode(false, false);
+        m_robot.stepHeadless(durationS);
+    }
+
+    /** Run enabled in autonomous for the given duration of simulated time. */
+    public void autonomous(double durationS) {
+        mode(true, true);
+        m_robot.stepHeadless(durationS);
+    }
+
+    /** Run enabled in teleop for the given duration of simulated time. */
+    public void teleop(double durationS) {
+        mode(true, false);
+        m_robot.stepHeadless(durationS);
+    }
+
+    /**
+     * Close the robot, resume the clock, and put the driver station back the way
+     * it was, so that tests running later in the same JVM aren't affected.
+     * 
+     * This leaves the HAL running, since other tests may still need it; a process
+     * that only runs one sim, like the forked ones, can shut it down itself.
+     */
+    public void close() {
+        m_robot.close();
+        SimHooks.resumeTiming();
+        DriverStationSim.resetData();
+        DriverStationSim.notifyNewData();
+        active = false;
+    }
+
+    /**
+     * Run the main class once for each seed from zero to runs-1, in separate
+     * processes, at most jobs at a time, with the same classpath and native
+     * library path as this one. The child gets "--seed N" as its arguments, and
+     * its output goes to sim-N.log in the log directory.
+     * 
+     * @return the number of runs that failed, i.e. had nonzero exit status.
+     */
+    public static int fork(Class<?> mainClass, int runs, int jobs, File logDir)
+            throws IOException, InterruptedException {
+        if (runs < 0 || jobs < 1)
+            throw new IllegalArgumentException("need runs >= 0 and jobs >= 1");
+        logDir.mkdirs();
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        List<Process> running = new ArrayList<>();
+        int failures = 0;
+        for (int i = 0; i < runs; ++i) {
+            while (running.size() >= jobs) {
+                failures += waitForOne(running);
+            }
+            ProcessBuilder pb = new ProcessBuilder(
+                    java,
+                    "-cp", System.getProperty("java.class.path"),
+                    "-Djava.library.path=" + System.getProperty("java.library.path"),
+                    mainClass.getName(),
+                    "--seed", String.valueOf(i));
+            pb.redirectErrorStream(true);
+            pb.redirectOutput(new File(logDir, "sim-" + i + ".log"));
+            running.add(pb.start());
+        }
+        while (!running.isEmpty()) {
+            failures += waitForOne(running);
+        }
+        return failures;
+    }
+
+    /////////////////////////////////////////////////
+
+    private void mode(boolean enabled, boolean autonomous) {
+        DriverStationSim.setEnabled(enabled);
+        DriverStationSim.setAutonomous(autonomous);
+        DriverStationSim.notifyNewData();
+    }
+
+    /** Wait for the oldest process to finish, return 1 if it failed. */
+    private static int waitForOne(List<Process> running) throws InterruptedException {
+        Process p = running.remove(0);
+        return p.waitFor() == 0 ? 0 : 1;
+    }
+}
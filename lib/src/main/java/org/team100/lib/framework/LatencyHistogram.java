@@ -0,0 +1,129 @@
+package org.team100.lib.framework;
+
+import java.util.Arrays;
+
+/**
+ * A fixed-size histogram of durations, with a rolling window, that never
+ * allocates after construction.
+ * 
+ * The buckets are like HdrHistogram's: durations in microseconds, bucketed
+ * exactly below 16 us, and above that, each power of two is split into 16
+ * buckets, so the resolution is about 6%. Durations longer than about 30
+ * seconds go in the last bucket.
+ * 
+ * The window is a ring of slots; roll() moves to the next slot, clearing it,
+ * so the statistics cover the last few calls to roll().
+ * 
+ * This is not thread-safe; use it from one thread, e.g. the main loop.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BITS = 4;
+    private static final int SUB = 1 << SUB_BITS;
+    /** 2^24 us is about 17 s, so the last bucket ends at about 33 s. */
+    private static final int MAX_EXP = 24;
+    static final int BUCKETS = (MAX_EXP - SUB_BITS + 2) * SUB;
+
+    /** counts[slot][bucket] */
+    private final int[][] m_counts;
+    /** Maximum duration in each slot, in microseconds. */
+    private final long[] m_max;
+    private int m_slot;
+    private long m_lastUs;
+
+    /** @param slots window length, in calls to roll(). */
+    public LatencyHistogram(int slots) {
+        if (slots < 1)
+            throw new IllegalArgumentException("need at least one slot");
+        m_counts = new int[slots][BUCKETS];
+        m_max = new long[slots];
+    }
+
+    public void record(double durationS) {
+        long us = Math.max(0, Math.round(durationS * 1e6));
+        m_lastUs = us;
+        m_counts[m_slot][index(us)]++;
+        if (us > m_max[m_slot])
+            m_max[m_slot] = us;
+    }
+
+    /** Most recent duration, in seconds. */
+    public double last() {
+        return m_lastUs * 1e-6;
+    }
+
+    /** Start a new slot, forgetting the oldest one. */
+    public void roll() {
+        m_slot = (m_slot + 1) % m_counts.length;
+        Arrays.fill(m_counts[m_slot], 0);
+        m_max[m_slot] = 0;
+    }
+
+    /** Number of samples in the window. */
+    public long count() {
+        long total = 0;
+        for (int[] slot : m_counts) {
+            for (int c : slot) {
+                total += c;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * The duration, in seconds, at or below which the given fraction of the
+     * samples in the window fall, to the resolution of the buckets (rounding
+     * up), or zero if the window is empty.
+     * 
+     * @param p between 0 and 1, e.g. 0.99 for p99.
+     */
+    public double percentile(double p) {
+        long total = count();
+        if (total == 0)
+            return 0;
+        long rank = Math.max(1, (long) Math.ceil(p * total));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; ++bucket) {
+            for (int[] slot : m_counts) {
+                seen += slot[bucket];
+            }
+            if (seen >= rank)
+                return Math.min(upper(bucket), maxUs()) * 1e-6;
+        }
+        return maxUs() * 1e-6;
+    }
+
+    /** Maximum duration in the window, in seconds. */
+    public double max() {
+        return maxUs() * 1e-6;
+    }
+
+    ////////////////////////////////////////////////
+
+    private long maxUs() {
+        long max = 0;
+        for (long m : m_max) {
+            max = Math.max(max, m);
+        }
+        return max;
+    }
+
+    static int index(long us) {
+        if (us < SUB)
+            return (int) us;
+        int exp = 63 - Long.numberOfLeadingZeros(us);
+        if (exp > MAX_EXP)
+            return BUCKETS - 1;
+        int mantissa = (int) (us >>> (exp - SUB_BITS)) & (SUB - 1);
+        return (exp - SUB_BITS + 1) * SUB + mantissa;
+    }
+
+    /** Largest duration in the bucket, in microseconds. */
+    static long upper(int index) {
+        if (index < SUB)
+            return index;
+        int exp = index / SUB + SUB_BITS - 1;
+        int mantissa = index % SUB;
+        long lower = (long) (SUB + mantissa) << (exp - SUB_BITS);
+        return lower + (1L << (exp - SUB_BITS)) - 1;
+    }
+}
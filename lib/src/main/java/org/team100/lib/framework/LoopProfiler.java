@@ -0,0 +1,203 @@
+package org.team100.lib.framework;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.team100.lib.coherence.Takt;
+import org.team100.lib.logging.Level;
+import org.team100.lib.logging.LoggerFactory;
+import org.team100.lib.logging.LoggerFactory.DoubleLogger;
+import org.team100.lib.logging.LoggerFactory.LongLogger;
+import org.team100.lib.logging.Logging;
+
+import edu.wpi.first.wpilibj2.command.CommandScheduler;
+
+/**
+ * Always-on loop timing, to find intermittent overruns.
+ * 
+ * Each thing we want to time (a TimedRobot100 callback, a Cache group, a
+ * command) gets a Probe, which keeps a LatencyHistogram over the last few
+ * seconds. Once a second, the p50, p99, and max of each probe are logged.
+ * 
+ * At the end of each loop, TimedRobot100 reports the whole loop duration. If
+ * it's over budget, that's an overrun: it's counted, and the probes that took
+ * the longest during that loop are printed (at most once a second, since
+ * printing is slow too).
+ * 
+ * Recording doesn't allocate. This is not thread-safe; everything should be
+ * recorded on the main thread.
+ */
+public class LoopProfiler {
+    /** Roll the histogram windows this often, in loops, i.e. once a second. */
+    private static final int SLOT_LOOPS = 50;
+    /** Five seconds. */
+    private static final int SLOTS = 5;
+    /** How many probes to print for each overrun. */
+    private static final int TOP = 5;
+
+    private static final LoopProfiler instance = new LoopProfiler(
+            Logging.instance().rootLogger, TimedRobot100.LOOP_PERIOD_S);
+
+    public class Probe {
+        private final String m_name;
+        private final LatencyHistogram m_histogram;
+        private final DoubleLogger m_log_p50;
+        private final DoubleLogger m_log_p99;
+        private final DoubleLogger m_log_max;
+        /** The loop of the most recent sample. */
+        private long m_lastLoop;
+
+        private Probe(String name) {
+            m_name = name;
+            m_histogram = new LatencyHistogram(SLOTS);
+            LoggerFactory log = m_log.name(name);
+            m_log_p50 = log.doubleLogger(Level.DEBUG, "p50 (s)");
+            m_log_p99 = log.doubleLogger(Level.DEBUG, "p99 (s)");
+            m_log_max = log.doubleLogger(Level.DEBUG, "max (s)");
+            m_lastLoop = -1;
+        }
+
+        public void record(double durationS) {
+            m_histogram.record(durationS);
+            m_lastLoop = m_loops;
+        }
+
+        public String getName() {
+            return m_name;
+        }
+
+        public LatencyHistogram getHistogram() {
+            return m_histogram;
+        }
+
+        private void log() {
+            m_log_p50.log(() -> m_histogram.percentile(0.5));
+            m_log_p99.log(() -> m_histogram.percentile(0.99));
+            m_log_max.log(() -> m_histogram.max());
+        }
+    }
+
+    private final LoggerFactory m_log;
+    private final double m_budgetS;
+    private final List<Probe> m_probes;
+    private final Probe[] m_top;
+    private final LongLogger m_log_overruns;
+    private final DoubleLogger m_log_loop;
+    private final Probe m_loop;
+
+    private long m_loops;
+    private long m_overruns;
+    private long m_lastDumpLoop;
+
+    /** Command timing, see instrument(). */
+    private double m_commandStartS;
+
+    LoopProfiler(LoggerFactory parent, double budgetS) {
+        m_log = parent.name("LoopProfiler");
+        m_budgetS = budgetS;
+        m_probes = new ArrayList<>();
+        m_top = new Probe[TOP];
+        m_log_overruns = m_log.longLogger(Level.COMP, "overruns");
+        m_log_loop = m_log.doubleLogger(Level.COMP, "loop (s)");
+        m_loop = new Probe("loop");
+        m_lastDumpLoop = -SLOT_LOOPS;
+    }
+
+    public static LoopProfiler instance() {
+        return instance;
+    }
+
+    /** Make a probe. Names should be unique; they're used as log keys. */
+    public Probe probe(String name) {
+        Probe probe = new Probe(name);
+        m_probes.add(probe);
+        return probe;
+    }
+
+    public long getOverruns() {
+        return m_overruns;
+    }
+
+    /**
+     * Time command execution using the scheduler's hooks.
+     * 
+     * The scheduler polls the button loop just before running the commands, and
+     * calls the execute hook just after each execute(), so each sample is the
+     * time since the previous hook, i.e. the execute() of this command, plus
+     * the isFinished() and end() of the previous one.
+     * 
+     * Call this after binding all the buttons, so the mark runs last.
+     */
+    public void instrument(CommandScheduler scheduler) {
+        // Key is command name, which is usually unique enough.
+        Map<String, Probe> probes = new HashMap<>();
+        scheduler.getDefaultButtonLoop().bind(() -> m_commandStartS = Takt.actual());
+        scheduler.onCommandExecute(command -> {
+            double nowS = Takt.actual();
+            Probe probe = probes.computeIfAbsent(
+                    command.getName(), name -> probe("Command/" + name));
+            probe.record(nowS - m_commandStartS);
+            m_commandStartS = nowS;
+        });
+    }
+
+    /**
+     * Call at the end of each loop, with the duration of the whole loop.
+     * 
+     * @return true if the loop was an overrun.
+     */
+    public boolean endLoop(double loopS) {
+        m_loop.record(loopS);
+        boolean overrun = loopS > m_budgetS;
+        if (overrun) {
+            m_overruns++;
+            if (m_loops - m_lastDumpLoop >= SLOT_LOOPS) {
+                System.out.printf("WARNING: loop overrun %.1f ms: %s\n", loopS * 1e3, offenders());
+                m_lastDumpLoop = m_loops;
+            }
+        }
+        m_log_loop.log(() -> loopS);
+        m_log_overruns.log(() -> m_overruns);
+        m_loops++;
+        if (m_loops % SLOT_LOOPS == 0) {
+            for (Probe probe : m_probes) {
+                probe.log();
+                probe.m_histogram.roll();
+            }
+            m_loop.log();
+            m_loop.m_histogram.roll();
+        }
+        return overrun;
+    }
+
+    /**
+     * The probes with the longest durations in the current loop, longest
+     * first, e.g. "main loop 18.2 ms, Cache/drive 6.1 ms".
+     */
+    String offenders() {
+        int n = 0;
+        for (Probe probe : m_probes) {
+            if (probe.m_lastLoop != m_loops)
+                continue;
+            // insertion sort into the fixed-size top list
+            int i = Math.min(n, TOP - 1);
+            if (n == TOP && probe.m_histogram.last() <= m_top[i].m_histogram.last())
+                continue;
+            while (i > 0 && m_top[i - 1].m_histogram.last() < probe.m_histogram.last()) {
+                m_top[i] = m_top[i - 1];
+                --i;
+            }
+            m_top[i] = probe;
+            n = Math.min(n + 1, TOP);
+        }
+        StringBuilder b = new StringBuilder();
+        for (int i = 0; i < n; ++i) {
+            if (i > 0)
+                b.append(", ");
+            b.append(String.format("%s %.1f ms", m_top[i].m_name, m_top[i].m_histogram.last() * 1e3));
+        }
+        return b.toString();
+    }
+}
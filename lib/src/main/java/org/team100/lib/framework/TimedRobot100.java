@@ -14,6 +14,7 @@ import edu.wpi.first.hal.FRCNetComm.tResourceType;
 import edu.wpi.first.hal.HAL;
 import edu.wpi.first.hal.NotifierJNI;
 import edu.wpi.first.wpilibj.IterativeRobotBase;
+import edu.wpi.first.wpilibj.simulation.SimHooks;
 
 /**
  * Copy of {@link edu.wpi.first.wpilibj.TimedRobot} in an effort to improve
@@ -26,6 +27,7 @@ public class TimedRobot100 extends IterativeRobotBase {
         public double period;
         public double expirationTime;
         public DoubleLogger logger;
+        public LoopProfiler.Probe probe;
 
         /**
          * Construct a callback container.
@@ -47,6 +49,7 @@ public class TimedRobot100 extends IterativeRobotBase {
                             * this.period
                     + this.period;
             this.logger = logger.doubleLogger(Level.COMP, "duration (s)/" + name);
+            this.probe = LoopProfiler.instance().probe("Callback/" + name);
         }
 
         public void run() {
@@ -56,6 +59,7 @@ public class TimedRobot100 extends IterativeRobotBase {
             double endWaitingS = Takt.actual();
             double durationS = endWaitingS - startWaitingS;
             this.logger.log(() -> durationS);
+            this.probe.record(durationS);
 
         }
 
@@ -168,7 +172,35 @@ public class TimedRobot100 extends IterativeRobotBase {
                 callback.expirationTime += callback.period;
                 m_callbacks.add(callback);
             }
+
+            // Counts overruns, and says who caused them.
+            LoopProfiler.instance().endLoop(Takt.actual() - endWaitingS);
+        }
+    }
+
+    /**
+     * An alternate "main loop" for HeadlessSim: run the callbacks that come due
+     * in the next durationS of simulated time, stepping the clock to each one,
+     * without waiting for anything.
+     * 
+     * The simulated clock must be paused, see SimHooks.pauseTiming().
+     */
+    public void stepHeadless(double durationS) {
+        double endS = Takt.actual() + durationS;
+        while (m_callbacks.peek().expirationTime <= endS) {
+            Callback callback = m_callbacks.poll();
+            double waitS = callback.expirationTime - Takt.actual();
+            if (waitS > 0)
+                SimHooks.stepTiming(waitS);
+
+            callback.run();
+
+            callback.expirationTime += callback.period;
+            m_callbacks.add(callback);
         }
+        double restS = endS - Takt.actual();
+        if (restS > 0)
+            SimHooks.stepTiming(restS);
     }
 
     /** Ends the main loop in startCompetition(). */
@@ -6,6 +6,10 @@ import edu.wpi.first.math.geometry.Rotation2d;
  * Three-axis gyro, NWU.
  */
 public interface Gyro  {
+    /** Yaw and yaw rate from one instant, see sample(). */
+    record YawSample(Rotation2d yawNWU, double yawRateNWU) {
+    }
+
     /**
      * Yaw in radians, NWU, counterclockwise positive.
      * Implementations should extrapolate using the yaw rate,
@@ -29,4 +33,14 @@ public interface Gyro  {
     /** For computing rate. */
     void periodic();
 
+    /**
+     * For OdometryThread: yaw extrapolated to the given time (FPGA seconds), and
+     * yaw rate in rad/s, or null if this gyro can't do that.
+     * 
+     * This runs on the odometry thread, so it can't use Takt, Cache, or loggers.
+     */
+    default YawSample sample(double timestampS) {
+        return null;
+    }
+
 }
@@ -108,6 +108,24 @@ public class ReduxGyro implements Gyro {
         return rollNWU;
     }
 
+    /**
+     * Extrapolated to the given time, like getYawNWU(), but without Takt or
+     * logging, so it's ok to call from the odometry thread.
+     */
+    @Override
+    public YawSample sample(double timestampS) {
+        final QuaternionFrame q = m_gyro.getAngularPositionFrame();
+        final double rate = m_gyro.getAngularVelocityYaw();
+        double dt = timestampS - q.getTimestamp();
+        // Same limits as getYawNWU().
+        if (dt < -0.04 || dt > 0.04) {
+            dt = 0;
+        }
+        return new YawSample(
+                Rotation2d.fromRotations(q.getYaw() + rate * dt),
+                Units.rotationsToRadians(rate));
+    }
+
     @Override
     public void periodic() {
         if (m_gyro.isCalibrating())
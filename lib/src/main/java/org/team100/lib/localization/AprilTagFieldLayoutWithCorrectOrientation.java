@@ -3,9 +3,11 @@ package org.team100.lib.localization;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
 
+import edu.wpi.first.apriltag.AprilTag;
 import edu.wpi.first.apriltag.AprilTagFieldLayout;
 import edu.wpi.first.apriltag.AprilTagFieldLayout.OriginPosition;
 import edu.wpi.first.math.geometry.Pose3d;
@@ -50,7 +52,8 @@ public class AprilTagFieldLayoutWithCorrectOrientation {
             new Translation3d(),
             new Rotation3d(0, 0, Math.PI));
 
-    private final Map<Alliance, AprilTagFieldLayout> layouts = new EnumMap<>(Alliance.class);
+    /** Corrected poses, computed once. */
+    private final Map<Alliance, TagIndex> indices = new EnumMap<>(Alliance.class);
 
     public AprilTagFieldLayoutWithCorrectOrientation() throws IOException {
         Path path = Filesystem.getDeployDirectory().toPath().resolve(FILENAME);
@@ -61,19 +64,28 @@ public class AprilTagFieldLayoutWithCorrectOrientation {
         AprilTagFieldLayout redLayout = new AprilTagFieldLayout(path);
         redLayout.setOrigin(OriginPosition.kRedAllianceWallRightSide);
 
-        layouts.put(Alliance.Red, redLayout);
-        layouts.put(Alliance.Blue, blueLayout);
+        indices.put(Alliance.Red, index(redLayout));
+        indices.put(Alliance.Blue, index(blueLayout));
     }
 
     /**
      * @return Tag pose with correct yaw (inverted compared to json file)
      */
     public Optional<Pose3d> getTagPose(Alliance alliance, int id) {
-        AprilTagFieldLayout layout = layouts.get(alliance);
-        Optional<Pose3d> pose = layout.getTagPose(id);
-        if (pose.isEmpty()) {
-            return Optional.empty();
+        return indices.get(alliance).getTagPose(id);
+    }
+
+    /** For spatial queries, e.g. which tags a camera can see. */
+    public TagIndex getIndex(Alliance alliance) {
+        return indices.get(alliance);
+    }
+
+    private static TagIndex index(AprilTagFieldLayout layout) {
+        Map<Integer, Pose3d> poses = new HashMap<>();
+        for (AprilTag tag : layout.getTags()) {
+            // Use the ID only; the AprilTag pose ignores the origin.
+            poses.put(tag.ID, layout.getTagPose(tag.ID).get().transformBy(FIX));
         }
-        return Optional.of(pose.get().transformBy(FIX));
+        return new TagIndex(poses);
     }
 }
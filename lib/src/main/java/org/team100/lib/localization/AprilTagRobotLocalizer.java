@@ -1,12 +1,19 @@
 package org.team100.lib.localization;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Optional;
 import java.util.function.DoubleFunction;
+import java.util.function.Supplier;
 
 import org.team100.lib.coherence.Takt;
 import org.team100.lib.experiments.Experiment;
 import org.team100.lib.experiments.Experiments;
 import org.team100.lib.geometry.GeometryUtil;
+import org.team100.lib.localization.VisionUpdater.Measurement;
 import org.team100.lib.logging.Level;
 import org.team100.lib.logging.LoggerFactory;
 import org.team100.lib.logging.LoggerFactory.BooleanLogger;
@@ -20,6 +27,7 @@ import org.team100.lib.util.TrailingHistory;
 
 import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Pose3d;
+import edu.wpi.first.math.geometry.Quaternion;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.geometry.Rotation3d;
 import edu.wpi.first.math.geometry.Transform3d;
@@ -27,7 +35,6 @@ import edu.wpi.first.math.geometry.Translation3d;
 import edu.wpi.first.networktables.NetworkTableInstance;
 import edu.wpi.first.networktables.StructArrayPublisher;
 import edu.wpi.first.networktables.StructPublisher;
-import edu.wpi.first.util.struct.StructBuffer;
 import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj.DriverStation.Alliance;
 
@@ -56,6 +63,12 @@ public class AprilTagRobotLocalizer extends CameraReader<Blip24> {
      * always use the camera.
      */
     private static final double TAG_ROTATION_BELIEF_THRESHOLD_M = 0;
+    /**
+     * In batch mode, measurements closer together than this are fused. Frames
+     * from one camera have the same timestamp, so this is mostly for multiple
+     * tags in the same frame; different cameras aren't synchronized.
+     */
+    static final double FUSION_WINDOW_S = 0.002;
     /** Discard results further than this from the previous one. */
     private static final double VISION_CHANGE_TOLERANCE_M = 0.1;
     // private static final double VISION_CHANGE_TOLERANCE_M = 1;
@@ -131,6 +144,27 @@ public class AprilTagRobotLocalizer extends CameraReader<Blip24> {
      */
     private final TrailingHistory<Pose3d> m_usedTags;
 
+    /** In batch mode, the measurements received in the current cycle. */
+    private final List<Measurement> m_pending;
+    /** Reused for every blip. */
+    private final Blip24View m_view;
+    /** Makes the transform for the current blip, only if it's logged. */
+    private final Supplier<Transform3d> m_blipTransform;
+    // Scratch for estimateRobotPose(), so it doesn't make any geometry objects
+    // until it needs the Pose2d. Quaternions are (w, x, y, z).
+    /** Camera rotation in the field. */
+    private final double[] m_qcf = new double[4];
+    /** Tag rotation in the field. */
+    private final double[] m_qf = new double[4];
+    /** Tag rotation in the camera. */
+    private final double[] m_qc = new double[4];
+    private final double[] m_q = new double[4];
+    /** Robot-to-camera translation, in the camera frame. */
+    private final double[] m_offsetInCamera = new double[3];
+    /** Robot-to-camera translation, in the field frame. */
+    private final double[] m_offsetInField = new double[3];
+    private final double[] m_v = new double[3];
+
     /**
      * @param parent        logger
      * @param layout        map of apriltags
@@ -142,13 +176,16 @@ public class AprilTagRobotLocalizer extends CameraReader<Blip24> {
             AprilTagFieldLayoutWithCorrectOrientation layout,
             DoubleFunction<ModelR3> history,
             VisionUpdater visionUpdater) {
-        super("vision", "blips", StructBuffer.create(Blip24.struct));
+        super("vision", "blips", Blip24.struct);
         LoggerFactory child = parent.type(this);
         m_layout = layout;
         m_history = history;
         m_visionUpdater = visionUpdater;
         m_allTags = new TrailingHistory<>(HISTORY_DURATION);
         m_usedTags = new TrailingHistory<>(HISTORY_DURATION);
+        m_pending = new ArrayList<>();
+        m_view = new Blip24View();
+        m_blipTransform = m_view::blipToTransform;
 
         NetworkTableInstance inst = NetworkTableInstance.getDefault();
         m_pub_tags = inst.getStructArrayTopic("tags", Pose3d.struct).publish();
@@ -173,6 +210,21 @@ public class AprilTagRobotLocalizer extends CameraReader<Blip24> {
         return now - m_latestTime;
     }
 
+    /** Reads the blips directly from the payload, without decoding them. */
+    @Override
+    protected void perBuffer(
+            Transform3d cameraOffset,
+            double valueTimestamp,
+            ByteBuffer payload,
+            int count) {
+        estimateRobotPose(
+                cameraOffset,
+                payload,
+                count,
+                valueTimestamp,
+                DriverStation.getAlliance());
+    }
+
     @Override
     protected void perValue(
             Transform3d cameraOffset,
@@ -187,6 +239,11 @@ public class AprilTagRobotLocalizer extends CameraReader<Blip24> {
 
     @Override
     protected void finishUpdate() {
+        if (!m_pending.isEmpty()) {
+            // One replay for all the cameras.
+            m_visionUpdater.putAll(fuse(m_pending));
+            m_pending.clear();
+        }
         m_pub_tags.set(m_allTags.getAll().toArray(new Pose3d[0]));
         m_pub_used_tags.set(m_usedTags.getAll().toArray(new Pose3d[0]));
     }
@@ -212,6 +269,31 @@ public class AprilTagRobotLocalizer extends CameraReader<Blip24> {
             Blip24[] blips,
             double valueTimestamp,
             Optional<Alliance> optAlliance) {
+        // Serialize the blips the way the camera does.
+        ByteBuffer payload = ByteBuffer.allocate(blips.length * Blip24.struct.getSize())
+                .order(ByteOrder.LITTLE_ENDIAN);
+        for (Blip24 blip : blips) {
+            Blip24.struct.pack(payload, blip);
+        }
+        payload.flip();
+        estimateRobotPose(cameraOffset, payload, blips.length, valueTimestamp, optAlliance);
+    }
+
+    /**
+     * Compute the robot pose and put it in the pose estimator.
+     * 
+     * @param cameraOffset   Camera pose in robot coordinates
+     * @param payload        StructArray of Blip24
+     * @param count          The number of blips in the payload
+     * @param valueTimestamp Camera frame timestamp
+     * @param optAlliance    From the driver station
+     */
+    void estimateRobotPose(
+            Transform3d cameraOffset,
+            ByteBuffer payload,
+            int count,
+            double valueTimestamp,
+            Optional<Alliance> optAlliance) {
 
         // Vasili added this extra delay after some experimentation that he should
         // describe here.
@@ -244,12 +326,33 @@ public class AprilTagRobotLocalizer extends CameraReader<Blip24> {
             System.out.printf("gyro rotation %f\n", gyroRotation.getRadians());
         }
 
-        for (int i = 0; i < blips.length; ++i) {
-            Blip24 blip = blips[i];
+        // Camera rotation in the field, from the gyro and the camera offset,
+        // see PoseEstimationHelper.cameraRotationInField().
+        Quaternion qo = cameraOffset.getRotation().getQuaternion();
+        double gw = Math.cos(gyroRotation.getRadians() / 2);
+        double gz = Math.sin(gyroRotation.getRadians() / 2);
+        m_qcf[0] = gw * qo.getW() - gz * qo.getZ();
+        m_qcf[1] = gw * qo.getX() - gz * qo.getY();
+        m_qcf[2] = gw * qo.getY() + gz * qo.getX();
+        m_qcf[3] = gw * qo.getZ() + gz * qo.getW();
+        // Robot-to-camera translation, in the camera frame and in the field frame.
+        m_q[0] = qo.getW();
+        m_q[1] = -qo.getX();
+        m_q[2] = -qo.getY();
+        m_q[3] = -qo.getZ();
+        rotate(m_q, cameraOffset.getX(), cameraOffset.getY(), cameraOffset.getZ(), m_offsetInCamera);
+        double cos = gyroRotation.getCos();
+        double sin = gyroRotation.getSin();
+        m_offsetInField[0] = cos * cameraOffset.getX() - sin * cameraOffset.getY();
+        m_offsetInField[1] = sin * cameraOffset.getX() + cos * cameraOffset.getY();
+        m_offsetInField[2] = cameraOffset.getZ();
+
+        for (int i = 0; i < count; ++i) {
+            Blip24View blip = m_view.at(payload, i);
 
             if (DEBUG) {
-                Translation3d t = blip.getRawPose().getTranslation();
-                Rotation3d r = blip.getRawPose().getRotation();
+                Translation3d t = blip.toBlip24().getRawPose().getTranslation();
+                Rotation3d r = blip.toBlip24().getRawPose().getRotation();
                 System.out.printf("blip raw pose %d X %5.2f Y %5.2f Z %5.2f R %5.2f P %5.2f Y %5.2f\n",
                         blip.getId(), t.getX(), t.getY(), t.getZ(), r.getX(), r.getY(), r.getZ());
             }
@@ -265,51 +368,64 @@ public class AprilTagRobotLocalizer extends CameraReader<Blip24> {
             // Field-to-tag, canonical pose from the JSON file
             final Pose3d tagInField = tagInFieldCoordsOptional.get();
 
-            // Camera-to-tag, as it appears in the camera frame.
-            Transform3d blipTransform = blip.blipToTransform();
-            m_log_tag_in_camera.log(() -> blipTransform);
+            // Field-to-tag rotation.
+            m_qf[0] = tagInField.getRotation().getQuaternion().getW();
+            m_qf[1] = tagInField.getRotation().getQuaternion().getX();
+            m_qf[2] = tagInField.getRotation().getQuaternion().getY();
+            m_qf[3] = tagInField.getRotation().getQuaternion().getZ();
 
-            Transform3d tagInCamera = blipTransform;
+            // Camera-to-tag, as it appears in the camera frame, i.e.
+            // blip.blipToTransform(), without making the transform.
+            final double tx = blip.z();
+            final double ty = -blip.x();
+            final double tz = -blip.y();
+            m_log_tag_in_camera.log(m_blipTransform);
 
             if (DEBUG) {
                 // This is used for camera offset calibration. Place a tag at a known position,
                 // observe the offset, and add it to Camera.java, inverted.
-                Transform3d tagInRobot = cameraOffset.plus(tagInCamera);
+                Transform3d tagInRobot = cameraOffset.plus(blip.blipToTransform());
                 System.out.printf("tagInRobot id %d X %5.2f Y %5.2f Z %5.2f R %5.2f P %5.2f Y %5.2f\n",
                         blip.getId(), tagInRobot.getTranslation().getX(), tagInRobot.getTranslation().getY(),
                         tagInRobot.getTranslation().getZ(), tagInRobot.getRotation().getX(),
                         tagInRobot.getRotation().getY(), tagInRobot.getRotation().getZ());
             }
 
-            if (tagInCamera.getTranslation().getNorm() > TAG_ROTATION_BELIEF_THRESHOLD_M) {
+            if (Math.sqrt(tx * tx + ty * ty + tz * tz) > TAG_ROTATION_BELIEF_THRESHOLD_M) {
                 // If the tag is further than the threshold, replace the tag rotation with
-                // a rotation derived from the gyro, if available.
+                // a rotation derived from the gyro, see PoseEstimationHelper.tagInCamera().
                 m_log_using_gyro.log(() -> true);
-                tagInCamera = PoseEstimationHelper.tagInCamera(
-                        cameraOffset,
-                        tagInField,
-                        tagInCamera,
-                        new Rotation3d(gyroRotation));
+                conjTimes(m_qcf, m_qf, m_qc);
             } else {
                 m_log_using_gyro.log(() -> false);
+                m_qc[0] = blip.qw();
+                m_qc[1] = blip.qz();
+                m_qc[2] = -blip.qx();
+                m_qc[3] = -blip.qy();
+                normalize(m_qc);
             }
 
             extralog(
                     correctedTimestamp,
                     historicalPose,
-                    cameraOffset,
-                    tagInCamera,
+                    tx, ty, tz,
                     tagInField);
 
-            // Estimate of robot pose.
-            Pose3d pose3d = PoseEstimationHelper.robotInField(
-                    cameraOffset,
-                    tagInField,
-                    tagInCamera);
+            // Estimate of robot pose, see PoseEstimationHelper.robotInField(): the
+            // robot is back from the tag by the camera-to-tag translation plus the
+            // robot-to-camera offset, both in the camera frame, rotated into the
+            // field frame by field-to-tag times tag-to-camera.
+            timesConj(m_qf, m_qc, m_q);
+            rotate(m_q,
+                    tx + m_offsetInCamera[0],
+                    ty + m_offsetInCamera[1],
+                    tz + m_offsetInCamera[2],
+                    m_v);
 
             // Robot in field frame. Use the gyro for rotation if available.
             final Pose2d pose = new Pose2d(
-                    pose3d.getTranslation().toTranslation2d(),
+                    tagInField.getX() - m_v[0],
+                    tagInField.getY() - m_v[1],
                     gyroRotation);
 
             m_log_pose.log(() -> pose);
@@ -348,34 +464,54 @@ public class AprilTagRobotLocalizer extends CameraReader<Blip24> {
                 continue;
             }
 
-            m_visionUpdater.put(
-                    correctedTimestamp,
-                    pose,
-                    stateStdDevs(),
-                    visionMeasurementStdDevs(distanceM));
+            if (Experiments.instance.enabled(Experiment.BatchVision)) {
+                // Wait for finishUpdate().
+                m_pending.add(new Measurement(
+                        correctedTimestamp,
+                        pose,
+                        stateStdDevs(),
+                        visionMeasurementStdDevs(distanceM)));
+            } else {
+                m_visionUpdater.put(
+                        correctedTimestamp,
+                        pose,
+                        stateStdDevs(),
+                        visionMeasurementStdDevs(distanceM));
+            }
 
             m_latestTime = Takt.get();
             m_prevPose = pose;
         }
     }
 
-    /** visualization stuff, not used in computation */
+    /**
+     * visualization stuff, not used in computation
+     * 
+     * Given the historical pose, where do we think the tag is? That's
+     * field-to-robot plus robot-to-camera plus camera-to-tag, using the
+     * tag-to-camera rotation in m_qc. This makes one Pose3d, for the
+     * publishers.
+     */
     private void extralog(
             double correctedTimestamp,
             Pose2d historicalPose,
-            Transform3d cameraOffset,
-            Transform3d tagInCamera,
+            double tx,
+            double ty,
+            double tz,
             Pose3d tagInField) {
-        // Field-to-robot
-        Pose3d historicalPose3d = new Pose3d(historicalPose);
-        // Field-to-robot plus robot-to-camera = field-to-camera
-        Pose3d historicalCameraInField = historicalPose3d.transformBy(cameraOffset);
-        // given the historical pose, where do we think the tag is?
-        Pose3d estimatedTagInField = historicalCameraInField.transformBy(tagInCamera);
+        rotate(m_qcf, tx, ty, tz, m_v);
+        double x = historicalPose.getX() + m_offsetInField[0] + m_v[0];
+        double y = historicalPose.getY() + m_offsetInField[1] + m_v[1];
+        double z = m_offsetInField[2] + m_v[2];
+        times(m_qcf, m_qc, m_q);
+        Pose3d estimatedTagInField = new Pose3d(x, y, z,
+                new Rotation3d(new Quaternion(m_q[0], m_q[1], m_q[2], m_q[3])));
         m_allTags.add(correctedTimestamp, estimatedTagInField);
         // log the norm of the translational error of the tag.
-        Transform3d tagError = tagInField.minus(estimatedTagInField);
-        m_log_tag_error.log(() -> tagError.getTranslation().getNorm());
+        double dx = tagInField.getX() - x;
+        double dy = tagInField.getY() - y;
+        double dz = tagInField.getZ() - z;
+        m_log_tag_error.log(Math.sqrt(dx * dx + dy * dy + dz * dz));
         m_usedTags.add(correctedTimestamp, estimatedTagInField);
     }
 
@@ -412,8 +548,126 @@ public class AprilTagRobotLocalizer extends CameraReader<Blip24> {
                 Double.MAX_VALUE };
     }
 
+    /**
+     * Sort the measurements by time, and replace each group of measurements
+     * within the fusion window with a single one, weighting each by its inverse
+     * variance (in x and y separately). The rotation is the gyro's, so it's just
+     * taken from the first one.
+     */
+    static List<Measurement> fuse(List<Measurement> measurements) {
+        List<Measurement> sorted = new ArrayList<>(measurements);
+        sorted.sort(Comparator.comparingDouble(Measurement::timestampS));
+        List<Measurement> result = new ArrayList<>();
+        int start = 0;
+        for (int i = 1; i <= sorted.size(); ++i) {
+            if (i < sorted.size()
+                    && sorted.get(i).timestampS() - sorted.get(start).timestampS() < FUSION_WINDOW_S)
+                continue;
+            result.add(fuseGroup(sorted.subList(start, i)));
+            start = i;
+        }
+        return result;
+    }
+
     ///////////////////////////////////////
 
+    private static Measurement fuseGroup(List<Measurement> group) {
+        Measurement first = group.get(0);
+        if (group.size() == 1)
+            return first;
+        double t = 0;
+        double x = 0;
+        double y = 0;
+        double wx = 0;
+        double wy = 0;
+        double wtheta = 0;
+        for (Measurement m : group) {
+            t += m.timestampS();
+            double wxi = weight(m.visionSigma()[0]);
+            double wyi = weight(m.visionSigma()[1]);
+            x += wxi * m.pose().getX();
+            y += wyi * m.pose().getY();
+            wx += wxi;
+            wy += wyi;
+            wtheta += weight(m.visionSigma()[2]);
+        }
+        return new Measurement(
+                t / group.size(),
+                new Pose2d(x / wx, y / wy, first.pose().getRotation()),
+                first.stateSigma(),
+                new double[] {
+                        sigma(wx),
+                        sigma(wy),
+                        sigma(wtheta) });
+    }
+
+    /** Inverse variance. A zero sigma would make the weight infinite. */
+    private static double weight(double sigma) {
+        return 1 / Math.max(sigma * sigma, 1e-12);
+    }
+
+    /** Sigma of the fused measurement. */
+    private static double sigma(double weight) {
+        if (weight == 0)
+            return Double.MAX_VALUE;
+        return 1 / Math.sqrt(weight);
+    }
+
+    /** out = a * b, for quaternions (w, x, y, z). */
+    private static void times(double[] a, double[] b, double[] out) {
+        product(a[0], a[1], a[2], a[3], b[0], b[1], b[2], b[3], out);
+    }
+
+    /** out = a * conj(b) */
+    private static void timesConj(double[] a, double[] b, double[] out) {
+        product(a[0], a[1], a[2], a[3], b[0], -b[1], -b[2], -b[3], out);
+    }
+
+    /** out = conj(a) * b */
+    private static void conjTimes(double[] a, double[] b, double[] out) {
+        product(a[0], -a[1], -a[2], -a[3], b[0], b[1], b[2], b[3], out);
+    }
+
+    private static void product(
+            double aw, double ax, double ay, double az,
+            double bw, double bx, double by, double bz,
+            double[] out) {
+        out[0] = aw * bw - ax * bx - ay * by - az * bz;
+        out[1] = aw * bx + ax * bw + ay * bz - az * by;
+        out[2] = aw * by - ax * bz + ay * bw + az * bx;
+        out[3] = aw * bz + ax * by - ay * bx + az * bw;
+    }
+
+    /** Scale to unit length, like Rotation3d does. */
+    private static void normalize(double[] q) {
+        double norm = Math.sqrt(q[0] * q[0] + q[1] * q[1] + q[2] * q[2] + q[3] * q[3]);
+        if (norm == 0) {
+            q[0] = 1;
+            return;
+        }
+        q[0] /= norm;
+        q[1] /= norm;
+        q[2] /= norm;
+        q[3] /= norm;
+    }
+
+    /** out = (x, y, z) rotated by the unit quaternion q. */
+    private static void rotate(double[] q, double x, double y, double z, double[] out) {
+        double w = q[0];
+        double qx = q[1];
+        double qy = q[2];
+        double qz = q[3];
+        out[0] = (1 - 2 * (qy * qy + qz * qz)) * x
+                + 2 * (qx * qy - qz * w) * y
+                + 2 * (qx * qz + qy * w) * z;
+        out[1] = 2 * (qx * qy + qz * w) * x
+                + (1 - 2 * (qx * qx + qz * qz)) * y
+                + 2 * (qy * qz - qx * w) * z;
+        out[2] = 2 * (qx * qz - qy * w) * x
+                + 2 * (qy * qz + qx * w) * y
+                + (1 - 2 * (qx * qx + qy * qy)) * z;
+    }
+
     /** Distance between pose translations. */
     private static double distance(Pose2d a, Pose2d b) {
         // the translation distance is a little quicker to calculate and we don't care
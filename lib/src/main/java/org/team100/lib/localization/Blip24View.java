@@ -0,0 +1,102 @@
+package org.team100.lib.localization;
+
+import java.nio.ByteBuffer;
+
+import edu.wpi.first.math.geometry.Quaternion;
+import edu.wpi.first.math.geometry.Rotation3d;
+import edu.wpi.first.math.geometry.Transform3d;
+import edu.wpi.first.math.geometry.Translation3d;
+
+/**
+ * A view of one serialized Blip24, read directly from the StructArray bytes, so
+ * that decoding a camera message doesn't make a Blip24, Transform3d,
+ * Translation3d, Rotation3d, and Quaternion for every tag.
+ * 
+ * The layout is the one in Blip24Struct: int32 id, then the Transform3d, which
+ * is the Translation3d (x, y, z) followed by the Rotation3d quaternion (w, x,
+ * y, z), all little-endian. The buffer must be in little-endian order.
+ * 
+ * The view is reused: at() points it at a different blip, and the previous
+ * blip is gone.
+ */
+public class Blip24View {
+    private static final int ID = 0;
+    private static final int X = 4;
+    private static final int Y = 12;
+    private static final int Z = 20;
+    private static final int QW = 28;
+    private static final int QX = 36;
+    private static final int QY = 44;
+    private static final int QZ = 52;
+
+    private ByteBuffer m_bb;
+    private int m_offset;
+
+    /**
+     * Point the view at the blip with the given index in the buffer.
+     * 
+     * @param bb    StructArray of Blip24, starting at position zero.
+     * @param index which blip
+     * @return this
+     */
+    public Blip24View at(ByteBuffer bb, int index) {
+        m_bb = bb;
+        m_offset = index * Blip24.struct.getSize();
+        return this;
+    }
+
+    /** ID of the AprilTag. */
+    public int getId() {
+        return m_bb.getInt(m_offset + ID);
+    }
+
+    /** Raw translation, in camera coordinates: x right, y down, z forward. */
+    public double x() {
+        return m_bb.getDouble(m_offset + X);
+    }
+
+    public double y() {
+        return m_bb.getDouble(m_offset + Y);
+    }
+
+    public double z() {
+        return m_bb.getDouble(m_offset + Z);
+    }
+
+    /** Raw rotation quaternion, in camera coordinates. */
+    public double qw() {
+        return m_bb.getDouble(m_offset + QW);
+    }
+
+    public double qx() {
+        return m_bb.getDouble(m_offset + QX);
+    }
+
+    public double qy() {
+        return m_bb.getDouble(m_offset + QY);
+    }
+
+    public double qz() {
+        return m_bb.getDouble(m_offset + QZ);
+    }
+
+    /**
+     * Same as Blip24.blipToTransform(): the raw z-forward transform as an NWU
+     * x-forward transform. See GeometryUtil.zForwardToXForward().
+     * 
+     * This makes four objects, so the localizer uses the accessors above
+     * instead, and only calls this for logging.
+     */
+    public Transform3d blipToTransform() {
+        return new Transform3d(
+                new Translation3d(z(), -x(), -y()),
+                new Rotation3d(new Quaternion(qw(), qz(), -qx(), -qy())));
+    }
+
+    /** Make a real Blip24, e.g. for debugging. */
+    public Blip24 toBlip24() {
+        return new Blip24(getId(), new Transform3d(
+                new Translation3d(x(), y(), z()),
+                new Rotation3d(new Quaternion(qw(), qx(), qy(), qz()))));
+    }
+}
@@ -3,6 +3,7 @@ package org.team100.lib.localization;
 import java.util.function.DoubleFunction;
 
 import org.team100.lib.coherence.Cache;
+import org.team100.lib.coherence.CacheGroup;
 import org.team100.lib.coherence.SideEffect;
 import org.team100.lib.state.ModelR3;
 
@@ -10,6 +11,9 @@ import org.team100.lib.state.ModelR3;
  * Proxy the history after making sure it has received any updates that may
  * mutate it. Some clients want "fresh" estimates, and should use this class;
  * other clients only need old historical estimates, and should use the history.
+ * 
+ * The updates are in the "localization" cache group, so they can be refreshed
+ * at the same time as unrelated groups.
  */
 public class FreshSwerveEstimate implements DoubleFunction<ModelR3> {
     private final SwerveHistory m_history;
@@ -23,8 +27,9 @@ public class FreshSwerveEstimate implements DoubleFunction<ModelR3> {
             OdometryUpdater odometry,
             SwerveHistory history) {
         m_history = history;
-        m_vision = Cache.ofSideEffect(vision::update);
-        m_odometry = Cache.ofSideEffect(odometry::update);
+        CacheGroup group = Cache.group("localization");
+        m_vision = group.ofSideEffect(vision::update);
+        m_odometry = group.ofSideEffect(odometry::update);
     }
 
     /**
@@ -4,7 +4,6 @@ import java.util.Objects;
 
 import org.team100.lib.geometry.GlobalVelocityR3;
 import org.team100.lib.motion.swerve.kinodynamics.SwerveDriveKinematics100;
-import org.team100.lib.motion.swerve.module.state.SwerveModuleDeltas;
 import org.team100.lib.motion.swerve.module.state.SwerveModulePositions;
 import org.team100.lib.state.ModelR3;
 
@@ -13,6 +12,20 @@ import edu.wpi.first.math.geometry.Twist2d;
 import edu.wpi.first.math.interpolation.Interpolatable;
 
 class InterpolationRecord implements Interpolatable<InterpolationRecord> {
+    /**
+     * Scratch for interpolate(). Records are interpolated on the main thread and
+     * on the odometry thread, so each thread gets its own.
+     */
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    private static class Scratch {
+        /** Module vectors (2n x 1) */
+        final double[] modules = new double[8];
+        /** [dx; dy; dtheta] */
+        final double[] chassis = new double[3];
+        final Twist2d twist = new Twist2d();
+    }
+
     private final SwerveDriveKinematics100 m_kinematics;
 
     final ModelR3 m_state;
@@ -37,6 +50,20 @@ class InterpolationRecord implements Interpolatable<InterpolationRecord> {
         m_wheelPositions = new SwerveModulePositions(wheelPositions);
     }
 
+    /**
+     * The same record, moved by the given field-relative translation. The
+     * rotation, velocity, and wheel positions are unchanged.
+     */
+    InterpolationRecord translate(double dx, double dy) {
+        Pose2d pose = m_state.pose();
+        return new InterpolationRecord(
+                m_kinematics,
+                new ModelR3(
+                        new Pose2d(pose.getX() + dx, pose.getY() + dy, pose.getRotation()),
+                        m_state.velocity()),
+                m_wheelPositions);
+    }
+
     /**
      * Return the "interpolated" record. This object is assumed to be the starting
      * position, or lower bound.
@@ -67,8 +94,12 @@ class InterpolationRecord implements Interpolatable<InterpolationRecord> {
 
         // Create a twist to represent the change based on the interpolated sensor
         // inputs.
-        Twist2d twist = m_kinematics.toTwist2d(
-                SwerveModuleDeltas.modulePositionDelta(m_wheelPositions, wheelLerp));
+        Scratch scratch = SCRATCH.get();
+        m_kinematics.forward(m_wheelPositions, wheelLerp, scratch.modules, scratch.chassis);
+        Twist2d twist = scratch.twist;
+        twist.dx = scratch.chassis[0];
+        twist.dy = scratch.chassis[1];
+        twist.dtheta = scratch.chassis[2];
         Pose2d pose = m_state.pose().exp(twist);
 
         // these lerps are wrong but maybe close enough
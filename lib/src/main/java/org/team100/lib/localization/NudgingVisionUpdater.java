@@ -1,5 +1,9 @@
 package org.team100.lib.localization;
 
+import java.util.List;
+
+import org.team100.lib.experiments.Experiment;
+import org.team100.lib.experiments.Experiments;
 import org.team100.lib.state.ModelR3;
 
 import edu.wpi.first.math.geometry.Pose2d;
@@ -13,6 +17,13 @@ import edu.wpi.first.math.geometry.Twist2d;
  * 
  * The "nudging" here is essentially just a weighted average; you provide the
  * weights you want at update time.
+ * 
+ * The nudge and the replay are synchronized on the odometry updater, so that
+ * an OdometryThread can't add anything in between.
+ * 
+ * With the ShiftVision experiment, the replay is replaced by
+ * OdometryUpdater.shift(), which gives the same history without integrating
+ * each entry again.
  */
 public class NudgingVisionUpdater implements VisionUpdater {
 
@@ -38,26 +49,79 @@ public class NudgingVisionUpdater implements VisionUpdater {
             double[] stateSigma,
             double[] visionSigma) {
 
-        // Skip too-old measurement
-        if (m_history.tooOld(timestampS)) {
+        synchronized (m_odometryUpdater) {
+            // Skip too-old measurement
+            if (m_history.tooOld(timestampS)) {
+                return;
+            }
+            nudgeHistory(timestampS, measurement, stateSigma, visionSigma);
+            if (Experiments.instance.enabled(Experiment.ShiftVision)) {
+                m_odometryUpdater.shift(timestampS);
+            } else {
+                m_odometryUpdater.replay(timestampS);
+            }
+        }
+    }
+
+    /**
+     * Put all the measurements, replaying odometry just once, from the oldest
+     * one.
+     * 
+     * Each measurement needs to see the effect of the ones before it, so between
+     * measurements, only the part of the history that the next one samples is
+     * replayed.
+     */
+    @Override
+    public void putAll(List<Measurement> measurements) {
+        if (Experiments.instance.enabled(Experiment.ShiftVision)) {
+            // Shifting is cheap, so just do each one.
+            synchronized (m_odometryUpdater) {
+                for (Measurement m : measurements) {
+                    if (m_history.tooOld(m.timestampS())) {
+                        continue;
+                    }
+                    nudgeHistory(m.timestampS(), m.pose(), m.stateSigma(), m.visionSigma());
+                    m_odometryUpdater.shift(m.timestampS());
+                }
+            }
             return;
         }
+        synchronized (m_odometryUpdater) {
+            // The measurement time to replay from, if any.
+            double replayS = Double.NaN;
+            for (Measurement m : measurements) {
+                if (m_history.tooOld(m.timestampS())) {
+                    continue;
+                }
+                if (!Double.isNaN(replayS)) {
+                    m_odometryUpdater.replay(replayS, m.timestampS());
+                }
+                nudgeHistory(m.timestampS(), m.pose(), m.stateSigma(), m.visionSigma());
+                replayS = m.timestampS();
+            }
+            if (!Double.isNaN(replayS)) {
+                m_odometryUpdater.replay(replayS);
+            }
+        }
+    }
 
-        // Sample the history at the measurement time.
-        InterpolationRecord sample = m_history.getRecord(timestampS);
+    /////////////////////////////////////////
 
-        // If there is a sample, nudge it towards the measurement.
+    /** Sample the history at the measurement time, and nudge the sample. */
+    private void nudgeHistory(
+            double timestampS,
+            Pose2d measurement,
+            double[] stateSigma,
+            double[] visionSigma) {
+        InterpolationRecord sample = m_history.getRecord(timestampS);
         Pose2d nudged = nudge(
                 sample.m_state.pose(), measurement, stateSigma, visionSigma);
         m_history.put(
                 timestampS,
                 new ModelR3(nudged, sample.m_state.velocity()),
                 sample.m_wheelPositions);
-        m_odometryUpdater.replay(timestampS);
     }
 
-    /////////////////////////////////////////
-
     /**
      * Nudge the sample towards the measurement.
      */
@@ -0,0 +1,172 @@
+package org.team100.lib.localization;
+
+import java.util.concurrent.locks.LockSupport;
+
+import org.team100.lib.coherence.Takt;
+import org.team100.lib.logging.Level;
+import org.team100.lib.logging.LoggerFactory;
+import org.team100.lib.logging.LoggerFactory.DoubleLogger;
+import org.team100.lib.logging.LoggerFactory.LongLogger;
+import org.team100.lib.motion.swerve.module.state.SwerveModulePositions;
+
+import edu.wpi.first.math.geometry.Rotation2d;
+
+/**
+ * Runs odometry on its own thread, faster than the main loop, so the history
+ * has a pose every few milliseconds instead of every 20, which makes the
+ * interpolation for vision latency compensation more accurate.
+ * 
+ * Each cycle asks the Sampler for a set of measurements, which should all be
+ * from the same instant, and puts them in the history via the
+ * OdometryUpdater, at the measurement time. The main loop doesn't update the
+ * odometry while this is running, it just reads the latest estimate from the
+ * history.
+ * 
+ * The sampler can't use anything that goes through Cache, since those values
+ * only change once per main loop. It should read the sensors directly, e.g.
+ * CTRE signals refreshed by BaseStatusSignal.waitForAll(), with their
+ * timestamps; see CtreOdometrySampler.
+ */
+public class OdometryThread {
+    /** Measurements from one instant. */
+    public record Sample(
+            double timestampS,
+            Rotation2d yawNWU,
+            double yawRateNWU,
+            SwerveModulePositions positions) {
+    }
+
+    public interface Sampler {
+        /**
+         * The latest measurements, or null if nothing is available. Called on the
+         * odometry thread.
+         */
+        Sample sample();
+
+        /**
+         * True if sample() waits for new measurements itself, e.g. with
+         * BaseStatusSignal.waitForAll(), so the thread shouldn't also wait.
+         */
+        default boolean paced() {
+            return false;
+        }
+    }
+
+    private final OdometryUpdater m_updater;
+    private final Sampler m_sampler;
+    private final long m_periodNs;
+    private final DoubleLogger m_log_rate;
+    private final LongLogger m_log_overruns;
+
+    private Thread m_thread;
+    /** Timestamp of the last sample used, to skip duplicates. */
+    private double m_lastS;
+    /** Written by the odometry thread, read by periodic(). */
+    private volatile long m_count;
+    private volatile long m_overruns;
+    private long m_lastCount;
+    private double m_lastPeriodicS;
+
+    /**
+     * @param rateHz e.g. 250, to match the CAN signal rate.
+     */
+    public OdometryThread(
+            LoggerFactory parent,
+            OdometryUpdater updater,
+            Sampler sampler,
+            double rateHz) {
+        if (rateHz <= 0)
+            throw new IllegalArgumentException("rate must be positive");
+        LoggerFactory child = parent.type(this);
+        m_updater = updater;
+        m_sampler = sampler;
+        m_periodNs = (long) (1e9 / rateHz);
+        m_log_rate = child.doubleLogger(Level.DEBUG, "rate (Hz)");
+        m_log_overruns = child.longLogger(Level.COMP, "overruns");
+        m_lastS = Double.NEGATIVE_INFINITY;
+        m_lastPeriodicS = Takt.actual();
+    }
+
+    /** Start the thread, and stop the main-loop odometry updates. */
+    public synchronized void start() {
+        if (m_thread != null)
+            return;
+        m_updater.setThreaded(true);
+        m_thread = new Thread(this::run, "OdometryThread");
+        m_thread.setDaemon(true);
+        // Odometry is more urgent than the main loop.
+        m_thread.setPriority(Thread.MAX_PRIORITY);
+        m_thread.start();
+    }
+
+    /** Stop the thread, and go back to main-loop odometry updates. */
+    public synchronized void stop() {
+        if (m_thread == null)
+            return;
+        m_thread.interrupt();
+        try {
+            m_thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        m_thread = null;
+        m_updater.setThreaded(false);
+    }
+
+    /** Log the update rate. Call this from the main loop. */
+    public void periodic() {
+        double nowS = Takt.actual();
+        long count = m_count;
+        double dt = nowS - m_lastPeriodicS;
+        if (dt > 0) {
+            double rate = (count - m_lastCount) / dt;
+            m_log_rate.log(() -> rate);
+        }
+        m_log_overruns.log(() -> m_overruns);
+        m_lastCount = count;
+        m_lastPeriodicS = nowS;
+    }
+
+    /////////////////////////////////////////////////
+
+    private void run() {
+        long nextNs = System.nanoTime();
+        while (!Thread.currentThread().isInterrupted()) {
+            if (step() && m_sampler.paced()) {
+                // The sampler already waited for this sample.
+                nextNs = System.nanoTime();
+                continue;
+            }
+            nextNs += m_periodNs;
+            long sleepNs = nextNs - System.nanoTime();
+            if (sleepNs > 0) {
+                LockSupport.parkNanos(sleepNs);
+            } else {
+                // Running behind; don't try to catch up.
+                m_overruns++;
+                nextNs = System.nanoTime();
+            }
+        }
+    }
+
+    /**
+     * One cycle: sample, and update the history if the sample is new.
+     * 
+     * @return true if the history was updated
+     */
+    boolean step() {
+        Sample sample = m_sampler.sample();
+        if (sample == null)
+            return false;
+        if (sample.timestampS() <= m_lastS)
+            return false;
+        m_lastS = sample.timestampS();
+        m_updater.update(
+                sample.timestampS(),
+                sample.yawNWU(),
+                sample.yawRateNWU(),
+                sample.positions());
+        m_count++;
+        return true;
+    }
+}
@@ -1,15 +1,13 @@
 package org.team100.lib.localization;
 
-import java.util.Map;
-import java.util.Map.Entry;
 import java.util.function.Supplier;
 
 import org.team100.lib.coherence.Takt;
 import org.team100.lib.geometry.GlobalDeltaR3;
 import org.team100.lib.geometry.GlobalVelocityR3;
 import org.team100.lib.gyro.Gyro;
+import org.team100.lib.motion.swerve.kinodynamics.SwerveDriveKinematics100;
 import org.team100.lib.motion.swerve.kinodynamics.SwerveKinodynamics;
-import org.team100.lib.motion.swerve.module.state.SwerveModuleDeltas;
 import org.team100.lib.motion.swerve.module.state.SwerveModulePositions;
 import org.team100.lib.state.ModelR3;
 
@@ -29,29 +27,44 @@ import edu.wpi.first.math.geometry.Twist2d;
  * 
  * Note we use methods on the specific history implementation; the interface
  * won't work here.
+ * 
+ * The history can be updated from an OdometryThread, at the same time as
+ * vision updates on the main thread, so everything that reads and then writes
+ * the history is synchronized on this object. Anything else that does that,
+ * i.e. the vision updater, should also synchronize on this object.
  */
 public class OdometryUpdater {
     private static final boolean DEBUG = false;
 
-    private final SwerveKinodynamics m_kinodynamics;
+    private final SwerveDriveKinematics100 m_kinematics;
     private final Gyro m_gyro;
     private final SwerveHistory m_history;
     private final Supplier<SwerveModulePositions> m_positions;
 
+    /** Scratch for put(), which is always called with the lock held. */
+    private final double[] m_modules;
+    private final double[] m_chassis;
+    private final Twist2d m_twist;
+
     private Rotation2d m_gyroOffset;
+    /** If true, an OdometryThread is doing the updates. */
+    private volatile boolean m_threaded;
 
     public OdometryUpdater(
             SwerveKinodynamics kinodynamics,
             Gyro gyro,
             SwerveHistory estimator,
             Supplier<SwerveModulePositions> positions) {
-        m_kinodynamics = kinodynamics;
+        m_kinematics = kinodynamics.getKinematics();
+        m_modules = new double[2 * m_kinematics.getModuleLocations().length];
+        m_chassis = new double[3];
+        m_twist = new Twist2d();
         m_gyro = gyro;
         m_history = estimator;
         m_positions = positions;
     }
 
-    Rotation2d getGyroOffset() {
+    synchronized Rotation2d getGyroOffset() {
         return m_gyroOffset;
     }
 
@@ -67,16 +80,37 @@ public class OdometryUpdater {
      * The gyro angle overrides the odometry-derived gyro measurement, and
      * the gyro rate overrides the rate derived from the difference to the previous
      * state.
+     * 
+     * Does nothing if an OdometryThread is doing the updates.
      */
     public void update() {
+        if (m_threaded)
+            return;
         update(Takt.get());
     }
 
     /** For testing. */
-    void update(double timestamp) {
+    synchronized void update(double timestamp) {
         put(timestamp, m_gyro.getYawNWU(), m_gyro.getYawRateNWU(), m_positions.get());
     }
 
+    /**
+     * Put a new state estimate based on the given measurements, which should all
+     * be from the same instant. This is what OdometryThread uses.
+     */
+    public synchronized void update(
+            double timestampS,
+            Rotation2d gyroAngleRadNWU,
+            double gyroRateRad_SNWU,
+            SwerveModulePositions wheelPositions) {
+        put(timestampS, gyroAngleRadNWU, gyroRateRad_SNWU, wheelPositions);
+    }
+
+    /** Called by OdometryThread, so that update() doesn't interfere. */
+    void setThreaded(boolean threaded) {
+        m_threaded = threaded;
+    }
+
     /**
      * Empty the history, reset the gyro offset, and add the given measurements.
      * Uses the module position supplier passed to the constructor.
@@ -86,7 +120,7 @@ public class OdometryUpdater {
     }
 
     /** For testing. */
-    public void reset(Pose2d pose, double timestampSeconds) {
+    public synchronized void reset(Pose2d pose, double timestampSeconds) {
         m_gyroOffset = pose.getRotation().minus(m_gyro.getYawNWU());
         m_history.reset(m_positions.get(), pose, timestampSeconds);
     }
@@ -94,7 +128,7 @@ public class OdometryUpdater {
     /**
      * For testing.
      */
-    void reset(
+    synchronized void reset(
             Rotation2d gyroAngle,
             Pose2d pose,
             double timestampSeconds) {
@@ -111,31 +145,31 @@ public class OdometryUpdater {
             SwerveModulePositions wheelPositions) {
 
         // the entry right before this one, the basis for integration.
-        Entry<Double, InterpolationRecord> lowerEntry = m_history.lowerEntry(
-                currentTimeS);
+        int lowerIndex = m_history.lowerIndex(currentTimeS);
 
-        if (lowerEntry == null) {
+        if (lowerIndex < 0) {
             // System.out.println("lower entry is null");
             // We're at the beginning. There's nothing to apply the wheel position delta to.
             // This should never happen.
             return;
         }
 
-        double dt = currentTimeS - lowerEntry.getKey();
-        InterpolationRecord value = lowerEntry.getValue();
+        double dt = currentTimeS - m_history.timeAt(lowerIndex);
+        InterpolationRecord value = m_history.valueAt(lowerIndex);
         ModelR3 previousState = value.m_state;
         if (DEBUG) {
             System.out.printf("previous x %.6f y %.6f\n", previousState.pose().getX(), previousState.pose().getY());
         }
 
-        SwerveModuleDeltas modulePositionDelta = SwerveModuleDeltas.modulePositionDelta(
+        m_kinematics.forward(
                 value.m_wheelPositions,
-                wheelPositions);
-        if (DEBUG) {
-            System.out.printf("modulePositionDelta %s\n", modulePositionDelta);
-        }
-
-        Twist2d twist = m_kinodynamics.getKinematics().toTwist2d(modulePositionDelta);
+                wheelPositions,
+                m_modules,
+                m_chassis);
+        Twist2d twist = m_twist;
+        twist.dx = m_chassis[0];
+        twist.dy = m_chassis[1];
+        twist.dtheta = m_chassis[2];
         if (DEBUG) {
             System.out.printf("twist x %.6f y %.6f theta %.6f\n", twist.dx, twist.dy, twist.dtheta);
         }
@@ -170,21 +204,65 @@ public class OdometryUpdater {
     }
 
     /** Replay odometry after the sample time. */
-    void replay(double timestamp) {
-        // Note the exclusive tailmap: we don't see the entry at timestamp.
-        for (Map.Entry<Double, InterpolationRecord> entry : m_history.exclusiveTailMap(timestamp).entrySet()) {
-            double entryTimestampS = entry.getKey();
-            InterpolationRecord value = entry.getValue();
-
-            // this is what the gyro must have been given the pose and offset
-            // note that stale gyro offsets never occur, because the gyro offset is
-            // reset at the same time the buffer is emptied.
-            Rotation2d entryGyroAngle = value.m_state.pose().getRotation().minus(m_gyroOffset);
-            double entryGyroRate = value.m_state.theta().v();
-            SwerveModulePositions wheelPositions = value.m_wheelPositions;
-
-            put(entryTimestampS, entryGyroAngle, entryGyroRate, wheelPositions);
+    synchronized void replay(double timestamp) {
+        replay(timestamp, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Replay odometry after the sample time, up to and including the first entry
+     * at or after the end time, so that the history can be sampled (i.e.
+     * interpolated) anywhere up to the end time.
+     */
+    synchronized void replay(double timestamp, double endTimestamp) {
+        // Note the exclusive start: we don't see the entry at timestamp.
+        // The cursor is the timestamp, not the index, so it stays correct even
+        // if replaying an entry moves the others around.
+        double entryTimestampS = timestamp;
+        while (true) {
+            int i = m_history.higherIndex(entryTimestampS);
+            if (i >= m_history.size())
+                return;
+            entryTimestampS = m_history.timeAt(i);
+            replayEntry(entryTimestampS, m_history.valueAt(i));
+            if (entryTimestampS >= endTimestamp)
+                return;
         }
     }
 
+    /**
+     * Same result as replay(), without integrating every later entry.
+     * 
+     * Replay takes the rotation of each entry from the gyro, not from the
+     * previous entry, so a nudge at the sample time can only change the first
+     * replayed step. After that, each step is the same twist from the same
+     * rotation as before, just starting somewhere else, so the rest of the
+     * history simply moves by the same translation as the first entry.
+     */
+    synchronized void shift(double timestamp) {
+        int next = m_history.higherIndex(timestamp);
+        if (next >= m_history.size())
+            return;
+        double nextS = m_history.timeAt(next);
+        InterpolationRecord value = m_history.valueAt(next);
+        Pose2d before = value.m_state.pose();
+        replayEntry(nextS, value);
+        Pose2d after = m_history.getRecord(nextS).m_state.pose();
+        m_history.translateAfter(
+                nextS,
+                after.getX() - before.getX(),
+                after.getY() - before.getY());
+    }
+
+    /** Put the entry again, based on the (possibly different) one before it. */
+    private void replayEntry(double entryTimestampS, InterpolationRecord value) {
+        // this is what the gyro must have been given the pose and offset
+        // note that stale gyro offsets never occur, because the gyro offset is
+        // reset at the same time the buffer is emptied.
+        Rotation2d entryGyroAngle = value.m_state.pose().getRotation().minus(m_gyroOffset);
+        double entryGyroRate = value.m_state.theta().v();
+        SwerveModulePositions wheelPositions = value.m_wheelPositions;
+
+        put(entryTimestampS, entryGyroAngle, entryGyroRate, wheelPositions);
+    }
+
 }
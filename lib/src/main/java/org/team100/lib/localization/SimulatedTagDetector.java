@@ -1,27 +1,29 @@
 package org.team100.lib.localization;
 
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
 import java.util.Random;
 import java.util.function.DoubleFunction;
 
 import org.team100.lib.coherence.Takt;
 import org.team100.lib.config.Camera;
+import org.team100.lib.framework.HeadlessSim;
+import org.team100.lib.network.CameraReader;
 import org.team100.lib.state.ModelR3;
 
 import edu.wpi.first.math.Vector;
 import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Pose3d;
+import edu.wpi.first.math.geometry.Quaternion;
 import edu.wpi.first.math.geometry.Rotation3d;
 import edu.wpi.first.math.geometry.Transform3d;
 import edu.wpi.first.math.geometry.Translation3d;
 import edu.wpi.first.math.numbers.N3;
 import edu.wpi.first.networktables.NetworkTableInstance;
 import edu.wpi.first.networktables.NetworkTablesJNI;
-import edu.wpi.first.networktables.StructArrayPublisher;
+import edu.wpi.first.networktables.RawPublisher;
 import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj.DriverStation.Alliance;
 import edu.wpi.first.wpilibj.RobotBase;
@@ -29,6 +31,14 @@ import edu.wpi.first.wpilibj.RobotBase;
 /**
  * Publishes AprilTag Blip24 sightings on Network Tables, just like real
  * cameras would.
+ * 
+ * This runs every cycle in simulation, for every camera, so it doesn't make
+ * any objects: the camera poses are computed from primitives, and
+ * TagIndex.blips() writes the serialized Blip24 array directly into a reused
+ * buffer, which is published as raw bytes.
+ * 
+ * With a sink (e.g. the AprilTagRobotLocalizer, in HeadlessSim), the buffer
+ * goes straight to the reader, skipping Network Tables entirely.
  */
 public class SimulatedTagDetector {
     private static final boolean DEBUG = false;
@@ -43,7 +53,6 @@ public class SimulatedTagDetector {
     // https://docs.google.com/spreadsheets/d/1x2_58wyVb5e9HJW8WgakgYcOXgPaJe0yTIHew206M-M
     private static final double HFOV = 0.8;
     private static final double VFOV = 0.6;
-    private static final int TAG_COUNT = 22;
     // past about 80 degrees, you can't see the tag.
     private static final double OBLIQUE_LIMIT_RAD = 1.4;
     // camera frame is from 85 ms ago, more or less
@@ -53,13 +62,33 @@ public class SimulatedTagDetector {
     private final List<Camera> m_cameras;
     private final AprilTagFieldLayoutWithCorrectOrientation m_layout;
     private final DoubleFunction<ModelR3> m_history;
+    /** Receives the blips directly, or null to use Network Tables. */
+    private final CameraReader<Blip24> m_sink;
 
-    private final Map<Camera, StructArrayPublisher<Blip24>> m_publishers;
-    /** client instance, not the default */
+    /** Camera offsets, robot-to-camera, for the sink. */
+    private final Transform3d[] m_offsets;
+    /** Camera offset translations, robot coordinates. */
+    private final double[] m_tx;
+    private final double[] m_ty;
+    private final double[] m_tz;
+    /** Camera offset rotations, robot coordinates. */
+    private final double[] m_qw;
+    private final double[] m_qx;
+    private final double[] m_qy;
+    private final double[] m_qz;
+
+    /** One per camera, or null with a sink. */
+    private final RawPublisher[] m_publishers;
+    /** client instance, not the default, except in HeadlessSim */
     private final NetworkTableInstance m_inst;
     private final Random m_rand;
+    /** Scratch for the tag index query. */
+    private final int[] m_visible;
+    /** Serialized Blip24 array for one camera, reused. */
+    private final ByteBuffer m_bb;
 
     /**
+     * Publish on Network Tables.
      * 
      * @param cameras
      * @param layout
@@ -69,26 +98,85 @@ public class SimulatedTagDetector {
             List<Camera> cameras,
             AprilTagFieldLayoutWithCorrectOrientation layout,
             DoubleFunction<ModelR3> history) {
+        this(cameras, layout, history, null);
+    }
+
+    /**
+     * @param cameras
+     * @param layout
+     * @param history pose history by timestamp (sec)
+     * @param sink    receives the blips directly, or null to use Network Tables
+     */
+    public SimulatedTagDetector(
+            List<Camera> cameras,
+            AprilTagFieldLayoutWithCorrectOrientation layout,
+            DoubleFunction<ModelR3> history,
+            CameraReader<Blip24> sink) {
         m_cameras = cameras;
         m_layout = layout;
         m_history = history;
-        m_publishers = new HashMap<>();
-        m_inst = NetworkTableInstance.create();
-        // this is a client just like the camera is a client.
-        m_inst.startClient4("SimulatedTagDetector");
-        m_inst.setServer("localhost");
-        m_rand = new Random();
-        for (Camera camera : m_cameras) {
+        m_sink = sink;
+        int n = cameras.size();
+        m_offsets = new Transform3d[n];
+        m_tx = new double[n];
+        m_ty = new double[n];
+        m_tz = new double[n];
+        m_qw = new double[n];
+        m_qx = new double[n];
+        m_qy = new double[n];
+        m_qz = new double[n];
+        for (int i = 0; i < n; ++i) {
+            Transform3d offset = cameras.get(i).getOffset();
+            m_offsets[i] = offset;
+            m_tx[i] = offset.getX();
+            m_ty[i] = offset.getY();
+            m_tz[i] = offset.getZ();
+            Quaternion q = offset.getRotation().getQuaternion();
+            m_qw[i] = q.getW();
+            m_qx[i] = q.getX();
+            m_qy[i] = q.getY();
+            m_qz[i] = q.getZ();
+        }
+        m_rand = HeadlessSim.random();
+        m_visible = new int[Math.max(
+                layout.getIndex(Alliance.Blue).size(),
+                layout.getIndex(Alliance.Red).size())];
+        m_bb = ByteBuffer.allocate(m_visible.length * Blip24.struct.getSize())
+                .order(ByteOrder.LITTLE_ENDIAN);
+        if (sink != null) {
+            m_inst = null;
+            m_publishers = null;
+            return;
+        }
+        if (HeadlessSim.active()) {
+            // No network in between, so the blips arrive in the same cycle,
+            // regardless of how fast the simulation runs.
+            m_inst = NetworkTableInstance.getDefault();
+        } else {
+            m_inst = NetworkTableInstance.create();
+            // this is a client just like the camera is a client.
+            m_inst.startClient4("SimulatedTagDetector");
+            m_inst.setServer("localhost");
+        }
+        // The raw publisher doesn't publish the schema by itself.
+        m_inst.addSchema(Blip24.struct);
+        String typeString = Blip24.struct.getTypeString() + "[]";
+        m_publishers = new RawPublisher[n];
+        for (int i = 0; i < n; ++i) {
             // see tag_detector.py
-            String name = "vision/" + camera.getSerial() + "/0/blips";
-            m_publishers.put(
-                    camera,
-                    m_inst.getStructArrayTopic(
-                            name, Blip24.struct).publish());
+            String name = "vision/" + cameras.get(i).getSerial() + "/0/blips";
+            m_publishers[i] = m_inst.getRawTopic(name).publish(typeString);
         }
     }
 
-    public static Runnable get(AprilTagFieldLayoutWithCorrectOrientation layout, SwerveHistory history) {
+    /**
+     * @param localizer in HeadlessSim, the blips go directly here, instead of
+     *                  through Network Tables.
+     */
+    public static Runnable get(
+            AprilTagFieldLayoutWithCorrectOrientation layout,
+            SwerveHistory history,
+            CameraReader<Blip24> localizer) {
         if (RobotBase.isReal()) {
             // Real robots get an empty simulated tag detector.
             return () -> {
@@ -103,7 +191,8 @@ public class SimulatedTagDetector {
                             Camera.CORAL_LEFT,
                             Camera.CORAL_RIGHT),
                     layout,
-                    history);
+                    history,
+                    HeadlessSim.active() ? localizer : null);
             return sim::periodic;
         }
     }
@@ -114,80 +203,72 @@ public class SimulatedTagDetector {
         Optional<Alliance> opt = DriverStation.getAlliance();
         if (opt.isEmpty())
             return;
+        Alliance alliance = opt.get();
+        // The index rejects invisible tags cheaply.
+        TagIndex index = m_layout.getIndex(alliance);
 
         // fetch the pose from a little while ago
         double actualDelay = MEAN_DELAY + m_rand.nextGaussian() * STDEV_DELAY;
         double timestampS = Takt.get() - actualDelay;
         Pose2d pose = m_history.apply(timestampS).pose();
 
-        Pose3d robotPose3d = new Pose3d(pose);
+        double x = pose.getX();
+        double y = pose.getY();
+        double theta = pose.getRotation().getRadians();
+        double cos = Math.cos(theta);
+        double sin = Math.sin(theta);
+        // robot rotation quaternion is (c, 0, 0, s)
+        double c = Math.cos(theta / 2);
+        double s = Math.sin(theta / 2);
         if (DEBUG) {
-            System.out.printf("robot pose X %6.2f Y %6.2f Z %6.2f R %6.2f P %6.2f Y %6.2f \n",
-                    robotPose3d.getTranslation().getX(), robotPose3d.getTranslation().getY(),
-                    robotPose3d.getTranslation().getZ(), robotPose3d.getRotation().getX(),
-                    robotPose3d.getRotation().getY(), robotPose3d.getRotation().getZ());
+            System.out.printf("robot pose X %6.2f Y %6.2f R %6.2f\n", x, y, theta);
         }
-        for (Map.Entry<Camera, StructArrayPublisher<Blip24>> entry : m_publishers.entrySet()) {
-            Camera camera = entry.getKey();
-            StructArrayPublisher<Blip24> publisher = entry.getValue();
-
-            List<Blip24> blips = new ArrayList<>();
-            Transform3d cameraOffset = camera.getOffset();
-            Pose3d cameraPose3d = robotPose3d.plus(cameraOffset);
-            Alliance alliance = opt.get();
 
-            for (int tagId = 1; tagId <= TAG_COUNT; ++tagId) {
-                if (DEBUG) {
-                    System.out.printf("alliance %s camera %12s ", alliance.name(), camera.name());
-                }
-                Pose3d tagPose = m_layout.getTagPose(alliance, tagId).get();
-                if (DEBUG) {
-                    System.out.printf("tag id: %2d tag pose: X %6.2f Y %6.2f Z %6.2f R %6.2f P %6.2f Y %6.2f ",
-                            tagId, tagPose.getTranslation().getX(), tagPose.getTranslation().getY(),
-                            tagPose.getTranslation().getZ(), tagPose.getRotation().getX(), tagPose.getRotation().getY(),
-                            tagPose.getRotation().getZ());
-                }
-                Transform3d tagInCamera = tagInCamera(cameraPose3d, tagPose);
-                if (visible(tagInCamera)) {
-                    // publish it
-                    if (DEBUG) {
-
-                        System.out.print("VISIBLE ");
-                    }
-                    blips.add(Blip24.fromXForward(tagId, tagInCamera));
-                } else {
-                    // ignore it
-                    if (DEBUG) {
+        // publish with a timestamp matching the pose above
+        double sinkTimestampS = 0;
+        long timestampUs = 0;
+        if (m_sink != null) {
+            // The sink reads the FPGA clock, just like the history, so there's
+            // no need for the Network Tables clock at all.
+            sinkTimestampS = Takt.actual() - actualDelay;
+        } else {
+            long delayUs = (long) (actualDelay * 1000000);
+            timestampUs = NetworkTablesJNI.now() - delayUs;
+        }
 
-                        System.out.print(" . ");
-                    }
-                }
-                if (DEBUG) {
-                    System.out.printf("camera: X %6.2f Y %6.2f Z %6.2f R %6.2f P %6.2f Y %6.2f",
-                            cameraOffset.getTranslation().getX(), cameraOffset.getTranslation().getY(),
-                            cameraOffset.getTranslation().getZ(), cameraOffset.getRotation().getX(),
-                            cameraOffset.getRotation().getY(), cameraOffset.getRotation().getZ());
-                    Translation3d tagTranslationInCamera = tagInCamera.getTranslation();
-                    Rotation3d tagRotationInCamera = tagInCamera.getRotation();
-                    System.out.printf(" tag in camera: X %6.2f Y %6.2f Z %6.2f  R %6.2f P %6.2f Y %6.2f\n",
-                            tagTranslationInCamera.getX(), tagTranslationInCamera.getY(),
-                            tagTranslationInCamera.getZ(), tagRotationInCamera.getX(), tagRotationInCamera.getY(),
-                            tagRotationInCamera.getZ());
-                }
+        for (int i = 0; i < m_tx.length; ++i) {
+            // camera pose in field coordinates, i.e. robot pose plus camera
+            // offset, see Pose3d.transformBy().
+            double cx = x + cos * m_tx[i] - sin * m_ty[i];
+            double cy = y + sin * m_tx[i] + cos * m_ty[i];
+            double cz = m_tz[i];
+            double cqw = c * m_qw[i] - s * m_qz[i];
+            double cqx = c * m_qx[i] - s * m_qy[i];
+            double cqy = c * m_qy[i] + s * m_qx[i];
+            double cqz = c * m_qz[i] + s * m_qw[i];
 
+            m_bb.clear();
+            int count = index.blips(
+                    cx, cy, cz, cqw, cqx, cqy, cqz,
+                    HFOV, VFOV, OBLIQUE_LIMIT_RAD, m_visible, m_bb);
+            m_bb.flip();
+            if (DEBUG) {
+                System.out.printf("alliance %s camera %12s visible %d\n",
+                        alliance.name(), m_cameras.get(i).name(), count);
             }
-
-            // publish whatever we saw
-            // with a timestamp matching the pose above
-            long delayUs = (long) actualDelay * 1000000;
-            long timestampUs = NetworkTablesJNI.now();
-            publisher.set(
-                    blips.toArray(new Blip24[0]), timestampUs - delayUs);
             if (PUBLISH_DEBUG) {
-                System.out.printf("%s\n", blips);
+                Blip24View view = new Blip24View();
+                for (int j = 0; j < count; ++j) {
+                    System.out.printf("%s\n", view.at(m_bb, j).toBlip24());
+                }
+            }
+            if (m_sink != null) {
+                m_sink.offer(m_offsets[i], sinkTimestampS, m_bb, count);
+            } else {
+                // publish whatever we saw, even if it's nothing.
+                m_publishers[i].set(m_bb.array(), 0, m_bb.limit(), timestampUs);
             }
         }
-
     }
 
     /** Return the transform from the camera pose to the tag pose. */
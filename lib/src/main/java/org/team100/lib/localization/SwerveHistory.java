@@ -1,10 +1,9 @@
 package org.team100.lib.localization;
 
-import java.util.Map.Entry;
-import java.util.SortedMap;
 import java.util.function.DoubleFunction;
 
 import org.team100.lib.geometry.GlobalVelocityR3;
+import org.team100.lib.motion.swerve.kinodynamics.SwerveDriveKinematics100;
 import org.team100.lib.motion.swerve.kinodynamics.SwerveKinodynamics;
 import org.team100.lib.motion.swerve.module.state.SwerveModulePositions;
 import org.team100.lib.state.ModelR3;
@@ -36,7 +35,7 @@ public class SwerveHistory implements DoubleFunction<ModelR3> {
      */
     private static final double BUFFER_DURATION = 0.2;
 
-    private final SwerveKinodynamics m_kinodynamics;
+    private final SwerveDriveKinematics100 m_kinematics;
     private final TimeInterpolatableBuffer100<InterpolationRecord> m_poseBuffer;
 
     public SwerveHistory(
@@ -45,12 +44,12 @@ public class SwerveHistory implements DoubleFunction<ModelR3> {
             SwerveModulePositions modulePositions,
             Pose2d initialPoseMeters,
             double timestampSeconds) {
-        m_kinodynamics = kinodynamics;
+        m_kinematics = kinodynamics.getKinematics();
         m_poseBuffer = new TimeInterpolatableBuffer100<>(
                 BUFFER_DURATION,
                 timestampSeconds,
                 new InterpolationRecord(
-                        m_kinodynamics.getKinematics(),
+                        m_kinematics,
                         new ModelR3(
                                 initialPoseMeters,
                                 new GlobalVelocityR3(0, 0, 0)),
@@ -74,7 +73,7 @@ public class SwerveHistory implements DoubleFunction<ModelR3> {
         m_poseBuffer.reset(
                 timestampSeconds,
                 new InterpolationRecord(
-                        m_kinodynamics.getKinematics(),
+                        m_kinematics,
                         new ModelR3(pose, new GlobalVelocityR3(0, 0, 0)),
                         modulePositions));
     }
@@ -92,13 +91,32 @@ public class SwerveHistory implements DoubleFunction<ModelR3> {
         m_poseBuffer.put(
                 timestamp,
                 new InterpolationRecord(
-                        m_kinodynamics.getKinematics(),
+                        m_kinematics,
                         model,
                         positions));
     }
 
-    Entry<Double, InterpolationRecord> lowerEntry(double timestamp) {
-        return m_poseBuffer.lowerEntry(timestamp);
+    /** Index of the newest entry before the timestamp, or -1. */
+    int lowerIndex(double timestamp) {
+        return m_poseBuffer.lowerIndex(timestamp);
+    }
+
+    /** Index of the oldest entry after the timestamp, or size(). */
+    int higherIndex(double timestamp) {
+        return m_poseBuffer.higherIndex(timestamp);
+    }
+
+    double timeAt(int index) {
+        return m_poseBuffer.timeAt(index);
+    }
+
+    InterpolationRecord valueAt(int index) {
+        return m_poseBuffer.valueAt(index);
+    }
+
+    /** Move every entry after the timestamp by the given translation. */
+    void translateAfter(double timestamp, double dx, double dy) {
+        m_poseBuffer.replaceAfter(timestamp, r -> r.translate(dx, dy));
     }
 
     InterpolationRecord getRecord(double timestamp) {
@@ -109,10 +127,6 @@ public class SwerveHistory implements DoubleFunction<ModelR3> {
         return m_poseBuffer.tooOld(timestamp);
     }
 
-    SortedMap<Double, InterpolationRecord> exclusiveTailMap(double timestamp) {
-        return m_poseBuffer.tailMap(timestamp, false);
-    }
-
     int size() {
         return m_poseBuffer.size();
     }
@@ -0,0 +1,297 @@
+package org.team100.lib.localization;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Optional;
+
+import edu.wpi.first.math.geometry.Pose3d;
+import edu.wpi.first.math.geometry.Quaternion;
+import edu.wpi.first.math.geometry.Translation3d;
+
+/**
+ * Tag poses for one alliance, precomputed, for spatial queries that don't make
+ * any Pose3d or Transform3d objects.
+ * 
+ * There are only a couple dozen tags, so a tree or grid isn't worth it; the
+ * tags are in flat arrays, in id order, with an extra ordering by x, so the
+ * radius query only looks at the tags in the x range of the circle. The frustum
+ * query uses primitive math to reject tags before anyone computes a
+ * transform.
+ * 
+ * Queries write tag ids into a caller-supplied array, and return the count, so
+ * they don't allocate either.
+ * 
+ * blips() goes one step further, for the simulated cameras: it writes each
+ * visible tag's pose in the camera frame straight into a serialized Blip24
+ * array, so the simulation doesn't make any objects per tag either.
+ */
+public class TagIndex {
+    private final Pose3d[] m_poses;
+    private final int[] m_ids;
+    private final double[] m_x;
+    private final double[] m_y;
+    private final double[] m_z;
+    /** Tag normal (x axis, pointing into the tag) in field coordinates. */
+    private final double[] m_nx;
+    private final double[] m_ny;
+    private final double[] m_nz;
+    /** Tag orientation quaternion in field coordinates. */
+    private final double[] m_qw;
+    private final double[] m_qx;
+    private final double[] m_qy;
+    private final double[] m_qz;
+    /** Tag pose by id, null if absent. */
+    private final Pose3d[] m_byId;
+    /** Indices into the arrays above, sorted by x. */
+    private final int[] m_byX;
+    /** x, sorted. */
+    private final double[] m_sortedX;
+
+    /** @param poses tag poses by id, with correct orientation. */
+    TagIndex(Map<Integer, Pose3d> poses) {
+        Integer[] ids = poses.keySet().toArray(new Integer[0]);
+        Arrays.sort(ids);
+        int n = ids.length;
+        m_poses = new Pose3d[n];
+        m_ids = new int[n];
+        m_x = new double[n];
+        m_y = new double[n];
+        m_z = new double[n];
+        m_nx = new double[n];
+        m_ny = new double[n];
+        m_nz = new double[n];
+        m_qw = new double[n];
+        m_qx = new double[n];
+        m_qy = new double[n];
+        m_qz = new double[n];
+        int maxId = 0;
+        for (int i = 0; i < n; ++i) {
+            Pose3d pose = poses.get(ids[i]);
+            Translation3d normal = new Translation3d(1, 0, 0).rotateBy(pose.getRotation());
+            m_poses[i] = pose;
+            m_ids[i] = ids[i];
+            m_x[i] = pose.getX();
+            m_y[i] = pose.getY();
+            m_z[i] = pose.getZ();
+            m_nx[i] = normal.getX();
+            m_ny[i] = normal.getY();
+            m_nz[i] = normal.getZ();
+            Quaternion q = pose.getRotation().getQuaternion();
+            m_qw[i] = q.getW();
+            m_qx[i] = q.getX();
+            m_qy[i] = q.getY();
+            m_qz[i] = q.getZ();
+            maxId = Math.max(maxId, ids[i]);
+        }
+        m_byId = new Pose3d[maxId + 1];
+        for (int i = 0; i < n; ++i) {
+            m_byId[m_ids[i]] = m_poses[i];
+        }
+        Integer[] byX = new Integer[n];
+        for (int i = 0; i < n; ++i) {
+            byX[i] = i;
+        }
+        Arrays.sort(byX, Comparator.comparingDouble(i -> m_x[i]));
+        m_byX = new int[n];
+        m_sortedX = new double[n];
+        for (int i = 0; i < n; ++i) {
+            m_byX[i] = byX[i];
+            m_sortedX[i] = m_x[byX[i]];
+        }
+    }
+
+    /** Number of tags. */
+    public int size() {
+        return m_ids.length;
+    }
+
+    public Optional<Pose3d> getTagPose(int id) {
+        if (id < 0 || id >= m_byId.length)
+            return Optional.empty();
+        return Optional.ofNullable(m_byId[id]);
+    }
+
+    /**
+     * Tags within the radius of the point, in x order.
+     * 
+     * @param out tag ids, should be at least size() long
+     * @return the number of tags found
+     */
+    public int within(double x, double y, double z, double radiusM, int[] out) {
+        double r2 = radiusM * radiusM;
+        int count = 0;
+        for (int j = lowerBound(x - radiusM); j < m_sortedX.length && m_sortedX[j] <= x + radiusM; ++j) {
+            int i = m_byX[j];
+            double dx = m_x[i] - x;
+            double dy = m_y[i] - y;
+            double dz = m_z[i] - z;
+            if (dx * dx + dy * dy + dz * dz <= r2)
+                out[count++] = m_ids[i];
+        }
+        return count;
+    }
+
+    /**
+     * Tags a camera can see: in front of it, within the field of view, and facing
+     * it, in id order. This is the same test as SimulatedTagDetector.visible().
+     * 
+     * @param camera          camera pose in field coordinates, x forward
+     * @param hfov            horizontal extent of normalized image coordinates
+     * @param vfov            vertical extent of normalized image coordinates
+     * @param obliqueLimitRad maximum angle between the tag normal and the line of
+     *                        sight
+     * @param out             tag ids, should be at least size() long
+     * @return the number of tags found
+     */
+    public int visible(
+            Pose3d camera,
+            double hfov,
+            double vfov,
+            double obliqueLimitRad,
+            int[] out) {
+        Quaternion q = camera.getRotation().getQuaternion();
+        int count = cull(
+                camera.getX(), camera.getY(), camera.getZ(),
+                q.getW(), q.getX(), q.getY(), q.getZ(),
+                hfov, vfov, obliqueLimitRad, out);
+        for (int j = 0; j < count; ++j) {
+            out[j] = m_ids[out[j]];
+        }
+        return count;
+    }
+
+    /**
+     * Same as visible(), but for each visible tag, writes a Blip24 to the buffer,
+     * i.e. the tag pose relative to the camera, in the camera's z-forward frame,
+     * like Blip24.fromXForward(id, new Transform3d(camera, tag)) does, laid out
+     * like Blip24Struct.
+     * 
+     * The camera pose is given as primitives, so the caller doesn't need to make
+     * a Pose3d either.
+     * 
+     * @param scratch at least size() long
+     * @param out     little-endian, with room for size() blips; written from
+     *                its current position
+     * @return the number of blips written
+     */
+    public int blips(
+            double cx,
+            double cy,
+            double cz,
+            double cqw,
+            double cqx,
+            double cqy,
+            double cqz,
+            double hfov,
+            double vfov,
+            double obliqueLimitRad,
+            int[] scratch,
+            ByteBuffer out) {
+        int count = cull(cx, cy, cz, cqw, cqx, cqy, cqz, hfov, vfov, obliqueLimitRad, scratch);
+        for (int j = 0; j < count; ++j) {
+            int i = scratch[j];
+            // line of sight, camera coordinates, x forward, which is the
+            // translation of the tag relative to the camera.
+            double dx = m_x[i] - cx;
+            double dy = m_y[i] - cy;
+            double dz = m_z[i] - cz;
+            double px = (1 - 2 * (cqy * cqy + cqz * cqz)) * dx
+                    + 2 * (cqx * cqy + cqz * cqw) * dy
+                    + 2 * (cqx * cqz - cqy * cqw) * dz;
+            double py = 2 * (cqx * cqy - cqz * cqw) * dx
+                    + (1 - 2 * (cqx * cqx + cqz * cqz)) * dy
+                    + 2 * (cqy * cqz + cqx * cqw) * dz;
+            double pz = 2 * (cqx * cqz + cqy * cqw) * dx
+                    + 2 * (cqy * cqz - cqx * cqw) * dy
+                    + (1 - 2 * (cqx * cqx + cqy * cqy)) * dz;
+            // rotation relative to the camera: conj(camera) * tag
+            double tw = m_qw[i];
+            double tx = m_qx[i];
+            double ty = m_qy[i];
+            double tz = m_qz[i];
+            double rw = cqw * tw + cqx * tx + cqy * ty + cqz * tz;
+            double rx = cqw * tx - cqx * tw - cqy * tz + cqz * ty;
+            double ry = cqw * ty + cqx * tz - cqy * tw - cqz * tx;
+            double rz = cqw * tz - cqx * ty + cqy * tx - cqz * tw;
+            // x forward to z forward, see GeometryUtil.xForwardToZForward()
+            out.putInt(m_ids[i]);
+            out.putDouble(-py);
+            out.putDouble(-pz);
+            out.putDouble(px);
+            out.putDouble(rw);
+            out.putDouble(-ry);
+            out.putDouble(-rz);
+            out.putDouble(rx);
+        }
+        return count;
+    }
+
+    ///////////////////////////////////////
+
+    /**
+     * The frustum and facing test for visible() and blips(). Writes the indices
+     * (not the ids) of the visible tags, in id order.
+     */
+    private int cull(
+            double cx,
+            double cy,
+            double cz,
+            double w,
+            double qx,
+            double qy,
+            double qz,
+            double hfov,
+            double vfov,
+            double obliqueLimitRad,
+            int[] out) {
+        // Camera-to-field rotation matrix; we use its transpose.
+        double r00 = 1 - 2 * (qy * qy + qz * qz);
+        double r01 = 2 * (qx * qy - qz * w);
+        double r02 = 2 * (qx * qz + qy * w);
+        double r10 = 2 * (qx * qy + qz * w);
+        double r11 = 1 - 2 * (qx * qx + qz * qz);
+        double r12 = 2 * (qy * qz - qx * w);
+        double r20 = 2 * (qx * qz - qy * w);
+        double r21 = 2 * (qy * qz + qx * w);
+        double r22 = 1 - 2 * (qx * qx + qy * qy);
+        double cosLimit = Math.cos(obliqueLimitRad);
+        int count = 0;
+        for (int i = 0; i < m_ids.length; ++i) {
+            // line of sight, field coordinates
+            double dx = m_x[i] - cx;
+            double dy = m_y[i] - cy;
+            double dz = m_z[i] - cz;
+            // line of sight, camera coordinates
+            double px = r00 * dx + r10 * dy + r20 * dz;
+            if (px < 0)
+                continue;
+            double py = r01 * dx + r11 * dy + r21 * dz;
+            double pz = r02 * dx + r12 * dy + r22 * dz;
+            if (Math.abs(py / px) >= hfov || Math.abs(pz / px) >= vfov)
+                continue;
+            // The angle is the same in any frame, so use the field frame.
+            double dot = dx * m_nx[i] + dy * m_ny[i] + dz * m_nz[i];
+            double norm = Math.sqrt(dx * dx + dy * dy + dz * dz);
+            if (dot < cosLimit * norm)
+                continue;
+            out[count++] = i;
+        }
+        return count;
+    }
+
+    /** Position in x order of the first tag with x at least the given value. */
+    private int lowerBound(double x) {
+        int lo = 0;
+        int hi = m_sortedX.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (m_sortedX[mid] < x)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+}
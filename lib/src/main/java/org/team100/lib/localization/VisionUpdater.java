@@ -1,10 +1,20 @@
 package org.team100.lib.localization;
 
+import java.util.List;
+
 import edu.wpi.first.math.geometry.Pose2d;
 
 /** For testing. */
 public interface VisionUpdater {
 
+    /** The arguments to put(), for putAll(). */
+    record Measurement(
+            double timestampS,
+            Pose2d pose,
+            double[] stateSigma,
+            double[] visionSigma) {
+    }
+
     /**
      * Put a new state estimate based on the supplied pose. If not current,
      * subsequent wheel updates are replayed.
@@ -15,4 +25,15 @@ public interface VisionUpdater {
             double[] stateSigma,
             double[] visionSigma);
 
-}
\ No newline at end of file
+    /**
+     * Put several measurements, which should be in time order. The result should
+     * be the same as calling put() for each one; implementations that replay
+     * should override this to replay only once.
+     */
+    default void putAll(List<Measurement> measurements) {
+        for (Measurement m : measurements) {
+            put(m.timestampS(), m.pose(), m.stateSigma(), m.visionSigma());
+        }
+    }
+
+}
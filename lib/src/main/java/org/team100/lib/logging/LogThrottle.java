@@ -0,0 +1,121 @@
+package org.team100.lib.logging;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.team100.lib.coherence.Takt;
+
+/**
+ * Reduces the volume of logging, shared by a tree of LoggerFactories.
+ * 
+ * There are two mechanisms:
+ * 
+ * * Rate: each Level has a publishing period. In the first cycle of each
+ * period, everything at that Level is published; in the other cycles, nothing
+ * is, not even the suppliers are called. Since the whole Level is on or off for
+ * the whole cycle, composite values (e.g. a Pose2d) are always published
+ * together.
+ * * Change: the primitive loggers remember the last value, and skip publishing
+ * if the new one is bit-identical, except once per refresh period, so that a
+ * receiver that starts late still gets everything.
+ * 
+ * Everything uses Takt time, so the cycles are the robot loop cycles.
+ * 
+ * By default, every Level is published every cycle, since a slower rate drops
+ * one-shot events; use setPeriod() to slow down a Level.
+ * 
+ * Loggers are called from other threads too, e.g. the OdometryThread, so the
+ * period state is guarded by this, and the counters are atomic. The
+ * every-cycle levels don't touch the period state, so they don't lock.
+ * 
+ * The counters are for figuring out how much all this is saving.
+ */
+public class LogThrottle {
+    /** Unchanged values are published at least this often. */
+    private static final double REFRESH_S = 1.0;
+    /** Takt time is microseconds, so the period arithmetic is a little fuzzy. */
+    private static final double EPSILON = 1e-6;
+
+    /** Read without the lock, so that every-cycle levels don't need it. */
+    private final double[] m_periodS;
+    /** Start of the current period, for each level, guarded by this. */
+    private final double[] m_periodStartS;
+    /** The Takt time when the current period was published, guarded by this. */
+    private final double[] m_publishS;
+
+    private final AtomicLong m_rateSuppressed = new AtomicLong();
+    private final AtomicLong m_duplicateSuppressed = new AtomicLong();
+    private final AtomicLong m_published = new AtomicLong();
+
+    /** Every Level every cycle. */
+    public LogThrottle() {
+        m_periodS = new double[Level.values().length];
+        m_periodStartS = new double[Level.values().length];
+        m_publishS = new double[Level.values().length];
+        setPeriod(Level.COMP, 0);
+        setPeriod(Level.DEBUG, 0);
+        setPeriod(Level.TRACE, 0);
+    }
+
+    /**
+     * Zero means every cycle. Call this at startup, before anything logs, e.g.
+     * TRACE at 0.2 for 5 Hz.
+     */
+    public synchronized void setPeriod(Level level, double periodS) {
+        m_periodS[level.ordinal()] = periodS;
+        // start over
+        m_periodStartS[level.ordinal()] = Double.NEGATIVE_INFINITY;
+        m_publishS[level.ordinal()] = Double.NaN;
+    }
+
+    /** Calls skipped because of the Level's rate. */
+    public long getRateSuppressed() {
+        return m_rateSuppressed.get();
+    }
+
+    /** Primitive writes skipped because the value didn't change. */
+    public long getDuplicateSuppressed() {
+        return m_duplicateSuppressed.get();
+    }
+
+    /** Primitive writes actually done. */
+    public long getPublished() {
+        return m_published.get();
+    }
+
+    ///////////////////////////////////////////////
+
+    /** True if the level should be published in this cycle. */
+    boolean due(Level level) {
+        int i = level.ordinal();
+        double periodS = m_periodS[i];
+        if (periodS <= 0)
+            return true;
+        double now = Takt.get();
+        synchronized (this) {
+            if (now == m_publishS[i])
+                return true;
+            if (now - m_periodStartS[i] >= periodS - EPSILON) {
+                // Avoid drifting, unless we're way behind.
+                double next = m_periodStartS[i] + periodS;
+                m_periodStartS[i] = now - next < periodS ? next : now;
+                m_publishS[i] = now;
+                return true;
+            }
+        }
+        m_rateSuppressed.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * True if a primitive logger should publish a value, given whether it
+     * changed, and the time of the last publication. Counts the outcome.
+     */
+    boolean publish(boolean changed, double lastS) {
+        if (changed || Takt.get() - lastS >= REFRESH_S - EPSILON) {
+            m_published.incrementAndGet();
+            return true;
+        }
+        m_duplicateSuppressed.incrementAndGet();
+        return false;
+    }
+}
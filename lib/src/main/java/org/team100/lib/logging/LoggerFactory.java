@@ -1,5 +1,7 @@
 package org.team100.lib.logging;
 
+import java.util.Arrays;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.OptionalDouble;
 import java.util.function.BooleanSupplier;
@@ -8,6 +10,7 @@ import java.util.function.IntSupplier;
 import java.util.function.LongSupplier;
 import java.util.function.Supplier;
 
+import org.team100.lib.coherence.Takt;
 import org.team100.lib.geometry.GlobalAccelerationR3;
 import org.team100.lib.geometry.GlobalDeltaR3;
 import org.team100.lib.geometry.GlobalVelocityR3;
@@ -51,21 +54,43 @@ import edu.wpi.first.math.trajectory.Trajectory.State;
  * container keep the root reference.
  * 
  * Don't use slashes in names, it confuses Glass.
+ * 
+ * The whole tree shares a LogThrottle, which limits the publishing rate of
+ * each Level, and skips publishing values that haven't changed.
+ * 
+ * Composite loggers (e.g. Pose2dLogger) check the Level once, call the
+ * supplier once, and then publish the parts directly, without making more
+ * suppliers.
+ * 
+ * Loggers may be used from any thread, e.g. the OdometryThread or the
+ * CacheGroup workers: the primitive loggers publish while holding their own
+ * lock, so the remembered last value always matches what was published. The
+ * parts of a composite logged from two threads at once may interleave.
  */
 public class LoggerFactory {
     private final Supplier<Level> m_level;
     private final String m_root;
     private final PrimitiveLogger m_pLogger;
+    private final LogThrottle m_throttle;
 
     public LoggerFactory(
             Supplier<Level> level,
             String root,
             PrimitiveLogger primitiveLogger) {
+        this(level, root, primitiveLogger, new LogThrottle());
+    }
+
+    public LoggerFactory(
+            Supplier<Level> level,
+            String root,
+            PrimitiveLogger primitiveLogger,
+            LogThrottle throttle) {
         if (root.startsWith("/"))
             throw new IllegalArgumentException("don't lead with a slash");
         m_level = level;
         m_root = root;
         m_pLogger = primitiveLogger;
+        m_throttle = throttle;
     }
 
     /**
@@ -75,7 +100,7 @@ public class LoggerFactory {
      * Each child level is separated by slashes, to make a tree in glass.
      */
     public LoggerFactory name(String stem) {
-        return new LoggerFactory(m_level, root(stem), m_pLogger);
+        return new LoggerFactory(m_level, root(stem), m_pLogger, m_throttle);
     }
 
     /**
@@ -91,6 +116,11 @@ public class LoggerFactory {
         return m_root;
     }
 
+    /** Shared by the whole tree. */
+    public LogThrottle getThrottle() {
+        return m_throttle;
+    }
+
     /** @return root/stem */
     public String root(String stem) {
         return m_root + "/" + stem;
@@ -100,16 +130,16 @@ public class LoggerFactory {
     public String join(String a, String b) {
         return a + "/" + b;
     }
-    
+
     //////////////////////////////////////////////////////
 
     private boolean allow(Level level) {
         Level allowed = m_level.get();
         if (allowed == Level.COMP && level == Level.COMP) {
             // comp mode allows COMP level regardless of enablement.
-            return true;
+            return m_throttle.due(level);
         }
-        return allowed.admit(level);
+        return allowed.admit(level) && m_throttle.due(level);
     }
 
     /////////////////////////////////////////////////////
@@ -120,6 +150,8 @@ public class LoggerFactory {
     public class BooleanLogger {
         private final Level m_level;
         private final PrimitiveLogger.PrimitiveBooleanLogger m_primitiveLogger;
+        private boolean m_last;
+        private double m_lastS = Double.NEGATIVE_INFINITY;
 
         BooleanLogger(Level level, String leaf) {
             m_level = level;
@@ -129,7 +161,14 @@ public class LoggerFactory {
         public void log(BooleanSupplier vals) {
             if (!allow(m_level))
                 return;
-            boolean val = vals.getAsBoolean();
+            publish(vals.getAsBoolean());
+        }
+
+        private synchronized void publish(boolean val) {
+            if (!m_throttle.publish(val != m_last, m_lastS))
+                return;
+            m_last = val;
+            m_lastS = Takt.get();
             m_primitiveLogger.log(val);
         }
     }
@@ -141,6 +180,8 @@ public class LoggerFactory {
     public class DoubleLogger {
         private final Level m_level;
         private final PrimitiveLogger.PrimitiveDoubleLogger m_primitiveLogger;
+        private long m_lastBits;
+        private double m_lastS = Double.NEGATIVE_INFINITY;
 
         DoubleLogger(Level level, String leaf) {
             m_level = level;
@@ -150,8 +191,17 @@ public class LoggerFactory {
         public void log(DoubleSupplier vals) {
             if (!allow(m_level))
                 return;
-            double val = vals.getAsDouble();
-            m_primitiveLogger.log(val);
+            publish(vals.getAsDouble());
+        }
+
+        /**
+         * For values that are already computed: a capturing lambda allocates on
+         * every call, this doesn't.
+         */
+        public void log(double val) {
+            if (!allow(m_level))
+                return;
+            publish(val);
         }
 
         public void log(Supplier<Double> vals) {
@@ -159,7 +209,16 @@ public class LoggerFactory {
                 return;
             Double val = vals.get();
             if (val != null)
-                m_primitiveLogger.log(val.doubleValue());
+                publish(val.doubleValue());
+        }
+
+        private synchronized void publish(double val) {
+            long bits = Double.doubleToRawLongBits(val);
+            if (!m_throttle.publish(bits != m_lastBits, m_lastS))
+                return;
+            m_lastBits = bits;
+            m_lastS = Takt.get();
+            m_primitiveLogger.log(val);
         }
     }
 
@@ -170,6 +229,8 @@ public class LoggerFactory {
     public class IntLogger {
         private final Level m_level;
         private final PrimitiveLogger.PrimitiveIntLogger m_primitiveLogger;
+        private int m_last;
+        private double m_lastS = Double.NEGATIVE_INFINITY;
 
         IntLogger(Level level, String leaf) {
             m_level = level;
@@ -179,7 +240,14 @@ public class LoggerFactory {
         public void log(IntSupplier vals) {
             if (!allow(m_level))
                 return;
-            int val = vals.getAsInt();
+            publish(vals.getAsInt());
+        }
+
+        private synchronized void publish(int val) {
+            if (!m_throttle.publish(val != m_last, m_lastS))
+                return;
+            m_last = val;
+            m_lastS = Takt.get();
             m_primitiveLogger.log(val);
         }
     }
@@ -191,6 +259,8 @@ public class LoggerFactory {
     public class DoubleArrayLogger {
         private final Level m_level;
         private final PrimitiveLogger.PrimitiveDoubleArrayLogger m_primitiveLogger;
+        private double[] m_last = new double[0];
+        private double m_lastS = Double.NEGATIVE_INFINITY;
 
         DoubleArrayLogger(Level level, String leaf) {
             m_level = level;
@@ -200,7 +270,19 @@ public class LoggerFactory {
         public void log(Supplier<double[]> vals) {
             if (!allow(m_level))
                 return;
-            double[] val = vals.get();
+            publish(vals.get());
+        }
+
+        private synchronized void publish(double[] val) {
+            if (!m_throttle.publish(!Arrays.equals(val, m_last), m_lastS))
+                return;
+            // keep a copy, since the caller might reuse the array.
+            if (m_last.length == val.length) {
+                System.arraycopy(val, 0, m_last, 0, val.length);
+            } else {
+                m_last = val.clone();
+            }
+            m_lastS = Takt.get();
             m_primitiveLogger.log(val);
         }
     }
@@ -212,6 +294,8 @@ public class LoggerFactory {
     public class LongLogger {
         private final Level m_level;
         private final PrimitiveLogger.PrimitiveLongLogger m_primitiveLogger;
+        private long m_last;
+        private double m_lastS = Double.NEGATIVE_INFINITY;
 
         LongLogger(Level level, String leaf) {
             m_level = level;
@@ -221,7 +305,14 @@ public class LoggerFactory {
         public void log(LongSupplier vals) {
             if (!allow(m_level))
                 return;
-            long val = vals.getAsLong();
+            publish(vals.getAsLong());
+        }
+
+        private synchronized void publish(long val) {
+            if (!m_throttle.publish(val != m_last, m_lastS))
+                return;
+            m_last = val;
+            m_lastS = Takt.get();
             m_primitiveLogger.log(val);
         }
     }
@@ -238,6 +329,8 @@ public class LoggerFactory {
     public class StringLogger {
         private final Level m_level;
         private final PrimitiveLogger.PrimitiveStringLogger m_primitiveLogger;
+        private String m_last;
+        private double m_lastS = Double.NEGATIVE_INFINITY;
 
         StringLogger(Level level, String leaf) {
             m_level = level;
@@ -247,7 +340,14 @@ public class LoggerFactory {
         public void log(Supplier<String> vals) {
             if (!allow(m_level))
                 return;
-            String val = vals.get();
+            publish(vals.get());
+        }
+
+        private synchronized void publish(String val) {
+            if (!m_throttle.publish(!Objects.equals(val, m_last), m_lastS))
+                return;
+            m_last = val;
+            m_lastS = Takt.get();
             m_primitiveLogger.log(val);
         }
     }
@@ -259,6 +359,8 @@ public class LoggerFactory {
     public class OptionalDoubleLogger {
         private final Level m_level;
         private final PrimitiveLogger.PrimitiveDoubleLogger m_primitiveLogger;
+        private long m_lastBits;
+        private double m_lastS = Double.NEGATIVE_INFINITY;
 
         OptionalDoubleLogger(Level level, String leaf) {
             m_level = level;
@@ -268,10 +370,18 @@ public class LoggerFactory {
         public void log(Supplier<OptionalDouble> vals) {
             if (!allow(m_level))
                 return;
-            OptionalDouble val = vals.get();
-            if (val.isPresent()) {
-                m_primitiveLogger.log(val.getAsDouble());
-            }
+            publish(vals.get());
+        }
+
+        private synchronized void publish(OptionalDouble val) {
+            if (val.isEmpty())
+                return;
+            long bits = Double.doubleToRawLongBits(val.getAsDouble());
+            if (!m_throttle.publish(bits != m_lastBits, m_lastS))
+                return;
+            m_lastBits = bits;
+            m_lastS = Takt.get();
+            m_primitiveLogger.log(val.getAsDouble());
         }
     }
 
@@ -282,6 +392,8 @@ public class LoggerFactory {
     public class EnumLogger {
         private final Level m_level;
         private final PrimitiveLogger.PrimitiveStringLogger m_primitiveLogger;
+        private Enum<?> m_last;
+        private double m_lastS = Double.NEGATIVE_INFINITY;
 
         EnumLogger(Level level, String leaf) {
             m_level = level;
@@ -291,8 +403,22 @@ public class LoggerFactory {
         public void log(Supplier<Enum<?>> vals) {
             if (!allow(m_level))
                 return;
-            String val = vals.get().name();
-            m_primitiveLogger.log(val);
+            publish(vals.get());
+        }
+
+        /** For values that are already computed, without a lambda. */
+        public void log(Enum<?> val) {
+            if (!allow(m_level))
+                return;
+            publish(val);
+        }
+
+        private synchronized void publish(Enum<?> val) {
+            if (!m_throttle.publish(val != m_last, m_lastS))
+                return;
+            m_last = val;
+            m_lastS = Takt.get();
+            m_primitiveLogger.log(val.name());
         }
     }
 
@@ -314,9 +440,12 @@ public class LoggerFactory {
         public void log(Supplier<Pose2d> vals) {
             if (!allow(m_level))
                 return;
-            Pose2d val = vals.get();
-            m_translation2dLogger.log(val::getTranslation);
-            m_rotation2dLogger.log(val::getRotation);
+            publish(vals.get());
+        }
+
+        private void publish(Pose2d val) {
+            m_translation2dLogger.publish(val.getTranslation());
+            m_rotation2dLogger.publish(val.getRotation());
         }
     }
 
@@ -338,9 +467,12 @@ public class LoggerFactory {
         public void log(Supplier<Transform3d> vals) {
             if (!allow(m_level))
                 return;
-            Transform3d val = vals.get();
-            m_translation3dLogger.log(val::getTranslation);
-            m_rotation3dLogger.log(val::getRotation);
+            publish(vals.get());
+        }
+
+        private void publish(Transform3d val) {
+            m_translation3dLogger.publish(val.getTranslation());
+            m_rotation3dLogger.publish(val.getRotation());
         }
     }
 
@@ -364,10 +496,13 @@ public class LoggerFactory {
         public void log(Supplier<Translation3d> vals) {
             if (!allow(m_level))
                 return;
-            Translation3d val = vals.get();
-            m_xLogger.log(val::getX);
-            m_yLogger.log(val::getY);
-            m_zLogger.log(val::getZ);
+            publish(vals.get());
+        }
+
+        private void publish(Translation3d val) {
+            m_xLogger.publish(val.getX());
+            m_yLogger.publish(val.getY());
+            m_zLogger.publish(val.getZ());
         }
     }
 
@@ -391,10 +526,13 @@ public class LoggerFactory {
         public void log(Supplier<Rotation3d> vals) {
             if (!allow(m_level))
                 return;
-            Rotation3d val = vals.get();
-            m_rollLogger.log(val::getX);
-            m_pitchLogger.log(val::getY);
-            m_yawLogger.log(val::getZ);
+            publish(vals.get());
+        }
+
+        private void publish(Rotation3d val) {
+            m_rollLogger.publish(val.getX());
+            m_pitchLogger.publish(val.getY());
+            m_yawLogger.publish(val.getZ());
         }
     }
 
@@ -416,9 +554,12 @@ public class LoggerFactory {
         public void log(Supplier<Translation2d> vals) {
             if (!allow(m_level))
                 return;
-            Translation2d val = vals.get();
-            m_xLogger.log(val::getX);
-            m_yLogger.log(val::getY);
+            publish(vals.get());
+        }
+
+        private void publish(Translation2d val) {
+            m_xLogger.publish(val.getX());
+            m_yLogger.publish(val.getY());
         }
     }
 
@@ -438,8 +579,11 @@ public class LoggerFactory {
         public void log(Supplier<Rotation2d> vals) {
             if (!allow(m_level))
                 return;
-            Rotation2d val = vals.get();
-            m_radLogger.log(val::getRadians);
+            publish(vals.get());
+        }
+
+        private void publish(Rotation2d val) {
+            m_radLogger.publish(val.getRadians());
         }
     }
 
@@ -465,12 +609,14 @@ public class LoggerFactory {
         public void log(Supplier<TimedPose> vals) {
             if (!allow(m_level))
                 return;
-            TimedPose val = vals.get();
-            m_pose2dWithMotionLogger.log(val::state);
-            m_timeLogger.log(val::getTimeS);
-            m_velocityLogger.log(val::velocityM_S);
-            m_accelLogger.log(val::acceleration);
+            publish(vals.get());
+        }
 
+        private void publish(TimedPose val) {
+            m_pose2dWithMotionLogger.publish(val.state());
+            m_timeLogger.publish(val.getTimeS());
+            m_velocityLogger.publish(val.velocityM_S());
+            m_accelLogger.publish(val.acceleration());
         }
     }
 
@@ -490,8 +636,11 @@ public class LoggerFactory {
         public void log(Supplier<PoseWithCurvature> vals) {
             if (!allow(m_level))
                 return;
-            PoseWithCurvature val = vals.get();
-            m_pose2dLogger.log(() -> val.poseMeters);
+            publish(vals.get());
+        }
+
+        private void publish(PoseWithCurvature val) {
+            m_pose2dLogger.publish(val.poseMeters);
         }
     }
 
@@ -513,11 +662,14 @@ public class LoggerFactory {
         public void log(Supplier<Pose2dWithMotion> vals) {
             if (!allow(m_level))
                 return;
-            Pose2dWithMotion val = vals.get();
-            m_pose2dLogger.log(val::getPose);
+            publish(vals.get());
+        }
+
+        private void publish(Pose2dWithMotion val) {
+            m_pose2dLogger.publish(val.getPose());
             Optional<Rotation2d> course = val.getCourse();
             if (course.isPresent()) {
-                m_rotation2dLogger.log(course::get);
+                m_rotation2dLogger.publish(course.get());
             }
         }
     }
@@ -542,10 +694,13 @@ public class LoggerFactory {
         public void log(Supplier<Twist2d> vals) {
             if (!allow(m_level))
                 return;
-            Twist2d val = vals.get();
-            m_dxLogger.log(() -> val.dx);
-            m_dyLogger.log(() -> val.dy);
-            m_dthetaLogger.log(() -> val.dtheta);
+            publish(vals.get());
+        }
+
+        private void publish(Twist2d val) {
+            m_dxLogger.publish(val.dx);
+            m_dyLogger.publish(val.dy);
+            m_dthetaLogger.publish(val.dtheta);
         }
     }
 
@@ -569,10 +724,13 @@ public class LoggerFactory {
         public void log(Supplier<ChassisSpeeds> vals) {
             if (!allow(m_level))
                 return;
-            ChassisSpeeds val = vals.get();
-            m_vxLogger.log(() -> val.vxMetersPerSecond);
-            m_vyLogger.log(() -> val.vyMetersPerSecond);
-            m_omegaLogger.log(() -> val.omegaRadiansPerSecond);
+            publish(vals.get());
+        }
+
+        private void publish(ChassisSpeeds val) {
+            m_vxLogger.publish(val.vxMetersPerSecond);
+            m_vyLogger.publish(val.vyMetersPerSecond);
+            m_omegaLogger.publish(val.omegaRadiansPerSecond);
         }
     }
 
@@ -596,10 +754,13 @@ public class LoggerFactory {
         public void log(Supplier<GlobalDeltaR3> vals) {
             if (!allow(m_level))
                 return;
-            GlobalDeltaR3 val = vals.get();
-            m_xLogger.log(val::getX);
-            m_yLogger.log(val::getY);
-            m_thetaLogger.log(val::getRadians);
+            publish(vals.get());
+        }
+
+        private void publish(GlobalDeltaR3 val) {
+            m_xLogger.publish(val.getX());
+            m_yLogger.publish(val.getY());
+            m_thetaLogger.publish(val.getRadians());
         }
     }
 
@@ -623,10 +784,13 @@ public class LoggerFactory {
         public void log(Supplier<GlobalVelocityR3> vals) {
             if (!allow(m_level))
                 return;
-            GlobalVelocityR3 val = vals.get();
-            m_xLogger.log(val::x);
-            m_yLogger.log(val::y);
-            m_thetaLogger.log(val::theta);
+            publish(vals.get());
+        }
+
+        private void publish(GlobalVelocityR3 val) {
+            m_xLogger.publish(val.x());
+            m_yLogger.publish(val.y());
+            m_thetaLogger.publish(val.theta());
         }
     }
 
@@ -650,10 +814,13 @@ public class LoggerFactory {
         public void log(Supplier<GlobalAccelerationR3> vals) {
             if (!allow(m_level))
                 return;
-            GlobalAccelerationR3 val = vals.get();
-            m_xLogger.log(val::x);
-            m_yLogger.log(val::y);
-            m_thetaLogger.log(val::theta);
+            publish(vals.get());
+        }
+
+        private void publish(GlobalAccelerationR3 val) {
+            m_xLogger.publish(val.x());
+            m_yLogger.publish(val.y());
+            m_thetaLogger.publish(val.theta());
         }
     }
 
@@ -675,9 +842,12 @@ public class LoggerFactory {
         public void log(Supplier<Model100> vals) {
             if (!allow(m_level))
                 return;
-            Model100 val = vals.get();
-            m_xLogger.log(() -> val.x());
-            m_vLogger.log(val::v);
+            publish(vals.get());
+        }
+
+        private void publish(Model100 val) {
+            m_xLogger.publish(val.x());
+            m_vLogger.publish(val.v());
         }
     }
 
@@ -697,10 +867,13 @@ public class LoggerFactory {
         public void log(Supplier<Control100> vals) {
             if (!allow(m_level))
                 return;
-            Control100 val = vals.get();
-            m_xLogger.log(val::x);
-            m_vLogger.log(val::v);
-            m_aLogger.log(val::a);
+            publish(vals.get());
+        }
+
+        private void publish(Control100 val) {
+            m_xLogger.publish(val.x());
+            m_vLogger.publish(val.v());
+            m_aLogger.publish(val.a());
         }
     }
 
@@ -724,10 +897,13 @@ public class LoggerFactory {
         public void log(Supplier<ControlR3> vals) {
             if (!allow(m_level))
                 return;
-            ControlR3 val = vals.get();
-            m_xLogger.log(val::x);
-            m_yLogger.log(val::y);
-            m_thetaLogger.log(val::theta);
+            publish(vals.get());
+        }
+
+        private void publish(ControlR3 val) {
+            m_xLogger.publish(val.x());
+            m_yLogger.publish(val.y());
+            m_thetaLogger.publish(val.theta());
         }
     }
 
@@ -755,10 +931,13 @@ public class LoggerFactory {
         public void log(Supplier<ModelR3> vals) {
             if (!allow(m_level))
                 return;
-            ModelR3 val = vals.get();
-            m_xLogger.log(val::x);
-            m_yLogger.log(val::y);
-            m_thetaLogger.log(val::theta);
+            publish(vals.get());
+        }
+
+        private void publish(ModelR3 val) {
+            m_xLogger.publish(val.x());
+            m_yLogger.publish(val.y());
+            m_thetaLogger.publish(val.theta());
         }
     }
 
@@ -780,10 +959,13 @@ public class LoggerFactory {
         public void log(Supplier<SwerveModulePosition100> vals) {
             if (!allow(m_level))
                 return;
-            SwerveModulePosition100 val = vals.get();
-            m_distanceLogger.log(() -> val.distanceMeters);
+            publish(vals.get());
+        }
+
+        private void publish(SwerveModulePosition100 val) {
+            m_distanceLogger.publish(val.distanceMeters);
             if (val.unwrappedAngle.isPresent()) {
-                m_rotation2dLogger.log(val.unwrappedAngle::get);
+                m_rotation2dLogger.publish(val.unwrappedAngle.get());
             }
         }
     }
@@ -811,11 +993,14 @@ public class LoggerFactory {
         public void log(Supplier<SwerveModulePositions> vals) {
             if (!allow(m_level))
                 return;
-            SwerveModulePositions val = vals.get();
-            m_frontLeft.log(val::frontLeft);
-            m_frontRight.log(val::frontRight);
-            m_rearLeft.log(val::rearLeft);
-            m_rearRight.log(val::rearRight);
+            publish(vals.get());
+        }
+
+        private void publish(SwerveModulePositions val) {
+            m_frontLeft.publish(val.frontLeft());
+            m_frontRight.publish(val.frontRight());
+            m_rearLeft.publish(val.rearLeft());
+            m_rearRight.publish(val.rearRight());
         }
     }
 
@@ -865,11 +1050,14 @@ public class LoggerFactory {
         public void log(Supplier<State> vals) {
             if (!allow(m_level))
                 return;
-            State val = vals.get();
-            m_poseLogger.log(() -> val.poseMeters);
-            m_curvatureLogger.log(() -> val.curvatureRadPerMeter);
-            m_velocityLogger.log(() -> val.velocityMetersPerSecond);
-            m_accelLogger.log(() -> val.accelerationMetersPerSecondSq);
+            publish(vals.get());
+        }
+
+        private void publish(State val) {
+            m_poseLogger.publish(val.poseMeters);
+            m_curvatureLogger.publish(val.curvatureRadPerMeter);
+            m_velocityLogger.publish(val.velocityMetersPerSecond);
+            m_accelLogger.publish(val.accelerationMetersPerSecondSq);
         }
     }
 
@@ -891,9 +1079,12 @@ public class LoggerFactory {
         public void log(Supplier<Blip24> vals) {
             if (!allow(m_level))
                 return;
-            Blip24 val = vals.get();
-            m_idLogger.log(val::getId);
-            m_transformLogger.log(val::getRawPose);
+            publish(vals.get());
+        }
+
+        private void publish(Blip24 val) {
+            m_idLogger.publish(val.getId());
+            m_transformLogger.publish(val.getRawPose());
         }
     }
 
@@ -917,10 +1108,13 @@ public class LoggerFactory {
         public void log(Supplier<Config> vals) {
             if (!allow(m_level))
                 return;
-            Config val = vals.get();
-            m_elevator.log(val::shoulderHeight);
-            m_shoulder.log(val::shoulderAngle);
-            m_wrist.log(val::wristAngle);
+            publish(vals.get());
+        }
+
+        private void publish(Config val) {
+            m_elevator.publish(val.shoulderHeight());
+            m_shoulder.publish(val.shoulderAngle());
+            m_wrist.publish(val.wristAngle());
         }
     }
 
@@ -944,10 +1138,13 @@ public class LoggerFactory {
         public void log(Supplier<JointVelocities> vals) {
             if (!allow(m_level))
                 return;
-            JointVelocities val = vals.get();
-            m_elevator.log(val::elevator);
-            m_shoulder.log(val::shoulder);
-            m_wrist.log(val::wrist);
+            publish(vals.get());
+        }
+
+        private void publish(JointVelocities val) {
+            m_elevator.publish(val.elevator());
+            m_shoulder.publish(val.shoulder());
+            m_wrist.publish(val.wrist());
         }
     }
 
@@ -971,10 +1168,13 @@ public class LoggerFactory {
         public void log(Supplier<JointAccelerations> vals) {
             if (!allow(m_level))
                 return;
-            JointAccelerations val = vals.get();
-            m_elevator.log(val::elevator);
-            m_shoulder.log(val::shoulder);
-            m_wrist.log(val::wrist);
+            publish(vals.get());
+        }
+
+        private void publish(JointAccelerations val) {
+            m_elevator.publish(val.elevator());
+            m_shoulder.publish(val.shoulder());
+            m_wrist.publish(val.wrist());
         }
     }
 
@@ -998,10 +1198,13 @@ public class LoggerFactory {
         public void log(Supplier<JointForce> vals) {
             if (!allow(m_level))
                 return;
-            JointForce val = vals.get();
-            m_elevator.log(val::elevator);
-            m_shoulder.log(val::shoulder);
-            m_wrist.log(val::wrist);
+            publish(vals.get());
+        }
+
+        private void publish(JointForce val) {
+            m_elevator.publish(val.elevator());
+            m_shoulder.publish(val.shoulder());
+            m_wrist.publish(val.wrist());
         }
     }
 
@@ -2,6 +2,7 @@ package org.team100.lib.logging;
 
 import org.team100.lib.logging.primitive.NTPrimitiveLogger;
 import org.team100.lib.logging.primitive.PrimitiveLogger;
+import org.team100.lib.logging.primitive.BufferedUdpPrimitiveLogger;
 import org.team100.lib.util.NamedChooser;
 
 import com.ctre.phoenix6.SignalLogger;
@@ -16,8 +17,15 @@ import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
  */
 public class Logging {
     private static final Level DEFAULT_LEVEL = Level.TRACE;
+    /**
+     * Send the "log" tree to the outboard UDP log receiver instead of Network
+     * Tables. The "field" tree always uses Network Tables, for glass.
+     */
+    private static final boolean USE_UDP = false;
 
     private PrimitiveLogger ntLogger;
+    /** null unless USE_UDP */
+    private BufferedUdpPrimitiveLogger udpLogger;
 
     private static final SendableChooser<Level> m_LevelChooser = new NamedChooser<>("Log Level");
 
@@ -44,7 +52,13 @@ public class Logging {
     private Logging() {
         ntLogger = new NTPrimitiveLogger();
         fieldLogger = new LoggerFactory(this::getLevel, "field", ntLogger);
-        rootLogger = new LoggerFactory(this::getLevel, "log", ntLogger);
+        if (USE_UDP) {
+            udpLogger = BufferedUdpPrimitiveLogger.forRobot();
+            udpLogger.start();
+            rootLogger = new LoggerFactory(this::getLevel, "log", udpLogger);
+        } else {
+            rootLogger = new LoggerFactory(this::getLevel, "log", ntLogger);
+        }
         fieldLogger.stringLogger(Level.COMP, ".type").log(() -> "Field2d");
 
         // turn off the CTRE log we never use
@@ -52,9 +66,12 @@ public class Logging {
     }
 
     public int keyCount() {
+        int count = 0;
         if (ntLogger != null)
-            return ntLogger.keyCount();
-        return 0;
+            count += ntLogger.keyCount();
+        if (udpLogger != null)
+            count += udpLogger.keyCount();
+        return count;
     }
 
     public Level getLevel() {
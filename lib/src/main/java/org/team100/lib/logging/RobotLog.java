@@ -2,6 +2,7 @@ package org.team100.lib.logging;
 
 import org.team100.lib.logging.LoggerFactory.BooleanLogger;
 import org.team100.lib.logging.LoggerFactory.DoubleLogger;
+import org.team100.lib.logging.LoggerFactory.LongLogger;
 
 import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj.RobotController;
@@ -14,6 +15,10 @@ public class RobotLog {
     private final BooleanLogger m_log_ds_TeleopEnabled;
     private final BooleanLogger m_log_ds_FMSAttached;
     private final DoubleLogger m_log_voltage;
+    private final LogThrottle m_throttle;
+    private final LongLogger m_log_published;
+    private final LongLogger m_log_duplicates;
+    private final LongLogger m_log_rate;
 
     public RobotLog() {
         LoggerFactory logger = Logging.instance().rootLogger;
@@ -25,6 +30,11 @@ public class RobotLog {
         m_log_ds_TeleopEnabled = dsLog.booleanLogger(Level.TRACE, "TeleopEnabled");
         m_log_ds_FMSAttached = dsLog.booleanLogger(Level.TRACE, "FMSAttached");
         m_log_voltage = robotLogger.doubleLogger(Level.COMP, "voltage");
+        m_throttle = logger.getThrottle();
+        LoggerFactory throttleLog = robotLogger.name("Logging");
+        m_log_published = throttleLog.longLogger(Level.TRACE, "published");
+        m_log_duplicates = throttleLog.longLogger(Level.TRACE, "suppressed duplicates");
+        m_log_rate = throttleLog.longLogger(Level.TRACE, "suppressed by rate");
     }
 
     /** Log some robot-wide stuff */
@@ -37,5 +47,8 @@ public class RobotLog {
         m_log_ds_TeleopEnabled.log(DriverStation::isTeleopEnabled);
         m_log_ds_FMSAttached.log(DriverStation::isFMSAttached);
         m_log_voltage.log(RobotController::getBatteryVoltage);
+        m_log_published.log(m_throttle::getPublished);
+        m_log_duplicates.log(m_throttle::getDuplicateSuppressed);
+        m_log_rate.log(m_throttle::getRateSuppressed);
     }
 }
@@ -0,0 +1,445 @@
+package org.team100.lib.logging.primitive;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+
+import edu.wpi.first.wpilibj.RobotController;
+
+/**
+ * Sends logs via UDP to an outboard log receiver, e.g. a Raspberry Pi.
+ * 
+ * This is the production version of the UdpPrimitiveLogger in
+ * studies/udp_logging, and it uses the same protocol, so the receiver there
+ * works with it. It has a different name because the study compiles against
+ * lib.
+ * 
+ * Data packets (port 1995) are an 8-byte version key followed by a list of
+ * tuples:
+ * 
+ * <pre>
+ * KKTvvvv
+ * ^^      key (2 bytes)
+ *   ^     type (1 byte)
+ *    ^^^^ value (varies)
+ * </pre>
+ * 
+ * Metadata packets (port 1996) are the version key followed by a list of
+ * key, type, label-length (1 byte), and ascii label. The metadata is sent over
+ * and over, a packet at a time, so the receiver can start any time.
+ * 
+ * The version key is the epoch second when the robot clock first became valid.
+ * 
+ * The log() methods encode the value directly into a preallocated ring
+ * buffer, and a separate low-priority thread copies them into MTU-sized
+ * datagrams and sends them. So log() never blocks and never allocates. If the
+ * ring is full, the value is dropped, and counted; see getDrops().
+ * 
+ * Unlike the study version, every value is sent, not just the latest one.
+ * 
+ * UDP is not formally reliable but on the robot LAN, for log data, it's good
+ * enough.
+ */
+public class BufferedUdpPrimitiveLogger implements PrimitiveLogger, AutoCloseable {
+    /**
+     * 508 is the "really don't fragment" size. Our network uses a 1500 byte MTU
+     * so 1472 is probably just as good.
+     */
+    public static final int MTU = 1472;
+    public static final int DATA_PORT = 1995;
+    public static final int METADATA_PORT = 1996;
+    /** The log receiver. */
+    private static final byte[] ADDR = new byte[] { 10, 1, 0, 16 };
+    /** About two seconds of very heavy logging. */
+    private static final int RING_BYTES = 1 << 20;
+    /** Version key (8 bytes) */
+    private static final int PACKET_HEADER = 8;
+    private static final int MAX_LABEL = 255;
+    private static final int MAX_KEY = 65535;
+    /** Sender thread sleeps this long when there's nothing to send. */
+    private static final long IDLE_NS = TimeUnit.MILLISECONDS.toNanos(1);
+    /** Send a metadata packet this often. */
+    private static final long METADATA_PERIOD_NS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private record Metadata(int key, UdpType type, byte[] label) {
+    }
+
+    private final ByteRing m_ring;
+    private final ByteBuffer m_ringBuffer;
+    private final InetSocketAddress m_dataAddr;
+    private final InetSocketAddress m_metadataAddr;
+    private final LongSupplier m_version;
+    /** nullable */
+    private final DatagramChannel m_channel;
+
+    /** Key is label. Keys are never reused. */
+    private final Map<String, Metadata> m_labels = new ConcurrentHashMap<>();
+    /** Indexed by key - 1. */
+    private final List<Metadata> m_metadata = new CopyOnWriteArrayList<>();
+
+    // These are used only by the sender thread.
+    private final ByteBuffer m_packet;
+    private final ByteBuffer m_metadataPacket;
+    private int m_metadataOffset;
+    private long m_versionKey;
+
+    private final AtomicLong m_packets = new AtomicLong();
+    private final AtomicLong m_sendFailures = new AtomicLong();
+
+    private volatile boolean m_running;
+    private Thread m_thread;
+
+    /**
+     * @param dataAddr     destination for data packets
+     * @param metadataAddr destination for metadata packets
+     * @param ringBytes    ring size, power of two
+     * @param version      version key, zero if not available yet
+     */
+    public BufferedUdpPrimitiveLogger(
+            InetSocketAddress dataAddr,
+            InetSocketAddress metadataAddr,
+            int ringBytes,
+            LongSupplier version) {
+        m_ring = new ByteRing(ringBytes);
+        m_ringBuffer = m_ring.buffer();
+        m_dataAddr = dataAddr;
+        m_metadataAddr = metadataAddr;
+        m_version = version;
+        m_channel = makeChannel();
+        // direct buffers go slightly faster out the network
+        m_packet = ByteBuffer.allocateDirect(MTU);
+        m_packet.order(ByteOrder.BIG_ENDIAN);
+        m_metadataPacket = ByteBuffer.allocateDirect(MTU);
+        m_metadataPacket.order(ByteOrder.BIG_ENDIAN);
+    }
+
+    /** Sends to the log receiver on the robot LAN. Call start() to start sending. */
+    public static BufferedUdpPrimitiveLogger forRobot() {
+        try {
+            InetAddress addr = InetAddress.getByAddress(ADDR);
+            return new BufferedUdpPrimitiveLogger(
+                    new InetSocketAddress(addr, DATA_PORT),
+                    new InetSocketAddress(addr, METADATA_PORT),
+                    RING_BYTES,
+                    BufferedUdpPrimitiveLogger::systemTime);
+        } catch (UnknownHostException e) {
+            // only happens if ADDR is the wrong length
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** Start the sender thread. */
+    public synchronized void start() {
+        if (m_thread != null)
+            return;
+        m_running = true;
+        m_thread = new Thread(this::run, "BufferedUdpPrimitiveLogger");
+        m_thread.setDaemon(true);
+        m_thread.setPriority(Thread.MIN_PRIORITY);
+        m_thread.start();
+    }
+
+    /** Stop the sender thread, sending whatever is left. */
+    @Override
+    public synchronized void close() {
+        if (m_thread == null)
+            return;
+        m_running = false;
+        LockSupport.unpark(m_thread);
+        try {
+            m_thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        m_thread = null;
+    }
+
+    @Override
+    public int keyCount() {
+        return m_metadata.size();
+    }
+
+    /** Values dropped because the ring was full, or because they were too big. */
+    public long getDrops() {
+        return m_ring.drops();
+    }
+
+    /** Data packets sent. */
+    public long getPackets() {
+        return m_packets.get();
+    }
+
+    /** Packets (data or metadata) that the network wouldn't take. */
+    public long getSendFailures() {
+        return m_sendFailures.get();
+    }
+
+    @Override
+    public PrimitiveBooleanLogger booleanLogger(String label) {
+        int key = getKey(UdpType.BOOLEAN, label);
+        return val -> {
+            int i = m_ring.claim(4);
+            if (i < 0)
+                return;
+            int v = putKey(i, key, UdpType.BOOLEAN);
+            m_ringBuffer.put(v, val ? (byte) 1 : (byte) 0);
+            m_ring.commit(i, 4);
+        };
+    }
+
+    @Override
+    public PrimitiveDoubleLogger doubleLogger(String label) {
+        int key = getKey(UdpType.DOUBLE, label);
+        return val -> {
+            int i = m_ring.claim(11);
+            if (i < 0)
+                return;
+            int v = putKey(i, key, UdpType.DOUBLE);
+            m_ringBuffer.putDouble(v, val);
+            m_ring.commit(i, 11);
+        };
+    }
+
+    @Override
+    public PrimitiveIntLogger intLogger(String label) {
+        int key = getKey(UdpType.INT, label);
+        return val -> {
+            int i = m_ring.claim(7);
+            if (i < 0)
+                return;
+            int v = putKey(i, key, UdpType.INT);
+            m_ringBuffer.putInt(v, val);
+            m_ring.commit(i, 7);
+        };
+    }
+
+    /**
+     * Arrays that won't fit in a packet (more than about 180 elements) are
+     * dropped.
+     */
+    @Override
+    public PrimitiveDoubleArrayLogger doubleArrayLogger(String label) {
+        int key = getKey(UdpType.DOUBLE_ARRAY, label);
+        return val -> {
+            int length = 4 + val.length * 8;
+            if (val.length > 255 || length > MTU - PACKET_HEADER) {
+                m_ring.drop();
+                return;
+            }
+            int i = m_ring.claim(length);
+            if (i < 0)
+                return;
+            int v = putKey(i, key, UdpType.DOUBLE_ARRAY);
+            m_ringBuffer.put(v, (byte) val.length);
+            for (int j = 0; j < val.length; ++j) {
+                m_ringBuffer.putDouble(v + 1 + j * 8, val[j]);
+            }
+            m_ring.commit(i, length);
+        };
+    }
+
+    @Override
+    public PrimitiveLongLogger longLogger(String label) {
+        int key = getKey(UdpType.LONG, label);
+        return val -> {
+            int i = m_ring.claim(11);
+            if (i < 0)
+                return;
+            int v = putKey(i, key, UdpType.LONG);
+            m_ringBuffer.putLong(v, val);
+            m_ring.commit(i, 11);
+        };
+    }
+
+    /**
+     * Strings are truncated to 255 characters, and non-ascii characters are
+     * replaced with '?'.
+     */
+    @Override
+    public PrimitiveStringLogger stringLogger(String label) {
+        int key = getKey(UdpType.STRING, label);
+        return val -> {
+            int n = Math.min(val.length(), 255);
+            int length = 4 + n;
+            int i = m_ring.claim(length);
+            if (i < 0)
+                return;
+            int v = putKey(i, key, UdpType.STRING);
+            m_ringBuffer.put(v, (byte) n);
+            for (int j = 0; j < n; ++j) {
+                char c = val.charAt(j);
+                m_ringBuffer.put(v + 1 + j, c < 128 ? (byte) c : (byte) '?');
+            }
+            m_ring.commit(i, length);
+        };
+    }
+
+    /////////////////////////////////////////////////
+
+    /**
+     * Copy whatever is in the ring into packets, and send them. This is only
+     * for the sender thread, or for testing.
+     * 
+     * @return number of records sent
+     */
+    int drain() {
+        int count = 0;
+        m_packet.clear();
+        m_packet.putLong(m_versionKey);
+        while (true) {
+            int i = m_ring.poll();
+            if (i < 0)
+                break;
+            int length = m_ring.length(i);
+            if (length > m_packet.remaining()) {
+                send(m_packet, m_dataAddr);
+                m_packets.incrementAndGet();
+                m_packet.clear();
+                m_packet.putLong(m_versionKey);
+            }
+            m_packet.put(m_packet.position(), m_ringBuffer, i + ByteRing.HEADER, length);
+            m_packet.position(m_packet.position() + length);
+            m_ring.release(i);
+            ++count;
+        }
+        if (m_packet.position() > PACKET_HEADER) {
+            send(m_packet, m_dataAddr);
+            m_packets.incrementAndGet();
+        }
+        return count;
+    }
+
+    /**
+     * Send one packet of labels, picking up where the last one left off. This is
+     * only for the sender thread, or for testing.
+     */
+    void sendMetadata() {
+        if (m_metadata.isEmpty())
+            return;
+        m_metadataPacket.clear();
+        m_metadataPacket.putLong(m_versionKey);
+        if (m_metadataOffset >= m_metadata.size())
+            m_metadataOffset = 0;
+        while (m_metadataOffset < m_metadata.size()) {
+            Metadata d = m_metadata.get(m_metadataOffset);
+            if (4 + d.label.length > m_metadataPacket.remaining())
+                break;
+            m_metadataPacket.putChar((char) d.key);
+            m_metadataPacket.put(d.type.id);
+            m_metadataPacket.put((byte) d.label.length);
+            m_metadataPacket.put(d.label);
+            ++m_metadataOffset;
+        }
+        send(m_metadataPacket, m_metadataAddr);
+    }
+
+    /** This is only for the sender thread, or for testing. */
+    void updateVersion() {
+        if (m_versionKey == 0)
+            m_versionKey = m_version.getAsLong();
+    }
+
+    /**
+     * Write the key and type, return the index of the value. Keys are "char" i.e.
+     * unsigned short, which is why they're limited to 65535.
+     */
+    private int putKey(int i, int key, UdpType type) {
+        int k = i + ByteRing.HEADER;
+        m_ringBuffer.putChar(k, (char) key);
+        m_ringBuffer.put(k + 2, type.id);
+        return k + 3;
+    }
+
+    /**
+     * Call this once for each logger, at startup. A label used more than once
+     * with the same type gets the same key.
+     * 
+     * Minimum key is 1, so that zero is an "invalid key".
+     */
+    private synchronized int getKey(UdpType type, String label) {
+        Metadata existing = m_labels.get(label);
+        if (existing != null) {
+            if (existing.type != type)
+                throw new IllegalArgumentException(
+                        String.format("label %s is already a %s", label, existing.type));
+            return existing.key;
+        }
+        int key = m_metadata.size() + 1;
+        if (key > MAX_KEY)
+            throw new IllegalArgumentException("too many keys");
+        byte[] bytes = label.getBytes(StandardCharsets.US_ASCII);
+        if (bytes.length > MAX_LABEL)
+            throw new IllegalArgumentException("label too long: " + label);
+        Metadata d = new Metadata(key, type, bytes);
+        m_metadata.add(d);
+        m_labels.put(label, d);
+        return key;
+    }
+
+    private void run() {
+        long metadataNs = System.nanoTime() - METADATA_PERIOD_NS;
+        while (m_running) {
+            updateVersion();
+            long now = System.nanoTime();
+            if (now - metadataNs >= METADATA_PERIOD_NS) {
+                sendMetadata();
+                metadataNs = now;
+            }
+            if (drain() == 0)
+                LockSupport.parkNanos(IDLE_NS);
+        }
+        drain();
+    }
+
+    private void send(ByteBuffer packet, InetSocketAddress addr) {
+        if (m_channel == null)
+            return;
+        packet.flip();
+        try {
+            // non-blocking, so this sends all of it or nothing.
+            if (m_channel.send(packet, addr) == 0)
+                m_sendFailures.incrementAndGet();
+        } catch (IOException e) {
+            m_sendFailures.incrementAndGet();
+        }
+    }
+
+    /**
+     * The channel isn't connected, so that a missing receiver doesn't produce
+     * errors.
+     */
+    private static DatagramChannel makeChannel() {
+        try {
+            DatagramChannel channel = DatagramChannel.open();
+            channel.configureBlocking(false);
+            // big buffer does not help but doesn't hurt
+            channel.setOption(StandardSocketOptions.SO_SNDBUF, 1000000);
+            return channel;
+        } catch (IOException e) {
+            System.out.printf("WARNING: no UDP logging: %s\n", e.getMessage());
+            return null;
+        }
+    }
+
+    /** The epoch second, once the driver station has provided it. */
+    private static long systemTime() {
+        if (!RobotController.isSystemTimeValid())
+            return 0;
+        return Instant.now().getEpochSecond();
+    }
+}
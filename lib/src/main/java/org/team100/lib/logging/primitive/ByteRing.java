@@ -0,0 +1,150 @@
+package org.team100.lib.logging.primitive;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A preallocated ring of variable-length records, with many producers and one
+ * consumer, that never blocks and never allocates.
+ * 
+ * Each record is a 4-byte header followed by the body, padded to 8 bytes. The
+ * header is the body length, and it's written last, with release semantics, so
+ * a nonzero header means the body is complete. Records never wrap around the
+ * end: if a record won't fit in the space left, the producer claims that space
+ * too, and marks it as padding with a negative header.
+ * 
+ * Producers claim space with a CAS on the claimed position, so they never wait
+ * for each other or for the consumer. If there's no room, the claim fails and
+ * the record is counted as dropped.
+ * 
+ * The consumer zeroes each record after reading it, so that stale headers are
+ * never mistaken for new ones, and then releases the space to the producers.
+ */
+class ByteRing {
+    static final int HEADER = 4;
+    private static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(
+            int[].class, ByteOrder.BIG_ENDIAN);
+
+    private final ByteBuffer m_buffer;
+    private final int m_capacity;
+    private final int m_mask;
+    /** Total bytes claimed by producers, ever. */
+    private final AtomicLong m_claimed;
+    private final AtomicLong m_drops;
+    /** Total bytes released by the consumer, ever. */
+    private volatile long m_released;
+
+    /** @param capacity bytes, a power of two, at least 8. */
+    ByteRing(int capacity) {
+        if (capacity < 8 || Integer.bitCount(capacity) != 1)
+            throw new IllegalArgumentException("capacity must be a power of two");
+        m_buffer = ByteBuffer.allocateDirect(capacity);
+        m_buffer.order(ByteOrder.BIG_ENDIAN);
+        m_capacity = capacity;
+        m_mask = capacity - 1;
+        m_claimed = new AtomicLong();
+        m_drops = new AtomicLong();
+        m_released = 0;
+    }
+
+    /** Use absolute puts and gets only; the position is never used. */
+    ByteBuffer buffer() {
+        return m_buffer;
+    }
+
+    /** Records that didn't fit. */
+    long drops() {
+        return m_drops.get();
+    }
+
+    /** Count a record that the producer chose not to write. */
+    void drop() {
+        m_drops.incrementAndGet();
+    }
+
+    /**
+     * Claim space for a record. The caller should write the body starting at
+     * the returned index plus HEADER, and then call commit().
+     * 
+     * @return index of the header, or -1 if there's no room.
+     */
+    int claim(int bodyLength) {
+        int length = padded(bodyLength);
+        if (length > m_capacity) {
+            m_drops.incrementAndGet();
+            return -1;
+        }
+        while (true) {
+            long pos = m_claimed.get();
+            int idx = (int) (pos & m_mask);
+            int tail = m_capacity - idx;
+            int need = tail < length ? tail + length : length;
+            if (pos + need - m_released > m_capacity) {
+                m_drops.incrementAndGet();
+                return -1;
+            }
+            if (m_claimed.compareAndSet(pos, pos + need)) {
+                if (tail < length) {
+                    INT.setRelease(m_buffer, idx, -tail);
+                    return 0;
+                }
+                return idx;
+            }
+        }
+    }
+
+    /** Make the record visible to the consumer. */
+    void commit(int idx, int bodyLength) {
+        INT.setRelease(m_buffer, idx, bodyLength);
+    }
+
+    /**
+     * For the consumer only: the index of the next complete record, skipping
+     * padding, or -1 if there isn't one yet.
+     */
+    int poll() {
+        while (true) {
+            long pos = m_released;
+            if (pos == m_claimed.get())
+                return -1;
+            int idx = (int) (pos & m_mask);
+            int header = (int) INT.getAcquire(m_buffer, idx);
+            if (header == 0) {
+                // claimed but not yet committed
+                return -1;
+            }
+            if (header > 0)
+                return idx;
+            // padding
+            zero(idx, -header);
+            m_released = pos - header;
+        }
+    }
+
+    /** Body length of the record at idx, which must be from poll(). */
+    int length(int idx) {
+        return (int) INT.getAcquire(m_buffer, idx);
+    }
+
+    /** For the consumer only: done with the record at idx, from poll(). */
+    void release(int idx) {
+        int length = padded(length(idx));
+        zero(idx, length);
+        m_released = m_released + length;
+    }
+
+    ////////////////////////////////////////////////
+
+    private static int padded(int bodyLength) {
+        return (HEADER + bodyLength + 7) & ~7;
+    }
+
+    private void zero(int idx, int length) {
+        for (int i = idx; i < idx + length; i += 8) {
+            m_buffer.putLong(i, 0);
+        }
+    }
+}
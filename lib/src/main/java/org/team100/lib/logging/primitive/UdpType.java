@@ -2,6 +2,7 @@ package org.team100.lib.logging.primitive;
 
 import java.util.Arrays;
 
+/** Type ids for the UDP log protocol; the receiver uses these to parse values. */
 public enum UdpType {
     UNKNOWN(0),
     BOOLEAN(1),
@@ -25,7 +26,7 @@ public enum UdpType {
     public static UdpType get(byte id) {
         if (id < 0)
             return UNKNOWN;
-        if (id > values().length)
+        if (id >= list.length)
             return UNKNOWN;
         return list[id];
     }
@@ -33,4 +34,4 @@ public enum UdpType {
     private UdpType(int typeId) {
         id = (byte) typeId;
     }
-}
\ No newline at end of file
+}
@@ -150,14 +150,46 @@ public class AnalyticalJacobian {
      * Inverse Jacobian, or zero if singular.
      */
     private Matrix<N3, N3> getJinv(Config q) {
-        Matrix<N3, N3> J = getJ(q);
-        if (Math.abs(J.det()) < 1e-3) {
+        double[] jinv = new double[9];
+        if (!jinv(l2, l3, q.shoulderAngle(), q.wristAngle(), jinv)) {
             // Don't try to invert if it's not possible.
             // a zero inverse determinant will result in zero speed,
             // which is the safe thing.
             System.out.printf("WARNING: zero jacobian for config %s\n", q.toString());
             return new Matrix<>(Nat.N3(), Nat.N3());
         }
-        return J.inv();
+        return new Matrix<>(Nat.N3(), Nat.N3(), jinv);
+    }
+
+    /**
+     * Inverse Jacobian, written out, since J has a simple block structure:
+     * 
+     * J = [1 a b; 0 c d; 0 1 1], det(J) = c - d = l2 cos(q2)
+     * 
+     * @param out row-major, 9 elements
+     * @return false if singular, in which case out is untouched
+     */
+    static boolean jinv(double l2, double l3, double q2, double q3, double[] out) {
+        double s2 = Math.sin(q2);
+        double c2 = Math.cos(q2);
+        double s23 = Math.sin(q2 + q3);
+        double c23 = Math.cos(q2 + q3);
+        double a = -l2 * s2 - l3 * s23;
+        double b = -l3 * s23;
+        double c = l2 * c2 + l3 * c23;
+        double d = l3 * c23;
+        double det = c - d;
+        if (Math.abs(det) < 1e-3)
+            return false;
+        out[0] = 1;
+        out[1] = (b - a) / det;
+        out[2] = (a * d - b * c) / det;
+        out[3] = 0;
+        out[4] = 1 / det;
+        out[5] = -d / det;
+        out[6] = 0;
+        out[7] = -1 / det;
+        out[8] = c / det;
+        return true;
     }
 }
@@ -0,0 +1,247 @@
+package org.team100.lib.motion.prr;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+
+/**
+ * Inverse kinematics and inverse Jacobian, precomputed on a grid over the
+ * (x, y, theta) workspace, for planning: the main use is a cheap, deterministic
+ * reachability check, but it also interpolates the configuration and the
+ * inverse Jacobian anywhere in the grid.
+ * 
+ * Each grid node stores the configuration (3) and the inverse Jacobian (9,
+ * row-major) in one flat array, or NaN if the node isn't reachable, i.e. the
+ * inverse kinematics doesn't reproduce the pose, or the Jacobian is singular.
+ * A point is reachable if all eight nodes around it are, so the check is
+ * conservative near the edges.
+ * 
+ * Lookups interpolate trilinearly, and inverse() refines the result with a
+ * few Newton steps using the exact forward kinematics, which is about as
+ * accurate as the closed-form solver.
+ * 
+ * Building a fine table takes a while, so it can be written to a file, e.g. in
+ * the deploy directory, and read at startup.
+ */
+public class WorkspaceTable {
+    /** Config (3) plus inverse Jacobian (9). */
+    private static final int STRIDE = 12;
+    private static final int MAGIC = 0x57534b31;
+    /** Newton steps after interpolation. */
+    private static final int REFINE = 3;
+
+    private final ElevatorArmWristKinematics m_k;
+    private final double[] m_min;
+    private final double[] m_step;
+    private final int[] m_n;
+    private final double[] m_data;
+    private final double[] m_jinv;
+
+    private WorkspaceTable(
+            ElevatorArmWristKinematics k,
+            double[] min,
+            double[] step,
+            int[] n,
+            double[] data) {
+        m_k = k;
+        m_min = min;
+        m_step = step;
+        m_n = n;
+        m_data = data;
+        m_jinv = new double[9];
+    }
+
+    /**
+     * Compute the table. Each axis is given as min, max, and number of nodes,
+     * including both ends, so the step is (max - min) / (n - 1).
+     * 
+     * @param k kinematics
+     */
+    public static WorkspaceTable build(
+            ElevatorArmWristKinematics k,
+            double xMin, double xMax, int nx,
+            double yMin, double yMax, int ny,
+            double rMin, double rMax, int nr) {
+        if (nx < 2 || ny < 2 || nr < 2)
+            throw new IllegalArgumentException("need at least two nodes per axis");
+        double[] min = { xMin, yMin, rMin };
+        double[] step = {
+                (xMax - xMin) / (nx - 1),
+                (yMax - yMin) / (ny - 1),
+                (rMax - rMin) / (nr - 1) };
+        int[] n = { nx, ny, nr };
+        double[] data = new double[nx * ny * nr * STRIDE];
+        double l2 = k.getArmLength();
+        double l3 = k.getManipulatorLength();
+        double[] jinv = new double[9];
+        for (int i = 0; i < nx; ++i) {
+            for (int j = 0; j < ny; ++j) {
+                for (int m = 0; m < nr; ++m) {
+                    int offset = ((i * ny + j) * nr + m) * STRIDE;
+                    double x = xMin + i * step[0];
+                    double y = yMin + j * step[1];
+                    double r = rMin + m * step[2];
+                    Config c = k.inverse(new Pose2d(x, y, new Rotation2d(r)));
+                    Pose2d p = k.forward(c);
+                    boolean ok = !c.isNaN()
+                            && Math.abs(p.getX() - x) < 1e-6
+                            && Math.abs(p.getY() - y) < 1e-6
+                            && AnalyticalJacobian.jinv(l2, l3, c.shoulderAngle(), c.wristAngle(), jinv);
+                    if (!ok) {
+                        Arrays.fill(data, offset, offset + STRIDE, Double.NaN);
+                        continue;
+                    }
+                    data[offset] = c.shoulderHeight();
+                    data[offset + 1] = c.shoulderAngle();
+                    // keep the wrist continuous with the requested theta, not
+                    // wrapped, so interpolation works across the seam.
+                    data[offset + 2] = r - c.shoulderAngle();
+                    System.arraycopy(jinv, 0, data, offset + 3, 9);
+                }
+            }
+        }
+        return new WorkspaceTable(k, min, step, n, data);
+    }
+
+    /** Read a table written by write(). */
+    public static WorkspaceTable read(ElevatorArmWristKinematics k, InputStream in) throws IOException {
+        DataInputStream d = new DataInputStream(in);
+        if (d.readInt() != MAGIC)
+            throw new IOException("not a workspace table");
+        if (d.readDouble() != k.getArmLength() || d.readDouble() != k.getManipulatorLength())
+            throw new IOException("table is for different link lengths");
+        double[] min = new double[3];
+        double[] step = new double[3];
+        int[] n = new int[3];
+        for (int a = 0; a < 3; ++a) {
+            min[a] = d.readDouble();
+            step[a] = d.readDouble();
+            n[a] = d.readInt();
+        }
+        double[] data = new double[n[0] * n[1] * n[2] * STRIDE];
+        for (int i = 0; i < data.length; ++i) {
+            data[i] = d.readDouble();
+        }
+        return new WorkspaceTable(k, min, step, n, data);
+    }
+
+    public void write(OutputStream out) throws IOException {
+        DataOutputStream d = new DataOutputStream(out);
+        d.writeInt(MAGIC);
+        d.writeDouble(m_k.getArmLength());
+        d.writeDouble(m_k.getManipulatorLength());
+        for (int a = 0; a < 3; ++a) {
+            d.writeDouble(m_min[a]);
+            d.writeDouble(m_step[a]);
+            d.writeInt(m_n[a]);
+        }
+        for (double v : m_data) {
+            d.writeDouble(v);
+        }
+        d.flush();
+    }
+
+    /** True if the pose is inside the grid and all the nodes around it are reachable. */
+    public boolean reachable(Pose2d pose) {
+        return !Double.isNaN(interpolate(pose, 0));
+    }
+
+    /**
+     * Interpolated configuration, refined with a few Newton steps, or null if the
+     * pose isn't reachable.
+     */
+    public Config inverse(Pose2d pose) {
+        double q1 = interpolate(pose, 0);
+        if (Double.isNaN(q1))
+            return null;
+        double q2 = interpolate(pose, 1);
+        double q3 = interpolate(pose, 2);
+        for (int e = 0; e < 9; ++e) {
+            m_jinv[e] = interpolate(pose, 3 + e);
+        }
+        // q = q + J^-1 (x - f(q)), with the interpolated J^-1, which is close
+        // enough to converge quickly.
+        double l2 = m_k.getArmLength();
+        double l3 = m_k.getManipulatorLength();
+        double r = theta(pose);
+        for (int iter = 0; iter < REFINE; ++iter) {
+            double ex = pose.getX() - (q1 + l2 * Math.cos(q2) + l3 * Math.cos(q2 + q3));
+            double ey = pose.getY() - (l2 * Math.sin(q2) + l3 * Math.sin(q2 + q3));
+            double er = r - (q2 + q3);
+            double d1 = m_jinv[0] * ex + m_jinv[1] * ey + m_jinv[2] * er;
+            double d2 = m_jinv[3] * ex + m_jinv[4] * ey + m_jinv[5] * er;
+            double d3 = m_jinv[6] * ex + m_jinv[7] * ey + m_jinv[8] * er;
+            q1 += d1;
+            q2 += d2;
+            q3 += d3;
+        }
+        return new Config(q1, q2, q3);
+    }
+
+    /**
+     * Interpolated inverse Jacobian.
+     * 
+     * @param out row-major, 9 elements
+     * @return false if the pose isn't reachable
+     */
+    public boolean jinv(Pose2d pose, double[] out) {
+        for (int e = 0; e < 9; ++e) {
+            out[e] = interpolate(pose, 3 + e);
+        }
+        return !Double.isNaN(out[0]);
+    }
+
+    ///////////////////////////////////////////////////
+
+    /** Theta near the grid range, unwrapped if necessary. */
+    private double theta(Pose2d pose) {
+        double r = pose.getRotation().getRadians();
+        double span = m_step[2] * (m_n[2] - 1);
+        if (r < m_min[2])
+            r += 2 * Math.PI;
+        else if (r > m_min[2] + span)
+            r -= 2 * Math.PI;
+        return r;
+    }
+
+    /** Trilinear interpolation of one field, NaN outside the grid. */
+    private double interpolate(Pose2d pose, int field) {
+        double fx = (pose.getX() - m_min[0]) / m_step[0];
+        double fy = (pose.getY() - m_min[1]) / m_step[1];
+        double fr = (theta(pose) - m_min[2]) / m_step[2];
+        int i = cell(fx, m_n[0]);
+        int j = cell(fy, m_n[1]);
+        int m = cell(fr, m_n[2]);
+        if (i < 0 || j < 0 || m < 0)
+            return Double.NaN;
+        double tx = fx - i;
+        double ty = fy - j;
+        double tr = fr - m;
+        double result = 0;
+        for (int c = 0; c < 8; ++c) {
+            int di = c & 1;
+            int dj = (c >> 1) & 1;
+            int dm = (c >> 2) & 1;
+            double w = (di == 0 ? 1 - tx : tx)
+                    * (dj == 0 ? 1 - ty : ty)
+                    * (dm == 0 ? 1 - tr : tr);
+            int offset = (((i + di) * m_n[1] + (j + dj)) * m_n[2] + (m + dm)) * STRIDE;
+            // NaN propagates even with zero weight, which is what we want.
+            result += w * m_data[offset + field];
+        }
+        return result;
+    }
+
+    /** Lower node of the cell containing the fractional index, or -1 if outside. */
+    private static int cell(double f, int n) {
+        if (f < 0 || f > n - 1)
+            return -1;
+        return Math.min((int) f, n - 2);
+    }
+}
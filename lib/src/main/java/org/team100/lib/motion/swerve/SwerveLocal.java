@@ -1,5 +1,6 @@
 package org.team100.lib.motion.swerve;
 
+import org.team100.lib.framework.TimedRobot100;
 import org.team100.lib.logging.Level;
 import org.team100.lib.logging.LoggerFactory;
 import org.team100.lib.logging.LoggerFactory.ChassisSpeedsLogger;
@@ -24,6 +25,8 @@ public class SwerveLocal implements Player {
     private static final boolean DEBUG = false;
     private final SwerveKinodynamics m_swerveKinodynamics;
     private final SwerveModuleCollection m_modules;
+    /** Module vectors for setChassisSpeeds(), so it doesn't allocate them. */
+    private final double[] m_moduleVectors;
 
     private final SwerveModulePositionsLogger m_logPositions;
     private final ChassisSpeedsLogger m_log_chassis_speed;
@@ -37,6 +40,7 @@ public class SwerveLocal implements Player {
         m_logPositions = child.swerveModulePositionsLogger(Level.TRACE, "positions");
         m_swerveKinodynamics = swerveKinodynamics;
         m_modules = modules;
+        m_moduleVectors = new double[2 * getModuleLocations().length];
     }
 
     @Override
@@ -54,7 +58,9 @@ public class SwerveLocal implements Player {
      * sets the module states.
      */
     void setChassisSpeeds(ChassisSpeeds speeds) {
-        SwerveModuleStates states = m_swerveKinodynamics.toSwerveModuleStates(speeds);
+        m_swerveKinodynamics.toModuleVectors(speeds, TimedRobot100.LOOP_PERIOD_S, m_moduleVectors);
+        SwerveModuleStates states = m_swerveKinodynamics.getKinematics()
+                .toSwerveModuleStates(m_moduleVectors);
         setModuleStates(states);
         m_log_chassis_speed.log(() -> speeds);
     }
@@ -5,10 +5,12 @@ import java.util.Arrays;
 import org.ejml.simple.SimpleMatrix;
 import org.team100.lib.motion.swerve.module.state.SwerveModuleDelta;
 import org.team100.lib.motion.swerve.module.state.SwerveModuleDeltas;
+import org.team100.lib.motion.swerve.module.state.SwerveModulePosition100;
 import org.team100.lib.motion.swerve.module.state.SwerveModulePositions;
 import org.team100.lib.motion.swerve.module.state.SwerveModuleState100;
 import org.team100.lib.motion.swerve.module.state.SwerveModuleStates;
 
+import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.geometry.Translation2d;
 import edu.wpi.first.math.geometry.Twist2d;
 import edu.wpi.first.math.kinematics.ChassisSpeeds;
@@ -19,6 +21,16 @@ import edu.wpi.first.math.kinematics.ChassisSpeeds;
  * Note: forward kinematics is never more accurate than the gyro and we
  * absolutely cannot operate without a functional gyro, so we should use the
  * gyro instead. see https://github.com/Team100/all24/issues/350
+ * 
+ * The matrices are multiplied by hand, because this runs several times per
+ * cycle, and the garbage adds up. The in-place methods (inverse() and
+ * forward()) don't allocate at all, they write into arrays owned by the
+ * caller; the hot paths (odometry, interpolation, and actuation) use those.
+ * The others allocate their results and two tiny arrays.
+ * 
+ * There's no mutable state here, so everything is thread-safe, which matters
+ * since the kinematics is shared, e.g. by the trajectory planner thread and
+ * the odometry thread.
  */
 public class SwerveDriveKinematics100 {
     private final int m_numModules;
@@ -85,6 +97,11 @@ public class SwerveDriveKinematics100 {
      */
     final SimpleMatrix m_forwardKinematics;
 
+    /** Row-major copy of m_inverseKinematics (2n x 3), for the in-place methods. */
+    private final double[] m_inverse;
+    /** Row-major copy of m_forwardKinematics (3 x 2n), for the in-place methods. */
+    private final double[] m_forward;
+
     /**
      * array order:
      * 
@@ -101,6 +118,78 @@ public class SwerveDriveKinematics100 {
         m_moduleLocations = Arrays.copyOf(moduleTranslationsM, m_numModules);
         m_inverseKinematics = inverseMatrix(m_moduleLocations);
         m_forwardKinematics = m_inverseKinematics.pseudoInverse();
+        m_inverse = toArray(m_inverseKinematics);
+        m_forward = toArray(m_forwardKinematics);
+    }
+
+    /**
+     * INVERSE, in place: chassis vector -> module vectors.
+     * 
+     * This is the same for velocities (vx, vy, omega) and for deltas (dx, dy,
+     * dtheta).
+     * 
+     * @param x     chassis x component
+     * @param y     chassis y component
+     * @param theta chassis rotational component
+     * @param out   [x0; y0; x1; y1; ...] (2n x 1)
+     */
+    public void inverse(double x, double y, double theta, double[] out) {
+        for (int i = 0; i < 2 * m_numModules; ++i) {
+            out[i] = m_inverse[3 * i] * x
+                    + m_inverse[3 * i + 1] * y
+                    + m_inverse[3 * i + 2] * theta;
+        }
+    }
+
+    /**
+     * FORWARD, in place: module vectors -> chassis vector.
+     * 
+     * @param in  [x0; y0; x1; y1; ...] (2n x 1)
+     * @param out [x; y; theta] (3 x 1)
+     */
+    public void forward(double[] in, double[] out) {
+        int n = 2 * m_numModules;
+        for (int r = 0; r < 3; ++r) {
+            double sum = 0;
+            for (int c = 0; c < n; ++c) {
+                sum += m_forward[r * n + c] * in[c];
+            }
+            out[r] = sum;
+        }
+    }
+
+    /**
+     * FORWARD, in place: module positions -> twist, like toTwist2d(), without
+     * making the intermediate deltas.
+     * 
+     * @param start   initial positions
+     * @param end     final positions
+     * @param modules scratch, owned by the caller (2n x 1)
+     * @param out     [dx; dy; dtheta] (3 x 1)
+     */
+    public void forward(
+            SwerveModulePositions start,
+            SwerveModulePositions end,
+            double[] modules,
+            double[] out) {
+        delta(start.frontLeft(), end.frontLeft(), modules, 0);
+        delta(start.frontRight(), end.frontRight(), modules, 2);
+        delta(start.rearLeft(), end.rearLeft(), modules, 4);
+        delta(start.rearRight(), end.rearRight(), modules, 6);
+        forward(modules, out);
+    }
+
+    /**
+     * Module states from module vectors, e.g. the output of inverse().
+     * 
+     * @param modules [vx0; vy0; vx1; vy1; ...] (2n x 1)
+     */
+    public SwerveModuleStates toSwerveModuleStates(double[] modules) {
+        return new SwerveModuleStates(
+                SwerveModuleState100.fromSpeed(modules[0], modules[1]),
+                SwerveModuleState100.fromSpeed(modules[2], modules[3]),
+                SwerveModuleState100.fromSpeed(modules[4], modules[5]),
+                SwerveModuleState100.fromSpeed(modules[6], modules[7]));
     }
 
     /**
@@ -113,10 +202,15 @@ public class SwerveDriveKinematics100 {
      * Angles are otherwise always within [-pi, pi].
      */
     public SwerveModuleStates toSwerveModuleStates(DiscreteSpeed speed) {
-        // [vx; vy; omega] (3 x 1)
-        SimpleMatrix chassisSpeedsVector = chassisSpeeds2Vector(speed);
+        double dt = speed.dt();
         // [v cos; v sin; ...] (2n x 1)
-        return statesFromVector(chassisSpeedsVector);
+        double[] modules = new double[2 * m_numModules];
+        inverse(
+                speed.twist().dx / dt,
+                speed.twist().dy / dt,
+                speed.twist().dtheta / dt,
+                modules);
+        return toSwerveModuleStates(modules);
     }
 
     /**
@@ -129,11 +223,15 @@ public class SwerveDriveKinematics100 {
      * States may include empty angles for motionless wheels.
      */
     public SwerveModuleDeltas toSwerveModuleDelta(Twist2d twist) {
-        // [dx; dy; dtheta] (3 x 1)
-        SimpleMatrix twistVector = twist2Vector(twist);
         // [d cos; d sin; ...] (2n x 1)
-        SimpleMatrix deltaVector = m_inverseKinematics.mult(twistVector);
-        return deltasFromVector(deltaVector);
+        double[] modules = new double[2 * m_numModules];
+        inverse(twist.dx, twist.dy, twist.dtheta, modules);
+        // The resulting distance is always positive.
+        return new SwerveModuleDeltas(
+                new SwerveModuleDelta(modules[0], modules[1]),
+                new SwerveModuleDelta(modules[2], modules[3]),
+                new SwerveModuleDelta(modules[4], modules[5]),
+                new SwerveModuleDelta(modules[6], modules[7]));
     }
 
     /**
@@ -150,12 +248,24 @@ public class SwerveDriveKinematics100 {
      * FORWARD: module states -> chassis speeds
      */
     public ChassisSpeeds toChassisSpeeds(SwerveModuleStates states) {
-        // checkLength(states);
         // [v cos; v sin; ...] (2n x 1)
-        SimpleMatrix statesVector = states2Vector(states);
+        double[] modules = new double[2 * m_numModules];
+        SwerveModuleState100[] all = states.all();
+        for (int i = 0; i < m_numModules; i++) {
+            SwerveModuleState100 module = all[i];
+            if (Math.abs(module.speedMetersPerSecond()) < 1e-6 || module.angle().isEmpty()) {
+                // wheel is stopped, or angle is invalid so pretend it's stopped.
+                modules[i * 2] = 0;
+                modules[i * 2 + 1] = 0;
+            } else {
+                modules[i * 2] = module.speedMetersPerSecond() * module.angle().get().getCos();
+                modules[i * 2 + 1] = module.speedMetersPerSecond() * module.angle().get().getSin();
+            }
+        }
         // [vx; vy; omega]
-        SimpleMatrix chassisSpeedsVector = m_forwardKinematics.mult(statesVector);
-        return vector2ChassisSpeeds(chassisSpeedsVector);
+        double[] chassis = new double[3];
+        forward(modules, chassis);
+        return new ChassisSpeeds(chassis[0], chassis[1], chassis[2]);
     }
 
     /**
@@ -170,120 +280,73 @@ public class SwerveDriveKinematics100 {
      */
     public Twist2d toTwist2d(SwerveModuleDeltas deltas) {
         // [d cos; d sin; ...] (2n x 1)
-        SimpleMatrix deltaVector = deltas2Vector(deltas);
-        // [dx ;dy; dtheta]
-        SimpleMatrix twistVector = m_forwardKinematics.mult(deltaVector);
-        return vector2Twist(twistVector);
-    }
-
-    ///////////////////////////////////////
-
-    /** states -> [v cos; v sin; ... v cos; v sin] (2n x 1) */
-    private SimpleMatrix states2Vector(SwerveModuleStates moduleStates) {
-        SwerveModuleState100[] moduleStatesAll = moduleStates.all();
-        SimpleMatrix moduleStatesMatrix = new SimpleMatrix(m_numModules * 2, 1);
+        double[] modules = new double[2 * m_numModules];
+        SwerveModuleDelta[] all = deltas.all();
         for (int i = 0; i < m_numModules; i++) {
-            SwerveModuleState100 module = moduleStatesAll[i];
-            if (Math.abs(module.speedMetersPerSecond()) < 1e-6 || module.angle().isEmpty()) {
-                // wheel is stopped, or angle is invalid so pretend it's stopped.
-                moduleStatesMatrix.set(i * 2, 0, 0);
-                moduleStatesMatrix.set(i * 2 + 1, 0, 0);
+            SwerveModuleDelta module = all[i];
+            if (Math.abs(module.distanceMeters) < 1e-6 || module.wrappedAngle.isEmpty()) {
+                modules[i * 2] = 0;
+                modules[i * 2 + 1] = 0;
             } else {
-                moduleStatesMatrix.set(i * 2, 0, module.speedMetersPerSecond() * module.angle().get().getCos());
-                moduleStatesMatrix.set(i * 2 + 1, 0, module.speedMetersPerSecond() * module.angle().get().getSin());
-
+                modules[i * 2] = module.distanceMeters * module.wrappedAngle.get().getCos();
+                modules[i * 2 + 1] = module.distanceMeters * module.wrappedAngle.get().getSin();
             }
         }
-        return moduleStatesMatrix;
+        // [dx ;dy; dtheta]
+        double[] chassis = new double[3];
+        forward(modules, chassis);
+        return new Twist2d(chassis[0], chassis[1], chassis[2]);
     }
 
     /**
-     * produces a vector of corner dx and dy, assuming the module deltas represent
-     * straight line paths.
-     * 
-     * @param moduleDeltas [d cos; d sin; ... ] (2n x 1)
+     * FORWARD: module positions -> twist, i.e. toTwist2d() of the deltas
+     * between them, without making the deltas.
      */
-    private SimpleMatrix deltas2Vector(SwerveModuleDeltas moduleDeltas) {
-        SwerveModuleDelta[] deltas = moduleDeltas.all();
-        SimpleMatrix moduleDeltaMatrix = new SimpleMatrix(m_numModules * 2, 1);
-        for (int i = 0; i < m_numModules; i++) {
-            SwerveModuleDelta module = deltas[i];
-            if (Math.abs(module.distanceMeters) < 1e-6 || module.wrappedAngle.isEmpty()) {
-                moduleDeltaMatrix.set(i * 2, 0, 0);
-                moduleDeltaMatrix.set(i * 2 + 1, 0, 0);
-            } else {
-                moduleDeltaMatrix.set(i * 2, 0, module.distanceMeters * module.wrappedAngle.get().getCos());
-                moduleDeltaMatrix.set(i * 2 + 1, 0, module.distanceMeters * module.wrappedAngle.get().getSin());
-            }
-        }
-        return moduleDeltaMatrix;
+    public Twist2d toTwist2d(SwerveModulePositions start, SwerveModulePositions end) {
+        double[] chassis = new double[3];
+        forward(start, end, new double[2 * m_numModules], chassis);
+        return new Twist2d(chassis[0], chassis[1], chassis[2]);
     }
 
-    /** ChassisSpeeds -> [vx; vy; omega] (3 x 1) */
-    private SimpleMatrix chassisSpeeds2Vector(DiscreteSpeed speed) {
-        SimpleMatrix chassisSpeedsVector = new SimpleMatrix(3, 1);
-        chassisSpeedsVector.setColumn(
-                0,
-                0,
-                speed.twist().dx / speed.dt(),
-                speed.twist().dy / speed.dt(),
-                speed.twist().dtheta / speed.dt());
-        return chassisSpeedsVector;
-    }
-
-    /** Twist as a 3x1 column vector: [dx; dy; dtheta] */
-    private static SimpleMatrix twist2Vector(Twist2d twist) {
-        return new SimpleMatrix(new double[] {
-                twist.dx,
-                twist.dy,
-                twist.dtheta });
-    }
-
-    /** [vx; vy; omega] (3 x 1) -> ChassisSpeeds */
-    private static ChassisSpeeds vector2ChassisSpeeds(SimpleMatrix v) {
-        return new ChassisSpeeds(v.get(0, 0), v.get(1, 0), v.get(2, 0));
-    }
-
-    /** [dx; dy; dtheta] (3 x 1) -> Twist2d */
-    private static Twist2d vector2Twist(SimpleMatrix v) {
-        return new Twist2d(v.get(0, 0), v.get(1, 0), v.get(2, 0));
-    }
+    ///////////////////////////////////////
 
     /**
-     * [v cos; v sin; ... ] (2n x 1) -> states[]
-     * 
-     * Speed is always non-negative.
-     * 
-     * Angle can be empty if speed is about zero.
-     * Otherwise angle is always within [-pi, pi].
-     * 
-     * @param chassisSpeedsVector [vx0; vy0; vx1; ...]
+     * Module delta, as in SwerveModuleDelta.delta(), i.e. a straight line at
+     * the end angle, into the array at the offset.
      */
-    SwerveModuleStates statesFromVector(SimpleMatrix chassisSpeedsVector) {
-        SimpleMatrix m = m_inverseKinematics.mult(chassisSpeedsVector);
-        return new SwerveModuleStates(
-                SwerveModuleState100.fromSpeed(m.get(0, 0), m.get(1, 0)),
-                SwerveModuleState100.fromSpeed(m.get(2, 0), m.get(3, 0)),
-                SwerveModuleState100.fromSpeed(m.get(4, 0), m.get(5, 0)),
-                SwerveModuleState100.fromSpeed(m.get(6, 0), m.get(7, 0)));
+    private static void delta(
+            SwerveModulePosition100 start,
+            SwerveModulePosition100 end,
+            double[] modules,
+            int offset) {
+        double deltaM = end.distanceMeters - start.distanceMeters;
+        if (Math.abs(deltaM) < 1e-6 || end.unwrappedAngle.isEmpty()) {
+            // the angle might be empty, if the encoder has failed
+            // (which can seem to happen if the robot is *severely* overrunning).
+            modules[offset] = 0;
+            modules[offset + 1] = 0;
+            return;
+        }
+        Rotation2d angle = end.unwrappedAngle.get();
+        // cos and sin of the unwrapped angle are the same as the wrapped ones,
+        // up to the normalization in Rotation2d.
+        double norm = Math.hypot(angle.getCos(), angle.getSin());
+        modules[offset] = deltaM * angle.getCos() / norm;
+        modules[offset + 1] = deltaM * angle.getSin() / norm;
     }
 
-    public Translation2d[] getModuleLocations() {
-        return m_moduleLocations;
+    private static double[] toArray(SimpleMatrix m) {
+        double[] result = new double[m.getNumRows() * m.getNumCols()];
+        for (int r = 0; r < m.getNumRows(); ++r) {
+            for (int c = 0; c < m.getNumCols(); ++c) {
+                result[r * m.getNumCols() + c] = m.get(r, c);
+            }
+        }
+        return result;
     }
 
-    /**
-     * The resulting distance is always positive.
-     * 
-     * @param moduleDeltaVector [d cos; d sin; ...] (2n x 1),
-     *                          equivalently [dx0; dy0; dx1; ...]
-     */
-    private SwerveModuleDeltas deltasFromVector(SimpleMatrix moduleDeltaVector) {
-        return new SwerveModuleDeltas(
-                new SwerveModuleDelta(moduleDeltaVector.get(0, 0), moduleDeltaVector.get(1, 0)),
-                new SwerveModuleDelta(moduleDeltaVector.get(2, 0), moduleDeltaVector.get(3, 0)),
-                new SwerveModuleDelta(moduleDeltaVector.get(4, 0), moduleDeltaVector.get(5, 0)),
-                new SwerveModuleDelta(moduleDeltaVector.get(6, 0), moduleDeltaVector.get(7, 0)));
+    public Translation2d[] getModuleLocations() {
+        return m_moduleLocations;
     }
 
     /** module locations -> inverse kinematics matrix (2n x 3) */
@@ -8,6 +8,7 @@ import org.team100.lib.motion.swerve.module.state.SwerveModuleStates;
 import org.team100.lib.profile.incremental.IncrementalProfile;
 import org.team100.lib.profile.incremental.TrapezoidIncrementalProfile;
 
+import edu.wpi.first.math.MathUtil;
 import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.geometry.Translation2d;
@@ -213,19 +214,40 @@ public class SwerveKinodynamics  {
      * Otherwise angle is always within [-pi, pi].
      */
     SwerveModuleStates toSwerveModuleStates(ChassisSpeeds in, double dt) {
-        // This is the extra correction angle ...
-        Rotation2d angle = new Rotation2d(VeeringCorrection.correctionRad(in.omegaRadiansPerSecond));
-        // ... which is subtracted here; this isn't really a field-relative
-        // transformation it's just a rotation.
-        ChassisSpeeds chassisSpeeds = ChassisSpeeds.fromFieldRelativeSpeeds(
-                in.vxMetersPerSecond,
-                in.vyMetersPerSecond,
-                in.omegaRadiansPerSecond,
-                angle);
-        // discretization does not affect omega
-        DiscreteSpeed descretized = discretize(chassisSpeeds, dt);
-        SwerveModuleStates states = m_kinematics.toSwerveModuleStates(descretized);
-        return states;
+        double[] modules = new double[2 * m_kinematics.getModuleLocations().length];
+        toModuleVectors(in, dt, modules);
+        return m_kinematics.toSwerveModuleStates(modules);
+    }
+
+    /**
+     * Same as toSwerveModuleStates(), but writes the module vectors
+     * [vx0; vy0; ...] into the given array, owned by the caller, without
+     * allocating; see SwerveDriveKinematics100.toSwerveModuleStates(double[]).
+     */
+    public void toModuleVectors(ChassisSpeeds in, double dt, double[] out) {
+        // This is the extra correction angle, which is subtracted here; this
+        // isn't really a field-relative transformation, it's just a rotation.
+        double correctionRad = VeeringCorrection.correctionRad(in.omegaRadiansPerSecond);
+        double cos = Math.cos(correctionRad);
+        double sin = Math.sin(correctionRad);
+        double vx = in.vxMetersPerSecond * cos + in.vyMetersPerSecond * sin;
+        double vy = -in.vxMetersPerSecond * sin + in.vyMetersPerSecond * cos;
+        // Discretization, i.e. Pose2d.kZero.log(), as in discretize(), by hand.
+        // It doesn't affect omega.
+        double x = vx * dt;
+        double y = vy * dt;
+        double dtheta = MathUtil.angleModulus(in.omegaRadiansPerSecond * dt);
+        double halfDtheta = dtheta / 2;
+        double cosMinusOne = Math.cos(dtheta) - 1;
+        double halfThetaByTanOfHalfDtheta;
+        if (Math.abs(cosMinusOne) < 1e-9) {
+            halfThetaByTanOfHalfDtheta = 1.0 - 1.0 / 12.0 * dtheta * dtheta;
+        } else {
+            halfThetaByTanOfHalfDtheta = -(halfDtheta * Math.sin(dtheta)) / cosMinusOne;
+        }
+        double dx = x * halfThetaByTanOfHalfDtheta + y * halfDtheta;
+        double dy = -x * halfDtheta + y * halfThetaByTanOfHalfDtheta;
+        m_kinematics.inverse(dx / dt, dy / dt, dtheta / dt, out);
     }
 
     /**
@@ -7,7 +7,7 @@ import org.team100.lib.logging.LoggerFactory;
 import org.team100.lib.logging.LoggerFactory.DoubleLogger;
 import org.team100.lib.motion.swerve.kinodynamics.SwerveKinodynamics;
 
-import edu.wpi.first.math.interpolation.InterpolatingDoubleTreeMap;
+import edu.wpi.first.math.MathUtil;
 
 /**
  * Maximum speed scales linearly with applied voltage. We also want to avoid
@@ -16,6 +16,10 @@ import edu.wpi.first.math.interpolation.InterpolatingDoubleTreeMap;
  * 
  * Note the motors actually get a bit less voltage than the battery, due to
  * wiring resistance, but it's ok to neglect that effect.
+ * 
+ * This runs every cycle inside SwerveLimiter, so it doesn't allocate: the
+ * table is written out instead of using InterpolatingDoubleTreeMap, which boxes
+ * the keys.
  */
 public class BatterySagSpeedLimit {
     private static final boolean DEBUG = false;
@@ -23,7 +27,6 @@ public class BatterySagSpeedLimit {
     private final DoubleLogger m_log_scale;
     private final SwerveKinodynamics m_dynamics;
     private final DoubleSupplier m_voltage;
-    private final InterpolatingDoubleTreeMap m_table;
 
     public BatterySagSpeedLimit(
             LoggerFactory parent,
@@ -35,13 +38,6 @@ public class BatterySagSpeedLimit {
         // there's a supplier here so that the tests don't need to use the
         // RobotController HAL, which sometimes mysteriously fails.
         m_voltage = voltage;
-        m_table = new InterpolatingDoubleTreeMap();
-        // 12v is spec voltage
-        m_table.put(12.0, 1.0);
-        // proportional down to 7v
-        m_table.put(7.0, 7.0 / 12.0);
-        // zero speed below 6v
-        m_table.put(6.0, 0.0);
     }
 
     public double getMaxDriveVelocityM_S() {
@@ -61,8 +57,21 @@ public class BatterySagSpeedLimit {
     }
 
     private double getScale() {
-        double scale = m_table.get(m_voltage.getAsDouble());
-        m_log_scale.log(() -> scale);
+        double scale = scale(m_voltage.getAsDouble());
+        m_log_scale.log(scale);
         return scale;
     }
+
+    static double scale(double voltage) {
+        // 12v is spec voltage
+        if (voltage >= 12.0)
+            return 1.0;
+        // proportional down to 7v
+        if (voltage >= 7.0)
+            return MathUtil.interpolate(7.0 / 12.0, 1.0, (voltage - 7.0) / 5.0);
+        // zero speed below 6v
+        if (voltage >= 6.0)
+            return MathUtil.interpolate(0.0, 7.0 / 12.0, voltage - 6.0);
+        return 0.0;
+    }
 }
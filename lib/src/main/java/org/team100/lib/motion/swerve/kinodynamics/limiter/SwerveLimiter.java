@@ -4,10 +4,12 @@ import java.util.function.DoubleSupplier;
 
 import org.team100.lib.experiments.Experiment;
 import org.team100.lib.experiments.Experiments;
+import org.team100.lib.framework.TimedRobot100;
 import org.team100.lib.geometry.GlobalVelocityR3;
 import org.team100.lib.logging.Level;
 import org.team100.lib.logging.LoggerFactory;
 import org.team100.lib.logging.LoggerFactory.DoubleLogger;
+import org.team100.lib.logging.LoggerFactory.EnumLogger;
 import org.team100.lib.logging.LoggerFactory.GlobalVelocityR3Logger;
 import org.team100.lib.motion.swerve.kinodynamics.SwerveKinodynamics;
 
@@ -16,40 +18,80 @@ import org.team100.lib.motion.swerve.kinodynamics.SwerveKinodynamics;
  * 
  * Keeps the current setpoint, to avoid round-tripping through the pose
  * estimator. Remember to update the setpoint!
+ * 
+ * This does the same thing as applying FieldRelativeVelocityLimiter,
+ * FieldRelativeCapsizeLimiter, FieldRelativeAccelerationLimiter, and
+ * SwerveDeadband in a chain, with the same result, but the stages are fused
+ * into one pass over primitive state, because this runs every cycle and the
+ * chain makes a lot of garbage. See SwerveLimiterTest for the equivalence.
+ * 
+ * The constraint that determined the result is available for diagnostics.
  */
 public class SwerveLimiter {
     private static final boolean DEBUG = false;
+    private static final double DT = TimedRobot100.LOOP_PERIOD_S;
+    /** Use the absolute maximum acceleration. */
+    private static final double CARTESIAN_SCALE = 1.0;
+    /**
+     * Use much less than the maximum rotational acceleration.
+     * Rotating fast can be upsetting.
+     */
+    private static final double ALPHA_SCALE = 0.2;
+    /** 1 cm/s, as in SwerveDeadband */
+    private static final double DEADBAND_TRANSLATION = 0.01;
+    /** as in SwerveDeadband */
+    private static final double DEADBAND_OMEGA = 0.001;
+
+    /** The stage that changed the result last, if any. */
+    public enum Binding {
+        NONE,
+        VELOCITY,
+        CAPSIZE,
+        ACCELERATION,
+        DEADBAND
+    }
 
     private final DoubleLogger m_log_norm;
     private final DoubleLogger m_log_normIn;
-
     private final GlobalVelocityR3Logger m_log_next;
+    private final DoubleLogger m_log_velocityScale;
+    private final DoubleLogger m_log_capsizeScale;
+    private final DoubleLogger m_log_accelScale;
+    private final EnumLogger m_log_binding;
+
+    private final SwerveKinodynamics m_dynamics;
+    private final BatterySagSpeedLimit m_speedLimit;
+
+    /**
+     * Velocity expected at the current time, i.e. the previous time step's
+     * desire.
+     */
+    private boolean m_hasCurrent;
+    private double m_x;
+    private double m_y;
+    private double m_theta;
+
+    // diagnostics from the most recent apply()
+    private Binding m_binding;
+    private double m_velocityScale;
+    private double m_capsizeScale;
+    private double m_accelScale;
 
-    private final FieldRelativeVelocityLimiter m_velocityLimiter;
-    private final FieldRelativeCapsizeLimiter m_capsizeLimiter;
-    private final FieldRelativeAccelerationLimiter m_accelerationLimiter;
-    private final SwerveDeadband m_deadband;
-    // Velocity expected at the current time, i.e. the previous time step's desire.
-    private GlobalVelocityR3 m_current;
+    private final double[] m_result;
 
     public SwerveLimiter(LoggerFactory parent, SwerveKinodynamics dynamics, DoubleSupplier voltage) {
         LoggerFactory child = parent.type(this);
         m_log_norm = child.doubleLogger(Level.TRACE, "norm");
         m_log_normIn = child.doubleLogger(Level.TRACE, "norm in");
         m_log_next = child.globalVelocityR3Logger(Level.TRACE, "next");
-
-        BatterySagSpeedLimit limit = new BatterySagSpeedLimit(child, dynamics, voltage);
-        m_velocityLimiter = new FieldRelativeVelocityLimiter(child, limit);
-        m_capsizeLimiter = new FieldRelativeCapsizeLimiter(child, dynamics);
-
-        // Use the absolute maximum acceleration.
-        final double cartesianScale = 1.0;
-        // Use much less than the maximum rotational acceleration.
-        // Rotating fast can be upsetting.
-        final double alphaScale = 0.2;
-        m_accelerationLimiter = new FieldRelativeAccelerationLimiter(child, dynamics, cartesianScale, alphaScale);
-
-        m_deadband = new SwerveDeadband(child);
+        m_log_velocityScale = child.doubleLogger(Level.TRACE, "velocity scale");
+        m_log_capsizeScale = child.doubleLogger(Level.TRACE, "capsize scale");
+        m_log_accelScale = child.doubleLogger(Level.TRACE, "accel scale");
+        m_log_binding = child.enumLogger(Level.TRACE, "binding");
+        m_dynamics = dynamics;
+        m_speedLimit = new BatterySagSpeedLimit(child, dynamics, voltage);
+        m_binding = Binding.NONE;
+        m_result = new double[3];
     }
 
     /**
@@ -58,44 +100,68 @@ public class SwerveLimiter {
      */
     public GlobalVelocityR3 apply(GlobalVelocityR3 nextReference) {
         m_log_next.log(() -> nextReference);
-        m_log_normIn.log(nextReference::norm);
+        apply(nextReference.x(), nextReference.y(), nextReference.theta(), m_result);
+        return new GlobalVelocityR3(m_result[0], m_result[1], m_result[2]);
+    }
+
+    /**
+     * Find a feasible setpoint in the direction of the target, and remember it
+     * for next time, without allocating. See SwerveLimiterTest.testNoAllocation().
+     * 
+     * @param out [x, y, theta]
+     * @return the binding constraint
+     */
+    public Binding apply(double x, double y, double theta, double[] out) {
         if (DEBUG) {
-            System.out.printf("nextReference %s\n", nextReference);
+            System.out.printf("nextReference %f %f %f\n", x, y, theta);
         }
-        if (m_current == null)
-            m_current = nextReference;
+        double normIn = Math.hypot(x, y);
+        m_log_normIn.log(normIn);
+        if (!m_hasCurrent)
+            updateSetpoint(x, y, theta);
+        m_binding = Binding.NONE;
 
         // First, limit the goal to a feasible velocity.
-        GlobalVelocityR3 result = m_velocityLimiter.apply(nextReference);
+        velocity(x, y, theta, out);
         if (DEBUG) {
-            System.out.printf("velocity limited %s\n", result);
+            System.out.printf("velocity limited %f %f %f\n", out[0], out[1], out[2]);
         }
 
         // then limit acceleration towards that goal to avoid capsize
-        result = m_capsizeLimiter.apply(m_current, result);
+        capsize(out);
         if (DEBUG) {
-            System.out.printf("capsize limited %s\n", result);
+            System.out.printf("capsize limited %f %f %f\n", out[0], out[1], out[2]);
         }
 
         // Finally, limit acceleration further, using motor physics.
-        result = m_accelerationLimiter.apply(m_current, result);
+        acceleration(out);
         if (DEBUG) {
-            System.out.printf("accel limited %s\n", result);
+            System.out.printf("accel limited %f %f %f\n", out[0], out[1], out[2]);
         }
 
         // Ignore very small inputs.
         if (Experiments.instance.enabled(Experiment.SwerveDeadband)) {
-            result = m_deadband.apply(result);
+            deadband(out);
         }
 
-        updateSetpoint(result);
+        updateSetpoint(out[0], out[1], out[2]);
 
         if (DEBUG) {
-            System.out.printf("result %s\n", result);
+            System.out.printf("result %f %f %f binding %s\n", out[0], out[1], out[2], m_binding);
         }
-        m_log_norm.log(result::norm);
+        double norm = Math.hypot(out[0], out[1]);
+        // no lambdas here, they would allocate.
+        m_log_norm.log(norm);
+        m_log_velocityScale.log(m_velocityScale);
+        m_log_capsizeScale.log(m_capsizeScale);
+        m_log_accelScale.log(m_accelScale);
+        m_log_binding.log(m_binding);
+        return m_binding;
+    }
 
-        return result;
+    /** The binding constraint from the most recent apply(). */
+    public Binding getBinding() {
+        return m_binding;
     }
 
     /**
@@ -103,7 +169,156 @@ public class SwerveLimiter {
      * This is required to make resumption of manual control smooth.
      */
     public void updateSetpoint(GlobalVelocityR3 setpoint) {
-        m_current = setpoint;
+        updateSetpoint(setpoint.x(), setpoint.y(), setpoint.theta());
+    }
+
+    public void updateSetpoint(double x, double y, double theta) {
+        m_hasCurrent = true;
+        m_x = x;
+        m_y = y;
+        m_theta = theta;
     }
 
+    ///////////////////////////////////////////////////
+
+    /** As in FieldRelativeVelocityLimiter. */
+    private void velocity(double x, double y, double theta, double[] out) {
+        final double maxV = m_speedLimit.getMaxDriveVelocityM_S();
+        final double maxOmega = m_speedLimit.getMaxAngleSpeedRad_S();
+        double xySpeed = Math.hypot(x, y);
+        if (Experiments.instance.enabled(Experiment.LimitsPreferRotation)) {
+            // Scales translation to accommodate the rotation.
+            double omegaRatio = Math.min(1, theta / maxOmega);
+            double xyRatio = Math.min(1, xySpeed / maxV);
+            double ratio = Math.min(1 - omegaRatio, xyRatio);
+            m_velocityScale = ratio / xyRatio;
+            double xyAngle = Math.atan2(y, x);
+            out[0] = ratio * maxV * Math.cos(xyAngle);
+            out[1] = ratio * maxV * Math.sin(xyAngle);
+            out[2] = theta;
+            if (ratio < xyRatio)
+                m_binding = Binding.VELOCITY;
+            return;
+        }
+        // this could be negative if xySpeed is too high
+        double omegaForSpeed = maxOmega * (1 - xySpeed / maxV);
+        if (Math.abs(theta) <= omegaForSpeed) {
+            // omega + xyspeed is feasible
+            m_velocityScale = 1.0;
+            out[0] = x;
+            out[1] = y;
+            out[2] = theta;
+            return;
+        }
+        m_binding = Binding.VELOCITY;
+        if (xySpeed < 1e-12) {
+            // Spinning in place, faster than is possible, so use maxOmega.
+            m_velocityScale = Math.abs(maxOmega / theta);
+            out[0] = 0;
+            out[1] = 0;
+            out[2] = Math.signum(theta) * maxOmega;
+            return;
+        }
+        if (Math.abs(theta) < 1e-12) {
+            // No rotation at all, so use maxV.
+            double xyAngle = Math.atan2(y, x);
+            m_velocityScale = Math.abs(maxV / xySpeed);
+            out[0] = maxV * Math.cos(xyAngle);
+            out[1] = maxV * Math.sin(xyAngle);
+            out[2] = 0;
+            return;
+        }
+        // Both rotation and translation, scale proportionally.
+        double v = maxOmega * xySpeed * maxV / (maxOmega * xySpeed + Math.abs(theta) * maxV);
+        double scale = v / xySpeed;
+        m_velocityScale = scale;
+        out[0] = scale * x;
+        out[1] = scale * y;
+        out[2] = scale * theta;
+    }
+
+    /** As in FieldRelativeCapsizeLimiter. */
+    private void capsize(double[] v) {
+        // Acceleration required to achieve the target.
+        double ax = (v[0] - m_x) / DT;
+        double ay = (v[1] - m_y) / DT;
+        double atheta = (v[2] - m_theta) / DT;
+        double a = Math.hypot(ax, ay);
+        if (a < 1e-6) {
+            // Zero acceleration.
+            a = 0;
+        }
+        double scale = Math.min(1, m_dynamics.getMaxCapsizeAccelM_S2() / a);
+        m_capsizeScale = scale;
+        if (scale < 1)
+            m_binding = Binding.CAPSIZE;
+        integrate(ax, ay, atheta, scale, v);
+    }
+
+    /** As in FieldRelativeAccelerationLimiter. */
+    private void acceleration(double[] v) {
+        // Acceleration required to achieve the target.
+        double ax = (v[0] - m_x) / DT;
+        double ay = (v[1] - m_y) / DT;
+        double atheta = (v[2] - m_theta) / DT;
+        double scale = Math.min(cartesianScale(ax, ay), alphaScale(atheta));
+        m_accelScale = scale;
+        if (scale < 1)
+            m_binding = Binding.ACCELERATION;
+        integrate(ax, ay, atheta, scale, v);
+    }
+
+    private double cartesianScale(double ax, double ay) {
+        double a = Math.hypot(ax, ay);
+        if (Math.abs(a) < 1e-6) {
+            // Avoid divide-by-zero.
+            return 1.0;
+        }
+        // As in SwerveUtil.getAccelLimit(): project the desired dv on to the
+        // previous v: if the projection is positive, we're accelerating.
+        double accelLimit;
+        if (m_x * ax + m_y * ay >= 0) {
+            accelLimit = SwerveUtil.minAccel(m_dynamics, 1, CARTESIAN_SCALE, Math.hypot(m_x, m_y));
+        } else {
+            accelLimit = CARTESIAN_SCALE * m_dynamics.getMaxDriveDecelerationM_S2();
+        }
+        // At full speed, both a and accelLimit are around zero.
+        if (a < accelLimit) {
+            a = accelLimit;
+        }
+        return Math.min(1, accelLimit / a);
+    }
+
+    private double alphaScale(double a) {
+        if (Math.abs(a) < 1e-6) {
+            // Avoid divide-by-zero.
+            return 1.0;
+        }
+        double accelLimit = ALPHA_SCALE * m_dynamics.getMaxAngleAccelRad_S2();
+        if (a < accelLimit) {
+            a = accelLimit;
+        }
+        return Math.min(1, accelLimit / a);
+    }
+
+    /** As in SwerveDeadband. */
+    private void deadband(double[] v) {
+        if (Math.abs(v[0]) > DEADBAND_TRANSLATION
+                || Math.abs(v[1]) > DEADBAND_TRANSLATION
+                || Math.abs(v[2]) > DEADBAND_OMEGA) {
+            return;
+        }
+        if (v[0] != 0 || v[1] != 0 || v[2] != 0)
+            m_binding = Binding.DEADBAND;
+        v[0] = 0;
+        v[1] = 0;
+        v[2] = 0;
+    }
+
+    /** v = current + scale * a * dt, in the same order as the chain does it. */
+    private void integrate(double ax, double ay, double atheta, double scale, double[] v) {
+        v[0] = m_x + (ax * scale) * DT;
+        v[1] = m_y + (ay * scale) * DT;
+        v[2] = m_theta + (atheta * scale) * DT;
+    }
 }
@@ -0,0 +1,103 @@
+package org.team100.lib.motion.swerve.module;
+
+import org.team100.lib.gyro.Gyro;
+import org.team100.lib.gyro.Gyro.YawSample;
+import org.team100.lib.localization.OdometryThread.Sample;
+import org.team100.lib.localization.OdometryThread.Sampler;
+import org.team100.lib.motion.swerve.module.state.SwerveModulePosition100;
+import org.team100.lib.motion.swerve.module.state.SwerveModulePositions;
+
+import com.ctre.phoenix6.BaseStatusSignal;
+import com.ctre.phoenix6.StatusCode;
+import com.ctre.phoenix6.Utils;
+
+/**
+ * Samples the drive and steering positions of all four modules at once, using
+ * BaseStatusSignal.waitForAll(), for the OdometryThread.
+ * 
+ * The sample time is the mean of the signal timestamps. The gyro isn't a CTRE
+ * device, so it can't join the wait; its yaw is extrapolated to the sample
+ * time instead, using its own frame timestamp.
+ */
+public class CtreOdometrySampler implements Sampler {
+    private final SwerveModule100[] m_modules;
+    private final OdometrySignals[] m_moduleSignals;
+    private final BaseStatusSignal[] m_signals;
+    private final Gyro m_gyro;
+    private final double m_timeoutS;
+
+    private CtreOdometrySampler(
+            SwerveModule100[] modules,
+            OdometrySignals[] moduleSignals,
+            Gyro gyro,
+            double rateHz) {
+        m_modules = modules;
+        m_moduleSignals = moduleSignals;
+        m_signals = new BaseStatusSignal[2 * moduleSignals.length];
+        for (int i = 0; i < moduleSignals.length; ++i) {
+            m_signals[2 * i] = moduleSignals[i].drive();
+            m_signals[2 * i + 1] = moduleSignals[i].steer();
+        }
+        m_gyro = gyro;
+        // Allow one missed frame.
+        m_timeoutS = 2 / rateHz;
+        BaseStatusSignal.setUpdateFrequencyForAll(rateHz, m_signals);
+    }
+
+    /**
+     * A sampler for the given modules, or null if they're not all CTRE modules,
+     * or the gyro can't be sampled off the main thread, e.g. in simulation.
+     */
+    public static CtreOdometrySampler get(
+            SwerveModuleCollection modules,
+            Gyro gyro,
+            double rateHz) {
+        if (gyro.sample(0) == null)
+            return null;
+        SwerveModule100[] all = modules.modules();
+        OdometrySignals[] signals = new OdometrySignals[all.length];
+        for (int i = 0; i < all.length; ++i) {
+            signals[i] = all[i].odometrySignals();
+            if (signals[i] == null)
+                return null;
+        }
+        return new CtreOdometrySampler(all, signals, gyro, rateHz);
+    }
+
+    /** waitForAll() waits for the next frame, so the thread doesn't need to. */
+    @Override
+    public boolean paced() {
+        return true;
+    }
+
+    @Override
+    public Sample sample() {
+        StatusCode status = BaseStatusSignal.waitForAll(m_timeoutS, m_signals);
+        if (!status.isOK())
+            return null;
+        double sumS = 0;
+        for (BaseStatusSignal signal : m_signals) {
+            sumS += signal.getTimestamp().getTime();
+        }
+        double timestampS = Utils.currentTimeToFPGATime(sumS / m_signals.length);
+        YawSample yaw = m_gyro.sample(timestampS);
+        if (yaw == null)
+            return null;
+        return new Sample(
+                timestampS,
+                yaw.yawNWU(),
+                yaw.yawRateNWU(),
+                new SwerveModulePositions(
+                        position(0),
+                        position(1),
+                        position(2),
+                        position(3)));
+    }
+
+    private SwerveModulePosition100 position(int i) {
+        OdometrySignals signals = m_moduleSignals[i];
+        return m_modules[i].position(
+                signals.drive().getValueAsDouble() * signals.driveM_Rev(),
+                signals.steer().getValueAsDouble() * signals.steerRad_Rev());
+    }
+}
@@ -0,0 +1,19 @@
+package org.team100.lib.motion.swerve.module;
+
+import com.ctre.phoenix6.StatusSignal;
+
+import edu.wpi.first.units.measure.Angle;
+
+/**
+ * Raw motor position signals for one module, with the factors to convert them
+ * to drive distance and steering angle, for CtreOdometrySampler.
+ * 
+ * The signals are copies owned by the odometry thread, not the ones the Cache
+ * refreshes.
+ */
+record OdometrySignals(
+        StatusSignal<Angle> drive,
+        double driveM_Rev,
+        StatusSignal<Angle> steer,
+        double steerRad_Rev) {
+}
@@ -119,8 +119,24 @@ public abstract class SwerveModule100 implements Player {
 
     /** Uses Cache so the position is fresh and coherent. */
     SwerveModulePosition100 getPosition() {
-        double driveM = m_driveServo.getDistance();
-        double unwrappedAngleRad = m_turningServo.getUnwrappedPositionRad();
+        return position(
+                m_driveServo.getDistance(),
+                m_turningServo.getUnwrappedPositionRad());
+    }
+
+    /**
+     * Raw position signals for the OdometryThread, or null if this module doesn't
+     * have them, e.g. in simulation.
+     */
+    OdometrySignals odometrySignals() {
+        return null;
+    }
+
+    /**
+     * Module position from the given drive distance and steering angle, corrected
+     * for coupling. Doesn't use Cache, so it's ok on the odometry thread.
+     */
+    SwerveModulePosition100 position(double driveM, double unwrappedAngleRad) {
         switch (Identity.instance) {
             case SWERVE_ONE:
             case SWERVE_TWO:
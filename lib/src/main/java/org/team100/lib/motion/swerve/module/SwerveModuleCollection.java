@@ -252,6 +252,7 @@ public class SwerveModuleCollection implements Player {
         m_rearRight.close();
     }
 
+    /** In the same order as positions(). */
     public SwerveModule100[] modules() {
         return new SwerveModule100[] {
                 m_frontLeft,
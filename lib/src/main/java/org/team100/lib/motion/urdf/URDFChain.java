@@ -0,0 +1,285 @@
+package org.team100.lib.motion.urdf;
+
+import java.util.Arrays;
+
+import org.team100.lib.optimization.PrimitiveNewtonsMethod;
+
+/**
+ * The joints from the root of a URDFRobot to one joint (e.g. the end
+ * effector), compiled into primitive arrays, for fast kinematics.
+ * 
+ * URDFRobot.forward() walks the joint graph by name and makes a pose for each
+ * joint, which is fine for occasional use, but inverse kinematics evaluates
+ * the chain many times per solve. This evaluates it with a few multiplies,
+ * into preallocated arrays, and also produces the geometric Jacobian, so the
+ * solver doesn't need to estimate it numerically.
+ * 
+ * Poses are 3x4 row-major arrays, [R | p].
+ * 
+ * As an error function, this compares the end of the chain to the goal: the
+ * position difference, and the rotation vector of the rotation difference,
+ * both in the root frame.
+ * 
+ * This is not thread-safe.
+ */
+public class URDFChain implements PrimitiveNewtonsMethod.Function {
+    static final int REVOLUTE = 0;
+    static final int PRISMATIC = 1;
+    static final int FIXED = 2;
+
+    private final int m_qDim;
+    private final int m_n;
+    /** Origin transform of each joint, 12 each. */
+    private final double[] m_origin;
+    /** Unit joint axis, in the joint frame, 3 each. */
+    private final double[] m_axis;
+    private final int[] m_kind;
+    /** Index of each joint in the configuration vector, or -1. */
+    private final int[] m_qIndex;
+
+    // scratch
+    private final double[] m_pose;
+    private final double[] m_tmp;
+    /** Joint axes in the root frame, 3 each. */
+    private final double[] m_worldAxis;
+    /** Joint origins in the root frame, 3 each. */
+    private final double[] m_worldPoint;
+    private final double[] m_goal;
+
+    /**
+     * @param qDim   dimension of the configuration vector
+     * @param origin origin transform of each joint, root first, 12 each
+     * @param axis   joint axis of each joint, 3 each, need not be unit length
+     * @param kind   REVOLUTE, PRISMATIC, or FIXED
+     * @param qIndex index of each joint in the configuration vector, ignored
+     *               for fixed joints
+     */
+    URDFChain(int qDim, double[] origin, double[] axis, int[] kind, int[] qIndex) {
+        m_qDim = qDim;
+        m_n = kind.length;
+        m_origin = origin.clone();
+        m_axis = new double[3 * m_n];
+        m_kind = kind.clone();
+        m_qIndex = qIndex.clone();
+        for (int j = 0; j < m_n; ++j) {
+            if (m_kind[j] == FIXED)
+                continue;
+            double ax = axis[3 * j];
+            double ay = axis[3 * j + 1];
+            double az = axis[3 * j + 2];
+            double norm = Math.sqrt(ax * ax + ay * ay + az * az);
+            if (norm == 0)
+                throw new IllegalArgumentException("zero joint axis");
+            m_axis[3 * j] = ax / norm;
+            m_axis[3 * j + 1] = ay / norm;
+            m_axis[3 * j + 2] = az / norm;
+        }
+        m_pose = new double[12];
+        m_tmp = new double[12];
+        m_worldAxis = new double[3 * m_n];
+        m_worldPoint = new double[3 * m_n];
+        m_goal = new double[12];
+        identity(m_goal);
+    }
+
+    /** Dimension of the configuration vector. */
+    public int qDim() {
+        return m_qDim;
+    }
+
+    /** Set the goal pose for evaluate(), using a unit quaternion. */
+    public void setGoal(
+            double x, double y, double z,
+            double qw, double qx, double qy, double qz) {
+        m_goal[0] = 1 - 2 * (qy * qy + qz * qz);
+        m_goal[1] = 2 * (qx * qy - qz * qw);
+        m_goal[2] = 2 * (qx * qz + qy * qw);
+        m_goal[3] = x;
+        m_goal[4] = 2 * (qx * qy + qz * qw);
+        m_goal[5] = 1 - 2 * (qx * qx + qz * qz);
+        m_goal[6] = 2 * (qy * qz - qx * qw);
+        m_goal[7] = y;
+        m_goal[8] = 2 * (qx * qz - qy * qw);
+        m_goal[9] = 2 * (qy * qz + qx * qw);
+        m_goal[10] = 1 - 2 * (qx * qx + qy * qy);
+        m_goal[11] = z;
+    }
+
+    /**
+     * Pose of the end of the chain.
+     * 
+     * @param q    configuration
+     * @param pose output, 3x4 row-major
+     */
+    public void forward(double[] q, double[] pose) {
+        identity(m_pose);
+        for (int j = 0; j < m_n; ++j) {
+            // First, translate along the link, in the parent frame.
+            multiply(m_pose, m_origin, 12 * j);
+            if (m_kind[j] == FIXED)
+                continue;
+            // Record the joint axis and origin for the Jacobian.
+            double ax = m_axis[3 * j];
+            double ay = m_axis[3 * j + 1];
+            double az = m_axis[3 * j + 2];
+            m_worldAxis[3 * j] = m_pose[0] * ax + m_pose[1] * ay + m_pose[2] * az;
+            m_worldAxis[3 * j + 1] = m_pose[4] * ax + m_pose[5] * ay + m_pose[6] * az;
+            m_worldAxis[3 * j + 2] = m_pose[8] * ax + m_pose[9] * ay + m_pose[10] * az;
+            m_worldPoint[3 * j] = m_pose[3];
+            m_worldPoint[3 * j + 1] = m_pose[7];
+            m_worldPoint[3 * j + 2] = m_pose[11];
+            // Then, rotate or translate as appropriate.
+            double qj = q[m_qIndex[j]];
+            if (m_kind[j] == REVOLUTE) {
+                rotation(ax, ay, az, qj, m_tmp);
+                multiply(m_pose, m_tmp, 0);
+            } else {
+                m_pose[3] += m_worldAxis[3 * j] * qj;
+                m_pose[7] += m_worldAxis[3 * j + 1] * qj;
+                m_pose[11] += m_worldAxis[3 * j + 2] * qj;
+            }
+        }
+        System.arraycopy(m_pose, 0, pose, 0, 12);
+    }
+
+    /**
+     * Error relative to the goal, and its Jacobian.
+     * 
+     * @param q        configuration
+     * @param error    position error, then rotation-vector error, length 6
+     * @param jacobian 6 x qDim, row-major; the rotation rows are exact at zero
+     *                 error
+     */
+    @Override
+    public void evaluate(double[] q, double[] error, double[] jacobian) {
+        forward(q, m_pose);
+        double px = m_pose[3];
+        double py = m_pose[7];
+        double pz = m_pose[11];
+        error[0] = px - m_goal[3];
+        error[1] = py - m_goal[7];
+        error[2] = pz - m_goal[11];
+        rotationError(error);
+        Arrays.fill(jacobian, 0);
+        for (int j = 0; j < m_n; ++j) {
+            if (m_kind[j] == FIXED)
+                continue;
+            int col = m_qIndex[j];
+            double wx = m_worldAxis[3 * j];
+            double wy = m_worldAxis[3 * j + 1];
+            double wz = m_worldAxis[3 * j + 2];
+            if (m_kind[j] == REVOLUTE) {
+                // linear: w x (p - p_j), angular: w
+                double dx = px - m_worldPoint[3 * j];
+                double dy = py - m_worldPoint[3 * j + 1];
+                double dz = pz - m_worldPoint[3 * j + 2];
+                jacobian[col] += wy * dz - wz * dy;
+                jacobian[m_qDim + col] += wz * dx - wx * dz;
+                jacobian[2 * m_qDim + col] += wx * dy - wy * dx;
+                jacobian[3 * m_qDim + col] += wx;
+                jacobian[4 * m_qDim + col] += wy;
+                jacobian[5 * m_qDim + col] += wz;
+            } else {
+                jacobian[col] += wx;
+                jacobian[m_qDim + col] += wy;
+                jacobian[2 * m_qDim + col] += wz;
+            }
+        }
+    }
+
+    ///////////////////////////////////////////////////
+
+    /** Rotation vector of R R_goal^T, into error[3..5]. */
+    private void rotationError(double[] error) {
+        // D = R G^T
+        double[] r = m_pose;
+        double[] g = m_goal;
+        double d00 = r[0] * g[0] + r[1] * g[1] + r[2] * g[2];
+        double d01 = r[0] * g[4] + r[1] * g[5] + r[2] * g[6];
+        double d02 = r[0] * g[8] + r[1] * g[9] + r[2] * g[10];
+        double d10 = r[4] * g[0] + r[5] * g[1] + r[6] * g[2];
+        double d11 = r[4] * g[4] + r[5] * g[5] + r[6] * g[6];
+        double d12 = r[4] * g[8] + r[5] * g[9] + r[6] * g[10];
+        double d20 = r[8] * g[0] + r[9] * g[1] + r[10] * g[2];
+        double d21 = r[8] * g[4] + r[9] * g[5] + r[10] * g[6];
+        double d22 = r[8] * g[8] + r[9] * g[9] + r[10] * g[10];
+        // sin(theta) * axis
+        double vx = (d21 - d12) / 2;
+        double vy = (d02 - d20) / 2;
+        double vz = (d10 - d01) / 2;
+        double s = Math.sqrt(vx * vx + vy * vy + vz * vz);
+        double c = Math.max(-1, Math.min(1, (d00 + d11 + d22 - 1) / 2));
+        double theta = Math.atan2(s, c);
+        if (s > 1e-6) {
+            double k = theta / s;
+            error[3] = vx * k;
+            error[4] = vy * k;
+            error[5] = vz * k;
+            return;
+        }
+        if (c > 0) {
+            // tiny angle: sin(theta) ~ theta
+            error[3] = vx;
+            error[4] = vy;
+            error[5] = vz;
+            return;
+        }
+        // about pi: the axis is the dominant column of (D + I) / 2
+        double ax = Math.sqrt(Math.max(0, (d00 + 1) / 2));
+        double ay = Math.sqrt(Math.max(0, (d11 + 1) / 2));
+        double az = Math.sqrt(Math.max(0, (d22 + 1) / 2));
+        if (ax >= ay && ax >= az) {
+            ay = Math.copySign(ay, d01 + d10);
+            az = Math.copySign(az, d02 + d20);
+        } else if (ay >= az) {
+            ax = Math.copySign(ax, d01 + d10);
+            az = Math.copySign(az, d12 + d21);
+        } else {
+            ax = Math.copySign(ax, d02 + d20);
+            ay = Math.copySign(ay, d12 + d21);
+        }
+        error[3] = ax * theta;
+        error[4] = ay * theta;
+        error[5] = az * theta;
+    }
+
+    /** a = a * b, where b starts at the offset. */
+    private void multiply(double[] a, double[] b, int offset) {
+        for (int row = 0; row < 3; ++row) {
+            double a0 = a[4 * row];
+            double a1 = a[4 * row + 1];
+            double a2 = a[4 * row + 2];
+            double a3 = a[4 * row + 3];
+            a[4 * row] = a0 * b[offset] + a1 * b[offset + 4] + a2 * b[offset + 8];
+            a[4 * row + 1] = a0 * b[offset + 1] + a1 * b[offset + 5] + a2 * b[offset + 9];
+            a[4 * row + 2] = a0 * b[offset + 2] + a1 * b[offset + 6] + a2 * b[offset + 10];
+            a[4 * row + 3] = a0 * b[offset + 3] + a1 * b[offset + 7] + a2 * b[offset + 11] + a3;
+        }
+    }
+
+    /** Rotation about the unit axis by the angle (Rodrigues), zero translation. */
+    static void rotation(double x, double y, double z, double angle, double[] out) {
+        double c = Math.cos(angle);
+        double s = Math.sin(angle);
+        double t = 1 - c;
+        out[0] = t * x * x + c;
+        out[1] = t * x * y - s * z;
+        out[2] = t * x * z + s * y;
+        out[3] = 0;
+        out[4] = t * x * y + s * z;
+        out[5] = t * y * y + c;
+        out[6] = t * y * z - s * x;
+        out[7] = 0;
+        out[8] = t * x * z - s * y;
+        out[9] = t * y * z + s * x;
+        out[10] = t * z * z + c;
+        out[11] = 0;
+    }
+
+    private static void identity(double[] m) {
+        Arrays.fill(m, 0);
+        m[0] = 1;
+        m[5] = 1;
+        m[10] = 1;
+    }
+}
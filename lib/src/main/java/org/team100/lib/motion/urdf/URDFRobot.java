@@ -1,19 +1,19 @@
 package org.team100.lib.motion.urdf;
 
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.function.Function;
 
-import org.team100.lib.geometry.GeometryUtil;
-import org.team100.lib.optimization.NewtonsMethod;
+import org.team100.lib.optimization.PrimitiveNewtonsMethod;
 
 import edu.wpi.first.math.Nat;
 import edu.wpi.first.math.Num;
 import edu.wpi.first.math.Vector;
 import edu.wpi.first.math.geometry.Pose3d;
+import edu.wpi.first.math.geometry.Quaternion;
 import edu.wpi.first.math.geometry.Transform3d;
-import edu.wpi.first.math.numbers.N6;
 
 /**
  * This is a partial implementation of the URDF object model.
@@ -47,18 +47,31 @@ import edu.wpi.first.math.numbers.N6;
  */
 public class URDFRobot<Q extends Num> {
     private static final boolean DEBUG = false;
+    // if the error is too large, then movements become jerky -- the
+    // distance between current and desired pose can be within the
+    // error. so keep this small, a few mm.
+    private static final double IK_TOLERANCE = 2e-3;
+    // with the analytic Jacobian, each iteration takes a microsecond or so,
+    // but newton either converges in a few iterations or gets stuck, so
+    // keep the limit low and rely on random restart instead.
+    private static final int IK_ITERATIONS = 8;
+    // random restart tries to escape local minima.
+    private static final int IK_RESTARTS = 3;
     @SuppressWarnings("unused")
     private final String m_name;
     @SuppressWarnings("unused")
     private final List<URDFLink> m_links;
     private final List<URDFJoint> m_joints;
     private final Nat<Q> m_qDim;
+    /** Compiled chains by end joint name. */
+    private final Map<String, URDFChain> m_chains;
 
     public URDFRobot(Nat<Q> qDim, String name, List<URDFLink> links, List<URDFJoint> joints) {
         m_qDim = qDim;
         m_name = name;
         m_links = links;
         m_joints = joints;
+        m_chains = new HashMap<>();
     }
 
     /**
@@ -80,65 +93,97 @@ public class URDFRobot<Q extends Num> {
      * qDim indicates the dimensionality of the configuration space.
      * q0 is the initial (e.g. current) configuration.
      * 
-     * the function, f, is the forward transform: it takes the joint
-     * configuration vector, Q, and produces a vector representing the pose, P.
-     * since the Pose is in SE(3) we have to choose a parameterization. see
+     * The error is the difference between the pose at the end of the chain and
+     * the goal pose: the position difference, and the rotation vector of the
+     * rotation difference, both in the root frame. Newton's method assumes a
+     * euclidean space, and this is only euclidean near the goal, but that's
+     * where it matters. See
      * https://ingmec.ual.es/~jlblanco/papers/jlblanco2010geometry3D_techrep.pdf
-     * which has a section on SE(3) parameterizations for optimization.
-     * optimizers assume euclidean spaces. they suggest optimizing on the manifold,
-     * like GTSAM does.
+     * for more on SE(3) parameterizations for optimization.
      * 
-     * ideally at each optimizer would reparameterize at each step.
-     * 
-     * if not, then the "error" is between two tangent vectors whose origin is far
-     * away.
+     * This uses the compiled chain, see chain(), and its analytic Jacobian. To
+     * solve repeatedly without allocating, e.g. to follow a moving goal, use
+     * the chain and a PrimitiveNewtonsMethod directly, passing the previous
+     * solution as the initial value.
      */
     public Map<String, Double> inverse(
             Vector<Q> q0,
             double dqLimit,
             String jointName,
             Pose3d goal) {
-        Function<Vector<Q>, Pose3d> fwd = q -> {
-            Pose3d pose = forward(qMap(q)).get(jointName);
-            return pose;
-        };
-
-        Function<Vector<Q>, Vector<N6>> err = q -> GeometryUtil.toVec(goal.log(fwd.apply(q)));
-
-        // this function always uses pose3d so the goal dim is always N6.
-        Nat<N6> twistDim = Nat.N6();
-
-        // if the error is too large, then movements become jerky -- the
-        // distance between current and desired pose can be within the
-        // error. so keep this small, a few mm.
-        double tolerance = 2e-3;
-
-        // sometimes the solver seems to circle around the goal
-        // but it only happens in the middle of movements, when the
-        // initial and goal are far apart.
-
-        // regardless, each iteration (on my fast machine) takes 50 us,
-        // so we can only afford to do, say, 20, even when random-restarting, so make
-        // each iteration limit low.
-        int iterations = 8;
-
-        // random restart tries to escape local minima.
-        // don't try for too long, it's better to have the wrong answer sooner than the
-        // right answer after a long delay.
-        int restarts = 3;
-
-        NewtonsMethod<Q, N6> solver = new NewtonsMethod<>(
-                m_qDim, twistDim, err,
-                minQ(m_qDim), maxQ(m_qDim),
-                tolerance, iterations, dqLimit);
+        URDFChain chain = m_chains.computeIfAbsent(jointName, this::chain);
+        setGoal(chain, goal);
+        PrimitiveNewtonsMethod solver = new PrimitiveNewtonsMethod(
+                m_qDim.getNum(), 6, chain, lowerQ(), upperQ(),
+                IK_TOLERANCE, IK_ITERATIONS, dqLimit);
+        double[] q = Arrays.copyOf(q0.getData(), m_qDim.getNum());
         long startTime = System.nanoTime();
-        Vector<Q> qVec = solver.solve2(q0, restarts);
+        solver.solve(q, IK_RESTARTS);
 
         if (DEBUG) {
             long finishTime = System.nanoTime();
             System.out.printf("ET (ms): %6.3f\n", ((double) finishTime - startTime) / 1000000);
         }
-        return qMap(qVec);
+        return qMap(q);
+    }
+
+    /**
+     * Compile the chain from the root to the specified joint. The chain uses
+     * the same configuration vector as the robot.
+     */
+    public URDFChain chain(String jointName) {
+        LinkedList<URDFJoint> chain = new LinkedList<>();
+        for (URDFJoint joint = getJoint(jointName); joint != null; joint = parentJoint(joint.name())) {
+            chain.addFirst(joint);
+        }
+        int n = chain.size();
+        double[] origin = new double[12 * n];
+        double[] axis = new double[3 * n];
+        int[] kind = new int[n];
+        int[] qIndex = new int[n];
+        for (int j = 0; j < n; ++j) {
+            URDFJoint joint = chain.get(j);
+            Pose3d o = joint.origin();
+            Quaternion r = o.getRotation().getQuaternion();
+            double w = r.getW();
+            double x = r.getX();
+            double y = r.getY();
+            double z = r.getZ();
+            double[] m = {
+                    1 - 2 * (y * y + z * z), 2 * (x * y - z * w), 2 * (x * z + y * w), o.getX(),
+                    2 * (x * y + z * w), 1 - 2 * (x * x + z * z), 2 * (y * z - x * w), o.getY(),
+                    2 * (x * z - y * w), 2 * (y * z + x * w), 1 - 2 * (x * x + y * y), o.getZ() };
+            System.arraycopy(m, 0, origin, 12 * j, 12);
+            kind[j] = switch (joint.type()) {
+                case revolute, continuous -> URDFChain.REVOLUTE;
+                case prismatic -> URDFChain.PRISMATIC;
+                case fixed -> URDFChain.FIXED;
+                default -> throw new UnsupportedOperationException();
+            };
+            if (kind[j] != URDFChain.FIXED) {
+                axis[3 * j] = joint.axis().get(0);
+                axis[3 * j + 1] = joint.axis().get(1);
+                axis[3 * j + 2] = joint.axis().get(2);
+            }
+            qIndex[j] = m_joints.indexOf(joint);
+        }
+        return new URDFChain(m_qDim.getNum(), origin, axis, kind, qIndex);
+    }
+
+    /** Set the chain goal from a pose. */
+    public static void setGoal(URDFChain chain, Pose3d goal) {
+        Quaternion r = goal.getRotation().getQuaternion();
+        chain.setGoal(goal.getX(), goal.getY(), goal.getZ(), r.getW(), r.getX(), r.getY(), r.getZ());
+    }
+
+    /** Lower joint limits, indexed like the configuration vector. */
+    public double[] lowerQ() {
+        return minQ(m_qDim).getData().clone();
+    }
+
+    /** Upper joint limits, indexed like the configuration vector. */
+    public double[] upperQ() {
+        return maxQ(m_qDim).getData().clone();
     }
 
     ///////////////////////////////////////////////////
@@ -196,12 +241,17 @@ public class URDFRobot<Q extends Num> {
 
     /** Transform the config vector, q, into a named map. */
     public Map<String, Double> qMap(Vector<?> q) {
+        return qMap(q.getData());
+    }
+
+    /** Transform the config vector, q, into a named map. */
+    public Map<String, Double> qMap(double[] q) {
         Map<String, Double> qMap = new HashMap<>();
         List<URDFJoint> joints = m_joints;
         for (int i = 0; i < joints.size(); ++i) {
             URDFJoint joint = joints.get(i);
             if (joint.active()) {
-                qMap.put(joint.name(), q.get(i));
+                qMap.put(joint.name(), q[i]);
             }
         }
         return qMap;
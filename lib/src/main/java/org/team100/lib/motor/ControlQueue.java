@@ -0,0 +1,123 @@
+package org.team100.lib.motor;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+
+import org.team100.lib.coherence.Takt;
+import org.team100.lib.framework.LoopProfiler;
+import org.team100.lib.logging.Level;
+import org.team100.lib.logging.LoggerFactory;
+import org.team100.lib.logging.LoggerFactory.DoubleLogger;
+import org.team100.lib.logging.LoggerFactory.IntLogger;
+import org.team100.lib.logging.Logging;
+
+/**
+ * Writes all the queued motor control requests at once, so the CAN writes
+ * happen at a single point in the loop, instead of scattered through the
+ * commands, and identical requests aren't written at all.
+ * 
+ * If the QueueControlWrites experiment is enabled, flush() should be called in
+ * Robot.robotPeriodic(), after the command scheduler, otherwise the motors
+ * won't do anything.
+ * 
+ * By default, flush() does the writes itself, on the calling thread. If
+ * setAsync() is used, the writes are done on a dedicated thread instead, and
+ * flush() just wakes it up, so the main loop doesn't wait for the JNI calls at
+ * all.
+ */
+public class ControlQueue {
+    private static final LoggerFactory m_logger = Logging.instance().rootLogger.name("ControlQueue");
+    /** How long it takes to write everything. */
+    private static final DoubleLogger m_log_flush = m_logger.doubleLogger(Level.COMP, "flush time (s)");
+    /** How many requests were actually written, the rest were skipped. */
+    private static final IntLogger m_log_writes = m_logger.intLogger(Level.DEBUG, "writes");
+    private static final LoopProfiler.Probe m_probe = LoopProfiler.instance().probe("ControlQueue");
+    /** Written on the main thread during construction, read by the writer. */
+    private static final List<ControlWrite> writes = new CopyOnWriteArrayList<>();
+    /** Null means write on the calling thread. */
+    private static Thread writer = null;
+    private static final Semaphore wake = new Semaphore(0);
+    /** Results of the most recent flush, which might be on the writer thread. */
+    private static volatile double flushS;
+    private static volatile int flushWrites;
+
+    /** Called by the ControlWrite constructor. */
+    static void register(ControlWrite write) {
+        writes.add(write);
+    }
+
+    /**
+     * Write the queued requests, or wake the writer thread to do it.
+     * 
+     * Should be run in Robot.robotPeriodic(), after the command scheduler.
+     */
+    public static void flush() {
+        double startS = Takt.actual();
+        if (writer == null) {
+            write();
+        } else {
+            wake.release();
+        }
+        m_probe.record(Takt.actual() - startS);
+        // In async mode, these are from the previous cycle.
+        m_log_flush.log(() -> flushS);
+        m_log_writes.log(() -> flushWrites);
+    }
+
+    /**
+     * Write on a dedicated thread, or not. The default is not.
+     * 
+     * Each call interrupts the existing writer thread, if any, and, if async is
+     * true, starts a new one, so call it once, at startup.
+     */
+    public static void setAsync(boolean async) {
+        if (writer != null) {
+            writer.interrupt();
+            writer = null;
+        }
+        if (!async)
+            return;
+        writer = new Thread(ControlQueue::run, "ControlQueue");
+        writer.setDaemon(true);
+        // Same priority as the main loop, which produces the requests.
+        writer.setPriority(Thread.currentThread().getPriority());
+        writer.start();
+    }
+
+    /** For testing only */
+    public static void clear() {
+        setAsync(false);
+        writes.clear();
+    }
+
+    /////////////////////////////////////////////////
+
+    private static void write() {
+        double startS = Takt.actual();
+        int n = 0;
+        for (ControlWrite w : writes) {
+            if (w.flush())
+                n++;
+        }
+        flushS = Takt.actual() - startS;
+        flushWrites = n;
+    }
+
+    private static void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                wake.acquire();
+            } catch (InterruptedException e) {
+                return;
+            }
+            // If we fell behind, one write covers all the missed flushes.
+            wake.drainPermits();
+            write();
+        }
+    }
+
+    private ControlQueue() {
+        //
+    }
+}
@@ -0,0 +1,136 @@
+package org.team100.lib.motor;
+
+import org.team100.lib.experiments.Experiment;
+import org.team100.lib.experiments.Experiments;
+
+/**
+ * The latest desired control for one motor, to be written by ControlQueue.
+ * 
+ * Motors call set() instead of writing to the device directly. If the
+ * QueueControlWrites experiment is off, set() writes immediately, as before.
+ * If it's on, set() just records the request, and ControlQueue.flush() writes
+ * it later, either on the main thread, or on the ControlQueue thread. Only the
+ * last request in each cycle is written, and a request that's the same as the
+ * last one written, within tolerance, is skipped, except every KEEPALIVE
+ * cycles, in case a frame was lost.
+ * 
+ * The sender always runs with the send lock held, so it can use the motor's
+ * control request objects without further synchronization, and so stop() can't
+ * be overtaken by a queued write.
+ */
+public class ControlWrite {
+    /** Setpoint tolerance, in whatever units the motor uses. */
+    private static final double SETPOINT_TOLERANCE = 1e-4;
+    /** Feedforward tolerance, volts. */
+    private static final double FF_TOLERANCE = 1e-3;
+    /** Write unchanged requests this often anyway. */
+    private static final int KEEPALIVE = 10;
+
+    public enum Mode {
+        DUTY_CYCLE,
+        VELOCITY,
+        POSITION,
+        /** The setpoint is the frequency in Hz. Motors that can't play ignore it. */
+        TONE
+    }
+
+    /** Writes the control request to the device. */
+    public interface Sender {
+        void send(Mode mode, double setpoint, double feedforward);
+    }
+
+    private final Sender m_sender;
+    private final Object m_sendLock = new Object();
+
+    // Pending request, guarded by this.
+    private Mode m_mode;
+    private double m_setpoint;
+    private double m_ff;
+    private boolean m_pending;
+
+    // Last request sent, guarded by m_sendLock.
+    private Mode m_sentMode;
+    private double m_sentSetpoint;
+    private double m_sentFF;
+    private int m_skipped;
+
+    public ControlWrite(Sender sender) {
+        m_sender = sender;
+        ControlQueue.register(this);
+    }
+
+    /**
+     * Write the request now, or queue it for ControlQueue.flush(), depending on
+     * the QueueControlWrites experiment.
+     */
+    public void set(Mode mode, double setpoint, double feedforward) {
+        if (!Experiments.instance.enabled(Experiment.QueueControlWrites)) {
+            synchronized (m_sendLock) {
+                synchronized (this) {
+                    m_pending = false;
+                }
+                send(mode, setpoint, feedforward);
+            }
+            return;
+        }
+        synchronized (this) {
+            m_mode = mode;
+            m_setpoint = setpoint;
+            m_ff = feedforward;
+            m_pending = true;
+        }
+    }
+
+    /**
+     * Drop any pending request and run the stop action, e.g. stopMotor(). The
+     * next request will be written even if it's the same as the last one.
+     */
+    public void stop(Runnable stop) {
+        synchronized (m_sendLock) {
+            synchronized (this) {
+                m_pending = false;
+            }
+            m_sentMode = null;
+            stop.run();
+        }
+    }
+
+    /**
+     * Write the pending request, if any, unless it's the same as the last one.
+     * 
+     * @return true if a request was written
+     */
+    boolean flush() {
+        synchronized (m_sendLock) {
+            final Mode mode;
+            final double setpoint;
+            final double ff;
+            synchronized (this) {
+                if (!m_pending)
+                    return false;
+                m_pending = false;
+                mode = m_mode;
+                setpoint = m_setpoint;
+                ff = m_ff;
+            }
+            if (mode == m_sentMode
+                    && Math.abs(setpoint - m_sentSetpoint) <= SETPOINT_TOLERANCE
+                    && Math.abs(ff - m_sentFF) <= FF_TOLERANCE
+                    && m_skipped < KEEPALIVE) {
+                m_skipped++;
+                return false;
+            }
+            send(mode, setpoint, ff);
+            return true;
+        }
+    }
+
+    /** Call with m_sendLock held. */
+    private void send(Mode mode, double setpoint, double ff) {
+        m_sender.send(mode, setpoint, ff);
+        m_sentMode = mode;
+        m_sentSetpoint = setpoint;
+        m_sentFF = ff;
+        m_skipped = 0;
+    }
+}
@@ -11,6 +11,7 @@ import org.team100.lib.logging.Level;
 import org.team100.lib.logging.LoggerFactory;
 import org.team100.lib.logging.LoggerFactory.DoubleLogger;
 import org.team100.lib.motor.BareMotor;
+import org.team100.lib.motor.ControlWrite;
 import org.team100.lib.motor.MotorPhase;
 import org.team100.lib.motor.NeutralMode;
 import org.team100.lib.util.CanId;
@@ -66,6 +67,7 @@ public abstract class Talon6Motor implements BareMotor {
     private final DutyCycleOut m_dutyCycleOut;
     private final PositionVoltage m_positionVoltage;
     private final MusicTone m_music;
+    private final ControlWrite m_write;
 
     // LOGGERS
     private final DoubleLogger m_log_desired_duty;
@@ -105,6 +107,7 @@ public abstract class Talon6Motor implements BareMotor {
         m_dutyCycleOut = new DutyCycleOut(0);
         m_positionVoltage = new PositionVoltage(0);
         m_music = new MusicTone(0);
+        m_write = new ControlWrite(this::send);
 
         //////////////////////////////////////
         // Update frequencies.
@@ -202,11 +205,10 @@ public abstract class Talon6Motor implements BareMotor {
         child.intLogger(Level.TRACE, "Device ID").log(() -> canId.id);
     }
 
-    /** Set duty cycle immediately. */
+    /** Set duty cycle, immediately unless control writes are queued. */
     @Override
     public void setDutyCycle(double output) {
-        warn(() -> m_motor.setControl(m_dutyCycleOut
-                .withOutput(output)));
+        m_write.set(ControlWrite.Mode.DUTY_CYCLE, output, 0);
         m_log_desired_duty.log(() -> output);
         log();
     }
@@ -226,7 +228,7 @@ public abstract class Talon6Motor implements BareMotor {
      * Use VelocityVoltage outboard PID control to hold the given velocity, with
      * friction, velocity, acceleration, and torque feedforwards.
      * 
-     * Actuates immediately.
+     * Actuates immediately, unless control writes are queued, see ControlWrite.
      */
     @Override
     public void setVelocity(double motorRad_S, double motorAccelRad_S2, double motorTorqueNm) {
@@ -241,13 +243,7 @@ public abstract class Talon6Motor implements BareMotor {
         final double FFVolts = frictionFFVolts + velocityFFVolts + accelFFVolts + torqueFFVolts;
         // final double FFVolts = torqueFFVolts;
 
-        // VelocityVoltage has an acceleration field for kA feedforward but we use
-        // arbitrary feedforward for that.
-        warn(() -> m_motor.setControl(
-                m_velocityVoltage
-                        .withSlot(1)
-                        .withVelocity(motorRev_S)
-                        .withFeedForward(FFVolts)));
+        m_write.set(ControlWrite.Mode.VELOCITY, motorRev_S, FFVolts);
 
         // without feedforward
         // Phoenix100.warn(() -> m_motor.setControl(
@@ -265,16 +261,17 @@ public abstract class Talon6Motor implements BareMotor {
         log();
     }
 
+    /** Immediately, unless control writes are queued, like the other controls. */
     @Override
     public void play(double freq) {
-        m_motor.setControl(m_music.withAudioFrequency(freq));
+        m_write.set(ControlWrite.Mode.TONE, freq, 0);
     }
 
     /**
      * Use PositionVoltage outboard PID control to hold the given position, with
      * friction, velocity, accel, and torque feedforwards.
      * 
-     * Actuates immediately.
+     * Actuates immediately, unless control writes are queued, see ControlWrite.
      * 
      * Motor revolutions wind up, so setting 0 revs and 1 rev are different.
      */
@@ -295,13 +292,7 @@ public abstract class Talon6Motor implements BareMotor {
 
         final double FFVolts = frictionFFVolts + velocityFFVolts + accelFFVolts + torqueFFVolts;
 
-        // PositionVoltage has a velocity field for kV feedforward but we use arbitrary
-        // feedforward for that.
-        warn(() -> m_motor.setControl(
-                m_positionVoltage
-                        .withSlot(0)
-                        .withPosition(motorRev)
-                        .withFeedForward(FFVolts)));
+        m_write.set(ControlWrite.Mode.POSITION, motorRev, FFVolts);
 
         m_log_desired_position.log(() -> motorRev);
         m_log_desired_speed.log(() -> motorRev_S);
@@ -323,7 +314,7 @@ public abstract class Talon6Motor implements BareMotor {
 
     @Override
     public void stop() {
-        m_motor.stopMotor();
+        m_write.stop(m_motor::stopMotor);
     }
 
     @Override
@@ -409,6 +400,17 @@ public abstract class Talon6Motor implements BareMotor {
         return positionRad;
     }
 
+    /**
+     * A new copy of the position signal, for OdometryThread, which refreshes it
+     * with BaseStatusSignal.waitForAll() on its own thread. Signals aren't
+     * thread-safe, so this isn't the one the Cache refreshes.
+     * 
+     * Not latency-compensated; use the signal timestamp.
+     */
+    public StatusSignal<Angle> getPositionSignal() {
+        return m_motor.getPosition().clone();
+    }
+
     /** ait a long time for a new value, do not use outside testing. */
     public double getUnwrappedPositionBlockingRev() {
         return m_motor.getPosition().waitForUpdate(1).getValueAsDouble();
@@ -443,6 +445,30 @@ public abstract class Talon6Motor implements BareMotor {
 
     /////////////////////////////////////////////
 
+    /** Called by ControlWrite, maybe on the ControlQueue thread. */
+    private void send(ControlWrite.Mode mode, double setpoint, double feedforward) {
+        switch (mode) {
+            case DUTY_CYCLE -> warn(() -> m_motor.setControl(m_dutyCycleOut
+                    .withOutput(setpoint)));
+            // VelocityVoltage has an acceleration field for kA feedforward but we use
+            // arbitrary feedforward for that.
+            case VELOCITY -> warn(() -> m_motor.setControl(
+                    m_velocityVoltage
+                            .withSlot(1)
+                            .withVelocity(setpoint)
+                            .withFeedForward(feedforward)));
+            // PositionVoltage has a velocity field for kV feedforward but we use
+            // arbitrary feedforward for that.
+            case POSITION -> warn(() -> m_motor.setControl(
+                    m_positionVoltage
+                            .withSlot(0)
+                            .withPosition(setpoint)
+                            .withFeedForward(feedforward)));
+            case TONE -> warn(() -> m_motor.setControl(
+                    m_music.withAudioFrequency(setpoint)));
+        }
+    }
+
     private static void warn(Supplier<StatusCode> s) {
         StatusCode statusCode = s.get();
         if (statusCode.isError()) {
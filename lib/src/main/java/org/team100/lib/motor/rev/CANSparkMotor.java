@@ -2,14 +2,13 @@ package org.team100.lib.motor.rev;
 
 import java.util.function.Supplier;
 
-import org.team100.lib.coherence.Cache;
-import org.team100.lib.coherence.DoubleCache;
 import org.team100.lib.config.Feedforward100;
 import org.team100.lib.config.PIDConstants;
 import org.team100.lib.logging.Level;
 import org.team100.lib.logging.LoggerFactory;
 import org.team100.lib.logging.LoggerFactory.DoubleLogger;
 import org.team100.lib.motor.BareMotor;
+import org.team100.lib.motor.ControlWrite;
 import org.team100.lib.motor.MotorPhase;
 import org.team100.lib.motor.NeutralMode;
 
@@ -39,13 +38,9 @@ public abstract class CANSparkMotor implements BareMotor {
     protected final SparkLimitSwitch m_revLimitSwitch;
     protected final RelativeEncoder m_encoder;
     protected final SparkClosedLoopController m_pidController;
+    private final ControlWrite m_write;
     // CACHES
-    private final DoubleCache m_encoder_position;
-    private final DoubleCache m_encoder_velocity;
-    private final DoubleCache m_current;
-    private final DoubleCache m_supplyVoltage;
-    private final DoubleCache m_output;
-    // private final DoubleCache m_temp;
+    private final SparkSignals m_signals;
     // LOGGERS
     private final DoubleLogger m_log_desired_position;
     private final DoubleLogger m_log_desired_speed;
@@ -86,23 +81,20 @@ public abstract class CANSparkMotor implements BareMotor {
         m_configurator.baseConfig();
         m_configurator.motorConfig();
         m_configurator.currentConfig();
+        m_configurator.signalConfig();
         m_configurator.pidConfig();
         m_configurator.zeroCANTimeout();
 
         m_encoder = m_motor.getEncoder();
         m_pidController = m_motor.getClosedLoopController();
+        m_write = new ControlWrite(this::send);
 
         // LIMIT SWITCHES
         m_forLimitSwitch = m_motor.getForwardLimitSwitch();
         m_revLimitSwitch = m_motor.getReverseLimitSwitch();
 
         // CACHES
-        m_encoder_position = Cache.ofDouble(m_encoder::getPosition);
-        m_encoder_velocity = Cache.ofDouble(m_encoder::getVelocity);
-        m_current = Cache.ofDouble(m_motor::getOutputCurrent);
-        m_supplyVoltage = Cache.ofDouble(m_motor::getBusVoltage);
-        m_output = Cache.ofDouble(m_motor::getAppliedOutput);
-        // m_temp = Memo.ofDouble(m_motor::getMotorTemperature);
+        m_signals = new SparkSignals(m_motor, m_encoder);
         // LOGGERS
         child.intLogger(Level.TRACE, "Device ID").log(m_motor::getDeviceId);
         m_log_desired_position = child.doubleLogger(Level.DEBUG, "desired position (rev)");
@@ -124,7 +116,7 @@ public abstract class CANSparkMotor implements BareMotor {
 
     @Override
     public void setDutyCycle(double output) {
-        m_motor.set(output);
+        m_write.set(ControlWrite.Mode.DUTY_CYCLE, output, 0);
         m_log_duty.log(() -> output);
         log();
     }
@@ -160,8 +152,7 @@ public abstract class CANSparkMotor implements BareMotor {
         final double FF = frictionFFVolts + velocityFFVolts + accelFFVolts + torqueFFVolts;
 
         final double motorRev_M = motorRev_S * 60;
-        warn(() -> m_pidController.setReference(
-                motorRev_M, ControlType.kVelocity, ClosedLoopSlot.kSlot1, FF, ArbFFUnits.kVoltage));
+        m_write.set(ControlWrite.Mode.VELOCITY, motorRev_M, FF);
 
         m_log_desired_speed.log(() -> motorRev_S);
         m_log_desired_accel.log(() -> motorRev_S2);
@@ -195,8 +186,7 @@ public abstract class CANSparkMotor implements BareMotor {
 
         final double FF = frictionFFVolts + velocityFFVolts + accelFFVolts + torqueFFVolts;
 
-        warn(() -> m_pidController.setReference(
-                motorRev, ControlType.kPosition, ClosedLoopSlot.kSlot0, FF, ArbFFUnits.kVoltage));
+        m_write.set(ControlWrite.Mode.POSITION, motorRev, FF);
 
         m_log_desired_position.log(() -> motorRev);
         m_log_desired_speed.log(() -> motorRev_S);
@@ -214,7 +204,7 @@ public abstract class CANSparkMotor implements BareMotor {
 
     @Override
     public double getCurrent() {
-        return m_current.getAsDouble();
+        return m_signals.currentA();
     }
 
     @Override
@@ -224,13 +214,12 @@ public abstract class CANSparkMotor implements BareMotor {
 
     @Override
     public void stop() {
-        m_motor.stopMotor();
+        m_write.stop(m_motor::stopMotor);
     }
 
     @Override
     public void reset() {
-        m_encoder_position.reset();
-        m_encoder_velocity.reset();
+        m_signals.reset();
     }
 
     @Override
@@ -244,7 +233,7 @@ public abstract class CANSparkMotor implements BareMotor {
      * @return torque in Nm
      */
     // public double getMotorTorque() {
-    // return m_current.getAsDouble() * kTNm_amp();
+    // return m_signals.currentA() * kTNm_amp();
     // }
 
     /**
@@ -253,7 +242,7 @@ public abstract class CANSparkMotor implements BareMotor {
      * @return integrated sensor position in rotations.
      */
     public double getPositionRot() {
-        return m_encoder_position.getAsDouble();
+        return m_signals.positionRev();
     }
 
     @Override
@@ -269,7 +258,7 @@ public abstract class CANSparkMotor implements BareMotor {
      * @return integrated sensor velocity in RPM
      */
     public double getRateRPM() {
-        return m_encoder_velocity.getAsDouble();
+        return m_signals.velocityRPM();
     }
 
     /**
@@ -277,8 +266,7 @@ public abstract class CANSparkMotor implements BareMotor {
      */
     public void resetEncoderPosition() {
         warn(() -> m_encoder.setPosition(0));
-        m_encoder_position.reset();
-        m_encoder_velocity.reset();
+        m_signals.reset();
     }
 
     /**
@@ -289,14 +277,13 @@ public abstract class CANSparkMotor implements BareMotor {
     }
 
     protected void log() {
-        m_log_position.log(m_encoder_position);
-        m_log_velocity.log(() -> m_encoder_velocity.getAsDouble() / 60);
-        m_log_rpm.log(m_encoder_velocity);
-        m_log_current.log(m_current);
-        m_log_supplyVoltage.log(m_supplyVoltage);
-        m_log_duty.log(m_output);
+        m_log_position.log(m_signals::positionRev);
+        m_log_velocity.log(() -> m_signals.velocityRPM() / 60);
+        m_log_rpm.log(m_signals::velocityRPM);
+        m_log_current.log(m_signals::currentA);
+        m_log_supplyVoltage.log(m_signals::voltageV);
+        m_log_duty.log(m_signals::output);
         // m_log_torque.log(this::getMotorTorque);
-        // m_log_temp.log(m_temp);
     }
 
     @Override
@@ -308,6 +295,20 @@ public abstract class CANSparkMotor implements BareMotor {
     public void play(double freq) {
     }
 
+    /** Called by ControlWrite, maybe on the ControlQueue thread. */
+    private void send(ControlWrite.Mode mode, double setpoint, double feedforward) {
+        switch (mode) {
+            case DUTY_CYCLE -> m_motor.set(setpoint);
+            case VELOCITY -> warn(() -> m_pidController.setReference(
+                    setpoint, ControlType.kVelocity, ClosedLoopSlot.kSlot1, feedforward, ArbFFUnits.kVoltage));
+            case POSITION -> warn(() -> m_pidController.setReference(
+                    setpoint, ControlType.kPosition, ClosedLoopSlot.kSlot0, feedforward, ArbFFUnits.kVoltage));
+            case TONE -> {
+                // Sparks can't play.
+            }
+        }
+    }
+
     private static void warn(Supplier<REVLibError> s) {
         REVLibError errorCode = s.get();
         if (errorCode != REVLibError.kOk) {
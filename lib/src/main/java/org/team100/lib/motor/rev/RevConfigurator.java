@@ -25,6 +25,14 @@ public class RevConfigurator {
      * it should be 10?
      */
     private static final int ENCODER_REPORT_PERIOD_MS = 20;
+    /**
+     * The CAN report periods for the other signals in SparkSignals. Current is
+     * used for torque limiting, so it's as fast as the encoder; voltage and
+     * applied output are just for logging.
+     */
+    private static final int CURRENT_REPORT_PERIOD_MS = 20;
+    private static final int VOLTAGE_REPORT_PERIOD_MS = 50;
+    private static final int OUTPUT_REPORT_PERIOD_MS = 50;
 
     private final SparkBase m_motor;
     private final NeutralMode m_neutral;
@@ -86,12 +94,25 @@ public class RevConfigurator {
             case FORWARD -> false;
             case REVERSE -> true;
         });
+        crash(() -> m_motor.configure(conf, ResetMode.kNoResetSafeParameters, PersistMode.kPersistParameters));
+    }
+
+    /**
+     * Status frame periods for the signals read by SparkSignals, once per cycle.
+     * The values are only as fresh as these periods, so there's no point reading
+     * them more often than this, and no point sending them more often than we
+     * read.
+     */
+    public void signalConfig() {
+        SparkMaxConfig conf = new SparkMaxConfig();
         conf.signals.primaryEncoderVelocityPeriodMs(ENCODER_REPORT_PERIOD_MS);
         conf.signals.primaryEncoderVelocityAlwaysOn(true);
         conf.signals.primaryEncoderPositionPeriodMs(ENCODER_REPORT_PERIOD_MS);
         conf.signals.primaryEncoderPositionAlwaysOn(true);
-        // slower than default of 10; also affects things like motor temperature and
-        // applied output.
+        conf.signals.outputCurrentPeriodMs(CURRENT_REPORT_PERIOD_MS);
+        conf.signals.busVoltagePeriodMs(VOLTAGE_REPORT_PERIOD_MS);
+        conf.signals.appliedOutputPeriodMs(OUTPUT_REPORT_PERIOD_MS);
+        // slower than default of 10; also affects things like motor temperature.
         conf.signals.limitsPeriodMs(20);
         crash(() -> m_motor.configure(conf, ResetMode.kNoResetSafeParameters, PersistMode.kPersistParameters));
     }
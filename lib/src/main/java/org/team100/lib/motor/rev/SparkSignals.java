@@ -0,0 +1,89 @@
+package org.team100.lib.motor.rev;
+
+import org.team100.lib.coherence.Cache;
+import org.team100.lib.coherence.DoubleCache;
+import org.team100.lib.coherence.SideEffect;
+
+import com.revrobotics.RelativeEncoder;
+import com.revrobotics.spark.SparkBase;
+
+/**
+ * One snapshot per cycle of the Spark telemetry we use: position, velocity,
+ * current, voltage, and applied output.
+ * 
+ * This is the REV equivalent of registering CTRE signals with
+ * Cache.registerSignal(): position and velocity, which the control loops use
+ * together, are read by a single SideEffect, once per Cache.refresh(), no
+ * matter how many callers ask, so they're from the same instant.
+ * 
+ * Current, voltage, and applied output are mostly just logged, at DEBUG
+ * level, so they're read lazily, at most once per cycle, only if someone
+ * asks. At COMP level, that's two JNI calls per motor per cycle.
+ * 
+ * REVLib has no multi-signal read like BaseStatusSignal.refreshAll(); each
+ * getter reads the latest value of its status frame. The frame periods are set
+ * in RevConfigurator.signalConfig(), so the CAN load is fixed there.
+ * 
+ * The reads are in the "rev" cache group, which doesn't depend on anything, so
+ * it can be refreshed at the same time as localization.
+ * 
+ * Relies on Cache, so you must put Cache.refresh() in Robot.robotPeriodic().
+ */
+public class SparkSignals {
+    private final RelativeEncoder m_encoder;
+    private final SideEffect m_refresh;
+    private final DoubleCache m_currentA;
+    private final DoubleCache m_voltageV;
+    private final DoubleCache m_output;
+    // Volatile so that 64-bit writes are atomic on the 32-bit RoboRIO.
+    private volatile double m_positionRev;
+    private volatile double m_velocityRPM;
+
+    public SparkSignals(SparkBase motor, RelativeEncoder encoder) {
+        m_encoder = encoder;
+        m_refresh = Cache.group("rev").ofSideEffect(this::read);
+        m_currentA = Cache.ofLazyDouble(motor::getOutputCurrent);
+        m_voltageV = Cache.ofLazyDouble(motor::getBusVoltage);
+        m_output = Cache.ofLazyDouble(motor::getAppliedOutput);
+    }
+
+    /** Integrated sensor position in rotations. */
+    public double positionRev() {
+        m_refresh.run();
+        return m_positionRev;
+    }
+
+    /** Integrated sensor velocity in RPM. */
+    public double velocityRPM() {
+        m_refresh.run();
+        return m_velocityRPM;
+    }
+
+    /** Output (stator) current in amps. */
+    public double currentA() {
+        return m_currentA.getAsDouble();
+    }
+
+    /** Bus (supply) voltage. */
+    public double voltageV() {
+        return m_voltageV.getAsDouble();
+    }
+
+    /** Applied output as duty cycle, [-1, 1]. */
+    public double output() {
+        return m_output.getAsDouble();
+    }
+
+    /** Forget the snapshot, e.g. after setting the encoder position. */
+    public void reset() {
+        m_refresh.reset();
+        m_currentA.reset();
+        m_voltageV.reset();
+        m_output.reset();
+    }
+
+    private void read() {
+        m_positionRev = m_encoder.getPosition();
+        m_velocityRPM = m_encoder.getVelocity();
+    }
+}
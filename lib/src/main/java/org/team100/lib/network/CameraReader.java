@@ -1,5 +1,9 @@
 package org.team100.lib.network;
 
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
 import java.util.EnumSet;
 
 import org.team100.lib.config.Camera;
@@ -12,11 +16,19 @@ import edu.wpi.first.networktables.NetworkTableListenerPoller;
 import edu.wpi.first.networktables.NetworkTableValue;
 import edu.wpi.first.networktables.PubSubOption;
 import edu.wpi.first.networktables.ValueEventData;
-import edu.wpi.first.util.struct.StructBuffer;
+import edu.wpi.first.util.struct.Struct;
 
 /**
  * Reads camera input from network tables, which is always a StructArray.
  * 
+ * To avoid making garbage for every message, the topic names are parsed once
+ * per topic, and the payload is copied into a reusable buffer. Subclasses can
+ * read the buffer directly, by overriding perBuffer(), or get the decoded
+ * array, by implementing perValue().
+ * 
+ * In simulation, the payload can also be handed over directly, with offer(),
+ * skipping Network Tables entirely.
+ * 
  * @param T payload type
  */
 public abstract class CameraReader<T> {
@@ -31,13 +43,26 @@ public abstract class CameraReader<T> {
     private final String m_ntValueName;
     /** Manages the queue of incoming messages. */
     private final NetworkTableListenerPoller m_poller;
-    /** Deserializer used in update(). */
-    private final StructBuffer<T> m_buf;
+    /** Deserializer used in perBuffer(). */
+    private final Struct<T> m_struct;
+    /** Topic handles we've seen. */
+    private int[] m_topics;
+    /** Camera offset for each topic, or null if the topic should be ignored. */
+    private Transform3d[] m_offsets;
+    private int m_topicCount;
+    /** Holds the payload being decoded; grows as needed. */
+    private ByteBuffer m_bb;
+    /** Payloads from offer(), waiting for update(); the pool only grows. */
+    private Transform3d[] m_pendingOffsets;
+    private double[] m_pendingTimestamps;
+    private int[] m_pendingCounts;
+    private ByteBuffer[] m_pendingPayloads;
+    private int m_pendingCount;
 
     public CameraReader(
             String ntRootName,
             String ntValueName,
-            StructBuffer<T> buf) {
+            Struct<T> struct) {
         m_ntValueName = ntValueName;
         NetworkTableInstance inst = NetworkTableInstance.getDefault();
         m_poller = new NetworkTableListenerPoller(inst);
@@ -48,7 +73,55 @@ public abstract class CameraReader<T> {
                         PubSubOption.keepDuplicates(true),
                         PubSubOption.pollStorage(QUEUE_DEPTH)),
                 EnumSet.of(NetworkTableEvent.Kind.kValueAll));
-        m_buf = buf;
+        m_struct = struct;
+        m_topics = new int[8];
+        m_offsets = new Transform3d[8];
+        m_bb = ByteBuffer.allocate(1024).order(ByteOrder.LITTLE_ENDIAN);
+        m_pendingOffsets = new Transform3d[8];
+        m_pendingTimestamps = new double[8];
+        m_pendingCounts = new int[8];
+        m_pendingPayloads = new ByteBuffer[8];
+    }
+
+    /**
+     * Queue a payload for the next update(), as if it had arrived on Network
+     * Tables, but without the network. The payload is copied, so the caller can
+     * reuse its buffer. This is for the simulated cameras, on the main thread.
+     * 
+     * @param cameraOffset   camera pose in robot coordinates
+     * @param valueTimestamp local time in seconds
+     * @param payload        little-endian StructArray, starting at zero
+     * @param count          number of elements in the payload
+     */
+    public void offer(
+            Transform3d cameraOffset,
+            double valueTimestamp,
+            ByteBuffer payload,
+            int count) {
+        if (count == 0) {
+            // The network path never delivers empty payloads either.
+            return;
+        }
+        if (m_pendingCount == m_pendingPayloads.length) {
+            int n = m_pendingCount * 2;
+            m_pendingOffsets = Arrays.copyOf(m_pendingOffsets, n);
+            m_pendingTimestamps = Arrays.copyOf(m_pendingTimestamps, n);
+            m_pendingCounts = Arrays.copyOf(m_pendingCounts, n);
+            m_pendingPayloads = Arrays.copyOf(m_pendingPayloads, n);
+        }
+        int length = count * m_struct.getSize();
+        ByteBuffer slot = m_pendingPayloads[m_pendingCount];
+        if (slot == null || slot.capacity() < length) {
+            slot = ByteBuffer.allocate(Math.max(length, 1024)).order(ByteOrder.LITTLE_ENDIAN);
+            m_pendingPayloads[m_pendingCount] = slot;
+        }
+        slot.clear();
+        slot.put(0, payload, 0, length);
+        slot.limit(length);
+        m_pendingOffsets[m_pendingCount] = cameraOffset;
+        m_pendingTimestamps[m_pendingCount] = valueTimestamp;
+        m_pendingCounts[m_pendingCount] = count;
+        m_pendingCount++;
     }
 
     /**
@@ -62,44 +135,23 @@ public abstract class CameraReader<T> {
         for (NetworkTableEvent e : m_poller.readQueue()) {
             ValueEventData valueEventData = e.valueData;
             NetworkTableValue ntValue = valueEventData.value;
-            String name = valueEventData.getTopic().getName();
-            if (DEBUG) {
-                System.out.printf("poll %s\n", name);
-            }
-            String[] fields = name.split("/");
-            if (fields.length != 4) {
-                System.out.printf("WARNING: weird event name: %s\n", name);
-                continue;
-            }
-            // key is "rootName/cameraId/cameraNumber/valueName"
-            String cameraId = fields[1];
-            if (!fields[3].equals(m_ntValueName)) {
-                System.out.println("WARNING: weird key: " + name);
+            // Robot-to-camera, offset from Camera.java
+            // in tests this offset is identity.
+            Transform3d cameraOffset = cameraOffset(valueEventData);
+            if (cameraOffset == null)
                 continue;
-            }
-            if (DEBUG) {
-                System.out.print("found value\n");
-            }
             // decode the way StructArrayEntryImpl does
             byte[] valueBytes = ntValue.getRaw();
             if (valueBytes.length == 0) {
                 // this should never happen, but it does, very occasionally.
                 continue;
             }
-            T[] valueArray;
-            try {
-                valueArray = m_buf.readArray(valueBytes);
-            } catch (RuntimeException ex) {
-                System.out.printf("WARNING: decoding failed for name: %s\n", name);
+            if (valueBytes.length % m_struct.getSize() != 0) {
+                System.out.printf("WARNING: decoding failed for name: %s\n",
+                        valueEventData.getTopic().getName());
                 continue;
             }
-
-            // Robot-to-camera, offset from Camera.java
-            // in tests this offset is identity.
-            Transform3d cameraOffset = Camera.get(cameraId).getOffset();
-            if (DEBUG) {
-                System.out.printf("camera %s offset %s\n", cameraId, cameraOffset);
-            }
+            int count = valueBytes.length / m_struct.getSize();
 
             // server time is in microseconds
             // https://docs.wpilib.org/en/stable/docs/software/networktables/networktables-intro.html#timestamps
@@ -115,17 +167,112 @@ public abstract class CameraReader<T> {
                 System.out.printf("reader timestamp %f\n", valueTimestamp);
             }
 
-            perValue(cameraOffset, valueTimestamp, valueArray);
+            perBuffer(cameraOffset, valueTimestamp, fill(valueBytes), count);
+        }
+        for (int i = 0; i < m_pendingCount; ++i) {
+            perBuffer(
+                    m_pendingOffsets[i],
+                    m_pendingTimestamps[i],
+                    m_pendingPayloads[i],
+                    m_pendingCounts[i]);
+            m_pendingOffsets[i] = null;
         }
+        m_pendingCount = 0;
         finishUpdate();
     }
 
+    /**
+     * The camera offset for the topic of this event, or null if the topic name is
+     * wrong. The name is parsed only the first time the topic is seen.
+     */
+    private Transform3d cameraOffset(ValueEventData valueEventData) {
+        int topic = valueEventData.topic;
+        for (int i = 0; i < m_topicCount; ++i) {
+            if (m_topics[i] == topic)
+                return m_offsets[i];
+        }
+        Transform3d offset = parse(valueEventData.getTopic().getName());
+        if (m_topicCount == m_topics.length) {
+            m_topics = Arrays.copyOf(m_topics, m_topicCount * 2);
+            m_offsets = Arrays.copyOf(m_offsets, m_topicCount * 2);
+        }
+        m_topics[m_topicCount] = topic;
+        m_offsets[m_topicCount] = offset;
+        m_topicCount++;
+        return offset;
+    }
+
+    /**
+     * The camera offset for the topic name, or null if the name is wrong.
+     * 
+     * The key is "rootName/cameraId/cameraNumber/valueName"
+     */
+    private Transform3d parse(String name) {
+        if (DEBUG) {
+            System.out.printf("new topic %s\n", name);
+        }
+        String[] fields = name.split("/");
+        if (fields.length != 4) {
+            System.out.printf("WARNING: weird event name: %s\n", name);
+            return null;
+        }
+        String cameraId = fields[1];
+        if (!fields[3].equals(m_ntValueName)) {
+            System.out.println("WARNING: weird key: " + name);
+            return null;
+        }
+        Transform3d cameraOffset = Camera.get(cameraId).getOffset();
+        if (DEBUG) {
+            System.out.printf("camera %s offset %s\n", cameraId, cameraOffset);
+        }
+        return cameraOffset;
+    }
+
+    /** Copy the bytes into the reusable buffer, ready to read. */
+    private ByteBuffer fill(byte[] valueBytes) {
+        if (m_bb.capacity() < valueBytes.length) {
+            m_bb = ByteBuffer.allocate(valueBytes.length).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        m_bb.clear();
+        m_bb.put(valueBytes);
+        m_bb.flip();
+        return m_bb;
+    }
+
     /** Called when update() starts. */
     protected void beginUpdate() {
     };
 
     /**
-     * Called for each StructArray received.
+     * Called for each StructArray received, with the raw payload, which is only
+     * valid during this call. The default decodes the payload and calls
+     * perValue(). Override this to avoid making the objects.
+     * 
+     * @param cameraOffset   camera pose in robot coordinates
+     * @param valueTimestamp network tables local time in seconds
+     * @param payload        little-endian StructArray, starting at zero
+     * @param count          number of elements in the payload
+     */
+    protected void perBuffer(
+            Transform3d cameraOffset,
+            double valueTimestamp,
+            ByteBuffer payload,
+            int count) {
+        @SuppressWarnings("unchecked")
+        T[] valueArray = (T[]) Array.newInstance(m_struct.getTypeClass(), count);
+        try {
+            for (int i = 0; i < count; ++i) {
+                valueArray[i] = m_struct.unpack(payload);
+            }
+        } catch (RuntimeException ex) {
+            System.out.println("WARNING: decoding failed");
+            return;
+        }
+        perValue(cameraOffset, valueTimestamp, valueArray);
+    }
+
+    /**
+     * Called for each StructArray received, by perBuffer().
      * 
      * @param cameraOffset   camera pose in robot coordinates
      * @param valueTimestamp network tables local time in seconds
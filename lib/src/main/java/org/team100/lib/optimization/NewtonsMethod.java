@@ -3,6 +3,8 @@ package org.team100.lib.optimization;
 import java.util.Random;
 import java.util.function.Function;
 
+import org.team100.lib.framework.HeadlessSim;
+
 import edu.wpi.first.math.MathUtil;
 import edu.wpi.first.math.Matrix;
 import edu.wpi.first.math.Nat;
@@ -35,7 +37,8 @@ public class NewtonsMethod<X extends Num, Y extends Num> {
      */
     private final double m_dxLimit;
 
-    private final Random random = new Random();
+    /** Seeded under HeadlessSim, so restarts are repeatable. */
+    private final Random random = HeadlessSim.random();
 
     /**
      * 
@@ -0,0 +1,205 @@
+package org.team100.lib.optimization;
+
+import java.util.Random;
+
+import org.team100.lib.framework.HeadlessSim;
+
+/**
+ * Newton's method, like NewtonsMethod, for functions that know their own
+ * Jacobian, using primitive arrays allocated once, so each solve is cheap and
+ * allocation-free.
+ * 
+ * Each step is the least-squares solution of J dx = error, i.e. Gauss-Newton,
+ * via the normal equations with a tiny bit of damping, so that dimensions the
+ * function doesn't depend on (zero Jacobian columns) just don't move.
+ * 
+ * The solution is written into the initial-value array, so to warm-start,
+ * e.g. to track a moving goal, just keep passing the previous solution.
+ * 
+ * This is not thread-safe.
+ */
+public class PrimitiveNewtonsMethod {
+    private static final boolean DEBUG = false;
+    /** Added to the diagonal of J^T J. */
+    private static final double DAMPING = 1e-9;
+
+    /** A function with an analytic Jacobian. */
+    public interface Function {
+        /**
+         * @param x        input, length xdim
+         * @param error    output, length ydim
+         * @param jacobian output, d(error)/dx, ydim rows by xdim columns,
+         *                 row-major
+         */
+        void evaluate(double[] x, double[] error, double[] jacobian);
+    }
+
+    private final int m_xdim;
+    private final int m_ydim;
+    private final Function m_f;
+    private final double[] m_xMin;
+    private final double[] m_xMax;
+    private final double m_tolerance;
+    private final int m_iterations;
+    /** Max change in estimate per iteration, to avoid overreacting. */
+    private final double m_dxLimit;
+
+    /** Seeded under HeadlessSim, so restarts are repeatable. */
+    private final Random random = HeadlessSim.random();
+
+    // scratch
+    private final double[] m_error;
+    private final double[] m_jacobian;
+    /** J^T J, then its Cholesky factor. */
+    private final double[] m_jtj;
+    private final double[] m_dx;
+
+    /**
+     * @param xdim       input dimension
+     * @param ydim       error dimension
+     * @param f          error and Jacobian, see NewtonsMethod for the error
+     *                   convention
+     * @param xMin       lower bounds, length xdim
+     * @param xMax       upper bounds, length xdim
+     * @param tolerance  max abs error
+     * @param iterations per (re)start
+     * @param dxLimit    max abs change per iteration
+     */
+    public PrimitiveNewtonsMethod(
+            int xdim,
+            int ydim,
+            Function f,
+            double[] xMin,
+            double[] xMax,
+            double tolerance,
+            int iterations,
+            double dxLimit) {
+        if (xMin.length != xdim || xMax.length != xdim)
+            throw new IllegalArgumentException("bounds must have length xdim");
+        m_xdim = xdim;
+        m_ydim = ydim;
+        m_f = f;
+        m_xMin = xMin.clone();
+        m_xMax = xMax.clone();
+        m_tolerance = tolerance;
+        m_iterations = iterations;
+        m_dxLimit = dxLimit;
+        m_error = new double[ydim];
+        m_jacobian = new double[ydim * xdim];
+        m_jtj = new double[xdim * xdim];
+        m_dx = new double[xdim];
+    }
+
+    /**
+     * Solve in place.
+     * 
+     * @param x        initial value (e.g. the previous solution), and result
+     * @param restarts number of random restarts in case of non-convergence
+     * @return true if the solution is within tolerance
+     */
+    public boolean solve(double[] x, int restarts) {
+        if (x.length != m_xdim)
+            throw new IllegalArgumentException("x must have length xdim");
+        limit(x);
+        for (int attempt = 0; attempt <= restarts; ++attempt) {
+            if (attempt > 0) {
+                if (DEBUG)
+                    System.out.println("convergence failed, trying random restart");
+                for (int i = 0; i < m_xdim; i++) {
+                    x[i] += 0.1 * (random.nextDouble() - 0.5);
+                }
+                limit(x);
+            }
+            for (int iter = 0; iter < m_iterations; ++iter) {
+                m_f.evaluate(x, m_error, m_jacobian);
+                if (within())
+                    return true;
+                step();
+                // Too-high dx results in oscillation.
+                for (int i = 0; i < m_xdim; ++i) {
+                    x[i] -= Math.max(-m_dxLimit, Math.min(m_dxLimit, m_dx[i]));
+                }
+                // Keep the x estimate within bounds.
+                limit(x);
+            }
+        }
+        m_f.evaluate(x, m_error, m_jacobian);
+        if (DEBUG)
+            System.out.printf("random restart failed, error %f\n", maxAbsError());
+        return within();
+    }
+
+    /** Max abs error from the most recent evaluation. */
+    public double maxAbsError() {
+        double max = 0;
+        for (int i = 0; i < m_ydim; ++i) {
+            max = Math.max(max, Math.abs(m_error[i]));
+        }
+        return max;
+    }
+
+    ///////////////////////////////////////////////////
+
+    private boolean within() {
+        return maxAbsError() < m_tolerance;
+    }
+
+    /** Solve (J^T J + damping) dx = J^T error, by Cholesky. */
+    private void step() {
+        int n = m_xdim;
+        for (int r = 0; r < n; ++r) {
+            for (int c = 0; c <= r; ++c) {
+                double sum = 0;
+                for (int k = 0; k < m_ydim; ++k) {
+                    sum += m_jacobian[k * n + r] * m_jacobian[k * n + c];
+                }
+                m_jtj[r * n + c] = sum;
+            }
+            m_jtj[r * n + r] += DAMPING;
+            double rhs = 0;
+            for (int k = 0; k < m_ydim; ++k) {
+                rhs += m_jacobian[k * n + r] * m_error[k];
+            }
+            m_dx[r] = rhs;
+        }
+        // factor in place, lower triangle: A = L L^T
+        for (int j = 0; j < n; ++j) {
+            double d = m_jtj[j * n + j];
+            for (int k = 0; k < j; ++k) {
+                d -= m_jtj[j * n + k] * m_jtj[j * n + k];
+            }
+            d = Math.sqrt(Math.max(d, DAMPING));
+            m_jtj[j * n + j] = d;
+            for (int i = j + 1; i < n; ++i) {
+                double s = m_jtj[i * n + j];
+                for (int k = 0; k < j; ++k) {
+                    s -= m_jtj[i * n + k] * m_jtj[j * n + k];
+                }
+                m_jtj[i * n + j] = s / d;
+            }
+        }
+        // forward: L y = b
+        for (int i = 0; i < n; ++i) {
+            double s = m_dx[i];
+            for (int k = 0; k < i; ++k) {
+                s -= m_jtj[i * n + k] * m_dx[k];
+            }
+            m_dx[i] = s / m_jtj[i * n + i];
+        }
+        // back: L^T dx = y
+        for (int i = n - 1; i >= 0; --i) {
+            double s = m_dx[i];
+            for (int k = i + 1; k < n; ++k) {
+                s -= m_jtj[k * n + i] * m_dx[k];
+            }
+            m_dx[i] = s / m_jtj[i * n + i];
+        }
+    }
+
+    /** Clamp x to the per-dimension limits. */
+    private void limit(double[] x) {
+        for (int i = 0; i < m_xdim; ++i) {
+            x[i] = Math.max(m_xMin[i], Math.min(m_xMax[i], x[i]));
+        }
+    }
+}
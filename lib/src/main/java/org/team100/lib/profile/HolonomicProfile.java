@@ -34,7 +34,10 @@ public class HolonomicProfile {
     private static final boolean DEBUG = false;
     /** Solver accuracy is low, in the interest of speed. */
     private static final double ETA_TOLERANCE = 0.1;
-    /** Simulation for ETA is coarse, in the interest of speed. */
+    /**
+     * Simulation for ETA is coarse, in the interest of speed. Profiles with an
+     * analytic ETA don't use it.
+     */
     private static final double SOLVE_DT = 0.1;
     private static final double DT = TimedRobot100.LOOP_PERIOD_S;
 
@@ -161,10 +164,10 @@ public class HolonomicProfile {
         if (DEBUG) {
             System.out.printf("i %s g %s\n", i, g);
         }
-        // note coarser DT
-        double xETA = px.simulateForETA(SOLVE_DT, i.x().control(), g.x());
-        double yETA = py.simulateForETA(SOLVE_DT, i.y().control(), g.y());
-        double thetaETA = ptheta.simulateForETA(SOLVE_DT, i.theta().control(), g.theta());
+        // closed form where the profile has one, otherwise simulation with coarser DT
+        double xETA = px.eta(SOLVE_DT, i.x().control(), g.x());
+        double yETA = py.eta(SOLVE_DT, i.y().control(), g.y());
+        double thetaETA = ptheta.eta(SOLVE_DT, i.theta().control(), g.theta());
 
         if (DEBUG) {
             System.out.printf("ETAs: %f %f %f\n", xETA, yETA, thetaETA);
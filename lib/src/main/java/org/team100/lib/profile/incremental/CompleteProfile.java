@@ -34,6 +34,10 @@ import edu.wpi.first.math.interpolation.InverseInterpolator;
  * See
  * https://docs.google.com/spreadsheets/d/1JdKViVSTEMZ0dRS8broub4P-f0eA6STRHHzoV0U4N5M/edit?gid=2097479642#gid=2097479642
  * for output of this model
+ * 
+ * There's no analyticETA(): the goal path is integrated numerically, with the
+ * landing jerk limit, and the initial path includes the takeoff jerk limit, so
+ * coordination uses simulateForETA().
  */
 public class CompleteProfile implements IncrementalProfile {
     private static final boolean DEBUG = false;
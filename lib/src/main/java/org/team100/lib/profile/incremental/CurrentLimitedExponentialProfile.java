@@ -12,6 +12,12 @@ import org.team100.lib.state.Model100;
  * 
  * The exponential profile maximum acceleration relates to the *unlimited* stall
  * torque.
+ * 
+ * For a stationary goal, the path is a current-limited ramp up to the crossing
+ * speed, then a back-EMF-limited exponential approach to max speed, then
+ * "plugging" decel, which is a = -stall * (1 + v/maxV). Short moves never reach
+ * the crossing speed, so they're just trapezoid triangles. These pieces
+ * all have closed forms, so analyticETA() can cover them.
  */
 public class CurrentLimitedExponentialProfile implements IncrementalProfile {
     private static final boolean DEBUG = false;
@@ -57,7 +63,7 @@ public class CurrentLimitedExponentialProfile implements IncrementalProfile {
             // exponential decel is more accurate ("plugging" torque is higher than stall)
             return exponential;
         }
-        if (initial.v() < m_limit) {
+        if (Math.abs(initial.v()) < m_limit) {
             // Low speed is current limited.
             return trapezoid;
         }
@@ -65,6 +71,59 @@ public class CurrentLimitedExponentialProfile implements IncrementalProfile {
         return exponential;
     }
 
+    /**
+     * Covers stationary goals, with the initial velocity zero or towards the
+     * goal, and slow enough to stop without overshooting; otherwise NaN.
+     * 
+     * In the exponential phase, the distance to accelerate from v0 to v, plus
+     * the distance to plug from v to zero, is
+     * 
+     * (v0 + maxV * ln(maxV * (maxV - v0) / (maxV^2 - v^2))) / k
+     * 
+     * where k = stall / maxV; the v terms cancel, so the peak speed is explicit.
+     */
+    @Override
+    public double analyticETA(Control100 initial, Model100 goal) {
+        if (Math.abs(goal.v()) > 1e-6)
+            return Double.NaN;
+        if (m_limitedAccel > m_stallAccel)
+            return Double.NaN;
+        double d = goal.x() - initial.x();
+        if (d == 0)
+            return initial.v() == 0 ? 0 : Double.NaN;
+        // Work in the positive direction.
+        double v0 = Math.signum(d) * initial.v();
+        d = Math.abs(d);
+        if (v0 < 0 || v0 >= m_maxVel)
+            return Double.NaN;
+        double t = 0;
+        if (v0 < m_limit) {
+            if (v0 * v0 > 2 * m_limitedAccel * d) {
+                // Overshoot.
+                return Double.NaN;
+            }
+            // Peak speed of the trapezoid triangle.
+            double vp = Math.sqrt(v0 * v0 / 2 + m_limitedAccel * d);
+            if (vp <= m_limit)
+                return (2 * vp - v0) / m_limitedAccel;
+            // Ramp up to the crossing speed.
+            t = (m_limit - v0) / m_limitedAccel;
+            d -= (m_limit * m_limit - v0 * v0) / (2 * m_limitedAccel);
+            v0 = m_limit;
+        }
+        double k = m_stallAccel / m_maxVel;
+        double vp2 = m_maxVel * m_maxVel
+                - m_maxVel * (m_maxVel - v0) * Math.exp((v0 - k * d) / m_maxVel);
+        if (vp2 < v0 * v0) {
+            // Overshoot.
+            return Double.NaN;
+        }
+        double vp = Math.sqrt(vp2);
+        // Accelerate to the peak, then plug to zero.
+        return t + Math.log((m_maxVel - v0) / (m_maxVel - vp)) / k
+                + Math.log((m_maxVel + vp) / m_maxVel) / k;
+    }
+
     @Override
     public IncrementalProfile scale(double s) {
         return new CurrentLimitedExponentialProfile(
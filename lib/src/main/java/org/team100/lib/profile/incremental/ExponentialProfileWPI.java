@@ -33,6 +33,12 @@ public class ExponentialProfileWPI implements IncrementalProfile {
         return new Control100(result.position, result.velocity, 0);
     }
 
+    /** The WPI profile knows its own timing. */
+    @Override
+    public double analyticETA(Control100 initial, Model100 goal) {
+        return m_profile.timeLeftUntil(new State(initial.x(), initial.v()), new State(goal.x(), goal.v()));
+    }
+
     @Override
     public IncrementalProfile scale(double s) {
         return new ExponentialProfileWPI(
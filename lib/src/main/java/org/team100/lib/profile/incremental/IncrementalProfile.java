@@ -43,6 +43,26 @@ public interface IncrementalProfile {
         return t;
     }
 
+    /**
+     * ETA in closed form, without simulating, or NaN if this profile doesn't
+     * have one, or if the case at hand isn't covered.
+     */
+    default double analyticETA(Control100 initial, Model100 goal) {
+        return Double.NaN;
+    }
+
+    /**
+     * ETA in closed form if possible, otherwise by simulation.
+     * 
+     * @param dt for simulation
+     */
+    default double eta(double dt, Control100 initial, Model100 goal) {
+        double eta = analyticETA(initial, goal);
+        if (Double.isNaN(eta))
+            return simulateForETA(dt, initial, goal);
+        return eta;
+    }
+
     /**
      * Return a new profile scaled by s. The choice of what the parameter actually
      * does is up to the implementation. A good choice would be to scale
@@ -57,7 +77,9 @@ public interface IncrementalProfile {
      * It never returns s > 1, and it also never scales more than 10X, i.e. never
      * returns s < 0.01.
      * 
-     * It is very approximate, in order to not run too long. It's very primitive.
+     * If the profile has an analytic ETA, this bisects on that, which is cheap,
+     * so it's accurate. Otherwise it bisects on the simulated ETA, which is very
+     * approximate, in order to not run too long. It's very primitive.
      */
     default double solve(
             double dt,
@@ -67,6 +89,9 @@ public interface IncrementalProfile {
             double etaTolerance) {
         final double minS = 0.01;
         final double maxS = 1.0;
+        if (!Double.isNaN(analyticETA(i, g))) {
+            return analyticSolve(i, g, goalETA, minS, maxS);
+        }
         double ss = Bisection1d.findRoot(
                 s -> scale(s).simulateForETA(dt, i, g) - goalETA,
                 minS,
@@ -81,4 +106,39 @@ public interface IncrementalProfile {
         return ss;
     }
 
+    /**
+     * Bisect on the analytic ETA, which is non-increasing in s, to find the
+     * smallest s (i.e. the gentlest profile) that arrives by the goal ETA.
+     */
+    private double analyticSolve(
+            Control100 i,
+            Model100 g,
+            double goalETA,
+            double minS,
+            double maxS) {
+        double maxETA = scale(maxS).analyticETA(i, g);
+        if (maxETA >= goalETA)
+            return maxS;
+        double minETA = scale(minS).analyticETA(i, g);
+        if (minETA == maxETA) {
+            // scaling makes no difference, e.g. we're already at the goal
+            return maxS;
+        }
+        if (minETA <= goalETA)
+            return minS;
+        double lo = minS;
+        double hi = maxS;
+        // 30 halvings is about 1e-9, plenty.
+        for (int iter = 0; iter < 30; ++iter) {
+            double mid = (lo + hi) / 2;
+            if (scale(mid).analyticETA(i, g) > goalETA)
+                lo = mid;
+            else
+                hi = mid;
+        }
+        if (DEBUG) {
+            System.out.printf("s %5.2f\n", hi);
+        }
+        return hi;
+    }
 }
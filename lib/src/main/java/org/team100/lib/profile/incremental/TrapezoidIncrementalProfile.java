@@ -191,6 +191,75 @@ public class TrapezoidIncrementalProfile implements IncrementalProfile {
         return full(dt, initial, -1);
     }
 
+    /**
+     * The duration of the path calculate() follows, in closed form: braking to
+     * the velocity limit if necessary, then the same I+G- or I-G+ choice, with
+     * cruise if the switching point is beyond the limit.
+     * 
+     * This is the continuous-time duration; simulateForETA() is within a dt or
+     * so of it.
+     * 
+     * For moving goals, calculate() doesn't stay on the path it plans from the
+     * initial state (it replans every step, sometimes onto a different one), so
+     * only simulation knows how long it takes, and this returns NaN.
+     */
+    @Override
+    public double analyticETA(final Control100 initialRaw, final Model100 goalRaw) {
+        if (goalRaw.v() != 0)
+            return Double.NaN;
+        double t = 0;
+        Control100 initial = initialRaw;
+        // Too-high initial speed is handled with braking
+        if (initial.v() > m_maxVelocity) {
+            t = (initial.v() - m_maxVelocity) / m_maxAcceleration;
+            initial = full(t, initial, -1);
+        } else if (initial.v() < -m_maxVelocity) {
+            t = (-m_maxVelocity - initial.v()) / m_maxAcceleration;
+            initial = full(t, initial, 1);
+        }
+        Model100 goal = limitVelocity(goalRaw);
+        if (goal.control().near(initial, m_tolerance))
+            return t;
+        double t1IplusGminus = t1IplusGminus(initial, goal);
+        double t1IminusGplus = t1IminusGplus(initial, goal);
+        if (Double.isNaN(t1IminusGplus) && Double.isNaN(t1IplusGminus))
+            return Double.NaN;
+        if (Double.isNaN(t1IplusGminus))
+            return t + etaIminus(initial, goal, t1IminusGplus);
+        if (Double.isNaN(t1IminusGplus))
+            return t + etaIplus(initial, goal, t1IplusGminus);
+        // Both paths are valid, so we're on the goal path.
+        return t + durationAtMaxA(initial.v(), goal.v());
+    }
+
+    /**
+     * Closed-form inverse of analyticETA() for the rest-to-rest case: the
+     * triangular or trapezoidal profile with the goal duration. Other cases
+     * bisect on analyticETA().
+     */
+    @Override
+    public double solve(
+            double dt,
+            Control100 i,
+            Model100 g,
+            double goalETA,
+            double etaTolerance) {
+        if (i.v() != 0 || g.v() != 0)
+            return IncrementalProfile.super.solve(dt, i, g, goalETA, etaTolerance);
+        double d = Math.abs(g.x() - i.x());
+        if (d <= m_tolerance || goalETA <= d / m_maxVelocity)
+            return 1.0;
+        double a;
+        if (2 * d / goalETA <= m_maxVelocity) {
+            // triangular: d = a (T/2)^2
+            a = 4 * d / (goalETA * goalETA);
+        } else {
+            // trapezoidal: T = d/v + v/a
+            a = m_maxVelocity / (goalETA - d / m_maxVelocity);
+        }
+        return MathUtil.clamp(a / m_maxAcceleration, 0.01, 1.0);
+    }
+
     /** Clamp state velocity to the profile limit. */
     private Model100 limitVelocity(final Model100 s) {
         return new Model100(
@@ -288,6 +357,40 @@ public class TrapezoidIncrementalProfile implements IncrementalProfile {
         return result;
     }
 
+    /** Duration of I+G-, or I+C+G- if I+ reaches the velocity limit. */
+    private double etaIplus(Control100 initial, Model100 goal, double timeToSwitch) {
+        if (MathUtil.isNear(timeToSwitch, 0, 1e-12))
+            return durationAtMaxA(initial.v(), goal.v());
+        double timeToCruise = (m_maxVelocity - initial.v()) / m_maxAcceleration;
+        if (timeToSwitch < timeToCruise) {
+            double vSwitch = initial.v() + m_maxAcceleration * timeToSwitch;
+            return timeToSwitch + durationAtMaxA(vSwitch, goal.v());
+        }
+        double x = initial.x()
+                + initial.v() * timeToCruise
+                + 0.5 * m_maxAcceleration * Math.pow(timeToCruise, 2);
+        double gminus = c_minus(goal.control()) - Math.pow(m_maxVelocity, 2) / (2 * m_maxAcceleration);
+        double cruise = Math.max(0, (gminus - x) / m_maxVelocity);
+        return timeToCruise + cruise + durationAtMaxA(m_maxVelocity, goal.v());
+    }
+
+    /** Duration of I-G+, or I-C-G+ if I- reaches the velocity limit. */
+    private double etaIminus(Control100 initial, Model100 goal, double timeToSwitch) {
+        if (MathUtil.isNear(timeToSwitch, 0, 1e-12))
+            return durationAtMaxA(initial.v(), goal.v());
+        double timeToCruise = (m_maxVelocity + initial.v()) / m_maxAcceleration;
+        if (timeToSwitch < timeToCruise) {
+            double vSwitch = initial.v() - m_maxAcceleration * timeToSwitch;
+            return timeToSwitch + durationAtMaxA(vSwitch, goal.v());
+        }
+        double x = initial.x()
+                + initial.v() * timeToCruise
+                - 0.5 * m_maxAcceleration * Math.pow(timeToCruise, 2);
+        double gplus = c_plus(goal.control()) + Math.pow(m_maxVelocity, 2) / (2 * m_maxAcceleration);
+        double cruise = Math.max(0, (x - gplus) / m_maxVelocity);
+        return timeToCruise + cruise + durationAtMaxA(-m_maxVelocity, goal.v());
+    }
+
     /** At positive cruising speed, keep going. */
     Control100 keepCruising(double dt, Control100 initial, Model100 goal) {
         if (DEBUG) {
@@ -17,11 +17,14 @@ import edu.wpi.first.math.trajectory.TrapezoidProfile.State;
 public class TrapezoidProfileWPI implements IncrementalProfile {
     private final Constraints m_constraints;
     private final TrapezoidProfile m_profile;
+    /** Only for analyticETA(), so it doesn't disturb calculate(). */
+    private final TrapezoidProfile m_etaProfile;
     private final double m_maxVel;
 
     public TrapezoidProfileWPI(double maxVel, double maxAccel) {
         m_constraints = new Constraints(maxVel, maxAccel);
         m_profile = new TrapezoidProfile(m_constraints);
+        m_etaProfile = new TrapezoidProfile(m_constraints);
         m_maxVel = maxVel;
     }
 
@@ -33,6 +36,17 @@ public class TrapezoidProfileWPI implements IncrementalProfile {
         return new Control100(result.position, result.velocity, accel);
     }
 
+    /**
+     * The WPI profile computes its total time as a side effect of calculate(), so
+     * a zero-length step is enough. That step uses its own profile instance, so
+     * the state calculate() leaves behind is never clobbered.
+     */
+    @Override
+    public double analyticETA(Control100 initial, Model100 goal) {
+        m_etaProfile.calculate(0, new State(initial.x(), initial.v()), new State(goal.x(), goal.v()));
+        return m_etaProfile.totalTime();
+    }
+
     @Override
     public TrapezoidProfileWPI scale(double s) {
         return new TrapezoidProfileWPI(
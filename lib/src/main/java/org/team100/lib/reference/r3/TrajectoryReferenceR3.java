@@ -9,10 +9,13 @@ import org.team100.lib.trajectory.Trajectory100;
 /** Produces references based on a trajectory. */
 public class TrajectoryReferenceR3 implements ReferenceR3 {
     private final Trajectory100 m_trajectory;
+    /** Samples are almost always in time order. */
+    private final Trajectory100.Cursor m_cursor;
     private double m_startTimeS;
 
     public TrajectoryReferenceR3(Trajectory100 trajectory) {
         m_trajectory = trajectory;
+        m_cursor = trajectory.cursor();
     }
 
     /** Ignores the measurement, resets the trajectory timer. */
@@ -48,6 +51,6 @@ public class TrajectoryReferenceR3 implements ReferenceR3 {
     }
 
     private ControlR3 sample(double t) {
-        return ControlR3.fromTimedPose(m_trajectory.sample(t));
+        return ControlR3.fromTimedPose(m_cursor.sample(t));
     }
 }
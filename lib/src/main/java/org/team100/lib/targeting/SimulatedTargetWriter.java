@@ -8,6 +8,7 @@ import java.util.function.DoubleFunction;
 import org.team100.lib.coherence.Takt;
 import org.team100.lib.config.Camera;
 import org.team100.lib.field.FieldConstants;
+import org.team100.lib.framework.HeadlessSim;
 import org.team100.lib.localization.SwerveHistory;
 import org.team100.lib.state.ModelR3;
 
@@ -47,8 +48,10 @@ public class SimulatedTargetWriter {
         m_targets = targets;
         m_publishers = new HashMap<>();
         m_inst = NetworkTableInstance.getDefault();
-        m_inst.startClient4("tag_finder24");
-        m_inst.setServer("localhost");
+        if (!HeadlessSim.active()) {
+            m_inst.startClient4("tag_finder24");
+            m_inst.setServer("localhost");
+        }
         for (Camera camera : m_cameras) {
             String name = "objectVision/"
                     + camera.getSerial() + "/0/Rotation3d";
@@ -16,14 +16,12 @@ import org.team100.lib.logging.LoggerFactory;
 import org.team100.lib.logging.LoggerFactory.IntLogger;
 import org.team100.lib.network.CameraReader;
 import org.team100.lib.state.ModelR3;
-import org.team100.lib.util.CoalescingCollection;
-import org.team100.lib.util.TrailingHistory;
+import org.team100.lib.util.GridCoalescingCollection;
 
 import edu.wpi.first.math.geometry.Pose2d;
 import edu.wpi.first.math.geometry.Rotation3d;
 import edu.wpi.first.math.geometry.Transform3d;
 import edu.wpi.first.math.geometry.Translation2d;
-import edu.wpi.first.util.struct.StructBuffer;
 
 /**
  * Listen for updates from the object-detector camera and remember them for
@@ -61,7 +59,7 @@ public class Targets extends CameraReader<Rotation3d> {
     private final DoubleFunction<ModelR3> m_history;
     /** Accumulation of targets we see. */
     // private final TrailingHistory<Translation2d> m_targets;
-    private final CoalescingCollection<Translation2d> m_targets;
+    private final GridCoalescingCollection m_targets;
     /** Side effect mutates targets. */
     private final SideEffect m_vision;
     private final IntLogger m_log_historySize;
@@ -73,16 +71,18 @@ public class Targets extends CameraReader<Rotation3d> {
         super(
                 "objectVision",
                 "Rotation3d",
-                StructBuffer.create(Rotation3d.struct));
+                Rotation3d.struct);
         m_log_historySize = log.type(this).intLogger(Level.TRACE, "history size");
         m_field_log = fieldLogger;
         m_history = history;
         // m_targets = new TrailingHistory<>(HISTORY_DURATION);
-        m_targets = new CoalescingCollection<>(
-                new TrailingHistory<>(HISTORY_DURATION),
-                (a, b) -> a.getDistance(b) < RESOLUTION,
+        m_targets = new GridCoalescingCollection(
+                RESOLUTION,
+                HISTORY_DURATION,
                 new Mean());
-        m_vision = Cache.ofSideEffect(this::update);
+        // The sights are placed using the pose history, so localization goes
+        // first.
+        m_vision = Cache.group("targets", "localization").ofSideEffect(this::update);
     }
 
     @Override
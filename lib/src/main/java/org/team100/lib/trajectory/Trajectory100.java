@@ -9,26 +9,67 @@ import org.team100.lib.trajectory.timing.TimedPose;
  * A list of timed poses.
  */
 public class Trajectory100 {
+    /**
+     * Samples a trajectory, remembering where the last sample was, so that
+     * sampling in increasing time order, which is what followers do, costs
+     * amortized constant time, independent of trajectory length. Non-monotonic
+     * samples still work, they just use a binary search.
+     * 
+     * Not thread-safe; each follower should have its own cursor.
+     */
+    public class Cursor {
+        /** Index of the most-recent ceiling point. */
+        private int m_index = 1;
+
+        /** @param timeS start is zero. */
+        public TimedPose sample(final double timeS) {
+            if (isEmpty())
+                throw new IllegalStateException("can't sample an empty trajectory");
+            if (timeS >= m_duration) {
+                return getLastPoint();
+            }
+            if (timeS <= 0) {
+                return getPoint(0);
+            }
+            if (m_index >= length() || m_times[m_index - 1] >= timeS) {
+                // moved backwards, start over
+                m_index = ceilingIndex(timeS);
+            } else {
+                // scan forward
+                while (m_times[m_index] < timeS)
+                    ++m_index;
+            }
+            return interpolate(m_index, timeS);
+        }
+    }
+
     private final List<TimedPose> m_points;
+    /** Time of each point, for searching. */
+    private final double[] m_times;
     private final double m_duration;
 
     public Trajectory100() {
         m_points = new ArrayList<>();
+        m_times = new double[0];
         m_duration = 0;
     }
 
     /** First timestamp must be zero. */
     public Trajectory100(final List<TimedPose> states) {
         m_points = states;
-        m_duration = m_points.get(m_points.size() - 1).getTimeS();
+        m_times = new double[states.size()];
+        for (int i = 0; i < states.size(); ++i) {
+            m_times[i] = states.get(i).getTimeS();
+        }
+        m_duration = m_times[m_times.length - 1];
     }
 
     /**
      * Interpolate a TimedPose.
      * 
-     * This scans the whole trajectory for every sample, but most of the time
-     * is the interpolation; I tried a TreeMap index and it only saved a few
-     * nanoseconds per call.
+     * This uses a binary search over the timestamps, so it's thread-safe and
+     * doesn't care about sampling order. Followers that sample in time order
+     * should use a Cursor instead.
      * 
      * @param timeS start is zero.
      */
@@ -41,20 +82,12 @@ public class Trajectory100 {
         if (timeS <= 0) {
             return getPoint(0);
         }
+        return interpolate(ceilingIndex(timeS), timeS);
+    }
 
-        for (int i = 1; i < length(); ++i) {
-            final TimedPose ceil = getPoint(i);
-            if (ceil.getTimeS() >= timeS) {
-                final TimedPose floor = getPoint(i - 1);
-                double betweenPoints = ceil.getTimeS() - floor.getTimeS();
-                if (Math.abs(betweenPoints) <= 1e-12) {
-                    return ceil;
-                }
-                double t = (timeS - floor.getTimeS()) / betweenPoints;
-                return floor.interpolate2(ceil, t);
-            }
-        }
-        throw new IllegalStateException("impossible trajectory: " + toString());
+    /** A new cursor, starting at the beginning. */
+    public Cursor cursor() {
+        return new Cursor();
     }
 
     /** Time is at or beyond the trajectory duration. */
@@ -86,6 +119,38 @@ public class Trajectory100 {
         return m_points.get(index);
     }
 
+    /**
+     * Index of the first point at or after the time, not counting the first
+     * point. The time must be within (0, duration).
+     */
+    private int ceilingIndex(double timeS) {
+        int lo = 1;
+        int hi = m_times.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (m_times[mid] < timeS) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /** Interpolate between the ceiling point and the one before it. */
+    private TimedPose interpolate(int ceilIndex, double timeS) {
+        if (Double.isNaN(timeS))
+            throw new IllegalStateException("impossible trajectory: " + toString());
+        final TimedPose ceil = getPoint(ceilIndex);
+        final TimedPose floor = getPoint(ceilIndex - 1);
+        double betweenPoints = m_times[ceilIndex] - m_times[ceilIndex - 1];
+        if (Math.abs(betweenPoints) <= 1e-12) {
+            return ceil;
+        }
+        double t = (timeS - m_times[ceilIndex - 1]) / betweenPoints;
+        return floor.interpolate2(ceil, t);
+    }
+
     @Override
     public String toString() {
         StringBuilder builder = new StringBuilder();
@@ -0,0 +1,115 @@
+package org.team100.lib.trajectory;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+import org.team100.lib.geometry.HolonomicPose2d;
+import org.team100.lib.state.ModelR3;
+
+import edu.wpi.first.math.geometry.Pose2d;
+
+/**
+ * Runs a TrajectoryPlanner on a low-priority background thread, so that
+ * planning doesn't happen inside the control loop.
+ * 
+ * Trajectories between fixed waypoints are cached, so if you ask for them
+ * early, e.g. when constructing commands at robot init, they're ready by the
+ * time the command runs. Trajectories from a moving start state are never the
+ * same twice, so they're not cached.
+ * 
+ * The planner is stateless, so it's fine to use it directly from the main
+ * thread at the same time, which is what the PLAN_NOW fallback does.
+ */
+public class TrajectoryService {
+    /** What getNow() does if the trajectory isn't ready yet. */
+    public enum Fallback {
+        /** Plan on the calling thread, just like using the planner directly. */
+        PLAN_NOW,
+        /** Block the calling thread until the background plan is done. */
+        WAIT,
+        /** Return null, so the caller can hold still and try again next time. */
+        NONE
+    }
+
+    /** All the services share one worker; there's no need for more. */
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "TrajectoryService");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        return t;
+    });
+
+    private final TrajectoryPlanner m_planner;
+    /** Key is the list of waypoints. */
+    private final Map<List<HolonomicPose2d>, CompletableFuture<Trajectory100>> m_cache;
+
+    public TrajectoryService(TrajectoryPlanner planner) {
+        m_planner = planner;
+        m_cache = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Start planning a rest-to-rest trajectory through the waypoints, unless it's
+     * already cached. Use this at init time to precompute trajectories you'll need
+     * later.
+     */
+    public CompletableFuture<Trajectory100> restToRest(List<HolonomicPose2d> waypoints) {
+        return m_cache.computeIfAbsent(
+                List.copyOf(waypoints),
+                w -> submit(() -> m_planner.restToRest(w)));
+    }
+
+    /**
+     * The trajectory through the waypoints if it's ready, otherwise whatever the
+     * fallback says.
+     */
+    public Trajectory100 getNow(List<HolonomicPose2d> waypoints, Fallback fallback) {
+        CompletableFuture<Trajectory100> future = restToRest(waypoints);
+        Trajectory100 trajectory = future.getNow(null);
+        if (trajectory != null)
+            return trajectory;
+        switch (fallback) {
+            case PLAN_NOW:
+                return m_planner.restToRest(waypoints);
+            case WAIT:
+                return future.join();
+            default:
+                return null;
+        }
+    }
+
+    /** Start planning from the start state to the end pose. Not cached. */
+    public CompletableFuture<Trajectory100> movingToRest(ModelR3 startState, Pose2d end) {
+        return submit(() -> m_planner.movingToRest(startState, end));
+    }
+
+    /** Start planning between the states. Not cached. */
+    public CompletableFuture<Trajectory100> movingToMoving(ModelR3 startState, ModelR3 endState) {
+        return submit(() -> m_planner.movingToMoving(startState, endState));
+    }
+
+    /** Number of cached trajectories, done or not. */
+    public int size() {
+        return m_cache.size();
+    }
+
+    /////////////////////////////////////////////////
+
+    /**
+     * Planner failures (exceptions or null) produce an empty trajectory, same as
+     * the planner's own failure handling, so the future always has a value.
+     */
+    private static CompletableFuture<Trajectory100> submit(Supplier<Trajectory100> task) {
+        return CompletableFuture.supplyAsync(task, EXECUTOR)
+                .thenApply(t -> t == null ? new Trajectory100() : t)
+                .exceptionally(e -> {
+                    System.out.printf("WARNING: background trajectory planning failed: %s\n", e.getMessage());
+                    return new Trajectory100();
+                });
+    }
+}
@@ -57,6 +57,9 @@ public class Path100 {
     }
 
     /**
+     * Uses a binary search over the distances, so it doesn't care about sampling
+     * order. For sampling in order, use a Cursor.
+     * 
      * @param distance in meters, always a non-negative number.
      */
     public Pose2dWithMotion sample(double distance) throws ScheduleGenerator.TimingException {
@@ -68,20 +71,79 @@ public class Path100 {
             Pose2dWithMotion point = getPoint(0);
             return point;
         }
-        for (int i = 1; i < m_distances.length; ++i) {
-            final Pose2dWithMotion point = getPoint(i);
-            if (m_distances[i] >= distance) {
-                final Pose2dWithMotion prev_s = getPoint(i - 1);
-                if (Math.abs(m_distances[i] - m_distances[i - 1]) <= 1e-12) {
-                    return point;
-                } else {
-                    return prev_s.interpolate(
-                            point,
-                            (distance - m_distances[i - 1]) / (m_distances[i] - m_distances[i - 1]));
-                }
+        return interpolate(ceilingIndex(distance), distance);
+    }
+
+    /** A new cursor, starting at the beginning. */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Samples the path, remembering where the last sample was, so that sampling
+     * in increasing distance order costs amortized constant time. Non-monotonic
+     * samples fall back to binary search.
+     * 
+     * Not thread-safe.
+     */
+    public class Cursor {
+        /** Index of the most-recent ceiling point. */
+        private int m_index = 1;
+
+        /**
+         * @param distance in meters, always a non-negative number.
+         */
+        public Pose2dWithMotion sample(double distance) throws ScheduleGenerator.TimingException {
+            if (distance >= getMaxDistance()) {
+                Pose2dWithMotion point = getPoint(length() - 1);
+                return point;
+            }
+            if (distance <= 0.0) {
+                Pose2dWithMotion point = getPoint(0);
+                return point;
             }
+            if (m_index >= m_distances.length || m_distances[m_index - 1] >= distance) {
+                // moved backwards, start over
+                m_index = ceilingIndex(distance);
+            } else {
+                // scan forward
+                while (m_distances[m_index] < distance)
+                    ++m_index;
+            }
+            return interpolate(m_index, distance);
+        }
+    }
+
+    /**
+     * Index of the first point at or beyond the distance, not counting the first
+     * point. The distance must be within (0, max).
+     */
+    private int ceilingIndex(double distance) {
+        int lo = 1;
+        int hi = m_distances.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (m_distances[mid] < distance) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /** Interpolate between the ceiling point and the one before it. */
+    private Pose2dWithMotion interpolate(int i, double distance) throws ScheduleGenerator.TimingException {
+        if (Double.isNaN(distance))
+            throw new ScheduleGenerator.TimingException();
+        final Pose2dWithMotion point = getPoint(i);
+        final Pose2dWithMotion prev_s = getPoint(i - 1);
+        if (Math.abs(m_distances[i] - m_distances[i - 1]) <= 1e-12) {
+            return point;
         }
-        throw new ScheduleGenerator.TimingException();
+        return prev_s.interpolate(
+                point,
+                (distance - m_distances[i - 1]) / (m_distances[i] - m_distances[i - 1]));
     }
 
     @Override
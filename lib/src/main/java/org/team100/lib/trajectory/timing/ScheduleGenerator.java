@@ -1,6 +1,7 @@
 package org.team100.lib.trajectory.timing;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.team100.lib.geometry.Pose2dWithMotion;
@@ -10,17 +11,58 @@ import org.team100.lib.trajectory.path.Path100;
 /**
  * Given a path, produces a trajectory, which includes the path and adds a
  * schedule.
+ * 
+ * The work is done in primitive arrays, one entry per sample (distance,
+ * velocity, and acceleration bounds), which are kept per thread and reused, so
+ * the only allocations are the samples themselves and the output. The velocity
+ * constraints depend only on the path, so they're evaluated once per sample;
+ * the acceleration constraints depend on velocity, so they're evaluated
+ * whenever the velocity changes.
+ * 
+ * This makes it cheap to re-time an existing trajectory, e.g. with a lower
+ * speed limit, using retime(), which reuses the samples rather than sampling
+ * the path again.
+ * 
+ * Instances can be used by several threads at once, e.g. by the
+ * TrajectoryService.
  */
 public class ScheduleGenerator {
     private static final double EPSILON = 1e-6;
     /** this is the default, in order to make the constraints set the actual */
     private static final double HIGH_ACCEL = 1000;
 
-    private final List<TimingConstraint> m_constraints;
+    /**
+     * Working arrays. Index 0 is the start state, indices 1 through n are the
+     * samples, and index n+1 is the end state.
+     */
+    private static class Workspace {
+        Pose2dWithMotion[] samples = new Pose2dWithMotion[0];
+        double[] distance = new double[0];
+        double[] velocity = new double[0];
+        double[] velocityLimit = new double[0];
+        double[] minAccel = new double[0];
+        double[] maxAccel = new double[0];
+
+        /** Make sure there's room for n samples. */
+        void ensure(int n) {
+            if (samples.length >= n)
+                return;
+            samples = new Pose2dWithMotion[n];
+            distance = new double[n + 2];
+            velocity = new double[n + 2];
+            velocityLimit = new double[n + 2];
+            minAccel = new double[n + 2];
+            maxAccel = new double[n + 2];
+        }
+    }
+
+    private final TimingConstraint[] m_constraints;
+    private final ThreadLocal<Workspace> m_workspace;
 
     /** If you want a max velocity or accel constraint, use ConstantConstraint. */
     public ScheduleGenerator(List<TimingConstraint> constraints) {
-        m_constraints = constraints;
+        m_constraints = constraints.toArray(new TimingConstraint[0]);
+        m_workspace = ThreadLocal.withInitial(Workspace::new);
     }
 
     /**
@@ -36,12 +78,35 @@ public class ScheduleGenerator {
             if (maxDistance == 0)
                 throw new IllegalArgumentException();
             int num_states = (int) Math.ceil(maxDistance / step + 1);
-            List<Pose2dWithMotion> samples = new ArrayList<>(num_states);
+            Workspace w = m_workspace.get();
+            w.ensure(num_states);
+            Path100.Cursor cursor = path.cursor();
             for (int i = 0; i < num_states; ++i) {
-                Pose2dWithMotion state = path.sample(Math.min(i * step, maxDistance));
-                samples.add(state);
+                w.samples[i] = cursor.sample(Math.min(i * step, maxDistance));
+            }
+            return timeParameterizeTrajectory(w, num_states, start_vel, end_vel);
+        } catch (TimingException e) {
+            e.printStackTrace();
+            System.out.println("WARNING: Timing exception");
+            return new Trajectory100();
+        }
+    }
+
+    /**
+     * Assign new times to the samples of an existing trajectory, using these
+     * constraints, without sampling the path again.
+     */
+    public Trajectory100 retime(Trajectory100 trajectory, double start_vel, double end_vel) {
+        try {
+            int n = trajectory.length();
+            if (n == 0)
+                throw new IllegalArgumentException();
+            Workspace w = m_workspace.get();
+            w.ensure(n);
+            for (int i = 0; i < n; ++i) {
+                w.samples[i] = trajectory.getPoint(i).state();
             }
-            return timeParameterizeTrajectory(samples, start_vel, end_vel);
+            return timeParameterizeTrajectory(w, n, start_vel, end_vel);
         } catch (TimingException e) {
             e.printStackTrace();
             System.out.println("WARNING: Timing exception");
@@ -50,17 +115,22 @@ public class ScheduleGenerator {
     }
 
     /**
-     * input is some set of samples (could be evenly sampled or not), output is
-     * these same samples with time.
+     * The samples (could be evenly sampled or not) are in the workspace; output
+     * is these same samples with time.
      */
     private Trajectory100 timeParameterizeTrajectory(
-            List<Pose2dWithMotion> samples,
+            Workspace w,
+            int n,
             double start_vel,
             double end_vel) throws TimingException {
-        List<ConstrainedState> constrainedStates = forwardPass(samples, start_vel);
-        Pose2dWithMotion lastState = samples.get(samples.size() - 1);
-        backwardsPass(lastState, end_vel, constrainedStates);
-        return integrate(constrainedStates);
+        try {
+            forwardPass(w, n, start_vel);
+            backwardsPass(w, n, end_vel);
+            return integrate(w, n);
+        } finally {
+            // don't hold on to the samples
+            Arrays.fill(w.samples, 0, n, null);
+        }
     }
 
     /**
@@ -74,61 +144,63 @@ public class ScheduleGenerator {
      * end velocity to the state's maximum allowed velocity and will repair the
      * acceleration during the backward pass (by slowing down the predecessor).
      */
-    private List<ConstrainedState> forwardPass(List<Pose2dWithMotion> samples, double start_vel) {
-        ConstrainedState predecessor = new ConstrainedState(samples.get(0), 0);
-        predecessor.setVel(start_vel);
-        predecessor.setMin_acceleration(-HIGH_ACCEL);
-        predecessor.setMax_acceleration(HIGH_ACCEL);
+    private void forwardPass(Workspace w, int n, double start_vel) {
+        // the start state is at the first sample
+        w.distance[0] = 0;
+        w.velocity[0] = checkNaN(start_vel);
+        w.minAccel[0] = -HIGH_ACCEL;
+        w.maxAccel[0] = HIGH_ACCEL;
+        Pose2dWithMotion predecessor = w.samples[0];
 
         // work forward through the samples
-        List<ConstrainedState> constrainedStates = new ArrayList<>(samples.size());
-        for (Pose2dWithMotion sample : samples) {
-            double ds = sample.distance(predecessor.getState());
-            ConstrainedState constrainedState = new ConstrainedState(sample, ds + predecessor.getDistance());
-            constrainedStates.add(constrainedState);
-            forwardWork(predecessor, constrainedState);
-            predecessor = constrainedState;
+        for (int i = 1; i <= n; ++i) {
+            Pose2dWithMotion sample = w.samples[i - 1];
+            // constant-twist path length between states
+            // note this is zero for turn-in-place.
+            double ds = sample.distance(predecessor);
+            w.distance[i] = ds + w.distance[i - 1];
+            double limit = Double.POSITIVE_INFINITY;
+            for (TimingConstraint constraint : m_constraints) {
+                limit = Math.min(limit, constraint.getMaxVelocity(sample).getValue());
+            }
+            w.velocityLimit[i] = limit;
+            forwardWork(w, i, ds);
+            predecessor = sample;
         }
-        return constrainedStates;
     }
 
-    private void forwardWork(ConstrainedState s0, ConstrainedState s1) {
-        // constant-twist path length between states
-        // note this is zero for turn-in-place.
-        double ds = s1.getState().distance(s0.getState());
-
+    /** Find the velocity of state i, and the accel of its predecessor. */
+    private void forwardWork(Workspace w, int i, double ds) {
         // We may need to iterate to find the maximum end velocity and common
         // acceleration, since acceleration limits may be a function of velocity.
         while (true) {
-            // first try the previous state accel to get the new state velocity
-            double v1 = v1(s0.getVel(), s0.getMax_acceleration(), ds);
-            s1.setVel(v1);
+            // first try the previous state accel to get the new state velocity,
+            // reduced according to constraints
+            double v1 = v1(w.velocity[i - 1], w.maxAccel[i - 1], ds);
+            w.velocity[i] = checkNaN(Math.min(v1, w.velocityLimit[i]));
 
             // also use max accels for the new state accels
-            s1.setMin_acceleration(-HIGH_ACCEL);
-            s1.setMax_acceleration(HIGH_ACCEL);
-
-            // reduce velocity according to constraints
-            s1.clampVelocity(m_constraints);
+            w.minAccel[i] = -HIGH_ACCEL;
+            w.maxAccel[i] = HIGH_ACCEL;
 
             // reduce accel according to constraints
-            s1.clampAccel(m_constraints);
+            clampAccel(w, i);
 
             // motionless
             if (Math.abs(ds) < EPSILON) {
                 return;
             }
 
-            double accel = accel(s0.getVel(), s1.getVel(), ds);
-            if (accel > s1.getMax_acceleration() + EPSILON) {
+            double accel = accel(w.velocity[i - 1], w.velocity[i], ds);
+            if (accel > w.maxAccel[i] + EPSILON) {
                 // implied accel is too high because v1 is too high, perhaps because
                 // a0 was too high, try again with the (lower) constrained value
-                s0.setMax_acceleration(s1.getMax_acceleration());
+                w.maxAccel[i - 1] = w.maxAccel[i];
                 continue;
             }
-            if (accel > s0.getMin_acceleration() + EPSILON) {
+            if (accel > w.minAccel[i - 1] + EPSILON) {
                 // set the previous state accel to whatever the constrained velocity implies
-                s0.setMax_acceleration(accel);
+                w.maxAccel[i - 1] = accel;
             }
             return;
         }
@@ -137,50 +209,45 @@ public class ScheduleGenerator {
     /**
      * Backwards pass
      */
-    private void backwardsPass(
-            Pose2dWithMotion lastState,
-            double end_velocity,
-            List<ConstrainedState> constrainedStates) {
-        // "successor" comes before in the backwards walk. start with the last state.
-        ConstrainedState endState = constrainedStates.get(constrainedStates.size() - 1);
-        ConstrainedState successor = new ConstrainedState(lastState, endState.getDistance());
-        successor.setVel(end_velocity);
-        successor.setMin_acceleration(-HIGH_ACCEL);
-        successor.setMax_acceleration(HIGH_ACCEL);
-
-        // work backwards through the states list
-        for (int i = constrainedStates.size() - 1; i >= 0; --i) {
-            ConstrainedState constrainedState = constrainedStates.get(i);
-            backwardsWork(constrainedState, successor);
-            successor = constrainedState;
+    private void backwardsPass(Workspace w, int n, double end_velocity) {
+        // "successor" comes before in the backwards walk. start with the end state,
+        // at the last sample.
+        w.distance[n + 1] = w.distance[n];
+        w.velocity[n + 1] = checkNaN(end_velocity);
+        w.minAccel[n + 1] = -HIGH_ACCEL;
+        w.maxAccel[n + 1] = HIGH_ACCEL;
+
+        // work backwards through the states
+        for (int i = n; i >= 1; --i) {
+            backwardsWork(w, i);
         }
     }
 
-    /** s0 is earlier, s1 is "successor", we're walking backwards. */
-    private void backwardsWork(ConstrainedState s0, ConstrainedState s1) {
+    /** i is earlier, i+1 is "successor", we're walking backwards. */
+    private void backwardsWork(Workspace w, int i) {
         // backwards (negative) distance from successor to initial state.
-        double ds = s0.getDistance() - s1.getDistance();
+        double ds = w.distance[i] - w.distance[i + 1];
         if (ds > 0) {
             // must be negative if we're walking backwards.
             throw new IllegalStateException();
         }
 
         while (true) {
-            // s0 velocity can't be more than the accel implies
+            // v0 can't be more than the accel implies
             // so this is actually an estimate for v0
             // min a is negative, ds is negative, so v0 is faster than v1
-            double v0 = v1(s1.getVel(), s1.getMin_acceleration(), ds);
+            double v0 = v1(w.velocity[i + 1], w.minAccel[i + 1], ds);
 
-            if (s0.getVel() <= v0) {
-                // s0 v is slower than implied v0, which means
+            if (w.velocity[i] <= v0) {
+                // v is slower than implied v0, which means
                 // that actual accel is larger than the min, so we're fine
                 // No new limits to impose.
                 return;
             }
-            // s0 v is too fast, turn it down to obey v1 min accel.
-            s0.setVel(v0);
+            // v is too fast, turn it down to obey v1 min accel.
+            w.velocity[i] = checkNaN(v0);
 
-            s0.clampAccel(m_constraints);
+            clampAccel(w, i);
 
             // motionless
             if (Math.abs(ds) < EPSILON) {
@@ -188,49 +255,67 @@ public class ScheduleGenerator {
             }
 
             // implied accel using the constrained v0
-            double accel = accel(s1.getVel(), s0.getVel(), ds);
-            if (accel < s0.getMin_acceleration() - EPSILON) {
-                // accel is too low which implies that s1 accel is too low, try again
-                s1.setMin_acceleration(s0.getMin_acceleration());
+            double accel = accel(w.velocity[i + 1], w.velocity[i], ds);
+            if (accel < w.minAccel[i] - EPSILON) {
+                // accel is too low which implies that successor accel is too low, try
+                // again
+                w.minAccel[i + 1] = w.minAccel[i];
                 continue;
             }
             // set final accel to the implied value
-            s1.setMin_acceleration(accel);
+            w.minAccel[i + 1] = accel;
             return;
         }
     }
 
+    /** Clamp the accelerations of state i to the constraints, at its velocity. */
+    private void clampAccel(Workspace w, int i) {
+        Pose2dWithMotion sample = w.samples[i - 1];
+        double v = w.velocity[i];
+        for (TimingConstraint constraint : m_constraints) {
+            TimingConstraint.MinMaxAcceleration minMax = constraint.getMinMaxAcceleration(sample, v);
+            double minAccel = minMax.getMinAccel();
+            if (Double.isNaN(minAccel))
+                throw new IllegalArgumentException();
+            w.minAccel[i] = Math.max(w.minAccel[i], minAccel);
+            double maxAccel = minMax.getMaxAccel();
+            if (Double.isNaN(maxAccel))
+                throw new IllegalArgumentException();
+            w.maxAccel[i] = Math.min(w.maxAccel[i], maxAccel);
+        }
+    }
+
     /**
      * Integrate the constrained states forward in time to obtain the TimedStates.
      * 
      * last state accel is always zero, which might be wrong.
      */
-    private static Trajectory100 integrate(List<ConstrainedState> states) throws TimingException {
-        List<TimedPose> poses = new ArrayList<>(states.size());
+    private static Trajectory100 integrate(Workspace w, int n) throws TimingException {
+        List<TimedPose> poses = new ArrayList<>(n);
         double time = 0.0; // time along path
-        double distance = 0.0; // distance along path
-        double v0 = 0.0;
-        for (int i = 0; i < states.size(); ++i) {
-            ConstrainedState state = states.get(i);
-            final double ds = state.getDistance() - distance;
-            final double v1 = state.getVel();
-            double dt = 0.0;
-            if (i > 0) {
+        for (int i = 1; i <= n; ++i) {
+            if (i > 1) {
+                double v0 = w.velocity[i - 1];
+                double v1 = w.velocity[i];
+                double ds = w.distance[i] - w.distance[i - 1];
                 double prevAccel = accel(v0, v1, ds);
-                poses.get(i - 1).set_acceleration(prevAccel);
-                dt = dt(v0, v1, ds, prevAccel);
+                poses.add(new TimedPose(w.samples[i - 2], time, v0, prevAccel));
+                time += dt(v0, v1, ds, prevAccel);
             }
-            time += dt;
             if (Double.isNaN(time) || Double.isInfinite(time)) {
                 throw new TimingException();
             }
-            poses.add(new TimedPose(state.getState(), time, v1, 0));
-            v0 = v1;
-            distance = state.getDistance();
         }
+        poses.add(new TimedPose(w.samples[n - 1], time, w.velocity[n], 0));
         return new Trajectory100(poses);
     }
 
+    private static double checkNaN(double v) {
+        if (Double.isNaN(v))
+            throw new IllegalArgumentException();
+        return v;
+    }
+
     private static double dt(
             double v0,
             double v1,
@@ -0,0 +1,157 @@
+package org.team100.lib.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import edu.wpi.first.math.geometry.Translation2d;
+
+/**
+ * Like CoalescingCollection, for translations: a new entry is combined with
+ * the existing entries closer than the resolution, and entries older than the
+ * timeout are evicted.
+ * 
+ * Instead of scanning everything on every write, entries are hashed into grid
+ * cells the size of the resolution, so the neighbors of a new entry are always
+ * in the nine cells around it. Entries are also kept in insertion order, so
+ * eviction just looks at the oldest ones. Insertion is O(1) on average, so a
+ * pile of targets doesn't cost quadratic time.
+ * 
+ * Sights arrive roughly in time order; one that arrives late is evicted when
+ * the entries ahead of it are.
+ */
+public class GridCoalescingCollection {
+    private static class Entry {
+        final double time;
+        final Translation2d value;
+        final long cell;
+        /** Combined into a newer entry; skipped until eviction. */
+        boolean removed;
+
+        Entry(double time, Translation2d value, long cell) {
+            this.time = time;
+            this.value = value;
+            this.cell = cell;
+        }
+    }
+
+    private final double m_resolution;
+    private final double m_timeout;
+    private final Function<Collection<Translation2d>, Translation2d> m_combine;
+    /** Live entries by cell. */
+    private final Map<Long, List<Entry>> m_cells;
+    /** All entries, including removed ones, in insertion order. */
+    private final ArrayDeque<Entry> m_entries;
+    /** Scratch for the combiner. */
+    private final List<Translation2d> m_neighbors;
+    private int m_size;
+
+    /**
+     * @param resolution entries closer than this are combined, meters
+     * @param timeout    entries older than this are evicted, seconds
+     * @param combine    makes one entry from several
+     */
+    public GridCoalescingCollection(
+            double resolution,
+            double timeout,
+            Function<Collection<Translation2d>, Translation2d> combine) {
+        m_resolution = resolution;
+        m_timeout = timeout;
+        m_combine = combine;
+        m_cells = new HashMap<>();
+        m_entries = new ArrayDeque<>();
+        m_neighbors = new ArrayList<>();
+    }
+
+    /** Remove stale entries and add the new value. */
+    public void add(double time, Translation2d value) {
+        cleanup(time);
+        insert(time, value);
+    }
+
+    /** Remove stale entries and add all the values. */
+    public void addAll(double time, Collection<Translation2d> values) {
+        cleanup(time);
+        for (Translation2d value : values) {
+            insert(time, value);
+        }
+    }
+
+    /** Live entries, in insertion order. */
+    public List<Translation2d> getAll() {
+        List<Translation2d> result = new ArrayList<>(m_size);
+        for (Entry e : m_entries) {
+            if (!e.removed)
+                result.add(e.value);
+        }
+        return result;
+    }
+
+    public int size() {
+        return m_size;
+    }
+
+    //////////////////
+
+    private void insert(double time, Translation2d value) {
+        m_neighbors.clear();
+        m_neighbors.add(value);
+        int cx = cell(value.getX());
+        int cy = cell(value.getY());
+        for (int dx = -1; dx <= 1; ++dx) {
+            for (int dy = -1; dy <= 1; ++dy) {
+                long key = key(cx + dx, cy + dy);
+                List<Entry> cell = m_cells.get(key);
+                if (cell == null)
+                    continue;
+                Iterator<Entry> iter = cell.iterator();
+                while (iter.hasNext()) {
+                    Entry e = iter.next();
+                    if (e.value.getDistance(value) < m_resolution) {
+                        iter.remove();
+                        e.removed = true;
+                        m_size--;
+                        m_neighbors.add(e.value);
+                    }
+                }
+                if (cell.isEmpty())
+                    m_cells.remove(key);
+            }
+        }
+        Translation2d rep = m_combine.apply(m_neighbors);
+        Entry entry = new Entry(time, rep, key(cell(rep.getX()), cell(rep.getY())));
+        m_cells.computeIfAbsent(entry.cell, k -> new ArrayList<>()).add(entry);
+        m_entries.add(entry);
+        m_size++;
+    }
+
+    private void cleanup(double time) {
+        double horizon = time - m_timeout;
+        while (!m_entries.isEmpty()) {
+            Entry e = m_entries.peekFirst();
+            if (!e.removed && e.time >= horizon)
+                return;
+            m_entries.pollFirst();
+            if (e.removed)
+                continue;
+            List<Entry> cell = m_cells.get(e.cell);
+            cell.remove(e);
+            if (cell.isEmpty())
+                m_cells.remove(e.cell);
+            m_size--;
+        }
+    }
+
+    private int cell(double x) {
+        return (int) Math.floor(x / m_resolution);
+    }
+
+    private static long key(int cx, int cy) {
+        return ((long) cx << 32) | (cy & 0xffffffffL);
+    }
+}
@@ -1,11 +1,11 @@
 package org.team100.lib.util;
 
+import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.Map.Entry;
-import java.util.NavigableMap;
 import java.util.SortedMap;
-import java.util.concurrent.ConcurrentSkipListMap;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.TreeMap;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.UnaryOperator;
 
 import edu.wpi.first.math.interpolation.Interpolatable;
 
@@ -18,50 +18,116 @@ import edu.wpi.first.math.interpolation.Interpolatable;
  * that never actually occur (at startup, the pose really is unknown (so we
  * use zero) and the module positions really are zero). It's simpler not to do
  * that.
+ * 
+ * The storage is a fixed-capacity ring of primitive timestamps and values,
+ * sorted by time, so that put() doesn't allocate anything (no boxed keys, no
+ * skip-list nodes), and lookups are binary searches over contiguous memory.
+ * Most puts are appends at the newest end; out-of-order puts (e.g. vision
+ * nudges) shift the newer entries over by one, which is cheap since the buffer
+ * is short.
+ * 
+ * If the capacity is exceeded, the oldest entries are evicted even if they're
+ * still within the history window, so choose a capacity that covers the window
+ * at the highest expected update rate. When the buffer is full, a put older
+ * than every entry is dropped, rather than evicting something newer.
+ * 
+ * The hot paths (e.g. odometry replay) use the index accessors, which don't
+ * allocate; the Entry and tailMap accessors allocate, and are for tests and
+ * cold paths.
+ * 
+ * Concurrency is managed by a StampedLock used as a seqlock: writers take the
+ * exclusive lock, and readers do an optimistic read, validating that no write
+ * happened in the middle, so that the two entries used for interpolation are
+ * always consistent with each other. Readers only block if a write actually
+ * intervened.
  */
 public class TimeInterpolatableBuffer100<T extends Interpolatable<T>> {
     private static final boolean DEBUG = false;
+    /**
+     * 250 Hz odometry for a second, plus a lot of vision updates, so a few
+     * seconds at 50 Hz.
+     */
+    private static final int DEFAULT_CAPACITY = 1024;
 
     private final double m_historyS;
-    /** key is timestamp in seconds */
-    private final NavigableMap<Double, T> m_pastSnapshots = new ConcurrentSkipListMap<>();
+    private final int m_capacity;
+    /** Timestamps in seconds, ascending starting at m_head, wrapping. */
+    private final double[] m_times;
+    /** Values corresponding to m_times. */
+    private final Object[] m_values;
+    private final StampedLock m_lock = new StampedLock();
 
-    /**
-     * We allow concurrent operations on the map, with one exception: when we want
-     * two reads to be consistent with each other. For this purpose we use a
-     * read-write lock with the semantics inverted: it's the double-read operation
-     * that takes the "write" (exclusive) lock, and the write operations take the
-     * "read" (non-exclusive) lock.
-     */
-    private final ReadWriteLock m_lock = new ReentrantReadWriteLock();
+    /** Physical index of the oldest entry. */
+    private int m_head;
+    /** Number of entries, always at least one. */
+    private int m_size;
 
     public TimeInterpolatableBuffer100(double historyS, double timeS, T initialValue) {
+        this(historyS, DEFAULT_CAPACITY, timeS, initialValue);
+    }
+
+    /**
+     * @param historyS     entries older than this, relative to the newest put,
+     *                     are evicted.
+     * @param capacity     maximum number of entries.
+     * @param timeS        timestamp of the initial value
+     * @param initialValue so the buffer is never empty
+     */
+    public TimeInterpolatableBuffer100(
+            double historyS,
+            int capacity,
+            double timeS,
+            T initialValue) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("capacity must be positive");
         m_historyS = historyS;
-        m_pastSnapshots.put(timeS, initialValue);
+        m_capacity = capacity;
+        m_times = new double[capacity];
+        m_values = new Object[capacity];
+        m_times[0] = timeS;
+        m_values[0] = initialValue;
+        m_head = 0;
+        m_size = 1;
     }
 
     /**
      * Remove stale entries and add the new one.
+     * 
+     * An entry with the same timestamp is replaced.
      */
     public void put(double timeS, T value) {
         if (DEBUG) {
             System.out.printf("put %f %s\n", timeS, value);
         }
+        long stamp = m_lock.writeLock();
         try {
-            // wait for in-progress double-reads
-            m_lock.readLock().lock();
-            while (!m_pastSnapshots.isEmpty()) {
-                Entry<Double, T> oldest = m_pastSnapshots.firstEntry();
-                Double oldestTimeS = oldest.getKey();
-                double oldestAgeS = timeS - oldestTimeS;
+            while (m_size > 0) {
+                double oldestAgeS = timeS - m_times[m_head];
                 // if oldest is younger than the history limit, we're done
                 if (oldestAgeS < m_historyS)
                     break;
-                m_pastSnapshots.remove(oldestTimeS);
+                removeOldest();
+            }
+            int floor = floorIndex(m_head, m_size, timeS);
+            if (floor >= 0 && m_times[phys(m_head, floor)] == timeS) {
+                // replace
+                m_values[phys(m_head, floor)] = value;
+                return;
+            }
+            if (m_size == m_capacity) {
+                if (floor < 0) {
+                    // Older than everything, so it would be evicted first.
+                    if (DEBUG) {
+                        System.out.printf("full, dropping %f\n", timeS);
+                    }
+                    return;
+                }
+                removeOldest();
+                floor = Math.max(floor - 1, -1);
             }
-            m_pastSnapshots.put(timeS, value);
+            insert(floor + 1, timeS, value);
         } finally {
-            m_lock.readLock().unlock();
+            m_lock.unlockWrite(stamp);
         }
     }
 
@@ -72,13 +138,15 @@ public class TimeInterpolatableBuffer100<T extends Interpolatable<T>> {
         if (DEBUG) {
             System.out.printf("reset %f %s\n", timeS, value);
         }
+        long stamp = m_lock.writeLock();
         try {
-            // wait for in-progress double-reads
-            m_lock.readLock().lock();
-            m_pastSnapshots.clear();
-            m_pastSnapshots.put(timeS, value);
+            while (m_size > 0) {
+                removeOldest();
+            }
+            m_head = 0;
+            insert(0, timeS, value);
         } finally {
-            m_lock.readLock().unlock();
+            m_lock.unlockWrite(stamp);
         }
     }
 
@@ -86,33 +154,54 @@ public class TimeInterpolatableBuffer100<T extends Interpolatable<T>> {
      * Sample the buffer at the given time.
      */
     public T get(double timeSeconds) {
-        // Special case for when the requested time is the same as a sample
-        T nowEntry = m_pastSnapshots.get(timeSeconds);
-        if (nowEntry != null) {
-            if (DEBUG) {
-                System.out.printf("record for now %.2f\n", timeSeconds);
-            }
-            return nowEntry;
-        }
-        Entry<Double, T> topBound = null;
-        Entry<Double, T> bottomBound = null;
+        double bottomTimeS;
+        double topTimeS;
+        T bottom;
+        T top;
+        long stamp = m_lock.tryOptimisticRead();
+        boolean locked = false;
         try {
-            // this pair should be consistent, so prohibit writes briefly.
-            m_lock.writeLock().lock();
-            topBound = m_pastSnapshots.ceilingEntry(timeSeconds);
-            bottomBound = m_pastSnapshots.floorEntry(timeSeconds);
+            while (true) {
+                int head = m_head;
+                int size = m_size;
+                int floor = floorIndex(head, size, timeSeconds);
+                if (floor < 0) {
+                    // Before the oldest entry, so return it.
+                    bottomTimeS = m_times[head];
+                    bottom = value(head);
+                    topTimeS = bottomTimeS;
+                    top = bottom;
+                } else if (floor >= size - 1) {
+                    // After the newest entry, so return it.
+                    bottomTimeS = m_times[phys(head, floor)];
+                    bottom = value(phys(head, floor));
+                    topTimeS = bottomTimeS;
+                    top = bottom;
+                } else {
+                    bottomTimeS = m_times[phys(head, floor)];
+                    bottom = value(phys(head, floor));
+                    topTimeS = m_times[phys(head, floor + 1)];
+                    top = value(phys(head, floor + 1));
+                }
+                // this pair should be consistent, so retry under the lock if a
+                // write happened in the meantime.
+                if (locked || m_lock.validate(stamp))
+                    break;
+                stamp = m_lock.readLock();
+                locked = true;
+            }
         } finally {
-            m_lock.writeLock().unlock();
-        }
-        if (topBound == null && bottomBound == null) {
-            throw new IllegalStateException();
+            if (locked)
+                m_lock.unlockRead(stamp);
         }
-        // Return the opposite bound if the other is null
-        if (topBound == null) {
-            return bottomBound.getValue();
-        }
-        if (bottomBound == null) {
-            return topBound.getValue();
+
+        // Special case for when the requested time is the same as a sample, or
+        // off either end.
+        if (bottomTimeS == timeSeconds || bottomTimeS == topTimeS) {
+            if (DEBUG) {
+                System.out.printf("record for %.2f\n", timeSeconds);
+            }
+            return bottom;
         }
 
         // If both bounds exist, interpolate between them.
@@ -120,40 +209,286 @@ public class TimeInterpolatableBuffer100<T extends Interpolatable<T>> {
         // (the difference between the current time and bottom bound) and (the
         // difference between top and bottom bounds).
 
-        double timeSinceBottom = timeSeconds - bottomBound.getKey();
-        double timeSpan = topBound.getKey() - bottomBound.getKey();
+        double timeSinceBottom = timeSeconds - bottomTimeS;
+        double timeSpan = topTimeS - bottomTimeS;
         double timeFraction = timeSinceBottom / timeSpan;
         if (DEBUG) {
             System.out.printf("interpolate %f\n", timeFraction);
         }
-        return bottomBound.getValue().interpolate(topBound.getValue(), timeFraction);
+        return bottom.interpolate(top, timeFraction);
     }
 
+    /**
+     * A snapshot (not a view) of the entries after the given time. Changes to
+     * the buffer, e.g. replay, do not affect the returned map.
+     * 
+     * Allocates; hot paths should use higherIndex() instead.
+     */
     public SortedMap<Double, T> tailMap(double t, boolean inclusive) {
-        return m_pastSnapshots.tailMap(t, inclusive);
+        SortedMap<Double, T> result = new TreeMap<>();
+        long stamp = m_lock.readLock();
+        try {
+            int first = inclusive
+                    ? lowerIndex(m_head, m_size, t) + 1
+                    : floorIndex(m_head, m_size, t) + 1;
+            for (int i = first; i < m_size; ++i) {
+                int p = phys(m_head, i);
+                result.put(m_times[p], value(p));
+            }
+        } finally {
+            m_lock.unlockRead(stamp);
+        }
+        return result;
+    }
+
+    /**
+     * Replace every entry after the given time with f(entry), in place, without
+     * making a snapshot. The timestamps don't change.
+     */
+    public void replaceAfter(double t, UnaryOperator<T> f) {
+        long stamp = m_lock.writeLock();
+        try {
+            for (int i = floorIndex(m_head, m_size, t) + 1; i < m_size; ++i) {
+                int p = phys(m_head, i);
+                m_values[p] = f.apply(value(p));
+            }
+        } finally {
+            m_lock.unlockWrite(stamp);
+        }
     }
 
     /** True if the timestamp is older than the history window. */
     public boolean tooOld(double timestampS) {
-        Double newestSeenS = m_pastSnapshots.lastKey();
+        double newestSeenS = lastKey();
         double oldestAcceptableS = newestSeenS - m_historyS;
         return timestampS < oldestAcceptableS;
     }
 
+    /**
+     * The newest entry strictly before t, or null if there isn't one.
+     * 
+     * Allocates; hot paths should use lowerIndex() instead.
+     */
     public Entry<Double, T> lowerEntry(double t) {
-        return m_pastSnapshots.lowerEntry(t);
+        long stamp = m_lock.readLock();
+        try {
+            int i = lowerIndex(m_head, m_size, t);
+            if (i < 0)
+                return null;
+            int p = phys(m_head, i);
+            return new SimpleImmutableEntry<>(m_times[p], value(p));
+        } finally {
+            m_lock.unlockRead(stamp);
+        }
     }
 
-    public Entry<Double, T> ceilingEntry(double arg0) {
-        return m_pastSnapshots.ceilingEntry(arg0);
+    /**
+     * The oldest entry at or after t, or null if there isn't one.
+     * 
+     * Allocates; hot paths should use lowerIndex() + 1 instead.
+     */
+    public Entry<Double, T> ceilingEntry(double t) {
+        long stamp = m_lock.readLock();
+        try {
+            int i = lowerIndex(m_head, m_size, t) + 1;
+            if (i >= m_size)
+                return null;
+            int p = phys(m_head, i);
+            return new SimpleImmutableEntry<>(m_times[p], value(p));
+        } finally {
+            m_lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * The oldest entry strictly after t, or null if there isn't one.
+     * 
+     * Allocates; hot paths should use higherIndex() instead.
+     */
+    public Entry<Double, T> higherEntry(double t) {
+        long stamp = m_lock.readLock();
+        try {
+            int i = floorIndex(m_head, m_size, t) + 1;
+            if (i >= m_size)
+                return null;
+            int p = phys(m_head, i);
+            return new SimpleImmutableEntry<>(m_times[p], value(p));
+        } finally {
+            m_lock.unlockRead(stamp);
+        }
     }
 
     public int size() {
-        return m_pastSnapshots.size();
+        long stamp = m_lock.tryOptimisticRead();
+        int result = m_size;
+        if (m_lock.validate(stamp))
+            return result;
+        stamp = m_lock.readLock();
+        try {
+            return m_size;
+        } finally {
+            m_lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Logical index, counting from the oldest entry, of the newest entry strictly
+     * before t, or -1 if there isn't one.
+     * 
+     * Indices are only meaningful until the next write, so callers that combine
+     * them with timeAt() and valueAt() must keep writers out, e.g. the odometry
+     * updater, which does all its history writes under its own lock.
+     */
+    public int lowerIndex(double t) {
+        long stamp = m_lock.tryOptimisticRead();
+        int result = lowerIndex(m_head, m_size, t);
+        if (m_lock.validate(stamp))
+            return result;
+        stamp = m_lock.readLock();
+        try {
+            return lowerIndex(m_head, m_size, t);
+        } finally {
+            m_lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Logical index of the oldest entry strictly after t, or size() if there
+     * isn't one. See lowerIndex() about stability.
+     */
+    public int higherIndex(double t) {
+        long stamp = m_lock.tryOptimisticRead();
+        int result = floorIndex(m_head, m_size, t) + 1;
+        if (m_lock.validate(stamp))
+            return result;
+        stamp = m_lock.readLock();
+        try {
+            return floorIndex(m_head, m_size, t) + 1;
+        } finally {
+            m_lock.unlockRead(stamp);
+        }
+    }
+
+    /** Timestamp of the entry at logical index i. */
+    public double timeAt(int i) {
+        long stamp = m_lock.tryOptimisticRead();
+        double result = m_times[phys(m_head, i)];
+        if (m_lock.validate(stamp))
+            return result;
+        stamp = m_lock.readLock();
+        try {
+            return m_times[phys(m_head, i)];
+        } finally {
+            m_lock.unlockRead(stamp);
+        }
+    }
+
+    /** Value of the entry at logical index i. */
+    public T valueAt(int i) {
+        long stamp = m_lock.tryOptimisticRead();
+        T result = value(phys(m_head, i));
+        if (m_lock.validate(stamp))
+            return result;
+        stamp = m_lock.readLock();
+        try {
+            return value(phys(m_head, i));
+        } finally {
+            m_lock.unlockRead(stamp);
+        }
     }
 
     /** Timestamp of the most-recent snapshot. */
     public double lastKey() {
-        return m_pastSnapshots.lastKey();
+        long stamp = m_lock.tryOptimisticRead();
+        double result = m_times[phys(m_head, m_size - 1)];
+        if (m_lock.validate(stamp))
+            return result;
+        stamp = m_lock.readLock();
+        try {
+            return m_times[phys(m_head, m_size - 1)];
+        } finally {
+            m_lock.unlockRead(stamp);
+        }
+    }
+
+    ////////////////////////////////////////////////
+
+    /** Physical index of the logical index i, which may be -1. */
+    private int phys(int head, int i) {
+        int p = head + i;
+        if (p >= m_capacity)
+            return p - m_capacity;
+        if (p < 0)
+            return p + m_capacity;
+        return p;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T value(int p) {
+        return (T) m_values[p];
+    }
+
+    /**
+     * Logical index of the newest entry at or before timeS, or -1 if all the
+     * entries are later.
+     * 
+     * With optimistic reads, the head and size might be inconsistent, but the
+     * search still terminates and stays in bounds; the result is discarded
+     * after validation fails.
+     */
+    private int floorIndex(int head, int size, double timeS) {
+        int lo = 0;
+        int hi = size - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (m_times[phys(head, mid)] <= timeS) {
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return hi;
+    }
+
+    /**
+     * Logical index of the newest entry strictly before timeS, or -1 if there
+     * isn't one.
+     */
+    private int lowerIndex(int head, int size, double timeS) {
+        int lo = 0;
+        int hi = size - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (m_times[phys(head, mid)] < timeS) {
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return hi;
+    }
+
+    /** Caller must hold the write lock. */
+    private void removeOldest() {
+        m_values[m_head] = null;
+        m_head = phys(m_head, 1);
+        --m_size;
+    }
+
+    /**
+     * Insert at logical index i, moving newer entries over. Caller must hold the
+     * write lock and ensure there's room.
+     */
+    private void insert(int i, double timeS, T value) {
+        for (int j = m_size; j > i; --j) {
+            int dst = phys(m_head, j);
+            int src = phys(m_head, j - 1);
+            m_times[dst] = m_times[src];
+            m_values[dst] = m_values[src];
+        }
+        int p = phys(m_head, i);
+        m_times[p] = timeS;
+        m_values[p] = value;
+        ++m_size;
     }
-}
\ No newline at end of file
+}
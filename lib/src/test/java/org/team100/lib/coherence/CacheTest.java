@@ -0,0 +1,214 @@
+package org.team100.lib.coherence;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+class CacheTest {
+
+    /** Refresh invalidates everything at once; set() and reset() still work. */
+    @Test
+    void testEpoch() {
+        Cache.clear();
+        AtomicInteger a = new AtomicInteger();
+        CotemporalCache<Integer> c = Cache.of(a::incrementAndGet);
+        assertEquals(1, c.get().intValue());
+        assertEquals(1, c.get().intValue());
+        Cache.refresh();
+        assertEquals(2, c.get().intValue());
+        c.set(10);
+        assertEquals(10, c.get().intValue());
+        c.reset();
+        assertEquals(3, c.get().intValue());
+        Cache.refresh();
+        assertEquals(4, c.get().intValue());
+        c.end();
+        Cache.clear();
+    }
+
+    /** Groups are sorted so dependencies come first. */
+    @Test
+    void testWaves() {
+        Cache.clear();
+        Cache.group("c", "b");
+        Cache.group("b", "a");
+        Cache.group("a");
+        Cache.group("d");
+        List<List<CacheGroup>> waves = Cache.waves();
+        assertEquals(3, waves.size());
+        assertEquals(2, waves.get(0).size());
+        assertEquals("a", waves.get(0).get(0).getName());
+        assertEquals("d", waves.get(0).get(1).getName());
+        assertEquals("b", waves.get(1).get(0).getName());
+        assertEquals("c", waves.get(2).get(0).getName());
+        Cache.clear();
+    }
+
+    @Test
+    void testCycle() {
+        Cache.clear();
+        Cache.group("a", "b");
+        Cache.group("b", "a");
+        assertThrows(IllegalStateException.class, () -> Cache.waves());
+        Cache.clear();
+    }
+
+    /** Lazy caches are read at most once per cycle, and only if asked. */
+    @Test
+    void testLazy() {
+        Cache.clear();
+        AtomicInteger a = new AtomicInteger();
+        DoubleCache c = Cache.ofLazyDouble(a::incrementAndGet);
+        Cache.refresh();
+        assertEquals(0, a.get());
+        assertEquals(1, c.getAsDouble());
+        assertEquals(1, c.getAsDouble());
+        Cache.refresh();
+        Cache.refresh();
+        assertEquals(1, a.get());
+        assertEquals(2, c.getAsDouble());
+        Cache.clear();
+    }
+
+    /**
+     * Resetting a cache from inside its own delegate doesn't release the claim,
+     * so another thread can't run the delegate at the same time; the reset takes
+     * effect when the delegate returns.
+     */
+    @Test
+    void testResetInDelegate() throws InterruptedException {
+        Cache.clear();
+        AtomicInteger calls = new AtomicInteger();
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        DoubleCache[] c = new DoubleCache[1];
+        c[0] = Cache.ofLazyDouble(() -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            c[0].reset();
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            running.decrementAndGet();
+            return calls.incrementAndGet();
+        });
+        Thread t = new Thread(c[0]::getAsDouble);
+        t.start();
+        c[0].getAsDouble();
+        t.join();
+        assertEquals(1, maxRunning.get());
+        assertEquals(2, calls.get());
+        // still stale
+        assertEquals(3, c[0].getAsDouble());
+        Cache.clear();
+    }
+
+    /** Grouped caches behave the same as ungrouped ones, in parallel or not. */
+    @Test
+    void testParallel() {
+        Cache.clear();
+        try {
+            AtomicInteger a = new AtomicInteger();
+            AtomicInteger b = new AtomicInteger();
+            AtomicInteger c = new AtomicInteger();
+            DoubleCache ca = Cache.group("a").ofDouble(a::incrementAndGet);
+            DoubleCache cb = Cache.group("b").ofDouble(b::incrementAndGet);
+            // c reads a, on whatever thread it's on.
+            DoubleCache cc = Cache.group("c", "a").ofDouble(() -> c.incrementAndGet() + ca.getAsDouble());
+            for (int threads : new int[] { 0, 2 }) {
+                Cache.setParallelism(threads);
+                a.set(0);
+                b.set(0);
+                c.set(0);
+                Cache.refresh();
+                assertEquals(1, ca.getAsDouble());
+                assertEquals(1, cb.getAsDouble());
+                assertEquals(2, cc.getAsDouble());
+                Cache.refresh();
+                assertEquals(2, ca.getAsDouble());
+                assertEquals(2, cb.getAsDouble());
+                assertEquals(4, cc.getAsDouble());
+                // each delegate is called once per refresh
+                assertEquals(2, a.get());
+                assertEquals(2, b.get());
+                assertEquals(2, c.get());
+            }
+        } finally {
+            Cache.setParallelism(0);
+            Cache.clear();
+        }
+    }
+
+    /** Exceptions in a group on another thread show up in refresh. */
+    @Test
+    void testException() {
+        Cache.clear();
+        try {
+            Cache.setParallelism(2);
+            Cache.group("a").ofSideEffect(() -> {
+            });
+            Cache.group("b").ofSideEffect(() -> {
+                throw new IllegalArgumentException();
+            });
+            assertThrows(IllegalArgumentException.class, () -> Cache.refresh());
+        } finally {
+            Cache.setParallelism(0);
+            Cache.clear();
+        }
+    }
+
+    /** If the group on the main thread fails, the others still finish first. */
+    @Test
+    void testMainThreadException() {
+        Cache.clear();
+        try {
+            Cache.setParallelism(2);
+            AtomicBoolean done = new AtomicBoolean();
+            // the first group runs on the main thread
+            Cache.group("a").ofSideEffect(() -> {
+                throw new IllegalArgumentException();
+            });
+            Cache.group("b").ofSideEffect(() -> {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                done.set(true);
+            });
+            assertThrows(IllegalArgumentException.class, () -> Cache.refresh());
+            assertTrue(done.get());
+        } finally {
+            Cache.setParallelism(0);
+            Cache.clear();
+        }
+    }
+
+    /** If both fail, the main-thread failure wins, and the other is suppressed. */
+    @Test
+    void testBothThrow() {
+        Cache.clear();
+        try {
+            Cache.setParallelism(2);
+            Cache.group("a").ofSideEffect(() -> {
+                throw new IllegalArgumentException();
+            });
+            Cache.group("b").ofSideEffect(() -> {
+                throw new IllegalStateException();
+            });
+            IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> Cache.refresh());
+            assertEquals(1, e.getSuppressed().length);
+            assertTrue(e.getSuppressed()[0] instanceof IllegalStateException);
+        } finally {
+            Cache.setParallelism(0);
+            Cache.clear();
+        }
+    }
+}
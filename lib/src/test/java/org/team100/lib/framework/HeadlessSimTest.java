@@ -0,0 +1,81 @@
+package org.team100.lib.framework;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import org.junit.jupiter.api.Test;
+import org.team100.lib.coherence.Takt;
+
+import edu.wpi.first.wpilibj.DriverStation;
+
+class HeadlessSimTest {
+    private static final double DELTA = 0.001;
+
+    static class CountingRobot extends TimedRobot100 {
+        int periodic;
+        int autonomousInit;
+
+        @Override
+        public void robotPeriodic() {
+            Takt.update();
+            periodic++;
+        }
+
+        @Override
+        public void autonomousInit() {
+            autonomousInit++;
+        }
+    }
+
+    /** Simulated time advances one loop per main loop, without waiting. */
+    @Test
+    void testSteps() {
+        CountingRobot[] robot = new CountingRobot[1];
+        HeadlessSim sim = new HeadlessSim(() -> robot[0] = new CountingRobot(), 0);
+        try {
+            double startS = Takt.get();
+            // a little extra, so the last loop isn't right on the boundary
+            sim.autonomous(1.01);
+            assertEquals(50, robot[0].periodic);
+            assertEquals(1, robot[0].autonomousInit);
+            assertEquals(1.0, Takt.get() - startS, DELTA);
+            sim.disabled(0.1);
+            assertEquals(55, robot[0].periodic);
+        } finally {
+            sim.close();
+        }
+    }
+
+    /** The noise depends only on the seed. */
+    @Test
+    void testRandom() {
+        HeadlessSim sim = new HeadlessSim(CountingRobot::new, 1234);
+        double a;
+        try {
+            a = HeadlessSim.random().nextGaussian();
+        } finally {
+            sim.close();
+        }
+        sim = new HeadlessSim(CountingRobot::new, 1234);
+        try {
+            assertEquals(a, HeadlessSim.random().nextGaussian(), 1e-12);
+        } finally {
+            sim.close();
+        }
+    }
+
+    /** Later tests in the same JVM get a fresh driver station. */
+    @Test
+    void testClose() {
+        HeadlessSim sim = new HeadlessSim(CountingRobot::new, 0);
+        try {
+            sim.autonomous(0.1);
+        } finally {
+            sim.close();
+        }
+        DriverStation.refreshData();
+        assertFalse(DriverStation.isEnabled());
+        assertFalse(DriverStation.isDSAttached());
+        assertFalse(HeadlessSim.active());
+    }
+}
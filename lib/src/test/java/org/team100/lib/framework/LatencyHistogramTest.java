@@ -0,0 +1,60 @@
+package org.team100.lib.framework;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class LatencyHistogramTest {
+    private static final double DELTA = 1e-6;
+
+    /** Every duration is in its bucket, and the buckets are contiguous. */
+    @Test
+    void testBuckets() {
+        for (long us = 0; us < 1 << 20; ++us) {
+            int i = LatencyHistogram.index(us);
+            assertTrue(us <= LatencyHistogram.upper(i));
+            if (i > 0)
+                assertTrue(us > LatencyHistogram.upper(i - 1));
+        }
+        // resolution is about 6%
+        int i = LatencyHistogram.index(20000);
+        assertEquals(20479, LatencyHistogram.upper(i));
+        // huge durations go in the last bucket
+        assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.index(Long.MAX_VALUE));
+    }
+
+    @Test
+    void testPercentile() {
+        LatencyHistogram h = new LatencyHistogram(1);
+        assertEquals(0, h.percentile(0.5), DELTA);
+        for (int i = 0; i < 99; ++i) {
+            h.record(0.000010);
+        }
+        h.record(0.020);
+        assertEquals(100, h.count());
+        assertEquals(0.000010, h.percentile(0.5), DELTA);
+        assertEquals(0.000010, h.percentile(0.99), DELTA);
+        // capped at the max, not the bucket upper bound
+        assertEquals(0.020, h.percentile(1.0), DELTA);
+        assertEquals(0.020, h.max(), DELTA);
+        assertEquals(0.020, h.last(), DELTA);
+    }
+
+    @Test
+    void testRoll() {
+        LatencyHistogram h = new LatencyHistogram(2);
+        h.record(0.020);
+        h.roll();
+        h.record(0.001);
+        assertEquals(2, h.count());
+        assertEquals(0.020, h.max(), DELTA);
+        // the first slot is forgotten
+        h.roll();
+        assertEquals(1, h.count());
+        assertEquals(0.001, h.max(), DELTA);
+        h.roll();
+        assertEquals(0, h.count());
+        assertEquals(0, h.max(), DELTA);
+    }
+}
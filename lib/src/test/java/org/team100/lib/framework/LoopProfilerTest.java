@@ -0,0 +1,46 @@
+package org.team100.lib.framework;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.team100.lib.logging.LoggerFactory;
+import org.team100.lib.logging.TestLoggerFactory;
+import org.team100.lib.logging.primitive.TestPrimitiveLogger;
+
+class LoopProfilerTest {
+    private static final LoggerFactory logger = new TestLoggerFactory(new TestPrimitiveLogger());
+
+    @Test
+    void testOverrun() {
+        LoopProfiler profiler = new LoopProfiler(logger, 0.02);
+        LoopProfiler.Probe a = profiler.probe("a");
+        LoopProfiler.Probe b = profiler.probe("b");
+        LoopProfiler.Probe c = profiler.probe("c");
+        a.record(0.001);
+        b.record(0.002);
+        assertFalse(profiler.endLoop(0.005));
+        assertEquals(0, profiler.getOverruns());
+        // c is slow, a is not sampled, so it's not an offender.
+        b.record(0.003);
+        c.record(0.018);
+        assertEquals("c 18.0 ms, b 3.0 ms", profiler.offenders());
+        assertTrue(profiler.endLoop(0.025));
+        assertEquals(1, profiler.getOverruns());
+        // nothing has been sampled in the next loop yet
+        assertEquals("", profiler.offenders());
+        assertEquals(2, b.getHistogram().count());
+    }
+
+    /** Only the top few offenders are listed, longest first. */
+    @Test
+    void testTop() {
+        LoopProfiler profiler = new LoopProfiler(logger, 0.02);
+        for (int i = 1; i <= 8; ++i) {
+            profiler.probe("p" + i).record(i * 0.001);
+        }
+        assertEquals("p8 8.0 ms, p7 7.0 ms, p6 6.0 ms, p5 5.0 ms, p4 4.0 ms",
+                profiler.offenders());
+    }
+}
@@ -11,6 +11,9 @@ import java.util.function.DoubleFunction;
 
 import org.junit.jupiter.api.Test;
 import org.team100.lib.coherence.Takt;
+import org.team100.lib.config.Camera;
+import org.team100.lib.experiments.Experiment;
+import org.team100.lib.experiments.Experiments;
 import org.team100.lib.logging.LoggerFactory;
 import org.team100.lib.logging.TestLoggerFactory;
 import org.team100.lib.logging.primitive.TestPrimitiveLogger;
@@ -110,6 +113,69 @@ class AprilTagRobotLocalizerTest implements Timeless {
         assertEquals(0.0, pose.getRotation().getRadians(), DELTA);
     }
 
+    /**
+     * Simulated frames offered directly, as in HeadlessSim, go through perBuffer()
+     * and, with batching, come out in finishUpdate().
+     */
+    @Test
+    void testOffer() throws IOException {
+        boolean heed = Experiments.instance.enabled(Experiment.HeedVision);
+        boolean batch = Experiments.instance.enabled(Experiment.BatchVision);
+        Experiments.instance.testOverride(Experiment.HeedVision, true);
+        Experiments.instance.testOverride(Experiment.BatchVision, true);
+        try {
+            AprilTagFieldLayoutWithCorrectOrientation layout = new AprilTagFieldLayoutWithCorrectOrientation();
+            final List<Pose2d> poseEstimate = new ArrayList<Pose2d>();
+            final List<Double> timeEstimate = new ArrayList<Double>();
+            // right in front of tag 7
+            Pose2d robot = new Pose2d(2.6576, 4.0259, Rotation2d.kZero);
+            DoubleFunction<ModelR3> history = t -> new ModelR3(robot);
+            VisionUpdater visionUpdater = new VisionUpdater() {
+                @Override
+                public void put(double t, Pose2d p, double[] sd1, double[] sd2) {
+                    poseEstimate.add(p);
+                    timeEstimate.add(t);
+                }
+            };
+            AprilTagRobotLocalizer localizer = new AprilTagRobotLocalizer(
+                    logger, layout, history, visionUpdater);
+            SimulatedTagDetector sim = new SimulatedTagDetector(
+                    List.of(
+                            Camera.SWERVE_LEFT,
+                            Camera.SWERVE_RIGHT,
+                            Camera.FUNNEL,
+                            Camera.CORAL_LEFT,
+                            Camera.CORAL_RIGHT),
+                    layout,
+                    history,
+                    localizer);
+            DriverStationSim.setAllianceStationId(AllianceStationID.Red1);
+            DriverStationSim.notifyNewData();
+            // two frames, since the very first sighting is skipped.
+            sim.periodic();
+            sim.periodic();
+            // nothing happens until update()
+            assertTrue(poseEstimate.isEmpty());
+            localizer.update();
+            assertTrue(poseEstimate.size() > 0);
+            // the simulated camera sees exactly where the robot is.
+            Pose2d pose = poseEstimate.get(0);
+            assertEquals(robot.getX(), pose.getX(), DELTA);
+            assertEquals(robot.getY(), pose.getY(), DELTA);
+            assertEquals(0, pose.getRotation().getRadians(), DELTA);
+            // the frame is from the past, by the simulated delay and the
+            // localizer's own correction.
+            assertTrue(timeEstimate.get(0) < Takt.get());
+            // the queue is empty now.
+            poseEstimate.clear();
+            localizer.update();
+            assertTrue(poseEstimate.isEmpty());
+        } finally {
+            Experiments.instance.testOverride(Experiment.HeedVision, heed);
+            Experiments.instance.testOverride(Experiment.BatchVision, batch);
+        }
+    }
+
     @Test
     void testEstimateRobotPose() throws IOException {
         AprilTagFieldLayoutWithCorrectOrientation layout = new AprilTagFieldLayoutWithCorrectOrientation();
@@ -641,4 +707,31 @@ class AprilTagRobotLocalizerTest implements Timeless {
         localizer.estimateRobotPose(cameraOffset, tags, Takt.get(), alliance);
         localizer.estimateRobotPose(cameraOffset, tags, Takt.get(), alliance);
     }
-}
\ No newline at end of file
+
+    /** Measurements at the same time are fused, weighted by inverse variance. */
+    @Test
+    void testFuse() {
+        double[] state = new double[] { 0.001, 0.001, 0.1 };
+        List<VisionUpdater.Measurement> measurements = List.of(
+                new VisionUpdater.Measurement(1.1, new Pose2d(5, 5, Rotation2d.kZero), state,
+                        new double[] { 0.1, 0.1, Double.MAX_VALUE }),
+                new VisionUpdater.Measurement(1.0, new Pose2d(1, 0, Rotation2d.kZero), state,
+                        new double[] { 0.1, 0.1, Double.MAX_VALUE }),
+                new VisionUpdater.Measurement(1.0, new Pose2d(2, 3, Rotation2d.kZero), state,
+                        new double[] { 0.1, 0.05, Double.MAX_VALUE }));
+        List<VisionUpdater.Measurement> fused = AprilTagRobotLocalizer.fuse(measurements);
+        assertEquals(2, fused.size());
+        VisionUpdater.Measurement m = fused.get(0);
+        assertEquals(1.0, m.timestampS(), DELTA);
+        // equal weights
+        assertEquals(1.5, m.pose().getX(), DELTA);
+        // the second one has 4x the weight
+        assertEquals(2.4, m.pose().getY(), DELTA);
+        assertEquals(0.0707, m.visionSigma()[0], 1e-4);
+        assertEquals(0.0447, m.visionSigma()[1], 1e-4);
+        assertEquals(Double.MAX_VALUE, m.visionSigma()[2], DELTA);
+        // the later one is untouched
+        assertEquals(1.1, fused.get(1).timestampS(), DELTA);
+        assertEquals(5, fused.get(1).pose().getX(), DELTA);
+    }
+}
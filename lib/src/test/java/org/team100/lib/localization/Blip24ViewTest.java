@@ -0,0 +1,49 @@
+package org.team100.lib.localization;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.math.geometry.Rotation3d;
+import edu.wpi.first.math.geometry.Transform3d;
+import edu.wpi.first.math.geometry.Translation3d;
+import edu.wpi.first.util.struct.StructBuffer;
+
+class Blip24ViewTest {
+    private static final double DELTA = 0.001;
+
+    @Test
+    void testView() {
+        Blip24[] blips = new Blip24[] {
+                new Blip24(3, new Transform3d(
+                        new Translation3d(1, 2, 3),
+                        new Rotation3d(0.1, 0.2, 0.3))),
+                Blip24.fromXForward(7, new Transform3d(
+                        new Translation3d(2, -0.5, 0.25),
+                        new Rotation3d(0, 0.4, -1))) };
+        // the same encoding the camera uses
+        ByteBuffer bb = StructBuffer.create(Blip24.struct).writeArray(blips);
+
+        Blip24View view = new Blip24View();
+        for (int i = 0; i < blips.length; ++i) {
+            view.at(bb, i);
+            assertEquals(blips[i].getId(), view.getId());
+            Transform3d raw = blips[i].getRawPose();
+            assertEquals(raw.getX(), view.x(), DELTA);
+            assertEquals(raw.getY(), view.y(), DELTA);
+            assertEquals(raw.getZ(), view.z(), DELTA);
+            // same as the decoded blip
+            assertEquals(raw, view.toBlip24().getRawPose());
+            Transform3d expected = blips[i].blipToTransform();
+            Transform3d actual = view.blipToTransform();
+            assertEquals(expected.getX(), actual.getX(), DELTA);
+            assertEquals(expected.getY(), actual.getY(), DELTA);
+            assertEquals(expected.getZ(), actual.getZ(), DELTA);
+            assertEquals(expected.getRotation().getX(), actual.getRotation().getX(), DELTA);
+            assertEquals(expected.getRotation().getY(), actual.getRotation().getY(), DELTA);
+            assertEquals(expected.getRotation().getZ(), actual.getRotation().getZ(), DELTA);
+        }
+    }
+}
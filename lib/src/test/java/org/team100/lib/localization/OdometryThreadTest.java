@@ -0,0 +1,74 @@
+package org.team100.lib.localization;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayDeque;
+import java.util.Optional;
+import java.util.Queue;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.team100.lib.gyro.Gyro;
+import org.team100.lib.gyro.MockGyro;
+import org.team100.lib.logging.LoggerFactory;
+import org.team100.lib.logging.TestLoggerFactory;
+import org.team100.lib.logging.primitive.TestPrimitiveLogger;
+import org.team100.lib.motion.swerve.kinodynamics.SwerveKinodynamics;
+import org.team100.lib.motion.swerve.kinodynamics.SwerveKinodynamicsFactory;
+import org.team100.lib.motion.swerve.module.state.SwerveModulePosition100;
+import org.team100.lib.motion.swerve.module.state.SwerveModulePositions;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.wpilibj.DataLogManager;
+
+class OdometryThreadTest {
+    private static final double DELTA = 0.001;
+    private static final LoggerFactory logger = new TestLoggerFactory(new TestPrimitiveLogger());
+
+    private static SwerveModulePositions positions(double x) {
+        SwerveModulePosition100 p = new SwerveModulePosition100(x, Optional.of(Rotation2d.kZero));
+        return new SwerveModulePositions(p, p, p, p);
+    }
+
+    @BeforeEach
+    void nolog() {
+        DataLogManager.stop();
+    }
+
+    @Test
+    void testStep() {
+        SwerveKinodynamics kinodynamics = SwerveKinodynamicsFactory.forTest();
+        Gyro gyro = new MockGyro();
+        SwerveHistory history = new SwerveHistory(
+                kinodynamics,
+                Rotation2d.kZero,
+                positions(0),
+                Pose2d.kZero,
+                0);
+        OdometryUpdater ou = new OdometryUpdater(kinodynamics, gyro, history, () -> positions(0));
+        ou.reset(Pose2d.kZero, 0);
+
+        Queue<OdometryThread.Sample> samples = new ArrayDeque<>();
+        OdometryThread thread = new OdometryThread(logger, ou, samples::poll, 250);
+
+        // nothing available
+        thread.step();
+        assertEquals(0, history.apply(0).pose().getX(), DELTA);
+
+        // a few samples, 4 ms apart
+        samples.add(new OdometryThread.Sample(0.004, Rotation2d.kZero, 0, positions(0.01)));
+        samples.add(new OdometryThread.Sample(0.008, Rotation2d.kZero, 0, positions(0.02)));
+        // duplicate timestamp is ignored
+        samples.add(new OdometryThread.Sample(0.008, Rotation2d.kZero, 0, positions(1)));
+        samples.add(new OdometryThread.Sample(0.012, Rotation2d.kZero, 0, positions(0.03)));
+        for (int i = 0; i < 4; ++i)
+            thread.step();
+
+        assertEquals(0.01, history.apply(0.004).pose().getX(), DELTA);
+        assertEquals(0.02, history.apply(0.008).pose().getX(), DELTA);
+        assertEquals(0.03, history.apply(0.012).pose().getX(), DELTA);
+        // interpolated between samples
+        assertEquals(0.015, history.apply(0.006).pose().getX(), DELTA);
+    }
+}
@@ -9,8 +9,11 @@ import java.util.Random;
 import java.util.TreeMap;
 import java.util.function.Function;
 
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.team100.lib.experiments.Experiment;
+import org.team100.lib.experiments.Experiments;
 import org.team100.lib.geometry.GlobalVelocityR3;
 import org.team100.lib.gyro.Gyro;
 import org.team100.lib.gyro.MockGyro;
@@ -63,6 +66,11 @@ class SwerveDrivePoseEstimator100Test {
         DataLogManager.stop();
     }
 
+    @AfterEach
+    void after() {
+        Experiments.instance.testOverride(Experiment.ShiftVision, false);
+    }
+
     @Test
     void testGyroOffset() {
         SwerveKinodynamics kinodynamics = SwerveKinodynamicsFactory.forTest();
@@ -986,4 +994,106 @@ class SwerveDrivePoseEstimator100Test {
                 odometryPose.getRotation().getRadians(),
                 visionPose.getRotation().getRadians(), DELTA);
     }
-}
\ No newline at end of file
+
+    /** Putting all the measurements at once is the same as one at a time. */
+    @Test
+    void testPutAll() {
+        SwerveKinodynamics kinodynamics = SwerveKinodynamicsFactory.forTest();
+        double[] stateStdDevs = new double[] { 0.1, 0.1, 0.1 };
+        double[] visionStdDevs = new double[] { 0.5, 0.5, Double.MAX_VALUE };
+        List<VisionUpdater.Measurement> measurements = List.of(
+                new VisionUpdater.Measurement(0.05, new Pose2d(1, 0.5, Rotation2d.kZero),
+                        stateStdDevs, visionStdDevs),
+                new VisionUpdater.Measurement(0.08, new Pose2d(0.5, 1, Rotation2d.kZero),
+                        stateStdDevs, visionStdDevs),
+                new VisionUpdater.Measurement(0.13, new Pose2d(2, 0, Rotation2d.kZero),
+                        stateStdDevs, visionStdDevs));
+        SwerveHistory[] histories = new SwerveHistory[2];
+        for (int h = 0; h < 2; ++h) {
+            SwerveHistory history = new SwerveHistory(
+                    kinodynamics, Rotation2d.kZero, positionZero, Pose2d.kZero, 0);
+            OdometryUpdater ou = new OdometryUpdater(kinodynamics, new MockGyro(), history, () -> positions);
+            positions = positionZero;
+            ou.reset(Pose2d.kZero, 0);
+            NudgingVisionUpdater vu = new NudgingVisionUpdater(history, ou);
+            for (int i = 0; i <= 10; ++i) {
+                SwerveModulePosition100 p = new SwerveModulePosition100(
+                        0.01 * i * i, Optional.of(Rotation2d.kZero));
+                positions = new SwerveModulePositions(p, p, p, p);
+                ou.update(0.02 * i);
+            }
+            if (h == 0) {
+                for (VisionUpdater.Measurement m : measurements) {
+                    vu.put(m.timestampS(), m.pose(), m.stateSigma(), m.visionSigma());
+                }
+            } else {
+                vu.putAll(measurements);
+            }
+            histories[h] = history;
+        }
+        for (double t = 0; t <= 0.2; t += 0.01) {
+            Pose2d a = histories[0].apply(t).pose();
+            Pose2d b = histories[1].apply(t).pose();
+            assertEquals(a.getX(), b.getX(), 1e-9);
+            assertEquals(a.getY(), b.getY(), 1e-9);
+        }
+        // and the vision actually did something
+        assertTrue(histories[1].apply(0.2).pose().getY() > 0.01);
+    }
+
+    /** Shifting the history is the same as replaying it, even while turning. */
+    @Test
+    void testShiftVision() {
+        SwerveKinodynamics kinodynamics = SwerveKinodynamicsFactory.forTest();
+        double[] stateStdDevs = new double[] { 0.1, 0.1, 0.1 };
+        double[] visionStdDevs = new double[] { 0.5, 0.5, 0.5 };
+        List<VisionUpdater.Measurement> measurements = List.of(
+                new VisionUpdater.Measurement(0.05, new Pose2d(1, 0.5, new Rotation2d(0.2)),
+                        stateStdDevs, visionStdDevs),
+                new VisionUpdater.Measurement(0.08, new Pose2d(0.5, 1, Rotation2d.kZero),
+                        stateStdDevs, visionStdDevs),
+                new VisionUpdater.Measurement(0.13, new Pose2d(2, 0, new Rotation2d(-0.1)),
+                        stateStdDevs, visionStdDevs));
+        SwerveHistory[] histories = new SwerveHistory[3];
+        for (int h = 0; h < 3; ++h) {
+            Experiments.instance.testOverride(Experiment.ShiftVision, h > 0);
+            SwerveHistory history = new SwerveHistory(
+                    kinodynamics, Rotation2d.kZero, positionZero, Pose2d.kZero, 0);
+            MockGyro gyro = new MockGyro();
+            OdometryUpdater ou = new OdometryUpdater(kinodynamics, gyro, history, () -> positions);
+            positions = positionZero;
+            ou.reset(Pose2d.kZero, 0);
+            NudgingVisionUpdater vu = new NudgingVisionUpdater(history, ou);
+            for (int i = 0; i <= 10; ++i) {
+                // driving sideways-ish, and turning
+                SwerveModulePosition100 p = new SwerveModulePosition100(
+                        0.01 * i * i, Optional.of(new Rotation2d(0.5)));
+                positions = new SwerveModulePositions(p, p, p, p);
+                gyro.rotation = new Rotation2d(0.1 * i);
+                gyro.rate = 5;
+                ou.update(0.02 * i);
+            }
+            if (h < 2) {
+                for (VisionUpdater.Measurement m : measurements) {
+                    vu.put(m.timestampS(), m.pose(), m.stateSigma(), m.visionSigma());
+                }
+            } else {
+                vu.putAll(measurements);
+            }
+            histories[h] = history;
+        }
+        for (int h = 1; h < 3; ++h) {
+            for (double t = 0; t <= 0.2; t += 0.01) {
+                ModelR3 a = histories[0].apply(t);
+                ModelR3 b = histories[h].apply(t);
+                assertEquals(a.pose().getX(), b.pose().getX(), 1e-9);
+                assertEquals(a.pose().getY(), b.pose().getY(), 1e-9);
+                assertEquals(a.pose().getRotation().getRadians(), b.pose().getRotation().getRadians(), 1e-9);
+                assertEquals(a.velocity().x(), b.velocity().x(), 1e-9);
+                assertEquals(a.velocity().y(), b.velocity().y(), 1e-9);
+            }
+        }
+        // and the vision actually did something
+        assertTrue(histories[1].apply(0.2).pose().getY() > 0.01);
+    }
+}
@@ -0,0 +1,144 @@
+package org.team100.lib.localization;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.math.geometry.Pose3d;
+import edu.wpi.first.math.geometry.Quaternion;
+import edu.wpi.first.math.geometry.Rotation3d;
+import edu.wpi.first.math.geometry.Transform3d;
+import edu.wpi.first.wpilibj.DriverStation.Alliance;
+
+class TagIndexTest {
+    private static final double DELTA = 0.001;
+
+    @Test
+    void testGetTagPose() throws IOException {
+        AprilTagFieldLayoutWithCorrectOrientation layout = new AprilTagFieldLayoutWithCorrectOrientation();
+        TagIndex index = layout.getIndex(Alliance.Red);
+        assertEquals(22, index.size());
+        Pose3d pose = index.getTagPose(1).get();
+        assertEquals(0.851, pose.getX(), DELTA);
+        assertEquals(7.396, pose.getY(), DELTA);
+        assertEquals(1.486, pose.getZ(), DELTA);
+        assertTrue(index.getTagPose(0).isEmpty());
+        assertTrue(index.getTagPose(23).isEmpty());
+    }
+
+    /** The radius query matches the brute-force answer. */
+    @Test
+    void testWithin() throws IOException {
+        AprilTagFieldLayoutWithCorrectOrientation layout = new AprilTagFieldLayoutWithCorrectOrientation();
+        TagIndex index = layout.getIndex(Alliance.Blue);
+        Random random = new Random(0);
+        int[] out = new int[index.size()];
+        for (int trial = 0; trial < 1000; ++trial) {
+            double x = random.nextDouble() * 17.5;
+            double y = random.nextDouble() * 8;
+            double r = random.nextDouble() * 5;
+            int n = index.within(x, y, 0, r, out);
+            int[] actual = Arrays.copyOf(out, n);
+            Arrays.sort(actual);
+            int[] expected = new int[index.size()];
+            int m = 0;
+            for (int id = 1; id <= 22; ++id) {
+                Pose3d tag = layout.getTagPose(Alliance.Blue, id).get();
+                double dx = tag.getX() - x;
+                double dy = tag.getY() - y;
+                double dz = tag.getZ();
+                if (Math.sqrt(dx * dx + dy * dy + dz * dz) <= r)
+                    expected[m++] = id;
+            }
+            assertArrayEquals(Arrays.copyOf(expected, m), actual);
+        }
+    }
+
+    /** The frustum query matches the simulated detector's transform-based test. */
+    @Test
+    void testVisible() throws IOException {
+        AprilTagFieldLayoutWithCorrectOrientation layout = new AprilTagFieldLayoutWithCorrectOrientation();
+        TagIndex index = layout.getIndex(Alliance.Red);
+        Random random = new Random(0);
+        int[] out = new int[index.size()];
+        int total = 0;
+        for (int trial = 0; trial < 1000; ++trial) {
+            Pose3d camera = new Pose3d(
+                    random.nextDouble() * 17.5,
+                    random.nextDouble() * 8,
+                    random.nextDouble(),
+                    new Rotation3d(
+                            random.nextGaussian() * 0.1,
+                            random.nextGaussian() * 0.3,
+                            random.nextDouble() * 2 * Math.PI));
+            int n = index.visible(camera, 0.8, 0.6, 1.4, out);
+            int[] expected = new int[index.size()];
+            int m = 0;
+            for (int id = 1; id <= 22; ++id) {
+                Pose3d tag = layout.getTagPose(Alliance.Red, id).get();
+                if (SimulatedTagDetector.visible(SimulatedTagDetector.tagInCamera(camera, tag)))
+                    expected[m++] = id;
+            }
+            assertArrayEquals(Arrays.copyOf(expected, m), Arrays.copyOf(out, n));
+            total += n;
+        }
+        // make sure the test means something
+        assertTrue(total > 100);
+    }
+
+    /** The serialized blips match the ones the simulated detector used to make. */
+    @Test
+    void testBlips() throws IOException {
+        AprilTagFieldLayoutWithCorrectOrientation layout = new AprilTagFieldLayoutWithCorrectOrientation();
+        TagIndex index = layout.getIndex(Alliance.Red);
+        Random random = new Random(0);
+        int[] scratch = new int[index.size()];
+        int[] ids = new int[index.size()];
+        ByteBuffer bb = ByteBuffer.allocate(index.size() * Blip24.struct.getSize())
+                .order(ByteOrder.LITTLE_ENDIAN);
+        Blip24View view = new Blip24View();
+        int total = 0;
+        for (int trial = 0; trial < 1000; ++trial) {
+            Pose3d camera = new Pose3d(
+                    random.nextDouble() * 17.5,
+                    random.nextDouble() * 8,
+                    random.nextDouble(),
+                    new Rotation3d(
+                            random.nextGaussian() * 0.1,
+                            random.nextGaussian() * 0.3,
+                            random.nextDouble() * 2 * Math.PI));
+            Quaternion q = camera.getRotation().getQuaternion();
+            bb.clear();
+            int n = index.blips(
+                    camera.getX(), camera.getY(), camera.getZ(),
+                    q.getW(), q.getX(), q.getY(), q.getZ(),
+                    0.8, 0.6, 1.4, scratch, bb);
+            assertEquals(n * Blip24.struct.getSize(), bb.position());
+            // same tags as visible()
+            assertEquals(n, index.visible(camera, 0.8, 0.6, 1.4, ids));
+            for (int i = 0; i < n; ++i) {
+                view.at(bb, i);
+                assertEquals(ids[i], view.getId());
+                Pose3d tag = index.getTagPose(ids[i]).get();
+                Blip24 expected = Blip24.fromXForward(
+                        ids[i], SimulatedTagDetector.tagInCamera(camera, tag));
+                Transform3d raw = expected.getRawPose();
+                assertEquals(raw.getX(), view.x(), DELTA);
+                assertEquals(raw.getY(), view.y(), DELTA);
+                assertEquals(raw.getZ(), view.z(), DELTA);
+                assertEquals(raw.getRotation(), view.toBlip24().getRawPose().getRotation());
+            }
+            total += n;
+        }
+        // make sure the test means something
+        assertTrue(total > 100);
+    }
+}
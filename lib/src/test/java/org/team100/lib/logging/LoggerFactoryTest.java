@@ -0,0 +1,145 @@
+package org.team100.lib.logging;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.team100.lib.logging.LoggerFactory.DoubleLogger;
+import org.team100.lib.logging.LoggerFactory.Pose2dLogger;
+import org.team100.lib.logging.LoggerFactory.StringLogger;
+import org.team100.lib.logging.primitive.PrimitiveLogger;
+import org.team100.lib.logging.primitive.TestPrimitiveLogger;
+import org.team100.lib.testing.Timeless;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+
+class LoggerFactoryTest implements Timeless {
+
+    /** Records the doubles it's given. */
+    private static class Recorder extends TestPrimitiveLogger {
+        final List<Double> doubles = new ArrayList<>();
+
+        @Override
+        public PrimitiveDoubleLogger doubleLogger(String label) {
+            super.doubleLogger(label);
+            return doubles::add;
+        }
+    }
+
+    @Test
+    void testDuplicates() {
+        Recorder recorder = new Recorder();
+        LoggerFactory log = new LoggerFactory(() -> Level.COMP, "test", recorder);
+        DoubleLogger d = log.doubleLogger(Level.COMP, "d");
+        d.log(() -> 1.0);
+        d.log(() -> 1.0);
+        d.log(() -> 2.0);
+        stepTime();
+        d.log(() -> 2.0);
+        assertEquals(List.of(1.0, 2.0), recorder.doubles);
+        assertEquals(2, log.getThrottle().getPublished());
+        assertEquals(2, log.getThrottle().getDuplicateSuppressed());
+        // unchanged values are republished after a second
+        for (int i = 0; i < 50; ++i) {
+            stepTime();
+        }
+        d.log(() -> 2.0);
+        assertEquals(List.of(1.0, 2.0, 2.0), recorder.doubles);
+    }
+
+    /** Negative zero is not the same as zero, bit-wise. */
+    @Test
+    void testBits() {
+        Recorder recorder = new Recorder();
+        LoggerFactory log = new LoggerFactory(() -> Level.COMP, "test", recorder);
+        DoubleLogger d = log.doubleLogger(Level.COMP, "d");
+        d.log(() -> 0.0);
+        d.log(() -> -0.0);
+        d.log(() -> Double.NaN);
+        d.log(() -> Double.NaN);
+        assertEquals(3, recorder.doubles.size());
+    }
+
+    /** With a 0.2 s period, TRACE is published every tenth cycle, the whole cycle. */
+    @Test
+    void testRate() {
+        Recorder recorder = new Recorder();
+        LoggerFactory log = new LoggerFactory(() -> Level.TRACE, "test", recorder);
+        log.getThrottle().setPeriod(Level.TRACE, 0.2);
+        DoubleLogger comp = log.doubleLogger(Level.COMP, "comp");
+        Pose2dLogger trace = log.pose2dLogger(Level.TRACE, "trace");
+        int traces = 0;
+        for (int i = 0; i < 20; ++i) {
+            double x = i;
+            comp.log(() -> x);
+            int before = recorder.doubles.size();
+            trace.log(() -> new Pose2d(x, -x, new Rotation2d(x)));
+            // x, y, and rotation, all or nothing.
+            int n = recorder.doubles.size() - before;
+            if (n > 0) {
+                assertEquals(3, n);
+                traces++;
+            }
+            stepTime();
+        }
+        assertEquals(2, traces);
+        // 20 comp + 2 * 3 trace
+        assertEquals(26, log.getThrottle().getPublished());
+        assertEquals(18, log.getThrottle().getRateSuppressed());
+    }
+
+    /** Children share the throttle. */
+    @Test
+    void testChildren() {
+        LoggerFactory log = new LoggerFactory(() -> Level.TRACE, "test", new TestPrimitiveLogger());
+        assertEquals(log.getThrottle(), log.name("child").getThrottle());
+        assertEquals(log.getThrottle(), log.type(this).getThrottle());
+    }
+
+    /** By default, TRACE is published every cycle, so one-shot events get through. */
+    @Test
+    void testDefaultPeriod() {
+        Recorder recorder = new Recorder();
+        LoggerFactory log = new LoggerFactory(() -> Level.TRACE, "test", recorder);
+        DoubleLogger d = log.doubleLogger(Level.TRACE, "d");
+        for (int i = 0; i < 5; ++i) {
+            double x = i;
+            d.log(() -> x);
+            stepTime();
+        }
+        assertEquals(5, recorder.doubles.size());
+        assertEquals(0, log.getThrottle().getRateSuppressed());
+    }
+
+    /** A period of zero means every cycle. */
+    @Test
+    void testSetPeriod() {
+        Recorder recorder = new Recorder();
+        LoggerFactory log = new LoggerFactory(() -> Level.TRACE, "test", recorder);
+        log.getThrottle().setPeriod(Level.TRACE, 0.2);
+        log.getThrottle().setPeriod(Level.TRACE, 0);
+        DoubleLogger d = log.doubleLogger(Level.TRACE, "d");
+        for (int i = 0; i < 5; ++i) {
+            double x = i;
+            d.log(() -> x);
+            stepTime();
+        }
+        assertEquals(5, recorder.doubles.size());
+    }
+
+    /** A null string is a change, not an exception. */
+    @Test
+    void testNullString() {
+        LoggerFactory log = new LoggerFactory(() -> Level.TRACE, "test", new TestPrimitiveLogger());
+        StringLogger s = log.stringLogger(Level.COMP, "s");
+        s.log(() -> "a");
+        s.log(() -> null);
+        s.log(() -> null);
+        s.log(() -> "a");
+        assertEquals(3, log.getThrottle().getPublished());
+        assertEquals(1, log.getThrottle().getDuplicateSuppressed());
+    }
+}
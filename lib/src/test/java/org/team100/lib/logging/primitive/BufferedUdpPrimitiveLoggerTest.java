@@ -0,0 +1,202 @@
+package org.team100.lib.logging.primitive;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+class BufferedUdpPrimitiveLoggerTest {
+    private static final double DELTA = 0.001;
+    /** So a missing packet fails the test instead of hanging it. */
+    private static final int TIMEOUT_MS = 1000;
+
+    /** Send everything over loopback using the sender thread, and decode it. */
+    @Test
+    void testLoopback() throws IOException {
+        try (DatagramChannel data = receiver();
+                DatagramChannel meta = receiver();
+                BufferedUdpPrimitiveLogger logger = new BufferedUdpPrimitiveLogger(
+                        addr(data), addr(meta), 1 << 16, () -> 1234)) {
+            logger.booleanLogger("b").log(true);
+            logger.doubleLogger("d").log(1.5);
+            logger.intLogger("i").log(7);
+            logger.doubleArrayLogger("a").log(new double[] { 1, 2 });
+            logger.longLogger("l").log(8);
+            logger.stringLogger("s").log("hello");
+            assertEquals(6, logger.keyCount());
+            logger.start();
+
+            ByteBuffer buf = ByteBuffer.allocate(BufferedUdpPrimitiveLogger.MTU);
+            receive(data, buf);
+            buf.flip();
+            assertEquals(1234, buf.getLong());
+
+            assertEquals(1, buf.getChar());
+            assertEquals(UdpType.BOOLEAN.id, buf.get());
+            assertEquals(1, buf.get());
+
+            assertEquals(2, buf.getChar());
+            assertEquals(UdpType.DOUBLE.id, buf.get());
+            assertEquals(1.5, buf.getDouble(), DELTA);
+
+            assertEquals(3, buf.getChar());
+            assertEquals(UdpType.INT.id, buf.get());
+            assertEquals(7, buf.getInt());
+
+            assertEquals(4, buf.getChar());
+            assertEquals(UdpType.DOUBLE_ARRAY.id, buf.get());
+            assertEquals(2, buf.get());
+            assertEquals(1, buf.getDouble(), DELTA);
+            assertEquals(2, buf.getDouble(), DELTA);
+
+            assertEquals(5, buf.getChar());
+            assertEquals(UdpType.LONG.id, buf.get());
+            assertEquals(8, buf.getLong());
+
+            assertEquals(6, buf.getChar());
+            assertEquals(UdpType.STRING.id, buf.get());
+            byte[] s = new byte[buf.get()];
+            buf.get(s);
+            assertEquals("hello", new String(s, StandardCharsets.US_ASCII));
+            assertEquals(0, buf.remaining());
+
+            buf.clear();
+            receive(meta, buf);
+            buf.flip();
+            assertEquals(1234, buf.getLong());
+            assertEquals(1, buf.getChar());
+            assertEquals(UdpType.BOOLEAN.id, buf.get());
+            byte[] label = new byte[buf.get()];
+            buf.get(label);
+            assertEquals("b", new String(label, StandardCharsets.US_ASCII));
+
+            assertEquals(0, logger.getDrops());
+        }
+    }
+
+    /** A full ring drops values rather than blocking, and recovers when drained. */
+    @Test
+    void testDrops() throws IOException {
+        try (DatagramChannel data = receiver();
+                DatagramChannel meta = receiver();
+                BufferedUdpPrimitiveLogger logger = new BufferedUdpPrimitiveLogger(
+                        addr(data), addr(meta), 64, () -> 0)) {
+            PrimitiveLogger.PrimitiveDoubleLogger d = logger.doubleLogger("d");
+            // each double is 16 bytes in the ring
+            for (int i = 0; i < 10; ++i) {
+                d.log(i);
+            }
+            assertEquals(6, logger.getDrops());
+            assertEquals(4, logger.drain());
+            assertEquals(1, logger.getPackets());
+            // there's room again, and the records wrap around the end.
+            for (int i = 0; i < 3; ++i) {
+                d.log(i);
+                assertEquals(1, logger.drain());
+            }
+            assertEquals(6, logger.getDrops());
+            // too big for a packet
+            logger.doubleArrayLogger("a").log(new double[200]);
+            assertEquals(7, logger.getDrops());
+        }
+    }
+
+    /** Packets are split at the MTU. */
+    @Test
+    void testSplit() throws IOException {
+        try (DatagramChannel data = receiver();
+                DatagramChannel meta = receiver();
+                BufferedUdpPrimitiveLogger logger = new BufferedUdpPrimitiveLogger(
+                        addr(data), addr(meta), 1 << 16, () -> 0)) {
+            PrimitiveLogger.PrimitiveDoubleLogger d = logger.doubleLogger("d");
+            // 11 bytes each, so 133 fit in a packet.
+            for (int i = 0; i < 200; ++i) {
+                d.log(i);
+            }
+            assertEquals(200, logger.drain());
+            assertEquals(2, logger.getPackets());
+            ByteBuffer buf = ByteBuffer.allocate(BufferedUdpPrimitiveLogger.MTU);
+            receive(data, buf);
+            assertEquals(8 + 133 * 11, buf.position());
+            buf.clear();
+            receive(data, buf);
+            assertEquals(8 + 67 * 11, buf.position());
+        }
+    }
+
+    @Test
+    void testLabels() throws IOException {
+        try (DatagramChannel data = receiver();
+                DatagramChannel meta = receiver();
+                BufferedUdpPrimitiveLogger logger = new BufferedUdpPrimitiveLogger(
+                        addr(data), addr(meta), 64, () -> 0)) {
+            logger.doubleLogger("d");
+            // same label and type is the same key
+            logger.doubleLogger("d");
+            assertEquals(1, logger.keyCount());
+            assertThrows(IllegalArgumentException.class, () -> logger.intLogger("d"));
+            assertThrows(IllegalArgumentException.class, () -> logger.intLogger("x".repeat(256)));
+        }
+    }
+
+    @Test
+    void testRing() {
+        ByteRing ring = new ByteRing(32);
+        assertEquals(-1, ring.poll());
+        int i = ring.claim(3);
+        assertEquals(0, i);
+        // not committed yet
+        assertEquals(-1, ring.poll());
+        ring.commit(i, 3);
+        assertEquals(0, ring.poll());
+        assertEquals(3, ring.length(0));
+        ring.release(0);
+        assertEquals(8, ring.claim(12));
+        ring.commit(8, 12);
+        // 16 bytes free, 8 at the end and 8 at the start, but records can't be
+        // split.
+        assertEquals(-1, ring.claim(12));
+        assertEquals(1, ring.drops());
+        assertEquals(8, ring.poll());
+        ring.release(8);
+        // now it wraps, padding the end.
+        int j = ring.claim(12);
+        assertEquals(0, j);
+        ring.commit(j, 12);
+        assertEquals(0, ring.poll());
+        ring.release(0);
+        assertEquals(-1, ring.poll());
+        assertEquals(1, ring.drops());
+    }
+
+    ////////////////////////////////////////////////
+
+    private static DatagramChannel receiver() throws IOException {
+        DatagramChannel channel = DatagramChannel.open();
+        channel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        channel.socket().setSoTimeout(TIMEOUT_MS);
+        return channel;
+    }
+
+    /**
+     * Receive one packet into the buffer, like DatagramChannel.receive(), but
+     * through the socket, which obeys the timeout.
+     */
+    private static void receive(DatagramChannel channel, ByteBuffer buf) throws IOException {
+        DatagramPacket packet = new DatagramPacket(buf.array(), buf.position(), buf.remaining());
+        channel.socket().receive(packet);
+        buf.position(buf.position() + packet.getLength());
+    }
+
+    private static InetSocketAddress addr(DatagramChannel channel) throws IOException {
+        return (InetSocketAddress) channel.getLocalAddress();
+    }
+}
@@ -0,0 +1,92 @@
+package org.team100.lib.motion.prr;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.junit.jupiter.api.Test;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+
+class WorkspaceTableTest {
+    private static final double DELTA = 0.001;
+
+    private static WorkspaceTable table(ElevatorArmWristKinematics k) {
+        return WorkspaceTable.build(k,
+                0, 3, 31,
+                -1.5, 1.5, 31,
+                -Math.PI, Math.PI, 73);
+    }
+
+    @Test
+    void testReachable() {
+        ElevatorArmWristKinematics k = new ElevatorArmWristKinematics(1, 0.5);
+        WorkspaceTable t = table(k);
+        assertTrue(t.reachable(new Pose2d(2, 0.2, new Rotation2d(0.3))));
+        // outside the grid
+        assertFalse(t.reachable(new Pose2d(4, 0, new Rotation2d())));
+        // wrist too far to the side for the arm
+        assertFalse(t.reachable(new Pose2d(1, 1.45, new Rotation2d(-1.5))));
+        assertNull(t.inverse(new Pose2d(1, 1.45, new Rotation2d(-1.5))));
+    }
+
+    @Test
+    void testInverse() {
+        ElevatorArmWristKinematics k = new ElevatorArmWristKinematics(1, 0.5);
+        WorkspaceTable t = table(k);
+        // off-grid points, compared with the exact solution
+        for (double x = 0.83; x < 2.5; x += 0.37) {
+            for (double y = -0.91; y < 0.9; y += 0.29) {
+                for (double r = -2.9; r < 3; r += 0.53) {
+                    Pose2d p = new Pose2d(x, y, new Rotation2d(r));
+                    if (!t.reachable(p))
+                        continue;
+                    Config exact = k.inverse(p);
+                    Config c = t.inverse(p);
+                    assertEquals(exact.shoulderHeight(), c.shoulderHeight(), DELTA);
+                    assertEquals(exact.shoulderAngle(), c.shoulderAngle(), DELTA);
+                    assertEquals(exact.wristAngle(),
+                            MathUtil.angleModulus(c.wristAngle()), DELTA);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testJinv() {
+        ElevatorArmWristKinematics k = new ElevatorArmWristKinematics(1, 0.5);
+        WorkspaceTable t = table(k);
+        // on a node, the table is exact
+        Pose2d p = new Pose2d(2, 0.5, new Rotation2d(0));
+        double[] jinv = new double[9];
+        assertTrue(t.jinv(p, jinv));
+        Config c = k.inverse(p);
+        double[] expected = new double[9];
+        assertTrue(AnalyticalJacobian.jinv(1, 0.5, c.shoulderAngle(), c.wristAngle(), expected));
+        for (int i = 0; i < 9; ++i) {
+            assertEquals(expected[i], jinv[i], DELTA);
+        }
+    }
+
+    @Test
+    void testRoundTrip() throws IOException {
+        ElevatorArmWristKinematics k = new ElevatorArmWristKinematics(1, 0.5);
+        WorkspaceTable t = table(k);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        t.write(out);
+        WorkspaceTable t2 = WorkspaceTable.read(k, new ByteArrayInputStream(out.toByteArray()));
+        Pose2d p = new Pose2d(1.7, -0.3, new Rotation2d(1.1));
+        Config c = t.inverse(p);
+        Config c2 = t2.inverse(p);
+        assertEquals(c.shoulderHeight(), c2.shoulderHeight(), DELTA);
+        assertEquals(c.shoulderAngle(), c2.shoulderAngle(), DELTA);
+        assertEquals(c.wristAngle(), c2.wristAngle(), DELTA);
+    }
+}
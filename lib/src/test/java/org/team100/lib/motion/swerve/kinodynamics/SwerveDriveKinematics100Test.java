@@ -5,6 +5,7 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.jupiter.api.Test;
 import org.team100.lib.motion.swerve.module.state.SwerveModuleDelta;
@@ -334,6 +335,87 @@ class SwerveDriveKinematics100Test {
         assertEquals(0.141, twist.dtheta, DELTA);
     }
 
+    @Test
+    void testTwistFromPositions() {
+        // same as going through the deltas
+        SwerveDriveKinematics100 kinematics = new SwerveDriveKinematics100(
+                new Translation2d(0.5, 0.5),
+                new Translation2d(0.5, -0.5),
+                new Translation2d(-0.5, 0.5),
+                new Translation2d(-0.5, -0.5));
+        SwerveModulePositions start = new SwerveModulePositions(
+                new SwerveModulePosition100(1.0, Optional.of(Rotation2d.fromDegrees(10))),
+                new SwerveModulePosition100(1.1, Optional.of(Rotation2d.fromDegrees(20))),
+                new SwerveModulePosition100(1.2, Optional.of(Rotation2d.fromDegrees(30))),
+                new SwerveModulePosition100(1.3, Optional.empty()));
+        SwerveModulePositions end = new SwerveModulePositions(
+                new SwerveModulePosition100(1.1, Optional.of(Rotation2d.fromDegrees(400))),
+                new SwerveModulePosition100(1.0, Optional.of(Rotation2d.fromDegrees(-20))),
+                new SwerveModulePosition100(1.2, Optional.of(Rotation2d.fromDegrees(30))),
+                new SwerveModulePosition100(1.5, Optional.empty()));
+        Twist2d expected = kinematics.toTwist2d(SwerveModuleDeltas.modulePositionDelta(start, end));
+        Twist2d twist = kinematics.toTwist2d(start, end);
+        assertEquals(expected.dx, twist.dx, 1e-9);
+        assertEquals(expected.dy, twist.dy, 1e-9);
+        assertEquals(expected.dtheta, twist.dtheta, 1e-9);
+    }
+
+    @Test
+    void testInPlace() {
+        SwerveDriveKinematics100 kinematics = new SwerveDriveKinematics100(
+                new Translation2d(0.5, 0.5),
+                new Translation2d(0.5, -0.5),
+                new Translation2d(-0.5, 0.5),
+                new Translation2d(-0.5, -0.5));
+        double[] modules = new double[8];
+        kinematics.inverse(1, 2, 3, modules);
+        // vx - y omega, vy + x omega
+        assertEquals(-0.5, modules[0], DELTA);
+        assertEquals(3.5, modules[1], DELTA);
+        assertEquals(2.5, modules[2], DELTA);
+        assertEquals(3.5, modules[3], DELTA);
+        assertEquals(-0.5, modules[4], DELTA);
+        assertEquals(0.5, modules[5], DELTA);
+        assertEquals(2.5, modules[6], DELTA);
+        assertEquals(0.5, modules[7], DELTA);
+        // round trip
+        double[] chassis = new double[3];
+        kinematics.forward(modules, chassis);
+        assertEquals(1, chassis[0], DELTA);
+        assertEquals(2, chassis[1], DELTA);
+        assertEquals(3, chassis[2], DELTA);
+    }
+
+    /** The object methods can be shared between threads, e.g. the planner. */
+    @Test
+    void testConcurrent() throws InterruptedException {
+        SwerveDriveKinematics100 kinematics = new SwerveDriveKinematics100(
+                new Translation2d(0.5, 0.5),
+                new Translation2d(0.5, -0.5),
+                new Translation2d(-0.5, 0.5),
+                new Translation2d(-0.5, -0.5));
+        AtomicInteger failures = new AtomicInteger();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; ++t) {
+            // each thread uses a different twist
+            Twist2d twist = new Twist2d(t + 1, -t, 0.1 * t);
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 100000; ++i) {
+                    Twist2d result = kinematics.toTwist2d(kinematics.toSwerveModuleDelta(twist));
+                    if (Math.abs(result.dx - twist.dx) > 1e-9
+                            || Math.abs(result.dy - twist.dy) > 1e-9
+                            || Math.abs(result.dtheta - twist.dtheta) > 1e-9)
+                        failures.incrementAndGet();
+                }
+            });
+        }
+        for (Thread thread : threads)
+            thread.start();
+        for (Thread thread : threads)
+            thread.join();
+        assertEquals(0, failures.get());
+    }
+
     /**
      * The WPI kinematics class keeps module state so that it can return
      * old steering values for future zero-speed cases, but this seems like
@@ -712,4 +794,31 @@ class SwerveDriveKinematics100Test {
                 () -> assertEquals(1.5, twist.dtheta, 0.1));
     }
 
+    /** The in-place forward() from positions matches toTwist2d(). */
+    @Test
+    void testForwardInPlace() {
+        SwerveDriveKinematics100 kinematics = new SwerveDriveKinematics100(
+                new Translation2d(0.5, 0.5),
+                new Translation2d(0.5, -0.5),
+                new Translation2d(-0.5, 0.5),
+                new Translation2d(-0.5, -0.5));
+        SwerveModulePositions start = new SwerveModulePositions(
+                new SwerveModulePosition100(0, Optional.of(Rotation2d.fromRadians(0.1))),
+                new SwerveModulePosition100(0, Optional.of(Rotation2d.fromRadians(0.2))),
+                new SwerveModulePosition100(0, Optional.of(Rotation2d.fromRadians(0.3))),
+                new SwerveModulePosition100(0, Optional.of(Rotation2d.fromRadians(0.4))));
+        SwerveModulePositions end = new SwerveModulePositions(
+                new SwerveModulePosition100(0.1, Optional.of(Rotation2d.fromRadians(0.5))),
+                new SwerveModulePosition100(0.2, Optional.of(Rotation2d.fromRadians(0.6))),
+                new SwerveModulePosition100(0.3, Optional.of(Rotation2d.fromRadians(0.7))),
+                new SwerveModulePosition100(0.4, Optional.of(Rotation2d.fromRadians(0.8))));
+        Twist2d expected = kinematics.toTwist2d(
+                SwerveModuleDeltas.modulePositionDelta(start, end));
+        double[] modules = new double[8];
+        double[] chassis = new double[3];
+        kinematics.forward(start, end, modules, chassis);
+        assertEquals(expected.dx, chassis[0], DELTA);
+        assertEquals(expected.dy, chassis[1], DELTA);
+        assertEquals(expected.dtheta, chassis[2], DELTA);
+    }
 }
@@ -4,6 +4,7 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 
 import org.junit.jupiter.api.Test;
 import org.team100.lib.geometry.GlobalVelocityR3;
+import org.team100.lib.motion.swerve.VeeringCorrection;
 import org.team100.lib.motion.swerve.module.state.SwerveModuleStates;
 
 import edu.wpi.first.math.geometry.Rotation2d;
@@ -273,4 +274,26 @@ class SwerveKinodynamicsTest {
         }
     }
 
+    /** The in-place discretization matches Pose2d.log(). */
+    @Test
+    void testModuleVectors() {
+        SwerveKinodynamics l = SwerveKinodynamicsFactory.forRealisticTest();
+        double[] modules = new double[8];
+        for (double omega : new double[] { -10, -3, 0, 1e-6, 1, 3, 10 }) {
+            ChassisSpeeds speeds = new ChassisSpeeds(1, -2, omega);
+            l.toModuleVectors(speeds, 0.02, modules);
+            SwerveModuleStates actual = l.getKinematics().toSwerveModuleStates(modules);
+            // the old way
+            Rotation2d angle = new Rotation2d(VeeringCorrection.correctionRad(omega));
+            ChassisSpeeds corrected = ChassisSpeeds.fromFieldRelativeSpeeds(1, -2, omega, angle);
+            SwerveModuleStates expected = l.getKinematics().toSwerveModuleStates(
+                    SwerveKinodynamics.discretize(corrected, 0.02));
+            for (int i = 0; i < 4; ++i) {
+                assertEquals(expected.all()[i].speedMetersPerSecond(),
+                        actual.all()[i].speedMetersPerSecond(), 1e-9);
+                assertEquals(expected.all()[i].angle().get().getRadians(),
+                        actual.all()[i].angle().get().getRadians(), 1e-9);
+            }
+        }
+    }
 }
@@ -3,7 +3,12 @@ package org.team100.lib.motion.swerve.kinodynamics.limiter;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
 import org.junit.jupiter.api.Test;
+import org.team100.lib.experiments.Experiment;
+import org.team100.lib.experiments.Experiments;
 import org.team100.lib.framework.TimedRobot100;
 import org.team100.lib.geometry.GlobalVelocityR3;
 import org.team100.lib.logging.LoggerFactory;
@@ -350,4 +355,115 @@ public class SwerveLimiterTest {
                         i, accelLimit, setpoint.x(), target.x());
         }
     }
+
+    /**
+     * The fused limiter produces exactly the same result as the chain of
+     * separate limiters, over random references, setpoint resets, and
+     * experiment settings.
+     */
+    @Test
+    void testEquivalence() {
+        boolean preferRotation = Experiments.instance.enabled(Experiment.LimitsPreferRotation);
+        boolean deadband = Experiments.instance.enabled(Experiment.SwerveDeadband);
+        Random random = new Random(100);
+        try {
+            for (int trial = 0; trial < 40; ++trial) {
+                Experiments.instance.testOverride(Experiment.LimitsPreferRotation, random.nextBoolean());
+                Experiments.instance.testOverride(Experiment.SwerveDeadband, random.nextBoolean());
+                double volts = 6 + 6 * random.nextDouble();
+                SwerveKinodynamics dynamics = SwerveKinodynamicsFactory.likeComp25();
+                SwerveLimiter limiter = new SwerveLimiter(logger, dynamics, () -> volts);
+                BatterySagSpeedLimit limit = new BatterySagSpeedLimit(logger, dynamics, () -> volts);
+                FieldRelativeVelocityLimiter velocityLimiter = new FieldRelativeVelocityLimiter(logger, limit);
+                FieldRelativeCapsizeLimiter capsizeLimiter = new FieldRelativeCapsizeLimiter(logger, dynamics);
+                FieldRelativeAccelerationLimiter accelerationLimiter = new FieldRelativeAccelerationLimiter(
+                        logger, dynamics, 1.0, 0.2);
+                SwerveDeadband swerveDeadband = new SwerveDeadband(logger);
+                GlobalVelocityR3 current = randomVelocity(random);
+                limiter.updateSetpoint(current);
+                for (int i = 0; i < 200; ++i) {
+                    if (random.nextInt(20) == 0) {
+                        // e.g. resuming manual control
+                        current = randomVelocity(random);
+                        limiter.updateSetpoint(current);
+                    }
+                    GlobalVelocityR3 target = randomVelocity(random);
+                    GlobalVelocityR3 expected = velocityLimiter.apply(target);
+                    expected = capsizeLimiter.apply(current, expected);
+                    expected = accelerationLimiter.apply(current, expected);
+                    if (Experiments.instance.enabled(Experiment.SwerveDeadband))
+                        expected = swerveDeadband.apply(expected);
+                    current = expected;
+                    GlobalVelocityR3 actual = limiter.apply(target);
+                    assertEquals(expected.x(), actual.x(), 0);
+                    assertEquals(expected.y(), actual.y(), 0);
+                    assertEquals(expected.theta(), actual.theta(), 0);
+                }
+            }
+        } finally {
+            Experiments.instance.testOverride(Experiment.LimitsPreferRotation, preferRotation);
+            Experiments.instance.testOverride(Experiment.SwerveDeadband, deadband);
+        }
+    }
+
+    @Test
+    void testBinding() {
+        SwerveLimiter limiter = new SwerveLimiter(logger, KINEMATIC_LIMITS, () -> 12);
+        limiter.updateSetpoint(new GlobalVelocityR3(0, 0, 0));
+        double[] out = new double[3];
+        // tiny step is fine
+        assertEquals(SwerveLimiter.Binding.NONE, limiter.apply(0.02, 0, 0, out));
+        // huge step is limited by the velocity limit, and then by capsize, which
+        // is a bit less than the acceleration limit here.
+        assertEquals(SwerveLimiter.Binding.CAPSIZE, limiter.apply(100, 0, 0, out));
+        assertEquals(0.183, out[0], DELTA);
+    }
+
+    /**
+     * Once the JIT has settled, the primitive apply() allocates nothing, even
+     * with TRACE logging on.
+     */
+    @Test
+    void testNoAllocation() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+                .getThreadMXBean();
+        boolean preferRotation = Experiments.instance.enabled(Experiment.LimitsPreferRotation);
+        boolean deadband = Experiments.instance.enabled(Experiment.SwerveDeadband);
+        try {
+            Experiments.instance.testOverride(Experiment.LimitsPreferRotation, false);
+            Experiments.instance.testOverride(Experiment.SwerveDeadband, true);
+            SwerveLimiter limiter = new SwerveLimiter(logger, KINEMATIC_LIMITS, () -> 11);
+            limiter.updateSetpoint(0, 0, 0);
+            double[] out = new double[3];
+            // warm up
+            for (int i = 0; i < 100000; ++i) {
+                limiter.apply(Math.sin(i * 0.01), Math.cos(i * 0.01), 0.5 * Math.sin(i * 0.003), out);
+            }
+            long before = threads.getCurrentThreadAllocatedBytes();
+            for (int i = 0; i < 1000; ++i) {
+                limiter.apply(Math.sin(i * 0.01), Math.cos(i * 0.01), 0.5 * Math.sin(i * 0.003), out);
+            }
+            long after = threads.getCurrentThreadAllocatedBytes();
+            assertEquals(0, after - before);
+        } finally {
+            Experiments.instance.testOverride(Experiment.LimitsPreferRotation, preferRotation);
+            Experiments.instance.testOverride(Experiment.SwerveDeadband, deadband);
+        }
+    }
+
+    /** Mostly ordinary, sometimes tiny, pure rotation, or pure translation. */
+    private static GlobalVelocityR3 randomVelocity(Random random) {
+        double scale = random.nextInt(5) == 0 ? 0.01 : 6;
+        double x = scale * (random.nextDouble() - 0.5);
+        double y = scale * (random.nextDouble() - 0.5);
+        double theta = scale * (random.nextDouble() - 0.5);
+        switch (random.nextInt(6)) {
+            case 0:
+                return new GlobalVelocityR3(0, 0, theta);
+            case 1:
+                return new GlobalVelocityR3(x, y, 0);
+            default:
+                return new GlobalVelocityR3(x, y, theta);
+        }
+    }
 }
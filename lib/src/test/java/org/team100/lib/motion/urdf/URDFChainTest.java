@@ -0,0 +1,93 @@
+package org.team100.lib.motion.urdf;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.team100.lib.optimization.PrimitiveNewtonsMethod;
+
+import edu.wpi.first.math.geometry.Pose3d;
+import edu.wpi.first.math.geometry.Rotation3d;
+
+class URDFChainTest {
+    private static final boolean DEBUG = false;
+    private static final double DELTA = 0.001;
+
+    /** The compiled chain agrees with the joint-by-joint forward kinematics. */
+    @Test
+    void testForward() {
+        URDFAL5D m = URDFAL5D.make();
+        URDFChain chain = m.chain("center_point");
+        double[] lower = m.lowerQ();
+        double[] upper = m.upperQ();
+        Random random = new Random(0);
+        double[] pose = new double[12];
+        for (int i = 0; i < 100; ++i) {
+            double[] q = new double[5];
+            for (int j = 0; j < 5; ++j) {
+                q[j] = lower[j] + (upper[j] - lower[j]) * random.nextDouble();
+            }
+            Pose3d expected = m.forward(m.qMap(q)).get("center_point");
+            chain.forward(q, pose);
+            assertEquals(expected.getX(), pose[3], 1e-9);
+            assertEquals(expected.getY(), pose[7], 1e-9);
+            assertEquals(expected.getZ(), pose[11], 1e-9);
+            // rotation error relative to the expected pose is zero
+            URDFRobot.setGoal(chain, expected);
+            double[] error = new double[6];
+            chain.evaluate(q, error, new double[30]);
+            for (double e : error) {
+                assertEquals(0, e, 1e-9);
+            }
+        }
+    }
+
+    /** The analytic Jacobian matches finite differences, at the goal. */
+    @Test
+    void testJacobian() {
+        URDFAL5D m = URDFAL5D.make();
+        URDFChain chain = m.chain("center_point");
+        double[] q = { 0.3, -1.0, 1.5, -0.2, 0.4 };
+        URDFRobot.setGoal(chain, m.forward(m.qMap(q)).get("center_point"));
+        double[] e0 = new double[6];
+        double[] e1 = new double[6];
+        double[] j = new double[30];
+        chain.evaluate(q, e0, j);
+        double h = 1e-7;
+        for (int col = 0; col < 5; ++col) {
+            double[] q1 = q.clone();
+            q1[col] += h;
+            chain.evaluate(q1, e1, new double[30]);
+            for (int row = 0; row < 6; ++row) {
+                assertEquals((e1[row] - e0[row]) / h, j[row * 5 + col], 1e-5);
+            }
+        }
+    }
+
+    /** Follow a moving goal, warm-starting from the previous solution. */
+    @Test
+    void testWarmStart() {
+        URDFAL5D m = URDFAL5D.make();
+        URDFChain chain = m.chain("center_point");
+        PrimitiveNewtonsMethod solver = new PrimitiveNewtonsMethod(
+                5, 6, chain, m.lowerQ(), m.upperQ(), 1e-4, 8, 2);
+        // the solution from URDFAL5DTest.testCenterPointForward()
+        double[] q = { 0, -2.522, 2.804, -0.282, 0 };
+        int N = 1000;
+        long startTime = System.nanoTime();
+        for (int i = 0; i < N; ++i) {
+            double x = 0.177 + 0.05 * i / N;
+            URDFRobot.setGoal(chain, new Pose3d(x, 0, 0.1, new Rotation3d()));
+            assertTrue(solver.solve(q, 0));
+        }
+        long finishTime = System.nanoTime();
+        if (DEBUG)
+            System.out.printf("per solve (us) %6.3f\n", 1e-3 * (finishTime - startTime) / N);
+        Map<String, Pose3d> poses = m.forward(m.qMap(q));
+        assertEquals(0.227, poses.get("center_point").getX(), DELTA);
+        assertEquals(0.1, poses.get("center_point").getZ(), DELTA);
+    }
+}
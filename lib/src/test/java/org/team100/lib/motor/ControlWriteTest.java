@@ -0,0 +1,119 @@
+package org.team100.lib.motor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.team100.lib.experiments.Experiment;
+import org.team100.lib.experiments.Experiments;
+
+class ControlWriteTest {
+    private static final double DELTA = 0.001;
+
+    private int sends;
+    private ControlWrite.Mode lastMode;
+    private double lastSetpoint;
+
+    private void send(ControlWrite.Mode mode, double setpoint, double feedforward) {
+        sends++;
+        lastMode = mode;
+        lastSetpoint = setpoint;
+    }
+
+    @AfterEach
+    void after() {
+        Experiments.instance.testOverride(Experiment.QueueControlWrites, false);
+        ControlQueue.clear();
+    }
+
+    @Test
+    void testImmediate() {
+        Experiments.instance.testOverride(Experiment.QueueControlWrites, false);
+        ControlWrite w = new ControlWrite(this::send);
+        w.set(ControlWrite.Mode.VELOCITY, 1, 0);
+        w.set(ControlWrite.Mode.VELOCITY, 1, 0);
+        // without the queue, everything is written.
+        assertEquals(2, sends);
+        assertFalse(w.flush());
+        assertEquals(2, sends);
+    }
+
+    @Test
+    void testQueued() {
+        Experiments.instance.testOverride(Experiment.QueueControlWrites, true);
+        ControlWrite w = new ControlWrite(this::send);
+        w.set(ControlWrite.Mode.VELOCITY, 1, 0);
+        w.set(ControlWrite.Mode.VELOCITY, 2, 0);
+        assertEquals(0, sends);
+        // only the last one is written
+        assertTrue(w.flush());
+        assertEquals(1, sends);
+        assertEquals(2, lastSetpoint, DELTA);
+        // nothing pending
+        assertFalse(w.flush());
+        // unchanged, within tolerance
+        w.set(ControlWrite.Mode.VELOCITY, 2.00001, 0);
+        assertFalse(w.flush());
+        assertEquals(1, sends);
+        // changed mode
+        w.set(ControlWrite.Mode.POSITION, 2, 0);
+        assertTrue(w.flush());
+        assertEquals(2, sends);
+        assertEquals(ControlWrite.Mode.POSITION, lastMode);
+        // changed feedforward
+        w.set(ControlWrite.Mode.POSITION, 2, 1);
+        assertTrue(w.flush());
+        assertEquals(3, sends);
+    }
+
+    /** Tones go through the queue like everything else. */
+    @Test
+    void testTone() {
+        Experiments.instance.testOverride(Experiment.QueueControlWrites, true);
+        ControlWrite w = new ControlWrite(this::send);
+        w.set(ControlWrite.Mode.VELOCITY, 1, 0);
+        w.set(ControlWrite.Mode.TONE, 440, 0);
+        assertEquals(0, sends);
+        assertTrue(w.flush());
+        assertEquals(ControlWrite.Mode.TONE, lastMode);
+        assertEquals(440, lastSetpoint, DELTA);
+        // switching back to velocity is a change
+        w.set(ControlWrite.Mode.VELOCITY, 1, 0);
+        assertTrue(w.flush());
+        assertEquals(2, sends);
+    }
+
+    @Test
+    void testKeepalive() {
+        Experiments.instance.testOverride(Experiment.QueueControlWrites, true);
+        ControlWrite w = new ControlWrite(this::send);
+        int flushes = 0;
+        for (int i = 0; i < 100; ++i) {
+            w.set(ControlWrite.Mode.DUTY_CYCLE, 0.5, 0);
+            if (w.flush())
+                flushes++;
+        }
+        // the first one, and then every 11 cycles.
+        assertEquals(10, flushes);
+    }
+
+    @Test
+    void testStop() {
+        Experiments.instance.testOverride(Experiment.QueueControlWrites, true);
+        ControlWrite w = new ControlWrite(this::send);
+        w.set(ControlWrite.Mode.VELOCITY, 1, 0);
+        assertTrue(w.flush());
+        // a pending request is dropped by stop
+        w.set(ControlWrite.Mode.VELOCITY, 3, 0);
+        int[] stops = new int[1];
+        w.stop(() -> stops[0]++);
+        assertEquals(1, stops[0]);
+        assertFalse(w.flush());
+        // after stop, the same request is written again
+        w.set(ControlWrite.Mode.VELOCITY, 1, 0);
+        assertTrue(w.flush());
+        assertEquals(2, sends);
+    }
+}
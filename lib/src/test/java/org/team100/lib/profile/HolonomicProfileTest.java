@@ -24,7 +24,7 @@ class HolonomicProfileTest {
                 new Pose2d(0, 2, Rotation2d.kZero), new GlobalVelocityR3(0, 0, 0));
         hp.solve(i, g);
         // scale factors
-        assertEquals(0.8125, hp.sx, DELTA);
+        assertEquals(0.805, hp.sx, DELTA);
         assertEquals(1.0, hp.sy, DELTA);
         assertEquals(1.0, hp.stheta, DELTA);
         // now ETA's are the same
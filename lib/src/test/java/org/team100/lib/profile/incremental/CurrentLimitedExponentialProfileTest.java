@@ -54,7 +54,39 @@ public class CurrentLimitedExponentialProfileTest {
         final Model100 end = new Model100(3, 0);
         final double ETA_TOLERANCE = 0.02;
         double s = profile.solve(0.1, sample, end, 2.0, ETA_TOLERANCE);
-        assertEquals(0.625, s, DELTA);
+        assertEquals(0.653, s, DELTA);
+        assertEquals(2.0, profile.scale(s).analyticETA(sample, end), DELTA);
+    }
+
+    /** The closed form matches fine-grained simulation. */
+    @Test
+    void testAnalyticETA() {
+        CurrentLimitedExponentialProfile profile = new CurrentLimitedExponentialProfile(2, 5, 10);
+        // ramp, exponential, plug
+        Control100 initial = new Control100(0, 0);
+        Model100 goal = new Model100(3, 0);
+        assertEquals(1.827, profile.analyticETA(initial, goal), DELTA);
+        assertEquals(1.827, profile.simulateForETA(0.001, initial, goal), 0.02);
+        // same thing in reverse
+        goal = new Model100(-3, 0);
+        assertEquals(1.827, profile.analyticETA(initial, goal), DELTA);
+        assertEquals(1.827, profile.simulateForETA(0.001, initial, goal), 0.02);
+        // short move, never leaves the current limit
+        goal = new Model100(0.2, 0);
+        assertEquals(0.4, profile.analyticETA(initial, goal), DELTA);
+        assertEquals(0.4, profile.simulateForETA(0.001, initial, goal), 0.02);
+        // entry speed above the crossing speed
+        initial = new Control100(0, 1.5);
+        goal = new Model100(3, 0);
+        assertEquals(1.627, profile.analyticETA(initial, goal), DELTA);
+        assertEquals(1.627, profile.simulateForETA(0.001, initial, goal), 0.02);
+        // moving away from the goal isn't covered
+        initial = new Control100(0, -1);
+        assertTrue(Double.isNaN(profile.analyticETA(initial, goal)));
+        // neither is a moving goal
+        initial = new Control100(0, 0);
+        goal = new Model100(3, 1);
+        assertTrue(Double.isNaN(profile.analyticETA(initial, goal)));
     }
 
     @Test
@@ -55,10 +55,11 @@ class TrapezoidIncrementalProfileTest {
         final Model100 end = new Model100(3, 0);
         final double ETA_TOLERANCE = 0.02;
         double s = profile.solve(0.1, sample, end, 2.0, ETA_TOLERANCE);
-        assertEquals(0.4375, s, DELTA);
+        // trapezoidal: a = v / (T - d/v) = 4
+        assertEquals(0.4, s, DELTA);
     }
 
-    /** Around 25 us at 0.1 DT */
+    /** Around 25 us at 0.1 DT with simulation, much less in closed form. */
     @Test
     void testSolvePerformance() {
         double maxVel = 2;
@@ -295,14 +296,76 @@ class TrapezoidIncrementalProfileTest {
         double s = p.solve(0.1, initial, goal, 2, DELTA);
         assertEquals(1.0, s, DELTA);
         s = p.solve(0.1, initial, goal, 3, DELTA);
-        // approximate
-        assertEquals(0.4375, s, DELTA);
+        // rest-to-rest is solved exactly: a = 4d/T^2
+        assertEquals(0.444, s, DELTA);
         s = p.solve(0.1, initial, goal, 4, DELTA);
-        // approximate
         assertEquals(0.25, s, DELTA);
         s = p.solve(0.1, initial, goal, 8, DELTA);
-        // approximate
-        assertEquals(0.051, s, DELTA);
+        assertEquals(0.0625, s, DELTA);
+    }
+
+    /**
+     * The closed-form ETA matches fine-grained simulation, which stops a little
+     * early, since it only needs to get within 0.01 of the goal.
+     */
+    @Test
+    void testAnalyticETA() {
+        TrapezoidIncrementalProfile p = new TrapezoidIncrementalProfile(1, 1, 0.01);
+        Model100 goal = new Model100(1, 0);
+        // triangular
+        Control100 initial = new Control100(0, 0);
+        assertEquals(2, p.analyticETA(initial, goal), DELTA);
+        assertEquals(2, p.simulateForETA(0.001, initial, goal), 0.011);
+        // cruise
+        initial = new Control100(-2, 0);
+        assertEquals(4, p.analyticETA(initial, goal), DELTA);
+        assertEquals(4, p.simulateForETA(0.001, initial, goal), 0.011);
+        // entry speed towards the goal
+        initial = new Control100(0, 1);
+        assertEquals(1.5, p.analyticETA(initial, goal), DELTA);
+        assertEquals(1.5, p.simulateForETA(0.001, initial, goal), 0.011);
+        // entry speed away from the goal
+        initial = new Control100(0, -1);
+        assertEquals(3.5, p.analyticETA(initial, goal), DELTA);
+        assertEquals(3.5, p.simulateForETA(0.001, initial, goal), 0.011);
+        // overshoot and come back
+        initial = new Control100(0, 1);
+        goal = new Model100(0, 0);
+        assertEquals(2.414, p.analyticETA(initial, goal), DELTA);
+        assertEquals(2.414, p.simulateForETA(0.001, initial, goal), 0.011);
+        // too fast: brake to the limit first
+        initial = new Control100(0, -2);
+        goal = new Model100(1, 0);
+        assertEquals(6, p.analyticETA(initial, goal), DELTA);
+        assertEquals(6, p.simulateForETA(0.001, initial, goal), 0.011);
+    }
+
+    /** Moving goals fall back to simulation. */
+    @Test
+    void testETAMovingGoal() {
+        TrapezoidIncrementalProfile p = new TrapezoidIncrementalProfile(1, 1, 0.01);
+        Control100 initial = new Control100(0, 0);
+        Model100 goal = new Model100(1, 0.5);
+        assertTrue(Double.isNaN(p.analyticETA(initial, goal)));
+        assertEquals(p.simulateForETA(0.1, initial, goal), p.eta(0.1, initial, goal), DELTA);
+    }
+
+    /** The solved profile arrives at the requested time. */
+    @Test
+    void testAnalyticSolve() {
+        TrapezoidIncrementalProfile p = new TrapezoidIncrementalProfile(1, 1, 0.01);
+        Control100 initial = new Control100(0, 1);
+        Model100 goal = new Model100(0, 0);
+        // the fastest way is 2.414 s
+        double s = p.solve(0.1, initial, goal, 3, DELTA);
+        assertEquals(0.805, s, DELTA);
+        assertEquals(3, p.scale(s).analyticETA(initial, goal), DELTA);
+        // trapezoidal rest-to-rest
+        initial = new Control100(0, 0);
+        goal = new Model100(2, 0);
+        s = p.solve(0.1, initial, goal, 4, DELTA);
+        assertEquals(0.5, s, DELTA);
+        assertEquals(4, p.scale(s).analyticETA(initial, goal), DELTA);
     }
 
     /**
@@ -63,7 +63,8 @@ class TrapezoidProfileWPITest {
         final Model100 end = new Model100(3, 0);
         final double ETA_TOLERANCE = 0.02;
         double s = profile.solve(0.1, sample, end, 2.0, ETA_TOLERANCE);
-        assertEquals(0.4375, s, DELTA);
+        // exact, using the WPI profile's total time: a = v / (T - d/v) = 4
+        assertEquals(0.4, s, DELTA);
     }
 
     /** Around 14 us per solve, using DT of 0.1. */
@@ -155,6 +155,33 @@ class Trajectory100Test {
 
     }
 
+    /** The cursor gives the same answers as the search, in any order. */
+    @Test
+    void testCursor() {
+        List<HolonomicPose2d> waypoints = List.of(
+                new HolonomicPose2d(new Translation2d(), Rotation2d.kZero, Rotation2d.kZero),
+                new HolonomicPose2d(new Translation2d(1, 0), Rotation2d.kCCW_Pi_2, Rotation2d.kZero));
+
+        SwerveKinodynamics limits = SwerveKinodynamicsFactory.forTest3();
+        List<TimingConstraint> constraints = new TimingConstraintFactory(limits).fast(logger);
+        TrajectoryPlanner planner = new TrajectoryPlanner(constraints);
+
+        Trajectory100 trajectory = planner.restToRest(waypoints);
+        Trajectory100.Cursor cursor = trajectory.cursor();
+        // forward, like a follower, with current and next interleaved
+        for (double t = -0.1; t < 1.8; t += 0.02) {
+            assertEquals(trajectory.sample(t).state().getPose().getX(),
+                    cursor.sample(t).state().getPose().getX(), 1e-9);
+            assertEquals(trajectory.sample(t + 0.02).state().getPose().getX(),
+                    cursor.sample(t + 0.02).state().getPose().getX(), 1e-9);
+        }
+        // backward
+        for (double t = 1.8; t > -0.1; t -= 0.07) {
+            assertEquals(trajectory.sample(t).state().getPose().getX(),
+                    cursor.sample(t).state().getPose().getX(), 1e-9);
+        }
+    }
+
     /** Does the index help? No. */
     // There's no need to run this all the time
     // @Test
@@ -0,0 +1,64 @@
+package org.team100.lib.trajectory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.team100.lib.geometry.HolonomicPose2d;
+import org.team100.lib.logging.LoggerFactory;
+import org.team100.lib.logging.TestLoggerFactory;
+import org.team100.lib.logging.primitive.TestPrimitiveLogger;
+import org.team100.lib.motion.swerve.kinodynamics.SwerveKinodynamics;
+import org.team100.lib.motion.swerve.kinodynamics.SwerveKinodynamicsFactory;
+import org.team100.lib.trajectory.TrajectoryService.Fallback;
+import org.team100.lib.trajectory.timing.TimingConstraint;
+import org.team100.lib.trajectory.timing.TimingConstraintFactory;
+
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+
+class TrajectoryServiceTest {
+    private static final double DELTA = 0.001;
+    private static final LoggerFactory logger = new TestLoggerFactory(new TestPrimitiveLogger());
+
+    private TrajectoryService service() {
+        SwerveKinodynamics limits = SwerveKinodynamicsFactory.forTest3();
+        List<TimingConstraint> constraints = new TimingConstraintFactory(limits).fast(logger);
+        return new TrajectoryService(new TrajectoryPlanner(constraints));
+    }
+
+    /** Background result is the same as the synchronous one, and it's cached. */
+    @Test
+    void testCache() {
+        TrajectoryService service = service();
+        List<HolonomicPose2d> waypoints = List.of(
+                new HolonomicPose2d(new Translation2d(), Rotation2d.kZero, Rotation2d.kZero),
+                new HolonomicPose2d(new Translation2d(1, 0), Rotation2d.kZero, Rotation2d.kZero));
+        Trajectory100 t = service.restToRest(waypoints).join();
+        assertFalse(t.isEmpty());
+        assertEquals(1.417, t.duration(), DELTA);
+        // same waypoints, same trajectory
+        assertSame(t, service.getNow(List.of(
+                new HolonomicPose2d(new Translation2d(), Rotation2d.kZero, Rotation2d.kZero),
+                new HolonomicPose2d(new Translation2d(1, 0), Rotation2d.kZero, Rotation2d.kZero)),
+                Fallback.NONE));
+        assertEquals(1, service.size());
+    }
+
+    /** If it's not ready, the fallback can plan on the calling thread. */
+    @Test
+    void testFallback() {
+        TrajectoryService service = service();
+        List<HolonomicPose2d> waypoints = List.of(
+                new HolonomicPose2d(new Translation2d(), Rotation2d.kZero, Rotation2d.kZero),
+                new HolonomicPose2d(new Translation2d(2, 0), Rotation2d.kZero, Rotation2d.kZero));
+        Trajectory100 t = service.getNow(waypoints, Fallback.PLAN_NOW);
+        assertFalse(t.isEmpty());
+        assertEquals(2, t.getLastPoint().state().getPose().getX(), DELTA);
+        t = service.getNow(waypoints, Fallback.WAIT);
+        assertEquals(2, t.getLastPoint().state().getPose().getX(), DELTA);
+    }
+}
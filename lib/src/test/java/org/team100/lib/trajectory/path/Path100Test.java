@@ -208,4 +208,19 @@ class Path100Test {
         assertEquals(157.525, sample8.getHeading().getDegrees(), DELTA);
 
     }
+
+    /** The cursor gives the same answers as the search, in any order. */
+    @Test
+    void testCursor() throws TimingException {
+        Path100 path = new Path100(WAYPOINTS);
+        Path100.Cursor cursor = path.cursor();
+        for (double d = -1; d < 70; d += 0.5) {
+            assertEquals(path.sample(d).getPose().getX(), cursor.sample(d).getPose().getX(), 1e-9);
+            assertEquals(path.sample(d).getPose().getY(), cursor.sample(d).getPose().getY(), 1e-9);
+        }
+        for (double d = 70; d > -1; d -= 3.3) {
+            assertEquals(path.sample(d).getPose().getX(), cursor.sample(d).getPose().getX(), 1e-9);
+            assertEquals(path.sample(d).getPose().getY(), cursor.sample(d).getPose().getY(), 1e-9);
+        }
+    }
 }
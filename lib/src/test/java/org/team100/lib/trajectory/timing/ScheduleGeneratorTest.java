@@ -9,6 +9,7 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 
 import org.junit.jupiter.api.Test;
 import org.team100.lib.geometry.GeometryUtil;
@@ -240,6 +241,77 @@ public class ScheduleGeneratorTest {
         assertNotNull(timed_traj);
     }
 
+    /** Re-timing with a lower speed limit keeps the samples and takes longer. */
+    @Test
+    void testRetime() {
+        Path100 path = new Path100(WAYPOINTS);
+        ScheduleGenerator fast = new ScheduleGenerator(List.of(new ConstantConstraint(logger, 10, 5)));
+        Trajectory100 t = fast.timeParameterizeTrajectory(path, 1.0, 0, 0);
+        // same constraints => same schedule
+        Trajectory100 same = fast.retime(t, 0, 0);
+        assertEquals(t.length(), same.length());
+        assertEquals(t.duration(), same.duration(), DELTA);
+        // lower speed limit
+        ScheduleGenerator slow = new ScheduleGenerator(List.of(new ConstantConstraint(logger, 5, 5)));
+        Trajectory100 slower = slow.retime(t, 0, 0);
+        assertEquals(t.length(), slower.length());
+        assertTrue(slower.duration() > t.duration());
+        for (int i = 0; i < t.length(); ++i) {
+            assertEquals(t.getPoint(i).state(), slower.getPoint(i).state());
+            assertTrue(slower.getPoint(i).velocityM_S() <= 5 + DELTA);
+        }
+    }
+
+    /**
+     * The array-based generator produces exactly the same schedule as the
+     * previous one, over random paths, constraints, and entry speeds.
+     */
+    @Test
+    void testEquivalence() {
+        Random random = new Random(100);
+        TimingConstraintFactory factory = new TimingConstraintFactory(SwerveKinodynamicsFactory.likeComp25());
+        for (int trial = 0; trial < 40; ++trial) {
+            List<HolonomicPose2d> waypoints = new ArrayList<>();
+            int n = 2 + random.nextInt(3);
+            double x = 0;
+            for (int i = 0; i < n; ++i) {
+                waypoints.add(new HolonomicPose2d(
+                        new Translation2d(x, 2 * random.nextDouble()),
+                        new Rotation2d(Math.PI * (random.nextDouble() - 0.5)),
+                        new Rotation2d(0.5 * (random.nextDouble() - 0.5))));
+                x += 0.5 + 2 * random.nextDouble();
+            }
+            Path100 path = PathFactory.pathFromWaypoints(waypoints, 0.05, 0.05, 0.2);
+            List<TimingConstraint> constraints = new ArrayList<>();
+            switch (random.nextInt(4)) {
+                case 0 -> constraints.addAll(factory.allGood(logger));
+                case 1 -> constraints.addAll(factory.fast(logger));
+                case 2 -> constraints.addAll(factory.slow(logger));
+                default -> constraints.addAll(factory.auto(logger));
+            }
+            if (random.nextBoolean()) {
+                constraints.add(new ConstantConstraint(
+                        logger, 0.5 + 3 * random.nextDouble(), 0.5 + 3 * random.nextDouble()));
+            }
+            double step = 0.05 + 0.15 * random.nextDouble();
+            double startVel = random.nextBoolean() ? 0 : 0.5 * random.nextDouble();
+            Trajectory100 expected = new ReferenceScheduleGenerator(constraints)
+                    .timeParameterizeTrajectory(path, step, startVel, 0);
+            Trajectory100 actual = new ScheduleGenerator(constraints)
+                    .timeParameterizeTrajectory(path, step, startVel, 0);
+            assertFalse(expected.isEmpty());
+            assertEquals(expected.length(), actual.length());
+            for (int i = 0; i < expected.length(); ++i) {
+                TimedPose e = expected.getPoint(i);
+                TimedPose a = actual.getPoint(i);
+                assertEquals(e.state(), a.state());
+                assertEquals(e.getTimeS(), a.getTimeS(), 0);
+                assertEquals(e.velocityM_S(), a.velocityM_S(), 0);
+                assertEquals(e.acceleration(), a.acceleration(), 0);
+            }
+        }
+    }
+
     @Test
     void testAccel() {
         // average v = 0.5
@@ -0,0 +1,79 @@
+package org.team100.lib.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.team100.lib.targeting.Targets;
+
+import edu.wpi.first.math.geometry.Translation2d;
+
+class GridCoalescingCollectionTest {
+    private static final double DELTA = 1e-9;
+
+    @Test
+    void testCombine() {
+        GridCoalescingCollection c = new GridCoalescingCollection(0.15, 1.0, new Targets.Mean());
+        c.add(0, new Translation2d(1, 1));
+        c.add(0, new Translation2d(2, 2));
+        assertEquals(2, c.size());
+        // near the first one, across a cell boundary
+        c.add(0, new Translation2d(0.9, 1));
+        assertEquals(2, c.size());
+        List<Translation2d> all = c.getAll();
+        assertEquals(2, all.get(0).getX(), DELTA);
+        assertEquals(0.95, all.get(1).getX(), DELTA);
+    }
+
+    @Test
+    void testEvict() {
+        GridCoalescingCollection c = new GridCoalescingCollection(0.15, 1.0, new Targets.Mean());
+        c.add(0, new Translation2d(1, 1));
+        c.add(0.5, new Translation2d(2, 2));
+        c.add(1.2, new Translation2d(3, 3));
+        assertEquals(2, c.size());
+        // the merged one is newer now
+        c.add(1.4, new Translation2d(2, 2.1));
+        // so it survives, but the one at 1.2 doesn't
+        c.add(2.3, new Translation2d(4, 4));
+        assertEquals(2, c.size());
+        assertEquals(2.05, c.getAll().get(0).getY(), DELTA);
+        c.add(3.0, new Translation2d(5, 5));
+        assertEquals(2, c.size());
+        assertEquals(4, c.getAll().get(0).getX(), DELTA);
+    }
+
+    /** Same answer as the brute-force version. */
+    @Test
+    void testSameAsBruteForce() {
+        final double resolution = 0.15;
+        GridCoalescingCollection grid = new GridCoalescingCollection(
+                resolution, 100, new Targets.Mean());
+        CoalescingCollection<Translation2d> brute = new CoalescingCollection<>(
+                new TrailingHistory<>(100),
+                (a, b) -> a.getDistance(b) < resolution,
+                new Targets.Mean());
+        Random random = new Random(0);
+        for (int i = 0; i < 2000; ++i) {
+            List<Translation2d> values = new ArrayList<>();
+            for (int j = 0; j < 5; ++j) {
+                // a pile of targets, some negative
+                values.add(new Translation2d(
+                        random.nextGaussian(),
+                        random.nextGaussian()));
+            }
+            grid.addAll(i * 0.02, values);
+            brute.addAll(i * 0.02, values);
+        }
+        List<Translation2d> expected = brute.getAll();
+        List<Translation2d> actual = grid.getAll();
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); ++i) {
+            assertEquals(expected.get(i).getX(), actual.get(i).getX(), DELTA);
+            assertEquals(expected.get(i).getY(), actual.get(i).getY(), DELTA);
+        }
+    }
+}
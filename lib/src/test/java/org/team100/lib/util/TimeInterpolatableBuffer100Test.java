@@ -1,6 +1,9 @@
 package org.team100.lib.util;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import org.junit.jupiter.api.Test;
 
@@ -42,4 +45,94 @@ class TimeInterpolatableBuffer100Test {
         assertEquals(10, b.get(1.5).value, DELTA);
     }
 
+    /** Out-of-order puts are inserted in order, and same-time puts replace. */
+    @Test
+    void testOutOfOrder() {
+        TimeInterpolatableBuffer100<Item> b = new TimeInterpolatableBuffer100<>(10, 0, new Item(0));
+        b.put(2, new Item(20));
+        b.put(1, new Item(11));
+        b.put(1, new Item(10));
+        assertEquals(3, b.size());
+        assertEquals(15, b.get(1.5).value, DELTA);
+        assertEquals(10, b.lowerEntry(2).getValue().value, DELTA);
+        assertEquals(2, b.tailMap(0, false).size());
+        assertEquals(3, b.tailMap(0, true).size());
+    }
+
+    /** Entries older than the history window are evicted. */
+    @Test
+    void testHistory() {
+        TimeInterpolatableBuffer100<Item> b = new TimeInterpolatableBuffer100<>(1, 0, new Item(0));
+        b.put(0.5, new Item(5));
+        assertEquals(2, b.size());
+        b.put(1.2, new Item(12));
+        assertEquals(2, b.size());
+        assertTrue(b.tooOld(0.1));
+        assertFalse(b.tooOld(0.3));
+        assertEquals(1.2, b.lastKey(), DELTA);
+    }
+
+    /** When full, the oldest entry is evicted. */
+    @Test
+    void testCapacity() {
+        TimeInterpolatableBuffer100<Item> b = new TimeInterpolatableBuffer100<>(10, 3, 0, new Item(0));
+        for (int i = 1; i < 10; ++i) {
+            b.put(i, new Item(10 * i));
+        }
+        assertEquals(3, b.size());
+        assertNull(b.lowerEntry(7));
+        assertEquals(70, b.get(0).value, DELTA);
+        assertEquals(85, b.get(8.5).value, DELTA);
+    }
+
+    /** When full, a put older than everything is dropped. */
+    @Test
+    void testCapacityOlder() {
+        TimeInterpolatableBuffer100<Item> b = new TimeInterpolatableBuffer100<>(10, 3, 1, new Item(10));
+        b.put(2, new Item(20));
+        b.put(3, new Item(30));
+        b.put(0.5, new Item(5));
+        assertEquals(3, b.size());
+        assertEquals(1, b.timeAt(0), DELTA);
+        assertEquals(10, b.get(0).value, DELTA);
+        assertEquals(30, b.get(3).value, DELTA);
+        // between the oldest and newest, so the oldest is evicted.
+        b.put(2.5, new Item(25));
+        assertEquals(3, b.size());
+        assertEquals(2, b.timeAt(0), DELTA);
+        assertEquals(25, b.get(2.5).value, DELTA);
+    }
+
+    /** The index accessors match the entry accessors. */
+    @Test
+    void testIndex() {
+        TimeInterpolatableBuffer100<Item> b = new TimeInterpolatableBuffer100<>(10, 0, new Item(0));
+        b.put(1, new Item(10));
+        b.put(2, new Item(20));
+        assertEquals(-1, b.lowerIndex(0));
+        assertEquals(0, b.lowerIndex(1));
+        assertEquals(1, b.lowerIndex(1.5));
+        assertEquals(1, b.higherIndex(0));
+        assertEquals(2, b.higherIndex(1.5));
+        assertEquals(3, b.higherIndex(2));
+        assertEquals(1, b.timeAt(1), DELTA);
+        assertEquals(20, b.valueAt(2).value, DELTA);
+        assertEquals(b.lowerEntry(2).getValue(), b.valueAt(b.lowerIndex(2)));
+        assertEquals(b.higherEntry(1).getValue(), b.valueAt(b.higherIndex(1)));
+    }
+
+    /** Entries after the time are replaced in place. */
+    @Test
+    void testReplaceAfter() {
+        TimeInterpolatableBuffer100<Item> b = new TimeInterpolatableBuffer100<>(10, 0, new Item(0));
+        b.put(1, new Item(10));
+        b.put(2, new Item(20));
+        assertEquals(20, b.higherEntry(1).getValue().value, DELTA);
+        assertNull(b.higherEntry(2));
+        b.replaceAfter(1, x -> new Item(x.value + 1));
+        assertEquals(0, b.get(0).value, DELTA);
+        assertEquals(10, b.get(1).value, DELTA);
+        assertEquals(21, b.get(2).value, DELTA);
+        assertEquals(3, b.size());
+    }
 }